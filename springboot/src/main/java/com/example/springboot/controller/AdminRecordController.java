@@ -0,0 +1,187 @@
+package com.example.springboot.controller;
+
+import com.example.springboot.dto.appointment.AppointmentResponse;
+import com.example.springboot.dto.audit.AuditLogResponse;
+import com.example.springboot.dto.common.CursorPageResponse;
+import com.example.springboot.dto.leaverequest.LeaveRequestResponse;
+import com.example.springboot.dto.patient.PatientResponse;
+import com.example.springboot.dto.slotapplication.SlotApplicationResponse;
+import com.example.springboot.dto.waitlist.WaitlistResponse;
+import com.example.springboot.entity.enums.ActorType;
+import com.example.springboot.entity.enums.AppointmentStatus;
+import com.example.springboot.entity.enums.LeaveRequestStatus;
+import com.example.springboot.entity.enums.PatientStatus;
+import com.example.springboot.entity.enums.SlotApplicationStatus;
+import com.example.springboot.entity.enums.WaitlistStatus;
+import com.example.springboot.service.AppointmentService;
+import com.example.springboot.service.AuditLogService;
+import com.example.springboot.service.LeaveRequestService;
+import com.example.springboot.service.PatientService;
+import com.example.springboot.service.SlotApplicationService;
+import com.example.springboot.service.WaitlistService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * 管理员记录查询控制器
+ * 预约、候补、请假、审计日志、加号申请、患者的游标分页查询和 NDJSON 流式导出。
+ * 分页接口按ID倒序，响应中的 nextCursor 作为下一次请求的 cursor 参数；
+ * 导出接口逐行写出全部记录（每行一个 JSON 对象），供批量同步、离线分析使用。
+ */
+@RestController
+@RequestMapping("/api/admin/records")
+@PreAuthorize("hasRole('ADMIN')") // 需要管理员权限
+public class AdminRecordController {
+
+    private final AppointmentService appointmentService;
+    private final WaitlistService waitlistService;
+    private final LeaveRequestService leaveRequestService;
+    private final AuditLogService auditLogService;
+    private final SlotApplicationService slotApplicationService;
+    private final PatientService patientService;
+
+    @Autowired
+    public AdminRecordController(AppointmentService appointmentService,
+                                 WaitlistService waitlistService,
+                                 LeaveRequestService leaveRequestService,
+                                 AuditLogService auditLogService,
+                                 SlotApplicationService slotApplicationService,
+                                 PatientService patientService) {
+        this.appointmentService = appointmentService;
+        this.waitlistService = waitlistService;
+        this.leaveRequestService = leaveRequestService;
+        this.auditLogService = auditLogService;
+        this.slotApplicationService = slotApplicationService;
+        this.patientService = patientService;
+    }
+
+    /**
+     * 预约分页查询
+     */
+    @GetMapping("/appointments")
+    public ResponseEntity<CursorPageResponse<AppointmentResponse>> getAppointmentPage(
+            @RequestParam(required = false) AppointmentStatus status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(appointmentService.getAppointmentPage(status, cursor, size));
+    }
+
+    /**
+     * 预约流式导出
+     */
+    @GetMapping("/appointments/stream")
+    public ResponseEntity<StreamingResponseBody> streamAppointments(
+            @RequestParam(required = false) AppointmentStatus status) {
+        return ndjson(out -> appointmentService.writeAppointmentsNdjson(status, out));
+    }
+
+    /**
+     * 候补分页查询
+     */
+    @GetMapping("/waitlists")
+    public ResponseEntity<CursorPageResponse<WaitlistResponse>> getWaitlistPage(
+            @RequestParam(required = false) WaitlistStatus status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(waitlistService.getWaitlistPage(status, cursor, size));
+    }
+
+    /**
+     * 候补流式导出
+     */
+    @GetMapping("/waitlists/stream")
+    public ResponseEntity<StreamingResponseBody> streamWaitlists(
+            @RequestParam(required = false) WaitlistStatus status) {
+        return ndjson(out -> waitlistService.writeWaitlistsNdjson(status, out));
+    }
+
+    /**
+     * 请假申请分页查询
+     */
+    @GetMapping("/leave-requests")
+    public ResponseEntity<CursorPageResponse<LeaveRequestResponse>> getLeaveRequestPage(
+            @RequestParam(required = false) LeaveRequestStatus status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(leaveRequestService.getLeaveRequestPage(status, cursor, size));
+    }
+
+    /**
+     * 请假申请流式导出
+     */
+    @GetMapping("/leave-requests/stream")
+    public ResponseEntity<StreamingResponseBody> streamLeaveRequests(
+            @RequestParam(required = false) LeaveRequestStatus status) {
+        return ndjson(out -> leaveRequestService.writeLeaveRequestsNdjson(status, out));
+    }
+
+    /**
+     * 审计日志分页查询
+     */
+    @GetMapping("/audit-logs")
+    public ResponseEntity<CursorPageResponse<AuditLogResponse>> getAuditLogPage(
+            @RequestParam(required = false) ActorType actorType,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(auditLogService.getAuditLogPage(actorType, cursor, size));
+    }
+
+    /**
+     * 审计日志流式导出
+     */
+    @GetMapping("/audit-logs/stream")
+    public ResponseEntity<StreamingResponseBody> streamAuditLogs(
+            @RequestParam(required = false) ActorType actorType) {
+        return ndjson(out -> auditLogService.writeAuditLogsNdjson(actorType, out));
+    }
+
+    /**
+     * 加号申请分页查询
+     */
+    @GetMapping("/slot-applications")
+    public ResponseEntity<CursorPageResponse<SlotApplicationResponse>> getSlotApplicationPage(
+            @RequestParam(required = false) SlotApplicationStatus status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(slotApplicationService.getApplicationPage(status, cursor, size));
+    }
+
+    /**
+     * 加号申请流式导出
+     */
+    @GetMapping("/slot-applications/stream")
+    public ResponseEntity<StreamingResponseBody> streamSlotApplications(
+            @RequestParam(required = false) SlotApplicationStatus status) {
+        return ndjson(out -> slotApplicationService.writeApplicationsNdjson(status, out));
+    }
+
+    /**
+     * 患者分页查询
+     */
+    @GetMapping("/patients")
+    public ResponseEntity<CursorPageResponse<PatientResponse>> getPatientPage(
+            @RequestParam(required = false) PatientStatus status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size) {
+        return ResponseEntity.ok(patientService.getPatientPage(status, cursor, size));
+    }
+
+    /**
+     * 患者流式导出
+     */
+    @GetMapping("/patients/stream")
+    public ResponseEntity<StreamingResponseBody> streamPatients(
+            @RequestParam(required = false) PatientStatus status) {
+        return ndjson(out -> patientService.writePatientsNdjson(status, out));
+    }
+
+    private ResponseEntity<StreamingResponseBody> ndjson(StreamingResponseBody body) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.springboot.controller;
+
+import com.example.springboot.service.ExpiryTimerService;
+import com.example.springboot.service.QrTokenService;
+import com.example.springboot.service.QueueStreamService;
+import com.example.springboot.service.ReferenceDataCache;
+import com.example.springboot.service.SlotInventoryService;
+import com.example.springboot.service.WaitlistRankIndex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * 管理员运行统计控制器
+ * 提供号源库存、叫号推送、候补排名、到期定时器、签到二维码、基础数据缓存的运行统计
+ */
+@RestController
+@RequestMapping("/api/admin/stats")
+@PreAuthorize("hasRole('ADMIN')") // 需要管理员权限
+public class AdminStatsController {
+
+    private final SlotInventoryService slotInventoryService;
+    private final QueueStreamService queueStreamService;
+    private final WaitlistRankIndex waitlistRankIndex;
+    private final ExpiryTimerService expiryTimerService;
+    private final QrTokenService qrTokenService;
+    private final ReferenceDataCache referenceDataCache;
+
+    @Autowired
+    public AdminStatsController(SlotInventoryService slotInventoryService,
+                                QueueStreamService queueStreamService,
+                                WaitlistRankIndex waitlistRankIndex,
+                                ExpiryTimerService expiryTimerService,
+                                QrTokenService qrTokenService,
+                                ReferenceDataCache referenceDataCache) {
+        this.slotInventoryService = slotInventoryService;
+        this.queueStreamService = queueStreamService;
+        this.waitlistRankIndex = waitlistRankIndex;
+        this.expiryTimerService = expiryTimerService;
+        this.qrTokenService = qrTokenService;
+        this.referenceDataCache = referenceDataCache;
+    }
+
+    /**
+     * 号源库存统计（占号成功、内存拒绝、条件更新冲突率）
+     */
+    @GetMapping("/slot-inventory")
+    public ResponseEntity<Map<String, Object>> getSlotInventoryStats() {
+        return ResponseEntity.ok(slotInventoryService.getStats());
+    }
+
+    /**
+     * 叫号队列推送统计（连接数、已推送事件数、拒绝连接数、丢弃事件数）
+     */
+    @GetMapping("/queue-stream")
+    public ResponseEntity<Map<String, Object>> getQueueStreamStats() {
+        return ResponseEntity.ok(queueStreamService.getStats());
+    }
+
+    /**
+     * 候补排名索引统计（已加载排班数、命中数、加载次数、查库兜底次数）
+     */
+    @GetMapping("/waitlist-rank")
+    public ResponseEntity<Map<String, Object>> getWaitlistRankStats() {
+        return ResponseEntity.ok(waitlistRankIndex.getStats());
+    }
+
+    /**
+     * 到期定时器统计（等待中的定时数、已登记、已触发、处理失败次数）
+     */
+    @GetMapping("/expiry-timer")
+    public ResponseEntity<Map<String, Object>> getExpiryTimerStats() {
+        return ResponseEntity.ok(expiryTimerService.getStats());
+    }
+
+    /**
+     * 签到二维码统计（发放数、校验通过数、拒绝数、判定为已使用的次数）
+     */
+    @GetMapping("/qr-token")
+    public ResponseEntity<Map<String, Object>> getQrTokenStats() {
+        return ResponseEntity.ok(qrTokenService.getStats());
+    }
+
+    /**
+     * 基础数据缓存统计（各缓存的条目数、命中率、淘汰次数、估算内存）
+     */
+    @GetMapping("/reference-cache")
+    public ResponseEntity<Map<String, Object>> getReferenceCacheStats() {
+        return ResponseEntity.ok(referenceDataCache.getStats());
+    }
+}
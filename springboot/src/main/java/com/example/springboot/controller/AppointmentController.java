@@ -7,11 +7,15 @@ import com.example.springboot.dto.appointment.CheckInRequest;
 import com.example.springboot.dto.appointment.CheckInResponse;
 import com.example.springboot.dto.appointment.QrCodeResponse;
 import com.example.springboot.service.AppointmentService;
+import com.example.springboot.service.QueueStreamService;
 import com.example.springboot.service.WaitlistService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.HashMap;
 import java.util.List;
@@ -24,14 +28,17 @@ public class AppointmentController {
 
     private final AppointmentService appointmentService;
     private final WaitlistService waitlistService;
+    private final QueueStreamService queueStreamService;
     
     @Autowired
     private RedisTemplate<String, String> redisTemplate;
 
     @Autowired
-    public AppointmentController(AppointmentService appointmentService, WaitlistService waitlistService) {
+    public AppointmentController(AppointmentService appointmentService, WaitlistService waitlistService,
+                                 QueueStreamService queueStreamService) {
         this.appointmentService = appointmentService;
         this.waitlistService = waitlistService;
+        this.queueStreamService = queueStreamService;
     }
 
     /**
@@ -167,6 +174,32 @@ public class AppointmentController {
         return ResponseEntity.ok(appointmentService.getCallQueue(scheduleId));
     }
 
+    /**
+     * 订阅叫号队列变更（SSE，候诊大屏/小程序使用，替代轮询 call-queue）
+     * 连接建立后先推送一次完整队列（snapshot，含序号 sequence 和预约列表 appointments），之后推送签到、叫号、完成、过号等增量事件；
+     * 客户端丢弃 sequence 不超过快照序号的事件，收到 resync 事件时需重新拉取 call-queue
+     */
+    @GetMapping(value = "/schedule/{scheduleId}/call-queue/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamCallQueue(@PathVariable Integer scheduleId) {
+        SseEmitter emitter = queueStreamService.subscribeSchedule(scheduleId, () -> appointmentService.getCallQueue(scheduleId));
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
+    /**
+     * 订阅科室下所有排班的叫号队列变更（SSE，科室候诊大屏使用）
+     */
+    @GetMapping(value = "/department/{departmentId}/call-queue/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamDepartmentCallQueue(@PathVariable Integer departmentId) {
+        SseEmitter emitter = queueStreamService.subscribeDepartment(departmentId);
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
     /**
      * 获取下一个应该叫号的预约
      */
@@ -4,10 +4,14 @@ import com.example.springboot.dto.dashboard.DoctorsStatsResponse;
 import com.example.springboot.dto.dashboard.OverviewStatsResponse;
 import com.example.springboot.dto.dashboard.PatientsStatsResponse;
 import com.example.springboot.service.DashboardService;
+import com.example.springboot.service.DashboardStatsAggregator;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/dashboard")
 @CrossOrigin(origins = "*")
@@ -15,6 +19,7 @@ import org.springframework.web.bind.annotation.*;
 public class DashboardController {
 
     private final DashboardService dashboardService;
+    private final DashboardStatsAggregator dashboardStatsAggregator;
 
     /**
      * 获取运营总览统计数据
@@ -46,5 +51,13 @@ public class DashboardController {
         PatientsStatsResponse response = dashboardService.getPatientsStats(startDate, endDate);
         return ResponseEntity.ok(response);
     }
-}
 
+    /**
+     * 运营总览统计聚合器状态（对账次数、增量次数、偏差次数）
+     */
+    @GetMapping("/overview/aggregator-stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> getOverviewAggregatorStats() {
+        return ResponseEntity.ok(dashboardStatsAggregator.getStats());
+    }
+}
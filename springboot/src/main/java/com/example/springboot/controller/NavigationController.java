@@ -4,6 +4,7 @@ import com.example.springboot.common.Result;
 import com.example.springboot.service.NavigationService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 /**
@@ -52,5 +53,25 @@ public class NavigationController {
             return ResponseEntity.ok(Result.error("500", "获取指引失败: " + e.getMessage()));
         }
     }
-}
 
+    /**
+     * 重新加载导航图（直接修改 map_edges 表后调用），管理员使用
+     * POST /api/navigation/graph/reload
+     */
+    @PostMapping("/graph/reload")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Result> reloadGraph() {
+        navigationService.invalidateGraph();
+        return ResponseEntity.ok(Result.success());
+    }
+
+    /**
+     * 导航缓存统计（路线缓存命中/未命中、最短路径树命中次数），管理员使用
+     * GET /api/navigation/cache/stats
+     */
+    @GetMapping("/cache/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Result> getRouteStats() {
+        return ResponseEntity.ok(Result.success(navigationService.getRouteStats()));
+    }
+}
@@ -1,10 +1,13 @@
 package com.example.springboot.controller;
 
+import com.example.springboot.dto.common.CursorPageResponse;
 import com.example.springboot.dto.notification.NotificationResponse;
 import com.example.springboot.entity.enums.UserType;
+import com.example.springboot.service.NotificationOutboxDispatcher;
 import com.example.springboot.service.NotificationService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
@@ -16,10 +19,13 @@ import java.util.Map;
 public class NotificationController {
 
     private final NotificationService notificationService;
+    private final NotificationOutboxDispatcher outboxDispatcher;
 
     @Autowired
-    public NotificationController(NotificationService notificationService) {
+    public NotificationController(NotificationService notificationService,
+                                  NotificationOutboxDispatcher outboxDispatcher) {
         this.notificationService = notificationService;
+        this.outboxDispatcher = outboxDispatcher;
     }
 
     /**
@@ -33,6 +39,19 @@ public class NotificationController {
         return ResponseEntity.ok(notifications);
     }
 
+    /**
+     * 游标分页获取用户通知（按发送时间倒序），cursor 传上一页返回的 nextCursor
+     */
+    @GetMapping("/user/{userId}/page")
+    public ResponseEntity<CursorPageResponse<NotificationResponse>> getNotificationPage(
+            @PathVariable Integer userId,
+            @RequestParam UserType userType,
+            @RequestParam(required = false, defaultValue = "false") boolean unreadOnly,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false, defaultValue = "20") Integer size) {
+        return ResponseEntity.ok(notificationService.getNotificationPage(userId, userType, unreadOnly, cursor, size));
+    }
+
     /**
      * 获取未读通知列表
      */
@@ -91,5 +110,13 @@ public class NotificationController {
         response.put("message", "Notification deleted");
         return ResponseEntity.ok(response);
     }
-}
 
+    /**
+     * 通知发件箱投递统计（积压数、失败数、投递延迟）
+     */
+    @GetMapping("/outbox/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> getOutboxStats() {
+        return ResponseEntity.ok(outboxDispatcher.getStats());
+    }
+}
@@ -59,5 +59,15 @@ public class ScheduleRules {
      * false: 优先保证覆盖，必要时放宽限制
      */
     private Boolean strictMode = false;
+    
+    /**
+     * 优化模式：在时间预算内并行搜索多个方案（随机化贪心 + 局部搜索），返回工作量最均衡的方案
+     */
+    private Boolean optimize = false;
+    
+    /**
+     * 优化模式的时间预算（毫秒），超过服务端上限时按上限处理
+     */
+    private Integer optimizeTimeBudgetMs = 3000;
 }
 
@@ -0,0 +1,33 @@
+package com.example.springboot.dto.appointment;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 叫号队列变更事件DTO（推送给候诊大屏/小程序）
+ */
+@Data
+public class QueueEvent {
+
+    /**
+     * 事件类型
+     */
+    public enum Type {
+        CHECKED_IN,   // 新签到入队
+        RECHECKED_IN, // 过号重新签到
+        CALLED,       // 叫号
+        COMPLETED,    // 就诊完成
+        MISSED,       // 过号
+        REMOVED,      // 其他原因出队（清除签到、取消、删除）
+        RESYNC        // 推送积压被丢弃，客户端需重新拉取完整队列
+    }
+
+    private Type type;
+    private long sequence;       // 推送序号（全局递增），与快照中的序号比较去重；RESYNC 事件为 0
+    private Integer scheduleId;
+    private Integer departmentId;
+    private Integer appointmentId;
+    private AppointmentResponse appointment; // 变更后的预约信息（出队事件可能为空）
+    private LocalDateTime occurredAt;
+}
@@ -0,0 +1,19 @@
+package com.example.springboot.dto.appointment;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 叫号队列快照DTO（订阅排班队列推送时首先推送）
+ * 序号不超过 sequence 的事件已包含在快照中，客户端丢弃即可；之后的事件按预约ID更新快照
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueueSnapshot {
+    private long sequence;
+    private List<AppointmentResponse> appointments;
+}
@@ -0,0 +1,24 @@
+package com.example.springboot.dto.common;
+
+import lombok.Data;
+import java.util.List;
+
+/**
+ * 游标分页响应：nextCursor 传回下一次请求即可取下一页，hasMore 为 false 时已到末尾
+ */
+@Data
+public class CursorPageResponse<T> {
+    private List<T> content;      // 本页数据
+    private String nextCursor;    // 下一页游标（没有下一页时为空）
+    private boolean hasMore;      // 是否还有下一页
+    private int pageSize;         // 每页条数
+
+    public CursorPageResponse() {}
+
+    public CursorPageResponse(List<T> content, String nextCursor, boolean hasMore, int pageSize) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+        this.pageSize = pageSize;
+    }
+}
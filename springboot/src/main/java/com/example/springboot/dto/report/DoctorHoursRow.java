@@ -0,0 +1,20 @@
+package com.example.springboot.dto.report;
+
+import java.time.LocalDate;
+
+/**
+ * 医生工时聚合结果（数据库分组统计的投影）
+ */
+public interface DoctorHoursRow {
+    Integer getDoctorId();
+
+    String getDoctorName();
+
+    LocalDate getScheduleDate(); // 按 doctor 分组时为空
+
+    Long getSessions();
+
+    Long getMinutes(); // 时段总分钟数
+
+    String getLocations(); // 去重后的地点用“、”连接
+}
@@ -3,8 +3,11 @@ package com.example.springboot.entity; // 包名调整
 import com.example.springboot.entity.enums.AppointmentStatus; // 导入路径调整
 import com.example.springboot.entity.enums.AppointmentType;   // 导入路径调整
 import com.example.springboot.entity.enums.PaymentStatus;     // 导入路径调整
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 import org.hibernate.annotations.CreationTimestamp;
 
 import java.time.LocalDateTime;
@@ -14,6 +17,7 @@ import java.time.LocalDateTime;
  */
 @Entity
 @Table(name = "appointments")
+@EntityListeners(AppointmentChangeListener.class)
 @Data
 public class Appointment {
     @Id
@@ -89,4 +93,10 @@ public class Appointment {
 
     @Column(name = "updated_at")
     private LocalDateTime updatedAt; // 最后更新时间（status变为completed时由触发器自动更新）
+
+    @Transient
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private AppointmentChangeListener.LoadedState loadedState; // 加载时的统计相关状态（不入库，用于计算看板统计增量）
 }
@@ -0,0 +1,98 @@
+package com.example.springboot.entity;
+
+import com.example.springboot.entity.enums.AppointmentStatus;
+import com.example.springboot.entity.enums.PaymentStatus;
+import com.example.springboot.service.DashboardStatsAggregator;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * 预约实体变更监听器
+ * 加载时记录统计相关的状态（预约状态、支付状态、排班、创建时间），新增、修改、删除时据此计算增量，
+ * 交给运营总览统计聚合器在事务提交后应用，所有写预约表的地方都无需单独调用。
+ */
+@Component
+public class AppointmentChangeListener {
+
+    // 延迟获取，避免 EntityManagerFactory 初始化时的循环依赖
+    private final ObjectProvider<DashboardStatsAggregator> aggregatorProvider;
+
+    public AppointmentChangeListener(ObjectProvider<DashboardStatsAggregator> aggregatorProvider) {
+        this.aggregatorProvider = aggregatorProvider;
+    }
+
+    /**
+     * 加载（或上次写入）时的统计相关状态
+     */
+    public record LoadedState(AppointmentStatus status, PaymentStatus paymentStatus,
+                              Schedule schedule, LocalDateTime createdAt) {
+    }
+
+    @PostLoad
+    public void onLoaded(Appointment appointment) {
+        appointment.setLoadedState(stateOf(appointment));
+    }
+
+    @PostPersist
+    public void onPersisted(Appointment appointment) {
+        DashboardStatsAggregator aggregator = aggregatorProvider.getIfAvailable();
+        if (aggregator != null) {
+            aggregator.onAppointmentChanged(null, factsOf(stateOf(appointment)));
+        }
+        appointment.setLoadedState(stateOf(appointment));
+    }
+
+    @PostUpdate
+    public void onUpdated(Appointment appointment) {
+        LoadedState before = appointment.getLoadedState();
+        LoadedState after = stateOf(appointment);
+        appointment.setLoadedState(after);
+
+        DashboardStatsAggregator aggregator = aggregatorProvider.getIfAvailable();
+        if (aggregator == null) {
+            return;
+        }
+        if (before == null) {
+            // 没有变更前状态（未经加载的实体），交给对账修正
+            aggregator.requestReconcile();
+            return;
+        }
+        if (before.status() == after.status() && before.paymentStatus() == after.paymentStatus()
+                && Objects.equals(scheduleId(before.schedule()), scheduleId(after.schedule()))) {
+            return;
+        }
+        aggregator.onAppointmentChanged(factsOf(before), factsOf(after));
+    }
+
+    @PostRemove
+    public void onRemoved(Appointment appointment) {
+        LoadedState before = appointment.getLoadedState() != null ? appointment.getLoadedState() : stateOf(appointment);
+        DashboardStatsAggregator aggregator = aggregatorProvider.getIfAvailable();
+        if (aggregator != null) {
+            aggregator.onAppointmentChanged(factsOf(before), null);
+        }
+    }
+
+    private static LoadedState stateOf(Appointment appointment) {
+        return new LoadedState(appointment.getStatus(), appointment.getPaymentStatus(),
+                appointment.getSchedule(), appointment.getCreatedAt());
+    }
+
+    private static DashboardStatsAggregator.AppointmentFacts factsOf(LoadedState state) {
+        LocalDate scheduleDate = state.schedule() != null ? state.schedule().getScheduleDate() : null;
+        LocalDate createdDate = state.createdAt() != null ? state.createdAt().toLocalDate() : null;
+        return new DashboardStatsAggregator.AppointmentFacts(state.status(), state.paymentStatus(), scheduleDate, createdDate);
+    }
+
+    private static Integer scheduleId(Schedule schedule) {
+        return schedule != null ? schedule.getScheduleId() : null;
+    }
+}
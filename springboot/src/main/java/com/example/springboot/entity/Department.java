@@ -10,6 +10,7 @@ import java.util.ArrayList;
  */
 @Entity
 @Table(name = "departments")
+@EntityListeners(ReferenceDataChangeListener.class)
 public class Department {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -13,6 +13,7 @@ import java.time.LocalDateTime;
  */
 @Entity
 @Table(name = "doctors")
+@EntityListeners({DoctorChangeListener.class, ReferenceDataChangeListener.class})
 @Data
 public class Doctor {
     @Id
@@ -0,0 +1,58 @@
+package com.example.springboot.entity;
+
+import com.example.springboot.entity.enums.DoctorStatus;
+import com.example.springboot.service.RecommendationAlgorithmService;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 医生实体变更监听器
+ * 医生新增、修改、删除后（事务提交后）通知推荐服务更新医生向量索引，
+ * 所有写医生表的地方（医生管理、科室调整、用户管理等）都无需单独调用。
+ */
+@Component
+public class DoctorChangeListener {
+
+    // 延迟获取，避免 EntityManagerFactory 初始化时的循环依赖
+    private final ObjectProvider<RecommendationAlgorithmService> recommendationServiceProvider;
+
+    public DoctorChangeListener(ObjectProvider<RecommendationAlgorithmService> recommendationServiceProvider) {
+        this.recommendationServiceProvider = recommendationServiceProvider;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void onSaved(Doctor doctor) {
+        boolean recallable = doctor.getStatus() == DoctorStatus.active;
+        notifyChanged(doctor.getDoctorId(), doctor.getSpecialty(), recallable);
+    }
+
+    @PostRemove
+    public void onRemoved(Doctor doctor) {
+        notifyChanged(doctor.getDoctorId(), null, false);
+    }
+
+    private void notifyChanged(Integer doctorId, String specialty, boolean recallable) {
+        Runnable action = () -> {
+            RecommendationAlgorithmService service = recommendationServiceProvider.getIfAvailable();
+            if (service != null) {
+                service.onDoctorChanged(doctorId, specialty, recallable);
+            }
+        };
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
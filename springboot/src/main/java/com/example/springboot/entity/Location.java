@@ -9,6 +9,7 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
  */
 @Entity
 @Table(name = "locations")
+@EntityListeners(ReferenceDataChangeListener.class)
 @Data
 public class Location {
 
@@ -0,0 +1,58 @@
+package com.example.springboot.entity;
+
+import com.example.springboot.entity.enums.NotificationEventType;
+import com.example.springboot.entity.enums.OutboxStatus;
+import com.example.springboot.entity.enums.UserType;
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * 通知发件箱表
+ * 业务事务中只记录事件类型和模板参数，通知内容由后台投递时生成
+ */
+@Entity
+@Table(name = "notification_outbox")
+@Data
+public class NotificationOutboxEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "event_id")
+    private Long eventId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", nullable = false, length = 50)
+    private NotificationEventType eventType; // 事件类型
+
+    @Column(name = "user_id", nullable = false)
+    private Integer userId; // 接收用户ID
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "user_type", nullable = false)
+    private UserType userType; // 用户类型
+
+    @Column(name = "related_id")
+    private Integer relatedId; // 相关实体ID
+
+    @Column(name = "payload", nullable = false, columnDefinition = "TEXT")
+    private String payload; // 模板参数（JSON）
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private OutboxStatus status = OutboxStatus.pending; // 投递状态
+
+    @Column(name = "attempts", nullable = false)
+    private Integer attempts = 0; // 已失败次数
+
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt; // 下次重试时间
+
+    @Column(name = "last_error", length = 500)
+    private String lastError; // 最近一次失败原因
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt; // 事件创建时间
+}
@@ -9,6 +9,7 @@ import java.util.Set;
  */
 @Entity
 @Table(name = "parent_departments")
+@EntityListeners(ReferenceDataChangeListener.class)
 public class ParentDepartment {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
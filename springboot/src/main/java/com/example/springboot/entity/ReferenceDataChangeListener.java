@@ -0,0 +1,66 @@
+package com.example.springboot.entity;
+
+import com.example.springboot.service.ReferenceDataCache;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Consumer;
+
+/**
+ * 基础数据实体变更监听器
+ * 时段、父科室、科室、诊室、医生新增、修改、删除后（事务提交后）失效基础数据缓存，
+ * 各管理服务以及科室调整、用户管理等写这些表的地方都无需单独调用。
+ */
+@Component
+public class ReferenceDataChangeListener {
+
+    // 延迟获取，避免 EntityManagerFactory 初始化时的循环依赖
+    private final ObjectProvider<ReferenceDataCache> cacheProvider;
+
+    public ReferenceDataChangeListener(ObjectProvider<ReferenceDataCache> cacheProvider) {
+        this.cacheProvider = cacheProvider;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChanged(Object entity) {
+        if (entity instanceof TimeSlot) {
+            afterCommit(ReferenceDataCache::onTimeSlotChanged);
+        } else if (entity instanceof ParentDepartment) {
+            afterCommit(ReferenceDataCache::onParentDepartmentChanged);
+        } else if (entity instanceof Department department) {
+            Integer departmentId = department.getDepartmentId();
+            afterCommit(cache -> cache.onDepartmentChanged(departmentId));
+        } else if (entity instanceof Location) {
+            afterCommit(ReferenceDataCache::onLocationChanged);
+        } else if (entity instanceof Doctor doctor) {
+            Integer doctorId = doctor.getDoctorId();
+            afterCommit(cache -> cache.onDoctorChanged(doctorId));
+        }
+    }
+
+    private void afterCommit(Consumer<ReferenceDataCache> change) {
+        Runnable action = () -> {
+            ReferenceDataCache cache = cacheProvider.getIfAvailable();
+            if (cache != null) {
+                change.accept(cache);
+            }
+        };
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
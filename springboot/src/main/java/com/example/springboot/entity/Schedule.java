@@ -41,7 +41,8 @@ public class Schedule {
     @Column(name = "total_slots", nullable = false)
     private Integer totalSlots; // 总号源数
 
-    @Column(name = "booked_slots", nullable = false)
+    // 已预约数只能通过 SlotInventoryService 的条件更新修改，实体保存时不更新该列，避免覆盖并发修改
+    @Column(name = "booked_slots", nullable = false, updatable = false)
     private Integer bookedSlots = 0; // 已预约数
 
     @Column(nullable = false, precision = 10, scale = 2)
@@ -63,6 +64,12 @@ public class Schedule {
     @Column(name = "slot_application_id")
     private Integer slotApplicationId; // 关联的加号申请ID
 
+    // 乐观锁版本号：保护总号源数、状态、备注等字段的并发修改（占号/释放号源的条件更新不递增版本号）
+    // 不设初始值：Spring Data 以版本号为 null 判断新实体，新增时由 Hibernate 置为 0
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
     @CreationTimestamp
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -10,6 +10,7 @@ import java.time.LocalTime;
  */
 @Entity
 @Table(name = "time_slots")
+@EntityListeners(ReferenceDataChangeListener.class)
 @Data
 public class TimeSlot {
     @Id
@@ -12,6 +12,7 @@ import java.time.LocalDateTime;
  */
 @Entity
 @Table(name = "waitlist")
+@EntityListeners(WaitlistChangeListener.class)
 @Data
 public class Waitlist {
     @Id
@@ -0,0 +1,73 @@
+package com.example.springboot.entity;
+
+import com.example.springboot.entity.enums.WaitlistStatus;
+import com.example.springboot.service.WaitlistRankIndex;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.function.Consumer;
+
+/**
+ * 候补实体变更监听器
+ * 候补新增、状态变化、删除后（事务提交后）同步候补排名索引，
+ * 加入、取消、候补填充、超时处理等写候补表的地方都无需单独调用。
+ */
+@Component
+public class WaitlistChangeListener {
+
+    // 延迟获取，避免 EntityManagerFactory 初始化时的循环依赖
+    private final ObjectProvider<WaitlistRankIndex> rankIndexProvider;
+
+    public WaitlistChangeListener(ObjectProvider<WaitlistRankIndex> rankIndexProvider) {
+        this.rankIndexProvider = rankIndexProvider;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void onSaved(Waitlist waitlist) {
+        if (waitlist.getSchedule() == null) {
+            return;
+        }
+        // 在回调时取值，事务提交时实体可能已被再次修改
+        Integer scheduleId = waitlist.getSchedule().getScheduleId();
+        Integer waitlistId = waitlist.getWaitlistId();
+        LocalDateTime createdAt = waitlist.getCreatedAt();
+        WaitlistStatus status = waitlist.getStatus();
+        afterCommit(index -> index.onWaitlistSaved(scheduleId, waitlistId, createdAt, status));
+    }
+
+    @PostRemove
+    public void onRemoved(Waitlist waitlist) {
+        if (waitlist.getSchedule() == null) {
+            return;
+        }
+        Integer scheduleId = waitlist.getSchedule().getScheduleId();
+        Integer waitlistId = waitlist.getWaitlistId();
+        afterCommit(index -> index.onWaitlistRemoved(scheduleId, waitlistId));
+    }
+
+    private void afterCommit(Consumer<WaitlistRankIndex> change) {
+        Runnable action = () -> {
+            WaitlistRankIndex index = rankIndexProvider.getIfAvailable();
+            if (index != null) {
+                change.accept(index);
+            }
+        };
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
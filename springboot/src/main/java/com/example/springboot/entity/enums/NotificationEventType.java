@@ -0,0 +1,17 @@
+package com.example.springboot.entity.enums;
+
+/**
+ * 通知发件箱事件类型，每种类型对应 NotificationService 中的一个通知模板
+ */
+public enum NotificationEventType {
+    APPOINTMENT_CREATED,      // 预约成功
+    PAYMENT_SUCCESS,          // 支付成功
+    WAITLIST_AVAILABLE,       // 候补可用
+    APPOINTMENT_CANCELLED,    // 取消预约
+    LEAVE_APPROVED,           // 请假批准
+    LEAVE_REJECTED,           // 请假拒绝
+    DOCTOR_CHANGED,           // 医生替换
+    SCHEDULE_CANCELLED,       // 排班取消
+    DOCTOR_DOWNGRADE_REFUND,  // 医生降级退款
+    CUSTOM                    // 调用方已给出标题和内容
+}
@@ -0,0 +1,6 @@
+package com.example.springboot.entity.enums;
+
+public enum OutboxStatus {
+    pending, // 待投递（含等待重试）
+    failed   // 超过最大重试次数
+}
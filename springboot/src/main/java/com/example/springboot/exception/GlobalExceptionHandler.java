@@ -3,6 +3,7 @@ package com.example.springboot.exception;
 import com.example.springboot.common.Result;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -31,6 +32,15 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(errorResponse, HttpStatus.OK);
     }
 
+    /**
+     * 乐观锁冲突（如排班被其他管理员同时修改）
+     */
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    public ResponseEntity<Result> handleOptimisticLockingFailure(ObjectOptimisticLockingFailureException ex) {
+        Result errorResponse = Result.error("409", "数据已被其他操作修改，请刷新后重试");
+        return new ResponseEntity<>(errorResponse, HttpStatus.OK);
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<Result> handleGlobalException(Exception ex, WebRequest request) {
         Result errorResponse = Result.error("500", "服务器内部错误: " + ex.getMessage());
@@ -9,6 +9,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -17,6 +18,12 @@ import java.util.Set;
 public interface AdminRepository extends JpaRepository<Admin, Integer> , JpaSpecificationExecutor<Admin> {
     Optional<Admin> findByUsername(String username);
     boolean existsByUsername(String username);
+
+    /**
+     * 批量查询已存在的用户名（批量导入查重）
+     */
+    @Query("SELECT a.username FROM Admin a WHERE a.username IN :usernames")
+    List<String> findExistingUsernames(@Param("usernames") Collection<String> usernames);
     
     /**
      * 查询管理员并立即加载其角色（解决懒加载问题）
@@ -5,16 +5,21 @@ import com.example.springboot.entity.Patient;
 import com.example.springboot.entity.Schedule;
 import com.example.springboot.entity.enums.AppointmentStatus;
 import com.example.springboot.entity.enums.AppointmentType;
+import jakarta.persistence.QueryHint;
 import org.apache.ibatis.annotations.Param;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
+import org.springframework.data.domain.Pageable;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 @Repository
 public interface AppointmentRepository extends JpaRepository<Appointment, Integer> {
@@ -61,21 +66,78 @@ public interface AppointmentRepository extends JpaRepository<Appointment, Intege
      * 查询排班日期在指定范围内的所有预约
      */
     List<Appointment> findBySchedule_ScheduleDateBetween(LocalDate startDate, LocalDate endDate);
-    // 添加复杂查询方法 - 查询患者所有未完成、未取消的预约（排班结束时间还没到的）
-    // 判断逻辑：排班日期在今天之后，或者排班日期是今天但结束时间在今天之后
-    @Query("SELECT a FROM Appointment a WHERE a.patient = :patient " +
-            "AND a.status != com.example.springboot.entity.enums.AppointmentStatus.cancelled " +
-            "AND a.status != com.example.springboot.entity.enums.AppointmentStatus.completed " +
-            "AND (a.schedule.scheduleDate > :today " +
-            "OR (a.schedule.scheduleDate = :today2 AND a.schedule.slot.endTime > :now)) " +
-            "ORDER BY a.schedule.scheduleDate ASC, a.schedule.slot.startTime ASC")
-    List<Appointment> findByPatientAndScheduleScheduleDateAfterOrScheduleScheduleDateEqualAndScheduleSlotStartTimeAfter(
-            @Param("patient") Patient patient,
+
+    /**
+     * 医生的预约数（排除指定状态），用于推荐热度评分
+     */
+    long countByScheduleDoctorDoctorIdAndStatusNot(Integer doctorId, AppointmentStatus status);
+
+    /**
+     * 预约列表（转换为 AppointmentResponse 所需的患者、患者档案、排班、医生、科室、时段、诊室一次查出，避免逐行懒加载）
+     */
+    @Query("SELECT a FROM Appointment a " +
+           "JOIN FETCH a.patient p " +
+           "LEFT JOIN FETCH p.patientProfile " +
+           "JOIN FETCH a.schedule s " +
+           "JOIN FETCH s.doctor d " +
+           "LEFT JOIN FETCH d.department " +
+           "JOIN FETCH s.slot " +
+           "JOIN FETCH s.location " +
+           "ORDER BY a.appointmentId")
+    List<Appointment> findAllWithDetails();
+
+    /**
+     * 患者的所有预约（同 findAllWithDetails 一次查出关联数据）
+     */
+    @Query("SELECT a FROM Appointment a " +
+           "JOIN FETCH a.patient p " +
+           "LEFT JOIN FETCH p.patientProfile " +
+           "JOIN FETCH a.schedule s " +
+           "JOIN FETCH s.doctor d " +
+           "LEFT JOIN FETCH d.department " +
+           "JOIN FETCH s.slot " +
+           "JOIN FETCH s.location " +
+           "WHERE p.patientId = :patientId " +
+           "ORDER BY a.appointmentId")
+    List<Appointment> findWithDetailsByPatientId(@Param("patientId") Long patientId);
+
+    /**
+     * 医生的所有预约（同 findAllWithDetails 一次查出关联数据）
+     */
+    @Query("SELECT a FROM Appointment a " +
+           "JOIN FETCH a.patient p " +
+           "LEFT JOIN FETCH p.patientProfile " +
+           "JOIN FETCH a.schedule s " +
+           "JOIN FETCH s.doctor d " +
+           "LEFT JOIN FETCH d.department " +
+           "JOIN FETCH s.slot " +
+           "JOIN FETCH s.location " +
+           "WHERE d.doctorId = :doctorId " +
+           "ORDER BY a.appointmentId")
+    List<Appointment> findWithDetailsByDoctorId(@Param("doctorId") Integer doctorId);
+
+    /**
+     * 患者所有未完成、未取消且排班尚未结束的预约（同 findAllWithDetails 一次查出关联数据）
+     * 判断逻辑：排班日期在今天之后，或者排班日期是今天但结束时间在当前时间之后
+     */
+    @Query("SELECT a FROM Appointment a " +
+           "JOIN FETCH a.patient p " +
+           "LEFT JOIN FETCH p.patientProfile " +
+           "JOIN FETCH a.schedule s " +
+           "JOIN FETCH s.doctor d " +
+           "LEFT JOIN FETCH d.department " +
+           "JOIN FETCH s.slot slot " +
+           "JOIN FETCH s.location " +
+           "WHERE p.patientId = :patientId " +
+           "AND a.status != com.example.springboot.entity.enums.AppointmentStatus.cancelled " +
+           "AND a.status != com.example.springboot.entity.enums.AppointmentStatus.completed " +
+           "AND (s.scheduleDate > :today " +
+           "OR (s.scheduleDate = :today AND slot.endTime > :now)) " +
+           "ORDER BY s.scheduleDate ASC, slot.startTime ASC")
+    List<Appointment> findUpcomingWithDetailsByPatientId(
+            @Param("patientId") Long patientId,
             @Param("today") LocalDate today,
-            @Param("today") LocalDate today2,
             @Param("now") LocalTime now);
-
-    List<Appointment> findByScheduleDoctorDoctorId(Integer doctorId);
     
     /**
      * 根据医生ID和日期查询预约列表（包含患者和患者档案信息）
@@ -101,6 +163,14 @@ public interface AppointmentRepository extends JpaRepository<Appointment, Intege
 
     Appointment findTopByScheduleOrderByAppointmentNumberDesc(Schedule schedule);
 
+    /**
+     * 挂号工时统计用的已完成预约（按排班日期排序，流式读取，需在事务中使用并及时关闭）
+     * fetch size 为 Integer.MIN_VALUE 时 MySQL 驱动逐行返回结果，不会一次性加载到内存
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
     @Query(""" 
             SELECT a FROM Appointment a
             JOIN FETCH a.schedule s
@@ -114,8 +184,9 @@ public interface AppointmentRepository extends JpaRepository<Appointment, Intege
               AND (:doctorId IS NULL OR d.doctorId = :doctorId)
               AND a.status = :status
               AND a.checkInTime IS NOT NULL
+            ORDER BY s.scheduleDate
             """)
-    List<Appointment> findAppointmentsForRegistrationHours(
+    Stream<Appointment> streamAppointmentsForRegistrationHours(
             @Param("departmentId") Integer departmentId,
             @Param("doctorId") Integer doctorId,
             @Param("startDate") LocalDate startDate,
@@ -289,4 +360,42 @@ public interface AppointmentRepository extends JpaRepository<Appointment, Intege
     List<Appointment> findByPatientNameAndDepartment(
             @Param("patientName") String patientName,
             @Param("departmentId") Integer departmentId);
+
+    /**
+     * 管理端预约游标分页（按ID倒序，可按状态筛选），afterId 为空时为第一页
+     */
+    @Query("SELECT a FROM Appointment a " +
+           "JOIN FETCH a.patient p " +
+           "LEFT JOIN FETCH p.patientProfile " +
+           "JOIN FETCH a.schedule s " +
+           "JOIN FETCH s.doctor d " +
+           "LEFT JOIN FETCH d.department " +
+           "JOIN FETCH s.slot " +
+           "JOIN FETCH s.location " +
+           "WHERE (:status IS NULL OR a.status = :status) " +
+           "AND (:afterId IS NULL OR a.appointmentId < :afterId) " +
+           "ORDER BY a.appointmentId DESC")
+    List<Appointment> findPageWithDetails(@Param("status") AppointmentStatus status,
+            @Param("afterId") Integer afterId,
+            Pageable pageable);
+
+    /**
+     * 管理端预约流式读取（按ID倒序，可按状态筛选，需在事务中使用并及时关闭）
+     * fetch size 为 Integer.MIN_VALUE 时 MySQL 驱动逐行返回结果，不会一次性加载到内存
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT a FROM Appointment a " +
+           "JOIN FETCH a.patient p " +
+           "LEFT JOIN FETCH p.patientProfile " +
+           "JOIN FETCH a.schedule s " +
+           "JOIN FETCH s.doctor d " +
+           "LEFT JOIN FETCH d.department " +
+           "JOIN FETCH s.slot " +
+           "JOIN FETCH s.location " +
+           "WHERE (:status IS NULL OR a.status = :status) " +
+           "ORDER BY a.appointmentId DESC")
+    Stream<Appointment> streamWithDetails(@Param("status") AppointmentStatus status);
 }
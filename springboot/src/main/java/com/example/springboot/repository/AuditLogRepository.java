@@ -4,13 +4,44 @@ import com.example.springboot.entity.AuditLog;
 import com.example.springboot.entity.enums.ActorType;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface AuditLogRepository extends JpaRepository<AuditLog, Long> {
     List<AuditLog> findByActorTypeAndActorId(ActorType actorType, Integer actorId);
     List<AuditLog> findByCreatedAtBetween(LocalDateTime start, LocalDateTime end);
     List<AuditLog> findByTargetEntityAndTargetId(String targetEntity, Integer targetId);
+
+    /**
+     * 审计日志游标分页（按ID倒序，可按操作者类型筛选），afterId 为空时为第一页
+     */
+    @Query("SELECT l FROM AuditLog l " +
+           "WHERE (:actorType IS NULL OR l.actorType = :actorType) " +
+           "AND (:afterId IS NULL OR l.logId < :afterId) " +
+           "ORDER BY l.logId DESC")
+    List<AuditLog> findPage(@Param("actorType") ActorType actorType,
+            @Param("afterId") Long afterId,
+            Pageable pageable);
+
+    /**
+     * 审计日志流式读取（按ID倒序，可按操作者类型筛选，需在事务中使用并及时关闭）
+     * fetch size 为 Integer.MIN_VALUE 时 MySQL 驱动逐行返回结果，不会一次性加载到内存
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT l FROM AuditLog l " +
+           "WHERE (:actorType IS NULL OR l.actorType = :actorType) " +
+           "ORDER BY l.logId DESC")
+    Stream<AuditLog> streamAll(@Param("actorType") ActorType actorType);
 }
@@ -11,6 +11,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import org.springframework.data.domain.Pageable;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -24,6 +25,10 @@ public interface DoctorRepository extends JpaRepository<Doctor, Integer>, JpaSpe
     // 检查工号是否存在
     boolean existsByIdentifier(String identifier);
 
+    // 批量查询已存在的工号（批量导入查重）
+    @Query("SELECT d.identifier FROM Doctor d WHERE d.identifier IN :identifiers")
+    List<String> findExistingIdentifiers(@Param("identifiers") Collection<String> identifiers);
+
     // 检查身份证号是否存在
     boolean existsByIdCardNumber(String idCardNumber);
 
@@ -7,9 +7,14 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.domain.Pageable;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface LeaveRequestRepository extends JpaRepository<LeaveRequest, Integer> {
@@ -47,4 +52,41 @@ public interface LeaveRequestRepository extends JpaRepository<LeaveRequest, Inte
             @Param("startTime") LocalDateTime startTime,
             @Param("endTime") LocalDateTime endTime,
             @Param("status") LeaveRequestStatus status);
+
+    /**
+     * 请假申请游标分页（按ID倒序，可按状态筛选），afterId 为空时为第一页
+     */
+    @Query("SELECT l FROM LeaveRequest l " +
+           "LEFT JOIN FETCH l.doctor d " +
+           "LEFT JOIN FETCH d.department " +
+           "LEFT JOIN FETCH l.approver " +
+           "WHERE (:status IS NULL OR l.status = :status) " +
+           "AND (:afterId IS NULL OR l.requestId < :afterId) " +
+           "ORDER BY l.requestId DESC")
+    List<LeaveRequest> findPageWithDetails(@Param("status") LeaveRequestStatus status,
+            @Param("afterId") Integer afterId,
+            Pageable pageable);
+
+    /**
+     * 请假申请流式读取（按ID倒序，可按状态筛选，需在事务中使用并及时关闭）
+     * fetch size 为 Integer.MIN_VALUE 时 MySQL 驱动逐行返回结果，不会一次性加载到内存
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT l FROM LeaveRequest l " +
+           "LEFT JOIN FETCH l.doctor d " +
+           "LEFT JOIN FETCH d.department " +
+           "LEFT JOIN FETCH l.approver " +
+           "WHERE (:status IS NULL OR l.status = :status) " +
+           "ORDER BY l.requestId DESC")
+    Stream<LeaveRequest> streamWithDetails(@Param("status") LeaveRequestStatus status);
+
+    /**
+     * 查询指定状态（为空时不限）的请假申请涉及的审批人ID
+     */
+    @Query("SELECT DISTINCT l.approver.adminId FROM LeaveRequest l " +
+           "WHERE l.approver IS NOT NULL AND (:status IS NULL OR l.status = :status)")
+    List<Integer> findApproverIds(@Param("status") LeaveRequestStatus status);
 }
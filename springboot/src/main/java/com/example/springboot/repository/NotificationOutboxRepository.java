@@ -0,0 +1,38 @@
+package com.example.springboot.repository;
+
+import com.example.springboot.entity.NotificationOutboxEvent;
+import com.example.springboot.entity.enums.OutboxStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface NotificationOutboxRepository extends JpaRepository<NotificationOutboxEvent, Long> {
+
+    /**
+     * 按事件ID顺序取可投递的事件：
+     * 同一用户只要有更早（或自身）的事件还在等待重试，就不取该事件，保证每个用户的通知按顺序投递
+     */
+    @Query("SELECT e FROM NotificationOutboxEvent e " +
+           "WHERE e.status = com.example.springboot.entity.enums.OutboxStatus.pending " +
+           "AND NOT EXISTS (SELECT b.eventId FROM NotificationOutboxEvent b " +
+           "    WHERE b.status = com.example.springboot.entity.enums.OutboxStatus.pending " +
+           "    AND b.userId = e.userId AND b.userType = e.userType " +
+           "    AND b.eventId <= e.eventId AND b.nextAttemptAt > :now) " +
+           "ORDER BY e.eventId")
+    List<NotificationOutboxEvent> findDispatchable(@Param("now") LocalDateTime now, Pageable pageable);
+
+    long countByStatus(OutboxStatus status);
+
+    /**
+     * 最早的待投递事件创建时间（用于计算积压时长）
+     */
+    @Query("SELECT MIN(e.createdAt) FROM NotificationOutboxEvent e " +
+           "WHERE e.status = com.example.springboot.entity.enums.OutboxStatus.pending")
+    LocalDateTime findOldestPendingCreatedAt();
+}
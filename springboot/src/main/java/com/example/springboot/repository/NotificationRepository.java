@@ -3,11 +3,14 @@ package com.example.springboot.repository;
 import com.example.springboot.entity.Notification;
 import com.example.springboot.entity.enums.NotificationStatus;
 import com.example.springboot.entity.enums.UserType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -28,6 +31,56 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
      */
     long countByUserIdAndUserTypeAndStatus(Integer userId, UserType userType, NotificationStatus status);
 
+    /**
+     * 收件箱第一页（按发送时间、ID倒序）
+     */
+    List<Notification> findByUserIdAndUserTypeOrderBySentAtDescNotificationIdDesc(
+            Integer userId, UserType userType, Pageable pageable);
+
+    /**
+     * 收件箱游标之后的一页：(sentAt, notificationId) 严格小于游标
+     */
+    @Query("SELECT n FROM Notification n " +
+           "WHERE n.userId = :userId AND n.userType = :userType " +
+           "AND (n.sentAt < :sentAt OR (n.sentAt = :sentAt AND n.notificationId < :notificationId)) " +
+           "ORDER BY n.sentAt DESC, n.notificationId DESC")
+    List<Notification> findPageBefore(@Param("userId") Integer userId,
+                                      @Param("userType") UserType userType,
+                                      @Param("sentAt") LocalDateTime sentAt,
+                                      @Param("notificationId") Long notificationId,
+                                      Pageable pageable);
+
+    /**
+     * 指定状态的第一页（按发送时间、ID倒序）
+     */
+    List<Notification> findByUserIdAndUserTypeAndStatusOrderBySentAtDescNotificationIdDesc(
+            Integer userId, UserType userType, NotificationStatus status, Pageable pageable);
+
+    /**
+     * 指定状态游标之后的一页
+     */
+    @Query("SELECT n FROM Notification n " +
+           "WHERE n.userId = :userId AND n.userType = :userType AND n.status = :status " +
+           "AND (n.sentAt < :sentAt OR (n.sentAt = :sentAt AND n.notificationId < :notificationId)) " +
+           "ORDER BY n.sentAt DESC, n.notificationId DESC")
+    List<Notification> findPageBeforeByStatus(@Param("userId") Integer userId,
+                                              @Param("userType") UserType userType,
+                                              @Param("status") NotificationStatus status,
+                                              @Param("sentAt") LocalDateTime sentAt,
+                                              @Param("notificationId") Long notificationId,
+                                              Pageable pageable);
+
+    /**
+     * 将用户的全部未读通知标记为已读
+     */
+    @Modifying
+    @Query("UPDATE Notification n SET n.status = com.example.springboot.entity.enums.NotificationStatus.read, n.readAt = :readAt " +
+           "WHERE n.userId = :userId AND n.userType = :userType " +
+           "AND n.status = com.example.springboot.entity.enums.NotificationStatus.unread")
+    int markAllAsRead(@Param("userId") Integer userId,
+                      @Param("userType") UserType userType,
+                      @Param("readAt") LocalDateTime readAt);
+
     /**
      * 根据相关实体查询通知
      */
@@ -4,8 +4,11 @@ import com.example.springboot.entity.Patient;
 import com.example.springboot.entity.PatientProfile;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 
@@ -14,6 +17,12 @@ import java.util.Optional;
 public interface PatientProfileRepository extends JpaRepository<PatientProfile, Long> {
     // 无需添加自定义方法，JpaRepository.findById(patientId) 已足够
     boolean existsByIdCardNumber(String idCardNumber);
+
+    /**
+     * 批量查询已存在的身份证号（批量导入查重）
+     */
+    @Query("SELECT pp.idCardNumber FROM PatientProfile pp WHERE pp.idCardNumber IN :idCardNumbers")
+    List<String> findExistingIdCardNumbers(@Param("idCardNumbers") Collection<String> idCardNumbers);
     Optional<PatientProfile> findByPatient(Patient patient);
 
     /**
@@ -8,17 +8,29 @@ import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.domain.Pageable;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface PatientRepository extends JpaRepository<Patient, Long>, JpaSpecificationExecutor<Patient> {
     Optional<Patient> findByIdentifier(String identifier);
     boolean existsByIdentifier(String identifier);
 
+    /**
+     * 批量查询已存在的学号/工号（批量导入查重）
+     */
+    @Query("SELECT p.identifier FROM Patient p WHERE p.identifier IN :identifiers")
+    List<String> findExistingIdentifiers(@Param("identifiers") Collection<String> identifiers);
+
     long countByStatusNot(PatientStatus status);
 
     long countByStatusNotAndCreatedAtBetween(PatientStatus status, LocalDateTime start, LocalDateTime end);
@@ -53,4 +65,30 @@ public interface PatientRepository extends JpaRepository<Patient, Long>, JpaSpec
      */
     @Query("SELECT COUNT(p) FROM Patient p WHERE p.status != com.example.springboot.entity.enums.PatientStatus.deleted")
     long countTotalActivePatients();
-}
\ No newline at end of file
+
+    /**
+     * 患者游标分页（按ID倒序，可按状态筛选），afterId 为空时为第一页
+     */
+    @Query("SELECT p FROM Patient p " +
+           "LEFT JOIN FETCH p.patientProfile " +
+           "WHERE (:status IS NULL OR p.status = :status) " +
+           "AND (:afterId IS NULL OR p.patientId < :afterId) " +
+           "ORDER BY p.patientId DESC")
+    List<Patient> findPageWithProfile(@Param("status") PatientStatus status,
+            @Param("afterId") Long afterId,
+            Pageable pageable);
+
+    /**
+     * 患者流式读取（按ID倒序，可按状态筛选，需在事务中使用并及时关闭）
+     * fetch size 为 Integer.MIN_VALUE 时 MySQL 驱动逐行返回结果，不会一次性加载到内存
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT p FROM Patient p " +
+           "LEFT JOIN FETCH p.patientProfile " +
+           "WHERE (:status IS NULL OR p.status = :status) " +
+           "ORDER BY p.patientId DESC")
+    Stream<Patient> streamWithProfile(@Param("status") PatientStatus status);
+}
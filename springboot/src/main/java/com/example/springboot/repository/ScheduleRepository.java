@@ -1,5 +1,6 @@
 package com.example.springboot.repository;
 
+import com.example.springboot.dto.report.DoctorHoursRow;
 import com.example.springboot.entity.Doctor;
 import com.example.springboot.entity.Schedule;
 import com.example.springboot.entity.TimeSlot;
@@ -11,6 +12,7 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -18,6 +20,25 @@ import java.util.Optional;
 
 @Repository
 public interface ScheduleRepository extends JpaRepository<Schedule, Integer> {
+
+    // 医生工时统计：时段时长在数据库中计算（缺少时段时按4小时计），地点去重拼接
+    String DOCTOR_HOURS_COLUMNS = "d.doctor_id AS doctorId, d.full_name AS doctorName, " +
+            "COUNT(*) AS sessions, " +
+            "SUM(CASE WHEN ts.start_time IS NULL OR ts.end_time IS NULL THEN 240 " +
+            "    ELSE GREATEST(0, FLOOR((TIME_TO_SEC(ts.end_time) - TIME_TO_SEC(ts.start_time)) / 60)) END) AS minutes, " +
+            "GROUP_CONCAT(DISTINCT l.location_name ORDER BY l.location_name SEPARATOR '、') AS locations ";
+    String DOCTOR_HOURS_FROM = "FROM schedules s " +
+            "JOIN doctors d ON d.doctor_id = s.doctor_id " +
+            "LEFT JOIN time_slots ts ON ts.slot_id = s.slot_id " +
+            "LEFT JOIN locations l ON l.location_id = s.location_id " +
+            "WHERE d.department_id = :departmentId " +
+            "AND s.schedule_date BETWEEN :startDate AND :endDate ";
+    String DOCTOR_HOURS_BY_DOCTOR = "SELECT " + DOCTOR_HOURS_COLUMNS + ", NULL AS scheduleDate " + DOCTOR_HOURS_FROM;
+    String DOCTOR_HOURS_BY_DOCTOR_DATE = "SELECT " + DOCTOR_HOURS_COLUMNS + ", s.schedule_date AS scheduleDate " + DOCTOR_HOURS_FROM;
+    String DOCTOR_HOURS_GROUP_BY_DOCTOR = "GROUP BY d.doctor_id, d.full_name ORDER BY d.full_name, d.doctor_id";
+    String DOCTOR_HOURS_GROUP_BY_DOCTOR_DATE = "GROUP BY d.doctor_id, d.full_name, s.schedule_date " +
+            "ORDER BY d.full_name, d.doctor_id, s.schedule_date";
+
     List<Schedule> findByDoctorAndScheduleDateBetween(Doctor doctor, LocalDate startDate, LocalDate endDate);
     List<Schedule> findByScheduleDateAndStatus(LocalDate scheduleDate, ScheduleStatus status);
     Optional<Schedule> findByDoctorAndScheduleDateAndSlot(Doctor doctor, LocalDate scheduleDate, TimeSlot slot);
@@ -105,6 +126,30 @@ public interface ScheduleRepository extends JpaRepository<Schedule, Integer> {
            "AND s.status <> com.example.springboot.entity.enums.ScheduleStatus.cancelled")
     List<Schedule> findActiveSchedulesByDate(@Param("date") LocalDate date);
 
+    /**
+     * 查询指定日期某医生或某诊室的有效排班（排除已取消），用于时段重叠检查
+     */
+    @Query("SELECT s FROM Schedule s " +
+           "JOIN FETCH s.slot " +
+           "WHERE s.scheduleDate = :date " +
+           "AND (s.doctor.doctorId = :doctorId OR s.location.locationId = :locationId) " +
+           "AND s.status <> com.example.springboot.entity.enums.ScheduleStatus.cancelled")
+    List<Schedule> findActiveSchedulesByDateAndDoctorOrLocation(@Param("date") LocalDate date,
+                                                                @Param("doctorId") Integer doctorId,
+                                                                @Param("locationId") Integer locationId);
+
+    /**
+     * 查询指定医生集合在日期范围内的有效排班（排除已取消），用于替班医生建议
+     */
+    @Query("SELECT s FROM Schedule s " +
+           "JOIN FETCH s.slot " +
+           "WHERE s.doctor.doctorId IN :doctorIds " +
+           "AND s.scheduleDate BETWEEN :startDate AND :endDate " +
+           "AND s.status <> com.example.springboot.entity.enums.ScheduleStatus.cancelled")
+    List<Schedule> findActiveSchedulesByDoctorIdsAndDateRange(@Param("doctorIds") List<Integer> doctorIds,
+                                                              @Param("startDate") LocalDate startDate,
+                                                              @Param("endDate") LocalDate endDate);
+
     /**
      * 删除指定科室在日期范围内的所有排班
      */
@@ -114,4 +159,97 @@ public interface ScheduleRepository extends JpaRepository<Schedule, Integer> {
     void deleteByDepartmentAndDateRange(@Param("departmentId") Integer departmentId,
                                         @Param("startDate") LocalDate startDate,
                                         @Param("endDate") LocalDate endDate);
-}
\ No newline at end of file
+
+    /**
+     * 条件占号：仅在排班可预约且未满时已预约数 +1，单条语句完成判断和更新
+     * 不递增 version：已预约数由本语句保证一致性，避免与管理端修改排班产生不必要的乐观锁冲突
+     *
+     * @return 1 占号成功；0 号源已满或排班不可预约
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Schedule s SET s.bookedSlots = s.bookedSlots + 1 " +
+           "WHERE s.scheduleId = :scheduleId AND s.bookedSlots < s.totalSlots " +
+           "AND s.status = com.example.springboot.entity.enums.ScheduleStatus.available")
+    int claimSlot(@Param("scheduleId") Integer scheduleId);
+
+    /**
+     * 无条件占号（加号支付成功后使用，允许超过总号源数）
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Schedule s SET s.bookedSlots = s.bookedSlots + 1 WHERE s.scheduleId = :scheduleId")
+    int forceClaimSlot(@Param("scheduleId") Integer scheduleId);
+
+    /**
+     * 条件释放号源：已预约数大于0时 -1
+     *
+     * @return 1 释放成功；0 已预约数已经是0
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE Schedule s SET s.bookedSlots = s.bookedSlots - 1 " +
+           "WHERE s.scheduleId = :scheduleId AND s.bookedSlots > 0")
+    int releaseSlot(@Param("scheduleId") Integer scheduleId);
+
+    /**
+     * 查询排班当前的已预约数和总号源数（[bookedSlots, totalSlots]），不经过持久化上下文缓存
+     */
+    @Query("SELECT s.bookedSlots, s.totalSlots FROM Schedule s WHERE s.scheduleId = :scheduleId")
+    List<Object[]> findSlotCounts(@Param("scheduleId") Integer scheduleId);
+
+    /**
+     * 医生工时按医生汇总（doctorId 为空时统计科室全部医生）
+     */
+    @Query(value = DOCTOR_HOURS_BY_DOCTOR + "AND (:doctorId IS NULL OR d.doctor_id = :doctorId) " +
+            DOCTOR_HOURS_GROUP_BY_DOCTOR, nativeQuery = true)
+    List<DoctorHoursRow> aggregateDoctorHoursByDoctor(@Param("departmentId") Integer departmentId,
+                                                      @Param("doctorId") Integer doctorId,
+                                                      @Param("startDate") LocalDate startDate,
+                                                      @Param("endDate") LocalDate endDate);
+
+    /**
+     * 医生工时按医生+日期汇总（doctorId 为空时统计科室全部医生）
+     */
+    @Query(value = DOCTOR_HOURS_BY_DOCTOR_DATE + "AND (:doctorId IS NULL OR d.doctor_id = :doctorId) " +
+            DOCTOR_HOURS_GROUP_BY_DOCTOR_DATE, nativeQuery = true)
+    List<DoctorHoursRow> aggregateDoctorHoursByDoctorAndDate(@Param("departmentId") Integer departmentId,
+                                                             @Param("doctorId") Integer doctorId,
+                                                             @Param("startDate") LocalDate startDate,
+                                                             @Param("endDate") LocalDate endDate);
+
+    /**
+     * 指定医生集合的工时按医生汇总（分页时使用）
+     */
+    @Query(value = DOCTOR_HOURS_BY_DOCTOR + "AND d.doctor_id IN (:doctorIds) " +
+            DOCTOR_HOURS_GROUP_BY_DOCTOR, nativeQuery = true)
+    List<DoctorHoursRow> aggregateDoctorHoursByDoctorIn(@Param("departmentId") Integer departmentId,
+                                                        @Param("doctorIds") List<Integer> doctorIds,
+                                                        @Param("startDate") LocalDate startDate,
+                                                        @Param("endDate") LocalDate endDate);
+
+    /**
+     * 指定医生集合的工时按医生+日期汇总（分页时使用）
+     */
+    @Query(value = DOCTOR_HOURS_BY_DOCTOR_DATE + "AND d.doctor_id IN (:doctorIds) " +
+            DOCTOR_HOURS_GROUP_BY_DOCTOR_DATE, nativeQuery = true)
+    List<DoctorHoursRow> aggregateDoctorHoursByDoctorAndDateIn(@Param("departmentId") Integer departmentId,
+                                                               @Param("doctorIds") List<Integer> doctorIds,
+                                                               @Param("startDate") LocalDate startDate,
+                                                               @Param("endDate") LocalDate endDate);
+
+    /**
+     * 日期范围内有排班的医生（按姓名排序分页），用于工时报表按医生分页
+     */
+    @Query(value = "SELECT d.doctor_id " + DOCTOR_HOURS_FROM +
+            "AND (:doctorId IS NULL OR d.doctor_id = :doctorId) " +
+            "GROUP BY d.doctor_id, d.full_name ORDER BY d.full_name, d.doctor_id",
+            countQuery = "SELECT COUNT(DISTINCT d.doctor_id) " + DOCTOR_HOURS_FROM +
+                    "AND (:doctorId IS NULL OR d.doctor_id = :doctorId)",
+            nativeQuery = true)
+    Page<Integer> findDoctorIdsWithSchedules(@Param("departmentId") Integer departmentId,
+                                             @Param("doctorId") Integer doctorId,
+                                             @Param("startDate") LocalDate startDate,
+                                             @Param("endDate") LocalDate endDate,
+                                             Pageable pageable);
+}
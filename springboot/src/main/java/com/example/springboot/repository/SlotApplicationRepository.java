@@ -6,8 +6,13 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.domain.Pageable;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * 加号申请Repository
@@ -39,4 +44,42 @@ public interface SlotApplicationRepository extends JpaRepository<SlotApplication
      * 根据排班ID查询加号申请
      */
     List<SlotApplication> findByScheduleIdOrderByCreatedAtDesc(Integer scheduleId);
+
+    // 加号申请及医生、排班时段、诊室、患者、审批人信息的联表查询
+    String DETAIL_SELECT = "SELECT s, d.fullName, sch.scheduleDate, ts.startTime, ts.endTime, loc.locationName, " +
+            "p.fullName, p.phoneNumber, a.fullName " +
+            "FROM SlotApplication s " +
+            "LEFT JOIN Doctor d ON d.doctorId = s.doctorId " +
+            "LEFT JOIN Schedule sch ON sch.scheduleId = s.scheduleId " +
+            "LEFT JOIN sch.slot ts " +
+            "LEFT JOIN sch.location loc " +
+            "LEFT JOIN Patient p ON p.patientId = s.patientId " +
+            "LEFT JOIN Admin a ON a.adminId = s.approverId ";
+
+    /**
+     * 加号申请游标分页（按ID倒序，可按状态筛选），afterId 为空时为第一页
+     * 同时联表取出医生、排班时段、诊室、患者、审批人信息，每行为
+     * [SlotApplication, 医生姓名, 出诊日期, 开始时间, 结束时间, 诊室名称, 患者姓名, 患者电话, 审批人姓名]
+     */
+    @Query(DETAIL_SELECT +
+           "WHERE (:status IS NULL OR s.status = :status) " +
+           "AND (:afterId IS NULL OR s.applicationId < :afterId) " +
+           "ORDER BY s.applicationId DESC")
+    List<Object[]> findPageWithDetails(@Param("status") SlotApplicationStatus status,
+            @Param("afterId") Integer afterId,
+            Pageable pageable);
+
+    /**
+     * 加号申请流式读取（按ID倒序，可按状态筛选，需在事务中使用并及时关闭），每行内容同 findPageWithDetails
+     * fetch size 为 Integer.MIN_VALUE 时 MySQL 驱动逐行返回结果，不会一次性加载到内存；
+     * 结果集未读完前同一连接不能执行其他语句，所需关联信息都在本查询中取出
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(DETAIL_SELECT +
+           "WHERE (:status IS NULL OR s.status = :status) " +
+           "ORDER BY s.applicationId DESC")
+    Stream<Object[]> streamWithDetails(@Param("status") SlotApplicationStatus status);
 }
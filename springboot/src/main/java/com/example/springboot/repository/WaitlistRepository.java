@@ -12,8 +12,12 @@ import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.QueryHints;
 
 @Repository
 public interface WaitlistRepository extends JpaRepository<Waitlist, Integer> {
@@ -25,6 +29,21 @@ public interface WaitlistRepository extends JpaRepository<Waitlist, Integer> {
     Page<Waitlist> findByScheduleAndStatusOrderByCreatedAtAsc(Schedule schedule, WaitlistStatus status, Pageable pageable);
     Page<Waitlist> findByScheduleOrderByCreatedAtAsc(Schedule schedule, Pageable pageable);
     long countByScheduleAndStatusAndCreatedAtBefore(Schedule schedule, WaitlistStatus status, LocalDateTime createdAt);
+    long countByScheduleAndStatus(Schedule schedule, WaitlistStatus status);
+    List<Waitlist> findByStatusAndNotificationSentAtIsNotNull(WaitlistStatus status);
+
+    /**
+     * 查询排班下指定状态的候补排序键（[waitlistId, createdAt]），用于构建候补排名索引
+     */
+    @Query("SELECT w.waitlistId, w.createdAt FROM Waitlist w WHERE w.schedule.scheduleId = :scheduleId AND w.status = :status")
+    List<Object[]> findQueueEntries(@Param("scheduleId") Integer scheduleId, @Param("status") WaitlistStatus status);
+
+    /**
+     * 查询所有排班下指定状态的候补排序键（[scheduleId, waitlistId, createdAt]），按排班、加入时间、候补ID排序
+     */
+    @Query("SELECT w.schedule.scheduleId, w.waitlistId, w.createdAt FROM Waitlist w WHERE w.status = :status " +
+           "ORDER BY w.schedule.scheduleId, w.createdAt, w.waitlistId")
+    List<Object[]> findAllQueueEntries(@Param("status") WaitlistStatus status);
     
     /**
      * 查询超时的候补记录（状态为 notified，且通知发送时间超过指定时间）
@@ -34,4 +53,42 @@ public interface WaitlistRepository extends JpaRepository<Waitlist, Integer> {
      */
     @Query("SELECT w FROM Waitlist w WHERE w.status = :status AND w.notificationSentAt IS NOT NULL AND w.notificationSentAt < :expireTime")
     List<Waitlist> findExpiredNotifiedWaitlists(@Param("status") WaitlistStatus status, @Param("expireTime") LocalDateTime expireTime);
+
+    /**
+     * 管理端候补游标分页（按ID倒序，可按状态筛选），afterId 为空时为第一页
+     */
+    @Query("SELECT w FROM Waitlist w " +
+           "JOIN FETCH w.patient p " +
+           "LEFT JOIN FETCH p.patientProfile " +
+           "JOIN FETCH w.schedule s " +
+           "JOIN FETCH s.doctor d " +
+           "LEFT JOIN FETCH d.department " +
+           "JOIN FETCH s.slot " +
+           "JOIN FETCH s.location " +
+           "WHERE (:status IS NULL OR w.status = :status) " +
+           "AND (:afterId IS NULL OR w.waitlistId < :afterId) " +
+           "ORDER BY w.waitlistId DESC")
+    List<Waitlist> findPageWithDetails(@Param("status") WaitlistStatus status,
+            @Param("afterId") Integer afterId,
+            Pageable pageable);
+
+    /**
+     * 管理端候补流式读取（按ID倒序，可按状态筛选，需在事务中使用并及时关闭）
+     * fetch size 为 Integer.MIN_VALUE 时 MySQL 驱动逐行返回结果，不会一次性加载到内存
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT w FROM Waitlist w " +
+           "JOIN FETCH w.patient p " +
+           "LEFT JOIN FETCH p.patientProfile " +
+           "JOIN FETCH w.schedule s " +
+           "JOIN FETCH s.doctor d " +
+           "LEFT JOIN FETCH d.department " +
+           "JOIN FETCH s.slot " +
+           "JOIN FETCH s.location " +
+           "WHERE (:status IS NULL OR w.status = :status) " +
+           "ORDER BY w.waitlistId DESC")
+    Stream<Waitlist> streamWithDetails(@Param("status") WaitlistStatus status);
 }
@@ -30,6 +30,8 @@ public class AddOnSlotService {
     private final AppointmentRepository appointmentRepository;
     private final PatientRepository patientRepository;
     private final NotificationService notificationService;
+    private final SlotInventoryService slotInventoryService;
+    private final ExpiryTimerService expiryTimerService;
 
     @Autowired
     public AddOnSlotService(
@@ -37,12 +39,16 @@ public class AddOnSlotService {
             ScheduleRepository scheduleRepository,
             AppointmentRepository appointmentRepository,
             PatientRepository patientRepository,
-            NotificationService notificationService) {
+            NotificationService notificationService,
+            SlotInventoryService slotInventoryService,
+            ExpiryTimerService expiryTimerService) {
         this.slotApplicationRepository = slotApplicationRepository;
         this.scheduleRepository = scheduleRepository;
         this.appointmentRepository = appointmentRepository;
         this.patientRepository = patientRepository;
         this.notificationService = notificationService;
+        this.slotInventoryService = slotInventoryService;
+        this.expiryTimerService = expiryTimerService;
     }
 
     /**
@@ -165,6 +171,8 @@ public class AddOnSlotService {
         try {
             Appointment saved = appointmentRepository.save(appointment);
             logger.info("预约记录保存成功 - appointmentId: {}", saved.getAppointmentId());
+            // 登记支付截止时间，超时由到期定时器触发取消
+            expiryTimerService.schedule(ExpiryTimerService.ExpiryType.ADD_ON_PAYMENT, saved.getAppointmentId(), deadline);
             return saved;
         } catch (Exception e) {
             logger.error("保存预约记录失败", e);
@@ -209,7 +217,7 @@ public class AddOnSlotService {
             doctorNotification.setRelatedEntity("slot_application");
             doctorNotification.setRelatedId(application.getApplicationId());
             doctorNotification.setPriority(com.example.springboot.entity.enums.NotificationPriority.normal);
-            notificationService.createNotification(doctorNotification);
+            notificationService.enqueueNotification(doctorNotification);
 
             // 通知患者
             String patientMessage = String.format(
@@ -230,7 +238,7 @@ public class AddOnSlotService {
             patientNotification.setRelatedEntity("appointment");
             patientNotification.setRelatedId(appointment.getAppointmentId());
             patientNotification.setPriority(com.example.springboot.entity.enums.NotificationPriority.urgent);
-            notificationService.createNotification(patientNotification);
+            notificationService.enqueueNotification(patientNotification);
             
         } catch (Exception e) {
             logger.error("发送通知失败", e);
@@ -266,14 +274,12 @@ public class AddOnSlotService {
         appointment.setUpdatedAt(LocalDateTime.now());
         appointmentRepository.save(appointment);
 
-        // 更新排班的已预约数（加号支付成功后才占用号源）
+        // 更新排班的已预约数（加号支付成功后才占用号源，加号允许超出总号源数）
         Schedule schedule = appointment.getSchedule();
-        Integer currentBooked = schedule.getBookedSlots();
-        schedule.setBookedSlots(currentBooked + 1);
-        scheduleRepository.save(schedule);
+        slotInventoryService.forceAcquire(schedule);
         
-        logger.info("更新排班已预约数 - scheduleId: {}, 原已预约: {}, 新已预约: {}",
-                schedule.getScheduleId(), currentBooked, schedule.getBookedSlots());
+        logger.info("更新排班已预约数 - scheduleId: {}, 新已预约: {}",
+                schedule.getScheduleId(), slotInventoryService.getBookedSlots(schedule));
 
         logger.info("加号支付处理完成 - appointmentId: {}, scheduleId: {}", 
                 appointmentId, schedule.getScheduleId());
@@ -290,7 +296,7 @@ public class AddOnSlotService {
             notification.setRelatedEntity("appointment");
             notification.setRelatedId(appointmentId);
             notification.setPriority(com.example.springboot.entity.enums.NotificationPriority.high);
-            notificationService.createNotification(notification);
+            notificationService.enqueueNotification(notification);
         } catch (Exception e) {
             logger.error("发送支付成功通知失败", e);
         }
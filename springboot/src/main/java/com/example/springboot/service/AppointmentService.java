@@ -7,6 +7,8 @@ import com.example.springboot.dto.appointment.AppointmentUpdateRequest;
 import com.example.springboot.dto.appointment.CheckInRequest;
 import com.example.springboot.dto.appointment.CheckInResponse;
 import com.example.springboot.dto.appointment.QrCodeResponse;
+import com.example.springboot.dto.appointment.QueueEvent;
+import com.example.springboot.dto.common.CursorPageResponse;
 import com.example.springboot.dto.schedule.ScheduleResponse;
 import com.example.springboot.entity.Appointment;
 import com.example.springboot.entity.Patient;
@@ -17,25 +19,29 @@ import com.example.springboot.exception.ResourceNotFoundException;
 import com.example.springboot.repository.AppointmentRepository;
 import com.example.springboot.repository.PatientRepository;
 import com.example.springboot.repository.ScheduleRepository;
+import com.example.springboot.util.CursorPaging;
+import com.example.springboot.util.NdjsonWriter;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.Random;
-import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class AppointmentService {
@@ -52,11 +58,12 @@ public class AppointmentService {
     private final ScheduleService scheduleService;
     private final NotificationService notificationService;
     private final WaitlistService waitlistService;
+    private final SlotInventoryService slotInventoryService;
+    private final CallQueueService callQueueService;
+    private final QueueStreamService queueStreamService;
+    private final QrTokenService qrTokenService;
+    private final NdjsonWriter ndjsonWriter;
     
-    @Autowired
-    private RedisTemplate<String, String> redisTemplate;
-    
-    private static final String QR_TOKEN_PREFIX = "qr:token:";
     private static final int QR_TOKEN_MIN_EXPIRE_SECONDS = 1800; // 最小30分钟过期
     private static final int QR_REFRESH_INTERVAL_SECONDS = 60; // 建议60秒刷新一次
     // 签到时间限制：已改为随到随签，只要在工作时间结束之前都可以签到
@@ -72,7 +79,12 @@ public class AppointmentService {
                               TimeSlotService timeSlotService,
                               ScheduleService scheduleService,
                               NotificationService notificationService,
-                              @Lazy WaitlistService waitlistService) {
+                              @Lazy WaitlistService waitlistService,
+                              SlotInventoryService slotInventoryService,
+                              CallQueueService callQueueService,
+                              QueueStreamService queueStreamService,
+                              QrTokenService qrTokenService,
+                              NdjsonWriter ndjsonWriter) {
         this.appointmentRepository = appointmentRepository;
         this.patientRepository = patientRepository;
         this.scheduleRepository = scheduleRepository;
@@ -83,15 +95,41 @@ public class AppointmentService {
         this.scheduleService = scheduleService;
         this.notificationService = notificationService;
         this.waitlistService = waitlistService;
+        this.slotInventoryService = slotInventoryService;
+        this.callQueueService = callQueueService;
+        this.queueStreamService = queueStreamService;
+        this.qrTokenService = qrTokenService;
+        this.ndjsonWriter = ndjsonWriter;
     }
 
     @Transactional(readOnly = true)
     public List<AppointmentResponse> findAllAppointments() {
-        return appointmentRepository.findAll().stream()
+        return appointmentRepository.findAllWithDetails().stream()
                 .map(this::convertToResponseDto)
                 .collect(Collectors.toList());
     }
 
+    /**
+     * 预约游标分页（按ID倒序），cursor 传上一页返回的 nextCursor
+     */
+    @Transactional(readOnly = true)
+    public CursorPageResponse<AppointmentResponse> getAppointmentPage(AppointmentStatus status, String cursor, Integer size) {
+        int pageSize = CursorPaging.pageSize(size);
+        List<Appointment> rows = appointmentRepository.findPageWithDetails(
+                status, CursorPaging.parseIntCursor(cursor), CursorPaging.limit(pageSize));
+        return CursorPaging.toPage(rows, pageSize, this::convertToResponseDto, Appointment::getAppointmentId);
+    }
+
+    /**
+     * 以 NDJSON 流式导出预约（按ID倒序），供批量拉取使用，内存占用与总条数无关
+     */
+    @Transactional(readOnly = true)
+    public void writeAppointmentsNdjson(AppointmentStatus status, OutputStream out) throws IOException {
+        try (Stream<Appointment> appointments = appointmentRepository.streamWithDetails(status)) {
+            ndjsonWriter.write(appointments, this::convertToResponseDto, out);
+        }
+    }
+
     @Transactional(readOnly = true)
     public AppointmentResponse findAppointmentById(Integer id) {
         Appointment appointment = appointmentRepository.findById(id)
@@ -122,8 +160,9 @@ public class AppointmentService {
         if (schedule.getStatus() != ScheduleStatus.available) {
             throw new BadRequestException("Schedule is not active for booking.");
         }
-        if (schedule.getBookedSlots() >= schedule.getTotalSlots()) {
-            System.out.println("创建预约失败 - 号源已满: bookedSlots(" + schedule.getBookedSlots() + ") >= totalSlots(" + schedule.getTotalSlots() + ")");
+        // 号源已满时直接拒绝，不再查库
+        if (!slotInventoryService.hasAvailable(schedule)) {
+            System.out.println("创建预约失败 - 号源已满: bookedSlots(" + slotInventoryService.getBookedSlots(schedule) + ") >= totalSlots(" + schedule.getTotalSlots() + ")");
             throw new BadRequestException("No available slots for this schedule.");
         }
         if (schedule.getScheduleDate().isBefore(java.time.LocalDate.now()) ||
@@ -144,9 +183,10 @@ public class AppointmentService {
         appointment.setPaymentStatus(PaymentStatus.unpaid);
         appointment.setCreatedAt(LocalDateTime.now());
 
-        // 增加排班的已预约数
-        schedule.setBookedSlots(schedule.getBookedSlots() + 1);
-        scheduleRepository.save(schedule); // 保存更新后的排班信息
+        // 占用号源（原子操作，事务回滚时自动归还）
+        if (!slotInventoryService.tryAcquire(schedule)) {
+            throw new BadRequestException("No available slots for this schedule.");
+        }
 
         Appointment savedAppointment = appointmentRepository.save(appointment);
 
@@ -219,7 +259,7 @@ public class AppointmentService {
         if (schedule.getStatus() != ScheduleStatus.available) {
             throw new BadRequestException("Schedule is not active for booking.");
         }
-        if (schedule.getBookedSlots() >= schedule.getTotalSlots()) {
+        if (!slotInventoryService.hasAvailable(schedule)) {
             throw new BadRequestException("No available slots for this schedule.");
         }
         if (schedule.getScheduleDate().isBefore(java.time.LocalDate.now()) ||
@@ -242,9 +282,10 @@ public class AppointmentService {
         appointment.setAppointmentType(AppointmentType.WALK_IN); // 设置预约类型为现场挂号
         appointment.setCreatedAt(LocalDateTime.now());
 
-        // 增加排班的已预约数
-        schedule.setBookedSlots(schedule.getBookedSlots() + 1);
-        scheduleRepository.save(schedule);
+        // 占用号源（原子操作，事务回滚时自动归还）
+        if (!slotInventoryService.tryAcquire(schedule)) {
+            throw new BadRequestException("No available slots for this schedule.");
+        }
 
         logger.info("现场挂号创建成功 - 预约ID: {}, 患者: {}, 排班ID: {}", 
                 appointment.getAppointmentId(), patient.getFullName(), schedule.getScheduleId());
@@ -267,45 +308,26 @@ public class AppointmentService {
             AppointmentStatus newStatus = request.getStatus();
             // Handle specific status transitions and logic
             if (newStatus == AppointmentStatus.cancelled && originalStatus != AppointmentStatus.cancelled) {
-                // 如果是取消预约，需要减少排班的已预约数
-                // 刷新 schedule 对象，确保获取最新的 bookedSlots 值
-                Schedule schedule = scheduleRepository.findById(existingAppointment.getSchedule().getScheduleId())
-                        .orElseThrow(() -> new ResourceNotFoundException("Schedule not found"));
+                // 如果是取消预约，需要减少排班的已预约数（条件更新，一次数据库往返）
+                Schedule schedule = existingAppointment.getSchedule();
                 
-                System.out.println("取消预约 - appointmentId: " + existingAppointment.getAppointmentId() + ", scheduleId: " + schedule.getScheduleId() + ", 取消前 bookedSlots: " + schedule.getBookedSlots());
+                System.out.println("取消预约 - appointmentId: " + existingAppointment.getAppointmentId() + ", scheduleId: " + schedule.getScheduleId() + ", 取消前 bookedSlots: " + slotInventoryService.getBookedSlots(schedule));
                 
-                // 确保 bookedSlots 不会小于 0
-                int currentBookedSlots = schedule.getBookedSlots();
-                if (currentBookedSlots > 0) {
-                    schedule.setBookedSlots(currentBookedSlots - 1);
-                    scheduleRepository.save(schedule);
-                    System.out.println("取消预约后 - bookedSlots: " + schedule.getBookedSlots() + ", totalSlots: " + schedule.getTotalSlots());
-                } else {
-                    System.out.println("警告：取消预约时 bookedSlots 已经是 0 或负数(" + currentBookedSlots + ")，无法减少");
-                }
+                // 释放号源（已预约数不会小于 0）
+                slotInventoryService.release(schedule);
+                System.out.println("取消预约后 - bookedSlots: " + slotInventoryService.getBookedSlots(schedule) + ", totalSlots: " + schedule.getTotalSlots());
                 
                 // 取消预约后，触发候补自动填充
-                // 注意：这里 schedule.getBookedSlots() 已经是减少后的值了
-                System.out.println("取消预约后，检查候补填充 - bookedSlots: " + schedule.getBookedSlots() + ", totalSlots: " + schedule.getTotalSlots());
-                if (schedule.getBookedSlots() < schedule.getTotalSlots()) {
+                if (slotInventoryService.hasAvailable(schedule)) {
                     // 有空余号源，尝试从候补队列中填充
+                    // 号源占用由 createAppointmentFromWaitlist 原子完成，并发下抢不到号源会直接返回
                     try {
-                        // 刷新 schedule 对象，确保获取最新的 bookedSlots 值
-                        schedule = scheduleRepository.findById(schedule.getScheduleId())
-                                .orElseThrow(() -> new ResourceNotFoundException("Schedule not found"));
-                        
-                        System.out.println("刷新后检查 - bookedSlots: " + schedule.getBookedSlots() + ", totalSlots: " + schedule.getTotalSlots());
-                        // 再次检查是否有空余号源（防止并发问题）
-                        if (schedule.getBookedSlots() < schedule.getTotalSlots()) {
-                            System.out.println("开始触发候补自动填充，scheduleId: " + schedule.getScheduleId());
-                            Appointment filledAppointment = waitlistService.createAppointmentFromWaitlist(schedule.getScheduleId());
-                            if (filledAppointment != null) {
-                                System.out.println("候补填充成功，创建预约ID: " + filledAppointment.getAppointmentId());
-                            } else {
-                                System.out.println("候补填充返回null，可能没有可用的候补或候补不符合条件");
-                            }
+                        System.out.println("开始触发候补自动填充，scheduleId: " + schedule.getScheduleId());
+                        Appointment filledAppointment = waitlistService.createAppointmentFromWaitlist(schedule.getScheduleId());
+                        if (filledAppointment != null) {
+                            System.out.println("候补填充成功，创建预约ID: " + filledAppointment.getAppointmentId());
                         } else {
-                            System.out.println("刷新后发现号源已满，跳过候补填充");
+                            System.out.println("候补填充返回null，可能没有可用的候补或候补不符合条件");
                         }
                     } catch (Exception e) {
                         // 候补填充失败不影响取消预约流程，只记录日志
@@ -326,11 +348,7 @@ public class AppointmentService {
                     patientService.savePatientProfile(patient.getPatientProfile()); // 更新患者档案
                 }
                 // 爽约也应减少号源
-                Schedule schedule = existingAppointment.getSchedule();
-                if (schedule.getBookedSlots() > 0) {
-                    schedule.setBookedSlots(schedule.getBookedSlots() - 1);
-                    scheduleRepository.save(schedule);
-                }
+                slotInventoryService.release(existingAppointment.getSchedule());
             } else if (newStatus == AppointmentStatus.cancelled && originalStatus == AppointmentStatus.CHECKED_IN) {
                 // 已签到的预约不能取消
                 throw new BadRequestException("已签到的预约不能取消，如需取消请联系管理员");
@@ -353,12 +371,19 @@ public class AppointmentService {
         }
 
         if (shouldRestoreSlots) {
-            Schedule schedule = existingAppointment.getSchedule();
-            schedule.setBookedSlots(schedule.getBookedSlots() + 1);
-            scheduleRepository.save(schedule);
+            // 恢复已取消的预约需要重新占用号源
+            if (!slotInventoryService.tryAcquire(existingAppointment.getSchedule())) {
+                throw new BadRequestException("No available slots for this schedule.");
+            }
         }
 
-        return convertToResponseDto(appointmentRepository.save(existingAppointment));
+        Appointment savedAppointment = appointmentRepository.save(existingAppointment);
+        if (originalStatus == AppointmentStatus.CHECKED_IN || savedAppointment.getStatus() == AppointmentStatus.CHECKED_IN) {
+            refreshCallQueue(savedAppointment, savedAppointment.getStatus() == AppointmentStatus.CHECKED_IN
+                    ? QueueEvent.Type.CHECKED_IN
+                    : QueueEvent.Type.REMOVED);
+        }
+        return convertToResponseDto(savedAppointment);
     }
 
     @Transactional
@@ -367,12 +392,12 @@ public class AppointmentService {
                 .orElseThrow(() -> new ResourceNotFoundException("Appointment not found with id " + id));
 
         // 删除预约时，应减少对应排班的已预约数
-        Schedule schedule = appointment.getSchedule();
-        if (schedule.getBookedSlots() > 0) {
-            schedule.setBookedSlots(schedule.getBookedSlots() - 1);
-            scheduleRepository.save(schedule);
-        }
+        slotInventoryService.release(appointment.getSchedule());
         appointmentRepository.delete(appointment);
+        if (appointment.getStatus() == AppointmentStatus.CHECKED_IN) {
+            callQueueService.remove(appointment.getSchedule().getScheduleId(), id);
+            publishQueueEvent(appointment, QueueEvent.Type.REMOVED, null);
+        }
     }
 
     private AppointmentResponse convertToResponseDto(Appointment appointment) {
@@ -390,34 +415,39 @@ public class AppointmentService {
     // 在AppointmentService中添加以下方法
     @Transactional(readOnly = true)
     public List<AppointmentResponse> findByPatientId(Long patientId) {
-        Patient patient = patientRepository.findById(patientId)
-                .orElseThrow(() -> new ResourceNotFoundException("Patient not found with id " + patientId));
-        return appointmentRepository.findByPatient(patient).stream()
+        List<Appointment> appointments = appointmentRepository.findWithDetailsByPatientId(patientId);
+        requirePatientIfEmpty(appointments, patientId);
+        return appointments.stream()
                 .map(this::convertToResponseDto)
                 .collect(Collectors.toList());
     }
 
     @Transactional(readOnly = true)
     public List<AppointmentResponse> findByDoctorId(Integer doctorId) {
-        return appointmentRepository.findByScheduleDoctorDoctorId(doctorId).stream()
+        return appointmentRepository.findWithDetailsByDoctorId(doctorId).stream()
                 .map(this::convertToResponseDto)
                 .collect(Collectors.toList());
     }
 
     @Transactional(readOnly = true)
     public List<AppointmentResponse> findUpcomingByPatientId(Long patientId) {
-        Patient patient = patientRepository.findById(patientId)
-                .orElseThrow(() -> new ResourceNotFoundException("Patient not found with id " + patientId));
-        return appointmentRepository.findByPatientAndScheduleScheduleDateAfterOrScheduleScheduleDateEqualAndScheduleSlotStartTimeAfter(
-                        patient,
-                        LocalDate.now(),
-                        LocalDate.now(),
-                        LocalTime.now()
-                ).stream()
+        List<Appointment> appointments = appointmentRepository.findUpcomingWithDetailsByPatientId(
+                patientId, LocalDate.now(), LocalTime.now());
+        requirePatientIfEmpty(appointments, patientId);
+        return appointments.stream()
                 .map(this::convertToResponseDto)
                 .collect(Collectors.toList());
     }
 
+    /**
+     * 查询结果为空时才确认患者是否存在，有预约时不再单独查询患者
+     */
+    private void requirePatientIfEmpty(List<Appointment> appointments, Long patientId) {
+        if (appointments.isEmpty() && !patientRepository.existsById(patientId)) {
+            throw new ResourceNotFoundException("Patient not found with id " + patientId);
+        }
+    }
+
     @Transactional
     public AppointmentResponse cancelAppointment(Integer appointmentId) {
         Appointment appointment = appointmentRepository.findById(appointmentId)
@@ -683,35 +713,10 @@ public class AppointmentService {
                 QR_TOKEN_MIN_EXPIRE_SECONDS / 60, QR_TOKEN_MIN_EXPIRE_SECONDS,
                 expireMinutes, expireSeconds);
         
-        // 生成Token
-        long timestamp = System.currentTimeMillis();
-        String random = generateRandomString(6); // 6位随机字符串
-        String qrToken = String.format("APPOINTMENT_%d_%d_%s", appointmentId, timestamp, random);
-        logger.info("Token生成成功 - Token: {}, 生成时间戳: {}", qrToken, timestamp);
-
-        // 5. 存储到Redis（动态过期时间：排班结束时间或最小30分钟，取较大值）
-        String redisKey = QR_TOKEN_PREFIX + qrToken;
-        try {
-            redisTemplate.opsForValue().set(redisKey, 
-                    String.valueOf(appointmentId), 
-                    expireSeconds, 
-                    TimeUnit.SECONDS);
-            logger.info("Token已存储到Redis - Redis Key: {}, 预约ID: {}, 过期时间: {}秒 ({}分钟)", 
-                    redisKey, appointmentId, expireSeconds, expireMinutes);
-            
-            // 验证Redis存储是否成功
-            String storedValue = redisTemplate.opsForValue().get(redisKey);
-            if (storedValue != null && storedValue.equals(String.valueOf(appointmentId))) {
-                logger.info("Redis存储验证成功 - Key: {}, Value: {}", redisKey, storedValue);
-            } else {
-                logger.error("Redis存储验证失败 - Key: {}, 期望值: {}, 实际值: {}", 
-                        redisKey, appointmentId, storedValue);
-            }
-        } catch (Exception e) {
-            logger.error("Redis存储失败 - Key: {}, 预约ID: {}, 错误信息: {}", 
-                    redisKey, appointmentId, e.getMessage(), e);
-            throw new BadRequestException("二维码Token存储失败，请重试");
-        }
+        // 5. 生成签名Token（有效期：排班结束时间或最小30分钟，取较大值；本地签名，无需存储）
+        String qrToken = qrTokenService.issue(appointmentId, schedule.getScheduleId(), expireSeconds);
+        logger.info("Token生成成功 - 预约ID: {}, 排班ID: {}, 过期时间: {}秒 ({}分钟)",
+                appointmentId, schedule.getScheduleId(), expireSeconds, expireMinutes);
 
         // 6. 返回响应
         QrCodeResponse response = new QrCodeResponse();
@@ -742,44 +747,14 @@ public class AppointmentService {
             throw new BadRequestException("二维码Token不能为空");
         }
 
-        // 1. 从Redis查询Token对应的预约ID
-        String redisKey = QR_TOKEN_PREFIX + qrToken;
-        logger.info("查询Redis - Key: {}", redisKey);
-        
-        String appointmentIdStr = null;
-        try {
-            appointmentIdStr = redisTemplate.opsForValue().get(redisKey);
-            logger.info("Redis查询结果 - Key: {}, Value: {}", redisKey, appointmentIdStr);
-        } catch (Exception e) {
-            logger.error("Redis查询失败 - Key: {}, 错误信息: {}", redisKey, e.getMessage(), e);
-            throw new BadRequestException("二维码验证失败，请重试");
-        }
-
-        if (appointmentIdStr == null) {
-            logger.warn("二维码Token在Redis中不存在或已过期 - Token: {}, Redis Key: {}", qrToken, redisKey);
-            
-            // 尝试解析Token获取预约ID（用于调试）
-            try {
-                String[] tokenParts = qrToken.split("_");
-                if (tokenParts.length >= 2) {
-                    String possibleAppointmentId = tokenParts[1];
-                    logger.info("从Token解析可能的预约ID: {}", possibleAppointmentId);
-                }
-            } catch (Exception e) {
-                logger.debug("Token解析失败: {}", e.getMessage());
-            }
-            
+        // 1. 本地校验Token签名、有效期和是否已使用，解析预约ID（不访问Redis，跨节点重复使用由下面的预约状态校验拦截）
+        QrTokenService.QrToken token = qrTokenService.verify(qrToken);
+        if (token == null || qrTokenService.isUsed(token)) {
+            logger.warn("二维码Token无效、已过期或已使用 - Token: {}", qrToken);
             throw new BadRequestException("二维码已过期或无效，请患者刷新二维码后重试");
         }
-
-        final Integer appointmentId;
-        try {
-            appointmentId = Integer.parseInt(appointmentIdStr);
-            logger.info("预约ID解析成功: {}", appointmentId);
-        } catch (NumberFormatException e) {
-            logger.error("预约ID格式错误 - 原始值: {}, 错误信息: {}", appointmentIdStr, e.getMessage());
-            throw new BadRequestException("二维码Token格式错误，请刷新二维码后重试");
-        }
+        final Integer appointmentId = token.appointmentId();
+        logger.info("Token校验通过 - 预约ID: {}, 排班ID: {}", appointmentId, token.scheduleId());
 
         // 2. 查询预约
         Appointment appointment = appointmentRepository.findById(appointmentId)
@@ -793,13 +768,8 @@ public class AppointmentService {
 
         // 3. 验证预约状态（必须是 scheduled，已签到的不能重复签到）
         if (appointment.getStatus() == AppointmentStatus.CHECKED_IN) {
-            // Token已使用，删除Token
-            try {
-                redisTemplate.delete(redisKey);
-                logger.info("已删除Redis中的Token - Key: {}", redisKey);
-            } catch (Exception e) {
-                logger.error("删除Redis Token失败 - Key: {}, 错误: {}", redisKey, e.getMessage());
-            }
+            // Token已使用，作废Token
+            qrTokenService.markUsed(token);
 
             String errorMessage = String.format(
                 "该预约已签到（签到时间：%s），请勿重复操作。预约ID：%d。",
@@ -811,13 +781,8 @@ public class AppointmentService {
         if (appointment.getStatus() != AppointmentStatus.scheduled) {
             logger.warn("预约状态不正确，无法签到 - 预约ID: {}, 当前状态: {}, 期望状态: scheduled", 
                     appointmentId, appointment.getStatus());
-            // Token已使用，删除Token
-            try {
-                redisTemplate.delete(redisKey);
-                logger.info("已删除Redis中的Token - Key: {}", redisKey);
-            } catch (Exception e) {
-                logger.error("删除Redis Token失败 - Key: {}, 错误: {}", redisKey, e.getMessage());
-            }
+            // Token已使用，作废Token
+            qrTokenService.markUsed(token);
             throw new BadRequestException("预约状态不正确，无法签到。当前状态: " + appointment.getStatus() + "，只有已预约（scheduled）状态的预约才能签到。");
         }
         logger.info("预约状态验证通过 - 状态: scheduled");
@@ -829,17 +794,21 @@ public class AppointmentService {
                     appointmentId, schedule != null, 
                     schedule != null ? schedule.getScheduleDate() : null,
                     schedule != null && schedule.getSlot() != null ? schedule.getSlot().getSlotId() : null);
-            try {
-                redisTemplate.delete(redisKey);
-            } catch (Exception e) {
-                logger.error("删除Redis Token失败: {}", e.getMessage());
-            }
+            qrTokenService.markUsed(token);
             throw new BadRequestException("预约排班信息不完整");
         }
         logger.info("排班信息查询成功 - 排班ID: {}, 排班日期: {}, 时间段: {} - {}", 
                 schedule.getScheduleId(), schedule.getScheduleDate(), 
                 schedule.getSlot().getStartTime(), schedule.getSlot().getEndTime());
 
+        // 生成二维码后预约改到了其他排班，旧二维码作废
+        if (!schedule.getScheduleId().equals(token.scheduleId())) {
+            logger.warn("二维码排班与预约排班不一致 - 预约ID: {}, Token排班ID: {}, 当前排班ID: {}",
+                    appointmentId, token.scheduleId(), schedule.getScheduleId());
+            qrTokenService.markUsed(token);
+            throw new BadRequestException("二维码已过期或无效，请患者刷新二维码后重试");
+        }
+
         LocalDateTime scheduleStartTime = LocalDateTime.of(schedule.getScheduleDate(), schedule.getSlot().getStartTime());
         LocalDateTime scheduleEndTime = LocalDateTime.of(schedule.getScheduleDate(), schedule.getSlot().getEndTime());
         LocalDateTime now = LocalDateTime.now();
@@ -859,11 +828,7 @@ public class AppointmentService {
             // 签到时间未到
             logger.warn("签到时间未到 - 预约ID: {}, 签到开始时间: {}, 当前时间: {}", 
                     appointmentId, checkInStartTime, now);
-            try {
-                redisTemplate.delete(redisKey);
-            } catch (Exception e) {
-                logger.error("删除Redis Token失败: {}", e.getMessage());
-            }
+            qrTokenService.markUsed(token);
             throw new BadRequestException("签到时间未到，请在时段开始前30分钟开始签到（" + checkInStartTime + "）");
         }
         
@@ -871,11 +836,7 @@ public class AppointmentService {
             // 时段已结束，不能签到
             logger.warn("时段已结束，无法签到 - 预约ID: {}, 排班结束时间: {}, 当前时间: {}", 
                     appointmentId, scheduleEndTime, now);
-            try {
-                redisTemplate.delete(redisKey);
-            } catch (Exception e) {
-                logger.error("删除Redis Token失败: {}", e.getMessage());
-            }
+            qrTokenService.markUsed(token);
             throw new BadRequestException("时段已结束，无法签到。请改约后续时段或退号");
         }
         
@@ -890,11 +851,7 @@ public class AppointmentService {
             // 跨场：直接作废预约
             logger.warn("跨场迟到，预约作废 - 预约ID: {}, 排班结束时间: {}, 当前时间: {}", 
                     appointmentId, scheduleEndTime, now);
-            try {
-                redisTemplate.delete(redisKey);
-            } catch (Exception e) {
-                logger.error("删除Redis Token失败: {}", e.getMessage());
-            }
+            qrTokenService.markUsed(token);
             appointment.setStatus(AppointmentStatus.cancelled);
             appointmentRepository.save(appointment);
             throw new BadRequestException("预约已过期（跨场迟到），预约已作废，请重新挂号");
@@ -932,16 +889,11 @@ public class AppointmentService {
         Integer realTimeQueueNumber = assignRealTimeQueueNumber(schedule, appointment, isLate);
         appointment.setRealTimeQueueNumber(realTimeQueueNumber);
         appointmentRepository.save(appointment);
+        refreshCallQueue(appointment, QueueEvent.Type.CHECKED_IN);
         logger.info("实时候诊序号已分配 - 预约ID: {}, 实时候诊序号: {}", appointmentId, realTimeQueueNumber);
 
-        // 7. 立即删除Token（确保一次性使用）
-        try {
-            Boolean deleted = redisTemplate.delete(redisKey);
-            logger.info("Token已删除 - Key: {}, 删除结果: {}", redisKey, deleted);
-        } catch (Exception e) {
-            logger.error("删除Token失败 - Key: {}, 错误信息: {}", redisKey, e.getMessage(), e);
-            // 即使删除失败也不影响签到结果，只记录日志
-        }
+        // 7. 作废Token（确保一次性使用）
+        qrTokenService.markUsed(token);
 
         // 8. 返回签到信息
         CheckInResponse response = new CheckInResponse();
@@ -986,6 +938,7 @@ public class AppointmentService {
         appointment.setRecheckInTime(null); // 清除重新签到时间
         appointment.setStatus(AppointmentStatus.scheduled); // 改回已预约状态
         appointmentRepository.save(appointment);
+        refreshCallQueue(appointment, QueueEvent.Type.REMOVED);
         
         return convertToResponseDto(appointment);
     }
@@ -1002,176 +955,18 @@ public class AppointmentService {
      */
     @Transactional(readOnly = true)
     public List<AppointmentResponse> getCallQueue(Integer scheduleId) {
+        List<AppointmentResponse> cached = callQueueService.getQueue(scheduleId);
+        if (cached != null) {
+            return cached;
+        }
+
+        // 首次读取：从数据库加载已签到且未就诊的预约，之后由签到/叫号等操作增量维护
+        CallQueueService.LoadStamp stamp = callQueueService.beginLoad(scheduleId);
         Schedule schedule = scheduleRepository.findById(scheduleId)
                 .orElseThrow(() -> new ResourceNotFoundException("Schedule not found with id " + scheduleId));
-        
-        // 查询已签到且未就诊的预约
-        List<Appointment> appointments = appointmentRepository
-                .findByScheduleAndStatus(schedule, AppointmentStatus.CHECKED_IN);
-        
-        // 分离不同类型的预约
-        List<Appointment> normalAppointments = new ArrayList<>();  // 正常预约和现场挂号
-        List<Appointment> sameDayFollowUps = new ArrayList<>();     // 当日复诊号（同医生）
-        List<Appointment> differentDoctorFollowUps = new ArrayList<>(); // 当日复诊号（不同医生）
-        List<Appointment> missedCallAppointments = new ArrayList<>(); // 过号（重新扫码后排队尾）
-        List<Appointment> addOnAppointments = new ArrayList<>();    // 加号
-        
-        for (Appointment appointment : appointments) {
-            AppointmentType type = appointment.getAppointmentType();
-            if (type == null) {
-                // 兼容旧数据，根据isWalkIn判断
-                type = Boolean.TRUE.equals(appointment.getIsWalkIn()) 
-                    ? AppointmentType.WALK_IN 
-                    : AppointmentType.APPOINTMENT;
-            }
-            
-            if (Boolean.TRUE.equals(appointment.getIsAddOn())) {
-                addOnAppointments.add(appointment);
-            } else if (appointment.getRecheckInTime() != null && appointment.getMissedCallCount() != null && appointment.getMissedCallCount() > 0) {
-                // 过号：有重新签到时间且过号次数>0
-                missedCallAppointments.add(appointment);
-            } else if (type == AppointmentType.SAME_DAY_FOLLOW_UP) {
-                // 判断是否同医生（通过originalAppointmentId关联的预约是否在同一排班）
-                if (appointment.getOriginalAppointmentId() != null) {
-                    Appointment originalAppointment = appointmentRepository.findById(appointment.getOriginalAppointmentId()).orElse(null);
-                    if (originalAppointment != null && originalAppointment.getSchedule().getScheduleId().equals(scheduleId)) {
-                        sameDayFollowUps.add(appointment);
-                    } else {
-                        differentDoctorFollowUps.add(appointment);
-                    }
-                } else {
-                    differentDoctorFollowUps.add(appointment);
-                }
-            } else {
-                normalAppointments.add(appointment);
-            }
-            }
-            
-        // 对正常预约和现场挂号进行排序
-        normalAppointments.sort((a1, a2) -> {
-            // 1. 预约优先于现场挂号
-            boolean a1WalkIn = a1.getAppointmentType() == AppointmentType.WALK_IN || Boolean.TRUE.equals(a1.getIsWalkIn());
-            boolean a2WalkIn = a2.getAppointmentType() == AppointmentType.WALK_IN || Boolean.TRUE.equals(a2.getIsWalkIn());
-            
-            if (!a1WalkIn && a2WalkIn) {
-                return -1; // a1是预约，a2是现场挂号，a1优先
-            }
-            if (a1WalkIn && !a2WalkIn) {
-                return 1; // a1是现场挂号，a2是预约，a2优先
-            }
-            
-            // 2. 迟到降档
-            boolean a1Late = Boolean.TRUE.equals(a1.getIsLate());
-            boolean a2Late = Boolean.TRUE.equals(a2.getIsLate());
-            
-            if (!a1Late && a2Late) {
-                return -1; // a1按时，a2迟到，a1优先
-            }
-            if (a1Late && !a2Late) {
-                return 1; // a1迟到，a2按时，a2优先
-            }
-            
-            // 3. 按时签到的按实时候诊序号排序
-            if (!a1Late && !a2Late) {
-                Integer num1 = a1.getRealTimeQueueNumber();
-                Integer num2 = a2.getRealTimeQueueNumber();
-                if (num1 != null && num2 != null) {
-                    return Integer.compare(num1, num2);
-            }
-                // 如果实时候诊序号为空，按签到时间排序
-                if (a1.getCheckInTime() != null && a2.getCheckInTime() != null) {
-            return a1.getCheckInTime().compareTo(a2.getCheckInTime());
-                }
-            }
-            
-            // 4. 都迟到，按签到时间排序
-            if (a1Late && a2Late) {
-                if (a1.getCheckInTime() != null && a2.getCheckInTime() != null) {
-                    return a1.getCheckInTime().compareTo(a2.getCheckInTime());
-                }
-            }
-            
-            // 5. 默认按挂号序号排序
-            return Integer.compare(
-                    a1.getAppointmentNumber() != null ? a1.getAppointmentNumber() : 0,
-                    a2.getAppointmentNumber() != null ? a2.getAppointmentNumber() : 0
-            );
-        });
-        
-        // 对当日复诊号排序（按签到时间）
-        sameDayFollowUps.sort((a1, a2) -> {
-            if (a1.getCheckInTime() != null && a2.getCheckInTime() != null) {
-                return a1.getCheckInTime().compareTo(a2.getCheckInTime());
-            }
-            return Integer.compare(
-                    a1.getAppointmentNumber() != null ? a1.getAppointmentNumber() : 0,
-                    a2.getAppointmentNumber() != null ? a2.getAppointmentNumber() : 0
-            );
-        });
-        
-        // 对不同医生的复诊号排序（按签到时间）
-        differentDoctorFollowUps.sort((a1, a2) -> {
-            if (a1.getCheckInTime() != null && a2.getCheckInTime() != null) {
-                return a1.getCheckInTime().compareTo(a2.getCheckInTime());
-            }
-            return Integer.compare(
-                    a1.getAppointmentNumber() != null ? a1.getAppointmentNumber() : 0,
-                    a2.getAppointmentNumber() != null ? a2.getAppointmentNumber() : 0
-            );
-        });
-        
-        // 对过号排序（按重新签到时间）
-        missedCallAppointments.sort((a1, a2) -> {
-            if (a1.getRecheckInTime() != null && a2.getRecheckInTime() != null) {
-                return a1.getRecheckInTime().compareTo(a2.getRecheckInTime());
-            }
-            return Integer.compare(
-                    a1.getAppointmentNumber() != null ? a1.getAppointmentNumber() : 0,
-                    a2.getAppointmentNumber() != null ? a2.getAppointmentNumber() : 0
-            );
-        });
-        
-        // 对加号排序（按签到时间）
-        addOnAppointments.sort((a1, a2) -> {
-            if (a1.getCheckInTime() != null && a2.getCheckInTime() != null) {
-                return a1.getCheckInTime().compareTo(a2.getCheckInTime());
-            }
-            return Integer.compare(
-                    a1.getAppointmentNumber() != null ? a1.getAppointmentNumber() : 0,
-                    a2.getAppointmentNumber() != null ? a2.getAppointmentNumber() : 0
-            );
-        });
-        
-        // 构建最终队列
-        List<Appointment> finalQueue = new ArrayList<>();
-        
-        // 1. 先添加正常预约和现场挂号
-        finalQueue.addAll(normalAppointments);
-        
-        // 2. 插入当日复诊号（同医生）：每两位正常挂号患者之后插入一个复诊号
-        int followUpIndex = 0;
-        for (int i = 2; i < finalQueue.size() && followUpIndex < sameDayFollowUps.size(); i += 3) {
-            finalQueue.add(i, sameDayFollowUps.get(followUpIndex));
-            followUpIndex++;
-        }
-        // 剩余的复诊号添加到末尾（如果还有）
-        while (followUpIndex < sameDayFollowUps.size()) {
-            finalQueue.add(sameDayFollowUps.get(followUpIndex));
-            followUpIndex++;
-        }
-        
-        // 3. 添加不同医生的复诊号（排在最后）
-        finalQueue.addAll(differentDoctorFollowUps);
-        
-        // 4. 添加过号（排在最后，按重新签到时间排序）
-        finalQueue.addAll(missedCallAppointments);
-        
-        // 5. 添加加号（排在最后）
-        finalQueue.addAll(addOnAppointments);
-        
-        return finalQueue.stream()
-                .map(this::convertToResponseDto)
-                .collect(Collectors.toList());
+        List<CallQueueService.QueueEntry> entries = buildCallQueueEntries(schedule);
+        callQueueService.load(scheduleId, schedule.getScheduleDate(), stamp, entries);
+        return CallQueueService.order(entries);
     }
 
     /**
@@ -1180,20 +975,87 @@ public class AppointmentService {
      */
     @Transactional(readOnly = true)
     public AppointmentResponse getNextAppointmentToCall(Integer scheduleId) {
-        List<AppointmentResponse> queue = getCallQueue(scheduleId);
-        
+        CallQueueService.NextResult result = callQueueService.getNext(scheduleId);
+        if (result.isLoaded()) {
+            return result.getNext();
+        }
+
         // 找到第一个未叫号的
-        for (AppointmentResponse response : queue) {
-            Appointment appointment = appointmentRepository.findById(response.getAppointmentId())
-                    .orElse(null);
-            if (appointment != null && appointment.getCalledAt() == null) {
+        for (AppointmentResponse response : getCallQueue(scheduleId)) {
+            if (response.getCalledAt() == null) {
                 return response;
             }
         }
-        
+
         return null; // 没有待叫号的预约
     }
 
+    /**
+     * 从数据库构建某个排班的叫号队列条目
+     */
+    private List<CallQueueService.QueueEntry> buildCallQueueEntries(Schedule schedule) {
+        // 查询已签到且未就诊的预约
+        List<Appointment> appointments = appointmentRepository
+                .findByScheduleAndStatus(schedule, AppointmentStatus.CHECKED_IN);
+
+        // 当日复诊号需要判断原预约是否在同一排班（同医生），一次批量查出所有原预约
+        List<Integer> originalIds = appointments.stream()
+                .filter(a -> a.getAppointmentType() == AppointmentType.SAME_DAY_FOLLOW_UP && a.getOriginalAppointmentId() != null)
+                .map(Appointment::getOriginalAppointmentId)
+                .distinct()
+                .collect(Collectors.toList());
+        Map<Integer, Integer> originalScheduleIds = new HashMap<>();
+        if (!originalIds.isEmpty()) {
+            for (Appointment original : appointmentRepository.findAllById(originalIds)) {
+                originalScheduleIds.put(original.getAppointmentId(), original.getSchedule().getScheduleId());
+            }
+        }
+
+        List<CallQueueService.QueueEntry> entries = new ArrayList<>(appointments.size());
+        for (Appointment appointment : appointments) {
+            boolean sameSchedule = appointment.getOriginalAppointmentId() != null
+                    && schedule.getScheduleId().equals(originalScheduleIds.get(appointment.getOriginalAppointmentId()));
+            entries.add(CallQueueService.entryOf(appointment, sameSchedule, convertToResponseDto(appointment)));
+        }
+        return entries;
+    }
+
+    /**
+     * 预约的签到/叫号状态变化后同步到内存叫号队列（事务提交后生效）
+     */
+    private void refreshCallQueue(Appointment appointment, QueueEvent.Type eventType) {
+        Integer scheduleId = appointment.getSchedule().getScheduleId();
+        AppointmentResponse response = convertToResponseDto(appointment);
+        if (appointment.getStatus() != AppointmentStatus.CHECKED_IN) {
+            callQueueService.remove(scheduleId, appointment.getAppointmentId());
+        } else {
+            boolean sameSchedule = false;
+            if (appointment.getAppointmentType() == AppointmentType.SAME_DAY_FOLLOW_UP && appointment.getOriginalAppointmentId() != null) {
+                Appointment originalAppointment = appointmentRepository.findById(appointment.getOriginalAppointmentId()).orElse(null);
+                sameSchedule = originalAppointment != null && originalAppointment.getSchedule().getScheduleId().equals(scheduleId);
+            }
+            callQueueService.upsert(scheduleId, CallQueueService.entryOf(appointment, sameSchedule, response));
+        }
+        publishQueueEvent(appointment, eventType, response);
+    }
+
+    /**
+     * 向订阅了该排班/科室的候诊大屏推送队列变更（事务提交后推送）
+     */
+    private void publishQueueEvent(Appointment appointment, QueueEvent.Type eventType, AppointmentResponse response) {
+        Schedule schedule = appointment.getSchedule();
+        QueueEvent event = new QueueEvent();
+        event.setType(eventType);
+        event.setScheduleId(schedule.getScheduleId());
+        if (schedule.getDoctor() != null && schedule.getDoctor().getDepartment() != null) {
+            event.setDepartmentId(schedule.getDoctor().getDepartment().getDepartmentId());
+        }
+        event.setAppointmentId(appointment.getAppointmentId());
+        event.setAppointment(response);
+        event.setOccurredAt(LocalDateTime.now());
+        queueStreamService.publish(event);
+    }
+
     /**
      * 执行叫号
      */
@@ -1216,6 +1078,7 @@ public class AppointmentService {
         // 更新叫号时间
         appointment.setCalledAt(LocalDateTime.now());
         appointmentRepository.save(appointment);
+        refreshCallQueue(appointment, QueueEvent.Type.CALLED);
         
         logger.info("叫号成功 - 预约ID: {}, 患者: {}, 就诊序号: {}, 是否按时: {}, 叫号时间: {}", 
                 appointmentId, appointment.getPatient().getFullName(), 
@@ -1243,6 +1106,7 @@ public class AppointmentService {
         // 标记就诊完成
         appointment.setStatus(AppointmentStatus.completed);
         appointmentRepository.save(appointment);
+        refreshCallQueue(appointment, QueueEvent.Type.COMPLETED);
 
         logger.info("就诊完成 - 预约ID: {}, 患者: {}, 医生: {}, 完成时间: {}",
                 appointmentId, appointment.getPatient().getFullName(),
@@ -1322,6 +1186,7 @@ public class AppointmentService {
         appointment.setIsLate(false);
 
         appointmentRepository.save(appointment);
+        refreshCallQueue(appointment, QueueEvent.Type.MISSED);
 
         logger.info("标记过号成功 - 预约ID: {}, 患者: {}, 过号次数: {}, 状态已改回scheduled",
                 appointmentId, appointment.getPatient().getFullName(), appointment.getMissedCallCount());
@@ -1391,6 +1256,7 @@ public class AppointmentService {
                 (appointment.getMissedCallCount() == null ? 0 : appointment.getMissedCallCount()) + 1);
         
         appointmentRepository.save(appointment);
+        refreshCallQueue(appointment, QueueEvent.Type.RECHECKED_IN);
         
         logger.info("过号重新签到成功 - 预约ID: {}, 患者: {}, 就诊序号: {} (不变), 实时候诊序号: {} (最后一位), 重新签到时间: {}", 
                 appointmentId, appointment.getPatient().getFullName(), 
@@ -1498,17 +1364,4 @@ public class AppointmentService {
         // 如果当前预约不在按时签到列表中（理论上不会发生），返回列表大小+1
         return sortedAppointments.size() + 1;
     }
-
-    /**
-     * 生成随机字符串
-     */
-    private String generateRandomString(int length) {
-        String chars = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
-        Random random = new Random();
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < length; i++) {
-            sb.append(chars.charAt(random.nextInt(chars.length())));
-        }
-        return sb.toString();
-    }
 }
\ No newline at end of file
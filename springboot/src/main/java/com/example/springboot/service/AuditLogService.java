@@ -1,27 +1,35 @@
 package com.example.springboot.service;
 
 import com.example.springboot.dto.audit.AuditLogResponse;
+import com.example.springboot.dto.common.CursorPageResponse;
 import com.example.springboot.entity.AuditLog;
 import com.example.springboot.entity.enums.ActorType;
 import com.example.springboot.exception.ResourceNotFoundException;
 import com.example.springboot.repository.AuditLogRepository;
+import com.example.springboot.util.CursorPaging;
+import com.example.springboot.util.NdjsonWriter;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class AuditLogService {
 
     private final AuditLogRepository auditLogRepository;
+    private final NdjsonWriter ndjsonWriter;
 
     @Autowired
-    public AuditLogService(AuditLogRepository auditLogRepository) {
+    public AuditLogService(AuditLogRepository auditLogRepository, NdjsonWriter ndjsonWriter) {
         this.auditLogRepository = auditLogRepository;
+        this.ndjsonWriter = ndjsonWriter;
     }
 
     @Transactional(readOnly = true)
@@ -31,6 +39,27 @@ public class AuditLogService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * 审计日志游标分页（按ID倒序），cursor 传上一页返回的 nextCursor
+     */
+    @Transactional(readOnly = true)
+    public CursorPageResponse<AuditLogResponse> getAuditLogPage(ActorType actorType, String cursor, Integer size) {
+        int pageSize = CursorPaging.pageSize(size);
+        List<AuditLog> rows = auditLogRepository.findPage(
+                actorType, CursorPaging.parseLongCursor(cursor), CursorPaging.limit(pageSize));
+        return CursorPaging.toPage(rows, pageSize, this::convertToResponseDto, AuditLog::getLogId);
+    }
+
+    /**
+     * 以 NDJSON 流式导出审计日志（按ID倒序），供批量拉取使用，内存占用与总条数无关
+     */
+    @Transactional(readOnly = true)
+    public void writeAuditLogsNdjson(ActorType actorType, OutputStream out) throws IOException {
+        try (Stream<AuditLog> auditLogs = auditLogRepository.streamAll(actorType)) {
+            ndjsonWriter.write(auditLogs, this::convertToResponseDto, out);
+        }
+    }
+
     @Transactional(readOnly = true)
     public AuditLogResponse findAuditLogById(Long id) {
         AuditLog auditLog = auditLogRepository.findById(id)
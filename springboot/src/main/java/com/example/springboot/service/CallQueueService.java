@@ -0,0 +1,458 @@
+package com.example.springboot.service;
+
+import com.example.springboot.dto.appointment.AppointmentResponse;
+import com.example.springboot.entity.Appointment;
+import com.example.springboot.entity.enums.AppointmentStatus;
+import com.example.springboot.entity.enums.AppointmentType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 叫号队列服务
+ * 在内存中按排班维护已签到未就诊的候诊队列，由签到、叫号、完成就诊、过号、过号重签等操作增量更新，
+ * 读取叫号队列和下一位待叫号患者时不再访问数据库。
+ *
+ * 队列按五类分桶，每个桶用二分插入保持有序，排序规则与原先全量排序完全一致：
+ * 1. 预约挂号/现场挂号（预约优先，迟到降档，按实时候诊序号/签到时间/挂号序号）
+ * 2. 当日复诊号（同医生）：每两位正常挂号患者之后插入一个
+ * 3. 当日复诊号（不同医生）：排在最后
+ * 4. 过号重新签到：按重新签到时间排在队尾
+ * 5. 加号：加在所有号源的最后
+ *
+ * 某个排班第一次被读取时从数据库整体加载，之后只做增量维护；变更在事务提交后才生效。
+ * 加载期间如有变更提交，本次加载结果作废，下次读取时重新加载。
+ */
+@Service
+public class CallQueueService {
+
+    /**
+     * 队列分桶
+     */
+    public enum Bucket {
+        NORMAL, SAME_DAY_FOLLOW_UP, DIFFERENT_DOCTOR_FOLLOW_UP, MISSED_CALL, ADD_ON
+    }
+
+    // scheduleId -> 候诊队列
+    private final Map<Integer, ScheduleQueue> queues = new ConcurrentHashMap<>();
+
+    // scheduleId -> 变更版本号（每次提交的变更加1，用于丢弃加载期间被修改过的结果）
+    private final Map<Integer, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    // 每次清理版本号时加1，清理前开始的加载一律作废
+    private final AtomicLong evictionEpoch = new AtomicLong();
+
+    /**
+     * 获取排班的叫号队列，未加载时返回 null
+     */
+    public List<AppointmentResponse> getQueue(Integer scheduleId) {
+        ScheduleQueue queue = queues.get(scheduleId);
+        return queue == null ? null : queue.snapshot();
+    }
+
+    /**
+     * 获取下一个待叫号的预约（队列中第一个未叫号的）
+     *
+     * @return 下一位；队列未加载返回 null 且 loaded 为 false
+     */
+    public NextResult getNext(Integer scheduleId) {
+        ScheduleQueue queue = queues.get(scheduleId);
+        if (queue == null) {
+            return new NextResult(false, null);
+        }
+        return new NextResult(true, queue.next());
+    }
+
+    /**
+     * 按叫号规则对条目排序（不写入缓存）
+     */
+    public static List<AppointmentResponse> order(List<QueueEntry> entries) {
+        ScheduleQueue queue = new ScheduleQueue(null);
+        for (QueueEntry entry : entries) {
+            queue.put(entry);
+        }
+        return queue.snapshot();
+    }
+
+    /**
+     * 开始从数据库加载前记录当前版本号
+     */
+    public LoadStamp beginLoad(Integer scheduleId) {
+        return new LoadStamp(evictionEpoch.get(), currentVersion(scheduleId));
+    }
+
+    /**
+     * 用数据库中的已签到预约整体加载某个排班的队列
+     * 读取期间如有变更提交（版本号已变化），不保存本次加载结果；
+     * 在读写事务中读到的可能是未提交的数据，同样不保存
+     */
+    public void load(Integer scheduleId, LocalDate scheduleDate, LoadStamp stamp, List<QueueEntry> entries) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return;
+        }
+        ScheduleQueue queue = new ScheduleQueue(scheduleDate);
+        for (QueueEntry entry : entries) {
+            queue.put(entry);
+        }
+        // 版本比较与写入在同一个 compute 内完成，与增量变更的 computeIfPresent 互斥
+        queues.compute(scheduleId, (id, existing) -> {
+            if (existing != null) {
+                return existing;
+            }
+            boolean unchanged = evictionEpoch.get() == stamp.epoch && currentVersion(id) == stamp.version;
+            return unchanged ? queue : null;
+        });
+    }
+
+    /**
+     * 预约签到/叫号/重签后更新队列；状态不再是已签到时从队列移除
+     * 在事务中调用时，提交后才生效
+     */
+    public void upsert(Integer scheduleId, QueueEntry entry) {
+        afterCommit(() -> {
+            bumpVersion(scheduleId);
+            queues.computeIfPresent(scheduleId, (id, queue) -> {
+                queue.put(entry);
+                return queue;
+            });
+        });
+    }
+
+    /**
+     * 预约完成就诊/过号/清除签到后从队列移除
+     */
+    public void remove(Integer scheduleId, Integer appointmentId) {
+        afterCommit(() -> {
+            bumpVersion(scheduleId);
+            queues.computeIfPresent(scheduleId, (id, queue) -> {
+                queue.remove(appointmentId);
+                return queue;
+            });
+        });
+    }
+
+    /**
+     * 丢弃某个排班的队列，下次读取时重新从数据库加载
+     */
+    public void invalidate(Integer scheduleId) {
+        afterCommit(() -> {
+            bumpVersion(scheduleId);
+            queues.remove(scheduleId);
+        });
+    }
+
+    /**
+     * 移除已过期排班的队列，释放内存
+     * 每小时执行一次
+     */
+    @Scheduled(fixedDelay = 3600000)
+    public void evictExpired() {
+        LocalDate today = LocalDate.now();
+        queues.values().removeIf(queue -> queue.scheduleDate != null && queue.scheduleDate.isBefore(today));
+        evictionEpoch.incrementAndGet();
+        versions.keySet().removeIf(scheduleId -> !queues.containsKey(scheduleId));
+    }
+
+    /**
+     * 根据预约实体构建队列条目
+     *
+     * @param sameScheduleFollowUp 当日复诊号的原预约是否属于同一排班（同医生）
+     * @param response 队列展示用的响应DTO
+     */
+    public static QueueEntry entryOf(Appointment appointment, boolean sameScheduleFollowUp, AppointmentResponse response) {
+        AppointmentType type = appointment.getAppointmentType();
+        if (type == null) {
+            // 兼容旧数据，根据isWalkIn判断
+            type = Boolean.TRUE.equals(appointment.getIsWalkIn())
+                    ? AppointmentType.WALK_IN
+                    : AppointmentType.APPOINTMENT;
+        }
+
+        Bucket bucket;
+        if (Boolean.TRUE.equals(appointment.getIsAddOn())) {
+            bucket = Bucket.ADD_ON;
+        } else if (appointment.getRecheckInTime() != null && appointment.getMissedCallCount() != null && appointment.getMissedCallCount() > 0) {
+            // 过号：有重新签到时间且过号次数>0
+            bucket = Bucket.MISSED_CALL;
+        } else if (type == AppointmentType.SAME_DAY_FOLLOW_UP) {
+            bucket = sameScheduleFollowUp ? Bucket.SAME_DAY_FOLLOW_UP : Bucket.DIFFERENT_DOCTOR_FOLLOW_UP;
+        } else {
+            bucket = Bucket.NORMAL;
+        }
+
+        return new QueueEntry(
+                appointment.getAppointmentId(),
+                appointment.getStatus() == AppointmentStatus.CHECKED_IN,
+                bucket,
+                appointment.getAppointmentType() == AppointmentType.WALK_IN || Boolean.TRUE.equals(appointment.getIsWalkIn()),
+                Boolean.TRUE.equals(appointment.getIsLate()),
+                appointment.getRealTimeQueueNumber(),
+                appointment.getCheckInTime(),
+                appointment.getRecheckInTime(),
+                appointment.getAppointmentNumber() != null ? appointment.getAppointmentNumber() : 0,
+                appointment.getCalledAt() != null,
+                response);
+    }
+
+    private long currentVersion(Integer scheduleId) {
+        AtomicLong version = versions.get(scheduleId);
+        return version == null ? 0L : version.get();
+    }
+
+    private void bumpVersion(Integer scheduleId) {
+        versions.computeIfAbsent(scheduleId, id -> new AtomicLong()).incrementAndGet();
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * 加载开始时的版本号
+     */
+    public static class LoadStamp {
+        private final long epoch;
+        private final long version;
+
+        LoadStamp(long epoch, long version) {
+            this.epoch = epoch;
+            this.version = version;
+        }
+    }
+
+    /**
+     * 下一位待叫号查询结果
+     */
+    public static class NextResult {
+        private final boolean loaded;
+        private final AppointmentResponse next;
+
+        NextResult(boolean loaded, AppointmentResponse next) {
+            this.loaded = loaded;
+            this.next = next;
+        }
+
+        public boolean isLoaded() {
+            return loaded;
+        }
+
+        public AppointmentResponse getNext() {
+            return next;
+        }
+    }
+
+    /**
+     * 队列条目：排序所需字段的快照 + 展示用DTO
+     */
+    public static class QueueEntry {
+        private final Integer appointmentId;
+        private final boolean checkedIn;
+        private final Bucket bucket;
+        private final boolean walkIn;
+        private final boolean late;
+        private final Integer realTimeQueueNumber;
+        private final LocalDateTime checkInTime;
+        private final LocalDateTime recheckInTime;
+        private final int appointmentNumber;
+        private final boolean called;
+        private final AppointmentResponse response;
+
+        QueueEntry(Integer appointmentId, boolean checkedIn, Bucket bucket, boolean walkIn, boolean late,
+                   Integer realTimeQueueNumber, LocalDateTime checkInTime, LocalDateTime recheckInTime,
+                   int appointmentNumber, boolean called, AppointmentResponse response) {
+            this.appointmentId = appointmentId;
+            this.checkedIn = checkedIn;
+            this.bucket = bucket;
+            this.walkIn = walkIn;
+            this.late = late;
+            this.realTimeQueueNumber = realTimeQueueNumber;
+            this.checkInTime = checkInTime;
+            this.recheckInTime = recheckInTime;
+            this.appointmentNumber = appointmentNumber;
+            this.called = called;
+            this.response = response;
+        }
+    }
+
+    /**
+     * 单个排班的候诊队列
+     */
+    private static class ScheduleQueue {
+        private final LocalDate scheduleDate;
+        private final Map<Bucket, List<QueueEntry>> buckets = new EnumMap<>(Bucket.class);
+        private final Map<Integer, QueueEntry> byId = new HashMap<>();
+        private List<QueueEntry> ordered; // 缓存的最终队列，变更后置空
+
+        ScheduleQueue(LocalDate scheduleDate) {
+            this.scheduleDate = scheduleDate;
+            for (Bucket bucket : Bucket.values()) {
+                buckets.put(bucket, new ArrayList<>());
+            }
+        }
+
+        synchronized void put(QueueEntry entry) {
+            removeInternal(entry.appointmentId);
+            if (!entry.checkedIn) {
+                return;
+            }
+            List<QueueEntry> list = buckets.get(entry.bucket);
+            Comparator<QueueEntry> comparator = comparatorOf(entry.bucket);
+            int index = Collections.binarySearch(list, entry, comparator);
+            list.add(index < 0 ? -index - 1 : index, entry);
+            byId.put(entry.appointmentId, entry);
+            ordered = null;
+        }
+
+        synchronized void remove(Integer appointmentId) {
+            removeInternal(appointmentId);
+        }
+
+        synchronized List<AppointmentResponse> snapshot() {
+            List<QueueEntry> entries = ordered();
+            List<AppointmentResponse> result = new ArrayList<>(entries.size());
+            for (QueueEntry entry : entries) {
+                result.add(entry.response);
+            }
+            return result;
+        }
+
+        synchronized AppointmentResponse next() {
+            for (QueueEntry entry : ordered()) {
+                if (!entry.called) {
+                    return entry.response;
+                }
+            }
+            return null;
+        }
+
+        private void removeInternal(Integer appointmentId) {
+            QueueEntry existing = byId.remove(appointmentId);
+            if (existing != null) {
+                buckets.get(existing.bucket).remove(existing);
+                ordered = null;
+            }
+        }
+
+        private List<QueueEntry> ordered() {
+            if (ordered != null) {
+                return ordered;
+            }
+            List<QueueEntry> sameDayFollowUps = buckets.get(Bucket.SAME_DAY_FOLLOW_UP);
+            List<QueueEntry> finalQueue = new ArrayList<>(byId.size());
+
+            // 1. 先添加正常预约和现场挂号
+            finalQueue.addAll(buckets.get(Bucket.NORMAL));
+
+            // 2. 插入当日复诊号（同医生）：每两位正常挂号患者之后插入一个复诊号
+            int followUpIndex = 0;
+            for (int i = 2; i < finalQueue.size() && followUpIndex < sameDayFollowUps.size(); i += 3) {
+                finalQueue.add(i, sameDayFollowUps.get(followUpIndex));
+                followUpIndex++;
+            }
+            // 剩余的复诊号添加到末尾（如果还有）
+            while (followUpIndex < sameDayFollowUps.size()) {
+                finalQueue.add(sameDayFollowUps.get(followUpIndex));
+                followUpIndex++;
+            }
+
+            // 3. 添加不同医生的复诊号、过号、加号（依次排在最后）
+            finalQueue.addAll(buckets.get(Bucket.DIFFERENT_DOCTOR_FOLLOW_UP));
+            finalQueue.addAll(buckets.get(Bucket.MISSED_CALL));
+            finalQueue.addAll(buckets.get(Bucket.ADD_ON));
+
+            ordered = finalQueue;
+            return ordered;
+        }
+    }
+
+    private static Comparator<QueueEntry> comparatorOf(Bucket bucket) {
+        Comparator<QueueEntry> comparator;
+        switch (bucket) {
+            case NORMAL:
+                comparator = CallQueueService::compareNormal;
+                break;
+            case MISSED_CALL:
+                // 过号按重新签到时间排序
+                comparator = (a1, a2) -> {
+                    if (a1.recheckInTime != null && a2.recheckInTime != null) {
+                        return a1.recheckInTime.compareTo(a2.recheckInTime);
+                    }
+                    return Integer.compare(a1.appointmentNumber, a2.appointmentNumber);
+                };
+                break;
+            default:
+                // 复诊号、加号按签到时间排序
+                comparator = (a1, a2) -> {
+                    if (a1.checkInTime != null && a2.checkInTime != null) {
+                        return a1.checkInTime.compareTo(a2.checkInTime);
+                    }
+                    return Integer.compare(a1.appointmentNumber, a2.appointmentNumber);
+                };
+                break;
+        }
+        // 规则相同时按预约ID保持稳定顺序（与原先按数据库顺序稳定排序一致）
+        return comparator.thenComparing(entry -> entry.appointmentId);
+    }
+
+    /**
+     * 正常预约和现场挂号的排序规则
+     */
+    private static int compareNormal(QueueEntry a1, QueueEntry a2) {
+        // 1. 预约优先于现场挂号
+        if (!a1.walkIn && a2.walkIn) {
+            return -1;
+        }
+        if (a1.walkIn && !a2.walkIn) {
+            return 1;
+        }
+
+        // 2. 迟到降档
+        if (!a1.late && a2.late) {
+            return -1;
+        }
+        if (a1.late && !a2.late) {
+            return 1;
+        }
+
+        // 3. 按时签到的按实时候诊序号排序，实时候诊序号为空时按签到时间排序
+        if (!a1.late) {
+            if (a1.realTimeQueueNumber != null && a2.realTimeQueueNumber != null) {
+                return Integer.compare(a1.realTimeQueueNumber, a2.realTimeQueueNumber);
+            }
+            if (a1.checkInTime != null && a2.checkInTime != null) {
+                return a1.checkInTime.compareTo(a2.checkInTime);
+            }
+        }
+
+        // 4. 都迟到，按签到时间排序
+        if (a1.late && a1.checkInTime != null && a2.checkInTime != null) {
+            return a1.checkInTime.compareTo(a2.checkInTime);
+        }
+
+        // 5. 默认按挂号序号排序
+        return Integer.compare(a1.appointmentNumber, a2.appointmentNumber);
+    }
+}
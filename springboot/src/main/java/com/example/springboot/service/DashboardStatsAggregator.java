@@ -0,0 +1,339 @@
+package com.example.springboot.service;
+
+import com.example.springboot.entity.enums.AppointmentStatus;
+import com.example.springboot.entity.enums.PaymentStatus;
+import com.example.springboot.repository.AppointmentRepository;
+import com.example.springboot.repository.PatientRepository;
+import com.example.springboot.repository.ScheduleRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 运营总览统计聚合器（物化统计）
+ * 大屏频繁刷新总览数据，不再每次执行多条聚合查询：
+ * 今日挂号量、当前候诊人数、支付状态分布、近7天挂号趋势由预约变更事件（AppointmentChangeListener，事务提交后）增量维护；
+ * 今日出诊医生数、累计注册用户只在对账时刷新。
+ *
+ * 定时对账（每5分钟）以数据库为准重算全部指标，修正增量维护遗漏的变更；
+ * 首次读取、跨天或收到对账请求时在读取前同步对账一次，其余读取直接返回内存数据，不执行SQL。
+ *
+ * 对账与增量互斥：预约变更所在事务提交前取得提交锁（读锁），提交完成并应用增量后释放；对账持有写锁读库并替换内存数据。
+ * 每个变更要么在对账读库前提交并应用（随后被对账结果覆盖），要么在对账完成后提交并叠加到对账结果上，
+ * 不会被对账结果和增量重复计算。提交等锁超时（对账读库过慢）时变更仍会应用，但会请求下次读取前重新对账。
+ */
+@Service
+public class DashboardStatsAggregator {
+
+    private static final Logger logger = LoggerFactory.getLogger(DashboardStatsAggregator.class);
+
+    // 趋势窗口天数（含今天）
+    private static final int TREND_DAYS = 7;
+
+    private final AppointmentRepository appointmentRepository;
+    private final PatientRepository patientRepository;
+    private final ScheduleRepository scheduleRepository;
+    private final TransactionTemplate loadTransaction;
+
+    // 预约变更提交持有读锁，对账读库持有写锁
+    private final ReentrantReadWriteLock commitLock = new ReentrantReadWriteLock();
+
+    // 预约变更提交等待对账的最长时间（毫秒）
+    @Value("${app.dashboard-stats.commit-wait-ms:200}")
+    private long commitWaitMillis;
+
+    // 以下状态均在 synchronized(this) 下访问
+    private boolean loaded = false;
+    private boolean reconcileRequested = false;
+    private LocalDate statsDate;
+    private long todayAppointments;
+    private long activeDoctorsToday;
+    private long pendingPatients;
+    private long totalPatients;
+    // 支付状态为空的历史预约记在 null 下
+    private final Map<PaymentStatus, Long> paymentCounts = new HashMap<>();
+    private final TreeMap<LocalDate, Long> dailyCreated = new TreeMap<>();
+
+    // 统计指标
+    private final AtomicLong reconcileCount = new AtomicLong();
+    private final AtomicLong appliedChangeCount = new AtomicLong();
+    private final AtomicLong driftCount = new AtomicLong();
+    private final AtomicLong commitLockTimeoutCount = new AtomicLong();
+
+    @Autowired
+    public DashboardStatsAggregator(AppointmentRepository appointmentRepository,
+                                    PatientRepository patientRepository,
+                                    ScheduleRepository scheduleRepository,
+                                    PlatformTransactionManager transactionManager) {
+        this.appointmentRepository = appointmentRepository;
+        this.patientRepository = patientRepository;
+        this.scheduleRepository = scheduleRepository;
+        // 对账在独立事务中读库，读取的快照不会早于取得写锁的时刻
+        this.loadTransaction = new TransactionTemplate(transactionManager);
+        this.loadTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.loadTransaction.setReadOnly(true);
+    }
+
+    /**
+     * 预约统计相关的状态（预约不存在时用 null 表示）
+     */
+    public record AppointmentFacts(AppointmentStatus status, PaymentStatus paymentStatus,
+                                   LocalDate scheduleDate, LocalDate createdDate) {
+    }
+
+    /**
+     * 当前统计快照（内存读取）
+     * paymentCounts 按支付状态枚举顺序排列，支付状态为空的预约数在 null 键下（排在最后）
+     */
+    public record Snapshot(LocalDate statsDate, long todayAppointments, long activeDoctorsToday,
+                           long pendingPatients, long totalPatients,
+                           Map<PaymentStatus, Long> paymentCounts, Map<LocalDate, Long> dailyCreated) {
+    }
+
+    /**
+     * 获取统计快照，需要时先与数据库对账
+     */
+    public Snapshot getSnapshot() {
+        synchronized (this) {
+            if (loaded && !reconcileRequested && LocalDate.now().equals(statsDate)) {
+                return snapshot();
+            }
+        }
+        reconcile();
+        synchronized (this) {
+            return snapshot();
+        }
+    }
+
+    /**
+     * 预约新增、修改、删除（由 AppointmentChangeListener 调用），在事务中调用时提交后生效，
+     * 提交前取得提交锁，保证提交和应用增量不会与对账读库交错
+     *
+     * @param before 变更前状态，新增时为 null
+     * @param after  变更后状态，删除时为 null
+     */
+    public void onAppointmentChanged(AppointmentFacts before, AppointmentFacts after) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(before, after);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private boolean locked = false;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                try {
+                    locked = commitLock.readLock().tryLock(commitWaitMillis, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (!locked) {
+                    commitLockTimeoutCount.incrementAndGet();
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                try {
+                    if (status == STATUS_COMMITTED) {
+                        apply(before, after);
+                    }
+                    if (status == STATUS_UNKNOWN || (status == STATUS_COMMITTED && !locked)) {
+                        // 提交结果未知，或提交可能与对账读库交错，增量是否已包含在对账结果中无法确定
+                        requestReconcile();
+                    }
+                } finally {
+                    if (locked) {
+                        commitLock.readLock().unlock();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * 无法计算增量时（如缺少变更前状态）请求在下次读取前对账
+     */
+    public synchronized void requestReconcile() {
+        reconcileRequested = true;
+    }
+
+    /**
+     * 定时对账：以数据库为准重算全部指标
+     * 每5分钟执行一次
+     */
+    @Scheduled(fixedDelay = 300000)
+    public void scheduledReconcile() {
+        synchronized (this) {
+            if (!loaded) {
+                // 还没有人读取过，不必提前加载
+                return;
+            }
+        }
+        reconcile();
+    }
+
+    /**
+     * 聚合器统计（对账次数、已应用的增量数、对账发现的偏差次数、提交等锁超时次数）
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("reconciles", reconcileCount.get());
+        stats.put("appliedChanges", appliedChangeCount.get());
+        stats.put("drifts", driftCount.get());
+        stats.put("commitLockTimeouts", commitLockTimeoutCount.get());
+        synchronized (this) {
+            stats.put("statsDate", statsDate);
+            stats.put("loaded", loaded);
+        }
+        return stats;
+    }
+
+    private void reconcile() {
+        try {
+            loadTransaction.executeWithoutResult(status -> {
+                commitLock.writeLock().lock();
+                try {
+                    reconcileLocked();
+                } finally {
+                    commitLock.writeLock().unlock();
+                }
+            });
+            reconcileCount.incrementAndGet();
+        } catch (RuntimeException e) {
+            logger.error("运营总览统计对账失败: {}", e.getMessage(), e);
+            synchronized (this) {
+                if (!loaded) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * 读库重算全部指标并替换内存数据，调用方持有提交锁的写锁：
+     * 读库期间没有预约变更提交，已提交的变更都已应用到内存中，读库结果可以直接替换
+     */
+    private void reconcileLocked() {
+        LocalDate today = LocalDate.now();
+        LocalDate trendStart = today.minusDays(TREND_DAYS - 1);
+
+        long todayCount = appointmentRepository.countBySchedule_ScheduleDate(today);
+        long doctors = scheduleRepository.countDistinctDoctorsByScheduleDate(today);
+        long pending = appointmentRepository.countCheckedInAndNotCompleted();
+        long patients = patientRepository.countTotalActivePatients();
+
+        Map<PaymentStatus, Long> payments = new HashMap<>();
+        for (Map<String, Object> row : appointmentRepository.countByPaymentStatus()) {
+            payments.put((PaymentStatus) row.get("status"), ((Number) row.get("count")).longValue());
+        }
+
+        TreeMap<LocalDate, Long> daily = new TreeMap<>();
+        for (int i = 0; i < TREND_DAYS; i++) {
+            daily.put(trendStart.plusDays(i), 0L);
+        }
+        List<Map<String, Object>> trendData = appointmentRepository.countByDateRangeGroupByDate(
+                trendStart.atStartOfDay(), today.atTime(LocalTime.MAX));
+        for (Map<String, Object> row : trendData) {
+            LocalDate date = ((java.sql.Date) row.get("date")).toLocalDate();
+            daily.put(date, ((Number) row.get("count")).longValue());
+        }
+
+        synchronized (this) {
+            if (loaded && today.equals(statsDate)
+                    && (todayAppointments != todayCount || pendingPatients != pending
+                        || !paymentCounts.equals(payments) || !dailyCreated.equals(daily))) {
+                driftCount.incrementAndGet();
+                logger.info("运营总览统计对账发现偏差，已以数据库为准修正 - 今日挂号量: {} -> {}, 候诊人数: {} -> {}",
+                        todayAppointments, todayCount, pendingPatients, pending);
+            }
+            statsDate = today;
+            todayAppointments = todayCount;
+            activeDoctorsToday = doctors;
+            pendingPatients = pending;
+            totalPatients = patients;
+            paymentCounts.clear();
+            paymentCounts.putAll(payments);
+            dailyCreated.clear();
+            dailyCreated.putAll(daily);
+            loaded = true;
+            reconcileRequested = false;
+        }
+    }
+
+    private synchronized void apply(AppointmentFacts before, AppointmentFacts after) {
+        if (!loaded) {
+            // 尚未加载，首次读取时会从数据库完整统计
+            return;
+        }
+        appliedChangeCount.incrementAndGet();
+        if (before != null) {
+            adjust(before, -1);
+        }
+        if (after != null) {
+            adjust(after, 1);
+        }
+    }
+
+    private void adjust(AppointmentFacts facts, long delta) {
+        if (statsDate.equals(facts.scheduleDate())) {
+            todayAppointments = clamp(todayAppointments + delta);
+        }
+        if (facts.status() == AppointmentStatus.CHECKED_IN) {
+            pendingPatients = clamp(pendingPatients + delta);
+        }
+        long payments = clamp(paymentCounts.getOrDefault(facts.paymentStatus(), 0L) + delta);
+        if (payments == 0) {
+            paymentCounts.remove(facts.paymentStatus());
+        } else {
+            paymentCounts.put(facts.paymentStatus(), payments);
+        }
+        if (facts.createdDate() != null && dailyCreated.containsKey(facts.createdDate())) {
+            dailyCreated.put(facts.createdDate(), clamp(dailyCreated.get(facts.createdDate()) + delta));
+        }
+    }
+
+    /**
+     * 计数不会小于0；出现负数说明内存数据与数据库不一致，请求下次读取前对账
+     */
+    private long clamp(long count) {
+        if (count < 0) {
+            reconcileRequested = true;
+            return 0;
+        }
+        return count;
+    }
+
+    private Snapshot snapshot() {
+        Map<PaymentStatus, Long> payments = new LinkedHashMap<>();
+        for (PaymentStatus status : PaymentStatus.values()) {
+            if (paymentCounts.containsKey(status)) {
+                payments.put(status, paymentCounts.get(status));
+            }
+        }
+        if (paymentCounts.containsKey(null)) {
+            payments.put(null, paymentCounts.get(null));
+        }
+        return new Snapshot(statsDate, todayAppointments, activeDoctorsToday, pendingPatients, totalPatients,
+                payments, new TreeMap<>(dailyCreated));
+    }
+}
@@ -51,6 +51,12 @@ public class DepartmentService {
     @Autowired
     private LocationRepository locationRepository;
 
+    @Autowired
+    private SymptomKeywordIndex symptomKeywordIndex;
+
+    @Autowired
+    private ReferenceDataCache referenceDataCache;
+
     /**
      * 创建新子科室
      * 
@@ -187,6 +193,7 @@ public class DepartmentService {
             // 6.5 处理症状科室映射表（symptom_department_mapping）
             try {
                 int updatedMappings = departmentRepository.updateSymptomDepartmentMappings(departmentId, 999);
+                symptomKeywordIndex.invalidate();
                 System.out.println("更新了 " + updatedMappings + " 条症状映射记录到未分配科室");
             } catch (Exception e) {
                 System.out.println("处理症状映射时发生错误: " + e.getMessage());
@@ -300,7 +307,7 @@ public class DepartmentService {
      */
     @Transactional(readOnly = true)
     public DepartmentResponseDTO getDepartmentById(Integer departmentId) {
-        Optional<Department> departmentOpt = departmentRepository.findById(departmentId);
+        Optional<Department> departmentOpt = referenceDataCache.getDepartment(departmentId);
 
         if (departmentOpt.isEmpty()) {
             return null;
@@ -331,7 +338,7 @@ public class DepartmentService {
      */
     @Transactional(readOnly = true)
     public List<ParentDepartment> getAllParentDepartments() {
-        return parentDepartmentRepository.findAll();
+        return referenceDataCache.getAllParentDepartments();
     }
 
     /**
@@ -342,13 +349,13 @@ public class DepartmentService {
     @Transactional(readOnly = true)
     public List<DepartmentTreeDTO> getDepartmentTree() {
         // 1. 获取所有父科室（排除ID=999）
-        List<ParentDepartment> parentDepartments = parentDepartmentRepository.findAll()
+        List<ParentDepartment> parentDepartments = referenceDataCache.getAllParentDepartments()
                 .stream()
                 .filter(parent -> !parent.getParentDepartmentId().equals(999))
                 .toList();
 
         // 2. 获取所有子科室（排除ID=999）
-        List<Department> allDepartments = departmentRepository.findAll()
+        List<Department> allDepartments = referenceDataCache.getAllDepartments()
                 .stream()
                 .filter(dept -> !dept.getDepartmentId().equals(999))
                 .toList();
@@ -0,0 +1,107 @@
+package com.example.springboot.service;
+
+import com.example.springboot.dto.report.DoctorHoursResponse;
+import com.example.springboot.dto.report.DoctorHoursRow;
+import com.example.springboot.repository.ScheduleRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 医生出诊工时报表
+ * 分组统计（按医生或医生+日期）与时段时长计算都在数据库中完成，只返回分组结果，
+ * 内存占用与分组数成正比，与排班条数无关。
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DoctorHoursReportService {
+
+    private static final String GROUP_BY_DOCTOR_DATE = "doctor_date";
+
+    private final ScheduleRepository scheduleRepository;
+
+    /**
+     * 统计科室医生工时（一次查询返回全部分组）
+     *
+     * @param groupBy doctor（按医生）或 doctor_date（按医生+日期）
+     */
+    @Transactional(readOnly = true)
+    public List<DoctorHoursResponse> getDoctorHours(Integer departmentId,
+                                                    Integer doctorId,
+                                                    LocalDate startDate,
+                                                    LocalDate endDate,
+                                                    String groupBy) {
+        validate(departmentId, startDate, endDate);
+        List<DoctorHoursRow> rows = GROUP_BY_DOCTOR_DATE.equalsIgnoreCase(groupBy)
+                ? scheduleRepository.aggregateDoctorHoursByDoctorAndDate(departmentId, doctorId, startDate, endDate)
+                : scheduleRepository.aggregateDoctorHoursByDoctor(departmentId, doctorId, startDate, endDate);
+        log.info("医生工时统计完成，departmentId={}, startDate={}, endDate={}, groupBy={}, 分组数 {}",
+                departmentId, startDate, endDate, groupBy, rows.size());
+        return toResponses(rows);
+    }
+
+    /**
+     * 按医生分页统计工时：先分页取医生，再统计这些医生的工时
+     * 分页总数为医生数，按医生+日期分组时一页中的记录数可能多于 pageSize
+     */
+    @Transactional(readOnly = true)
+    public Page<DoctorHoursResponse> getDoctorHoursPage(Integer departmentId,
+                                                        Integer doctorId,
+                                                        LocalDate startDate,
+                                                        LocalDate endDate,
+                                                        String groupBy,
+                                                        Pageable pageable) {
+        validate(departmentId, startDate, endDate);
+        Page<Integer> doctorPage = scheduleRepository.findDoctorIdsWithSchedules(
+                departmentId, doctorId, startDate, endDate, pageable);
+        if (doctorPage.isEmpty()) {
+            return new PageImpl<>(List.of(), pageable, doctorPage.getTotalElements());
+        }
+
+        List<Integer> doctorIds = doctorPage.getContent();
+        List<DoctorHoursRow> rows = GROUP_BY_DOCTOR_DATE.equalsIgnoreCase(groupBy)
+                ? scheduleRepository.aggregateDoctorHoursByDoctorAndDateIn(departmentId, doctorIds, startDate, endDate)
+                : scheduleRepository.aggregateDoctorHoursByDoctorIn(departmentId, doctorIds, startDate, endDate);
+        return new PageImpl<>(toResponses(rows), pageable, doctorPage.getTotalElements());
+    }
+
+    private void validate(Integer departmentId, LocalDate startDate, LocalDate endDate) {
+        if (departmentId == null) {
+            throw new IllegalArgumentException("必须提供科室ID");
+        }
+        if (startDate == null || endDate == null) {
+            throw new IllegalArgumentException("必须提供起止日期");
+        }
+        if (endDate.isBefore(startDate)) {
+            throw new IllegalArgumentException("结束日期不能早于开始日期");
+        }
+    }
+
+    private List<DoctorHoursResponse> toResponses(List<DoctorHoursRow> rows) {
+        List<DoctorHoursResponse> result = new ArrayList<>(rows.size());
+        for (DoctorHoursRow row : rows) {
+            DoctorHoursResponse r = new DoctorHoursResponse();
+            r.setDoctorId(row.getDoctorId());
+            r.setDoctorName(row.getDoctorName());
+            r.setDate(row.getScheduleDate());
+            r.setSessions(row.getSessions() != null ? row.getSessions().intValue() : 0);
+            // 分钟数换算为小时，保留两位小数
+            long minutes = row.getMinutes() != null ? row.getMinutes() : 0L;
+            r.setHours(BigDecimal.valueOf(minutes).divide(BigDecimal.valueOf(60), 2, RoundingMode.HALF_UP));
+            r.setLocations(row.getLocations() != null ? row.getLocations() : "");
+            result.add(r);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.springboot.service;
+
+import com.example.springboot.util.TimingWheel;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 到期处理定时器
+ * 候补通知、加号预约进入待支付状态时登记支付截止时间，由分层时间轮在截止后约一个 tick 内调用对应的超时处理，
+ * 不再依赖每分钟轮询数据库。到期处理在独立的单线程中执行，处理逻辑需自行检查记录当前状态（已支付、已取消的直接跳过）。
+ *
+ * 定时只保存在内存中：应用启动时由各超时任务从数据库重新登记，低频的数据库扫描作为兜底。
+ */
+@Service
+public class ExpiryTimerService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExpiryTimerService.class);
+
+    /**
+     * 到期类型
+     */
+    public enum ExpiryType {
+        WAITLIST_PAYMENT,  // 候补通知后的支付截止
+        ADD_ON_PAYMENT     // 加号预约的支付截止
+    }
+
+    private record TimerKey(ExpiryType type, Integer id) {
+    }
+
+    // 每格时长
+    @Value("${app.expiry-timer.tick-ms:1000}")
+    private long tickMillis;
+
+    // 每层格数；4 层 64 格、每格 1 秒时可直接容纳约 194 天内的截止时间，更远的逐层下放
+    @Value("${app.expiry-timer.wheel-size:64}")
+    private int wheelSize;
+
+    @Value("${app.expiry-timer.levels:4}")
+    private int levelCount;
+
+    private final Map<ExpiryType, Consumer<Integer>> handlers = new ConcurrentHashMap<>();
+    private TimingWheel<TimerKey> wheel;
+    private ScheduledExecutorService ticker;
+
+    // 统计指标
+    private final AtomicLong scheduledCount = new AtomicLong();
+    private final AtomicLong firedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        wheel = new TimingWheel<>(tickMillis, wheelSize, levelCount, System.currentTimeMillis());
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "expiry-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleWithFixedDelay(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+    }
+
+    /**
+     * 注册到期处理（各超时任务启动时调用）
+     */
+    public void registerHandler(ExpiryType type, Consumer<Integer> handler) {
+        handlers.put(type, handler);
+    }
+
+    /**
+     * 登记截止时间（在事务中调用时于提交后生效，回滚则不登记）；同一记录重复登记以最后一次为准
+     */
+    public void schedule(ExpiryType type, Integer id, LocalDateTime deadline) {
+        long deadlineMillis = deadline.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        TimerKey key = new TimerKey(type, id);
+        Runnable action = () -> {
+            synchronized (this) {
+                wheel.schedule(key, deadlineMillis);
+            }
+            scheduledCount.incrementAndGet();
+        };
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * 推进时间轮并执行到期处理（单线程）
+     */
+    private void tick() {
+        List<TimerKey> due;
+        synchronized (this) {
+            due = wheel.advance(System.currentTimeMillis());
+        }
+        for (TimerKey key : due) {
+            Consumer<Integer> handler = handlers.get(key.type());
+            if (handler == null) {
+                logger.warn("未注册到期处理 - type: {}, id: {}", key.type(), key.id());
+                continue;
+            }
+            try {
+                handler.accept(key.id());
+                firedCount.incrementAndGet();
+            } catch (Exception e) {
+                // 失败的记录由数据库兜底扫描处理
+                failedCount.incrementAndGet();
+                logger.error("到期处理失败 - type: {}, id: {}", key.type(), key.id(), e);
+            }
+        }
+    }
+
+    /**
+     * 到期定时器统计（等待中的定时数、已登记、已触发、处理失败次数）
+     */
+    public Map<String, Object> getStats() {
+        int pending;
+        synchronized (this) {
+            pending = wheel.size();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pendingTimers", pending);
+        stats.put("scheduled", scheduledCount.get());
+        stats.put("fired", firedCount.get());
+        stats.put("failed", failedCount.get());
+        return stats;
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.springboot.service;
 
+import com.example.springboot.dto.admin.AdminResponse;
+import com.example.springboot.dto.common.CursorPageResponse;
 import com.example.springboot.dto.leaverequest.*;
 import com.example.springboot.entity.Admin;
 import com.example.springboot.entity.Doctor;
@@ -14,6 +16,9 @@ import com.example.springboot.repository.AdminRepository;
 import com.example.springboot.repository.DoctorRepository;
 import com.example.springboot.repository.LeaveRequestRepository;
 import com.example.springboot.repository.ScheduleRepository;
+import com.example.springboot.util.CursorPaging;
+import com.example.springboot.util.NdjsonWriter;
+import com.example.springboot.util.ScheduleIntervalIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeanUtils;
@@ -21,10 +26,15 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
 import java.time.LocalDate;
+import java.time.LocalTime;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class LeaveRequestService {
@@ -39,6 +49,7 @@ public class LeaveRequestService {
     private final AdminService adminService; // For converting admin entity to DTO
     private final NotificationService notificationService; // For sending notifications
     private final com.example.springboot.repository.AppointmentRepository appointmentRepository;
+    private final NdjsonWriter ndjsonWriter;
 
     @Autowired
     public LeaveRequestService(LeaveRequestRepository leaveRequestRepository,
@@ -48,7 +59,8 @@ public class LeaveRequestService {
                                DoctorService doctorService,
                                AdminService adminService,
                                NotificationService notificationService,
-                               com.example.springboot.repository.AppointmentRepository appointmentRepository) {
+                               com.example.springboot.repository.AppointmentRepository appointmentRepository,
+                               NdjsonWriter ndjsonWriter) {
         this.leaveRequestRepository = leaveRequestRepository;
         this.doctorRepository = doctorRepository;
         this.adminRepository = adminRepository;
@@ -57,6 +69,7 @@ public class LeaveRequestService {
         this.adminService = adminService;
         this.notificationService = notificationService;
         this.appointmentRepository = appointmentRepository;
+        this.ndjsonWriter = ndjsonWriter;
     }
 
     @Transactional(readOnly = true)
@@ -79,6 +92,45 @@ public class LeaveRequestService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * 请假申请游标分页（按ID倒序），cursor 传上一页返回的 nextCursor
+     */
+    @Transactional(readOnly = true)
+    public CursorPageResponse<LeaveRequestResponse> getLeaveRequestPage(LeaveRequestStatus status, String cursor, Integer size) {
+        int pageSize = CursorPaging.pageSize(size);
+        List<LeaveRequest> rows = leaveRequestRepository.findPageWithDetails(
+                status, CursorPaging.parseIntCursor(cursor), CursorPaging.limit(pageSize));
+        Map<Integer, AdminResponse> approvers = resolveApprovers(rows.stream()
+                .filter(request -> request.getApprover() != null)
+                .map(request -> request.getApprover().getAdminId())
+                .collect(Collectors.toSet()));
+        return CursorPaging.toPage(rows, pageSize,
+                request -> convertToResponseDto(request, approvers::get), LeaveRequest::getRequestId);
+    }
+
+    /**
+     * 以 NDJSON 流式导出请假申请（按ID倒序），供批量拉取使用，内存占用与总条数无关
+     */
+    @Transactional(readOnly = true)
+    public void writeLeaveRequestsNdjson(LeaveRequestStatus status, OutputStream out) throws IOException {
+        // 流式读取期间同一连接不能执行其他语句，审批人信息在打开结果集前一次查好
+        Map<Integer, AdminResponse> approvers = resolveApprovers(leaveRequestRepository.findApproverIds(status));
+        try (Stream<LeaveRequest> requests = leaveRequestRepository.streamWithDetails(status)) {
+            ndjsonWriter.write(requests, request -> convertToResponseDto(request, approvers::get), out);
+        }
+    }
+
+    /**
+     * 批量查询审批人信息（审批人只是少数管理员），避免逐条查询
+     */
+    private Map<Integer, AdminResponse> resolveApprovers(Collection<Integer> approverIds) {
+        Map<Integer, AdminResponse> approvers = new HashMap<>();
+        for (Integer approverId : approverIds) {
+            approvers.put(approverId, adminService.findAdminById(approverId));
+        }
+        return approvers;
+    }
+
     @Transactional(readOnly = true)
     public LeaveRequestResponse findLeaveRequestById(Integer id) {
         LeaveRequest leaveRequest = leaveRequestRepository.findById(id)
@@ -287,16 +339,15 @@ public class LeaveRequestService {
                 leaveRequest.getEndTime()
         );
         
-        // 为每个受影响的排班生成替班医生列表
+        // 为每个受影响的排班生成替班医生列表（所有排班一起计算）
+        Map<Integer, List<SubstituteDoctorResponse>> substitutesBySchedule =
+                getSuggestedSubstituteDoctors(affectedSchedules, leaveRequest.getDoctor());
         List<LeaveApprovalDetailResponse.AffectedScheduleWithSubstitutes> scheduleList = new ArrayList<>();
         for (Schedule schedule : affectedSchedules) {
             LeaveApprovalDetailResponse.AffectedScheduleWithSubstitutes item = 
                     new LeaveApprovalDetailResponse.AffectedScheduleWithSubstitutes();
             item.setSchedule(convertToAffectedScheduleResponse(schedule));
-            item.setSubstituteDoctors(getSuggestedSubstituteDoctors(
-                    schedule, 
-                    leaveRequest.getDoctor()
-            ));
+            item.setSubstituteDoctors(substitutesBySchedule.getOrDefault(schedule.getScheduleId(), new ArrayList<>()));
             scheduleList.add(item);
         }
         
@@ -330,94 +381,103 @@ public class LeaveRequestService {
     }
     
     /**
-     * 获取建议的替班医生列表
+     * 获取建议的替班医生列表（排班ID -> 排好序的替班医生）
+     * 同科室候选医生在这些排班日期范围内的有效排班、已批准请假各用一次查询取出，
+     * 建立按医生和日期分桶的排班区间索引和按医生分组的请假列表，再逐个排班判断冲突、请假并排序。
      */
-    private List<SubstituteDoctorResponse> getSuggestedSubstituteDoctors(Schedule schedule, Doctor originalDoctor) {
-        // 获取同科室的所有在职医生
-        List<Doctor> sameDepartmentDoctors = doctorRepository.findByDepartmentAndStatus(
+    private Map<Integer, List<SubstituteDoctorResponse>> getSuggestedSubstituteDoctors(List<Schedule> schedules,
+                                                                                      Doctor originalDoctor) {
+        Map<Integer, List<SubstituteDoctorResponse>> result = new HashMap<>();
+        if (schedules.isEmpty()) {
+            return result;
+        }
+
+        // 获取同科室的所有在职医生，移除请假医生本人
+        List<Doctor> candidates = doctorRepository.findByDepartmentAndStatus(
                 originalDoctor.getDepartment(), 
                 DoctorStatus.active
-        );
-        
-        // 移除请假医生本人
-        sameDepartmentDoctors = sameDepartmentDoctors.stream()
+        ).stream()
                 .filter(d -> !d.getDoctorId().equals(originalDoctor.getDoctorId()))
                 .collect(Collectors.toList());
-        
-        // 检查每个医生在该时间段是否有排班冲突或请假
-        Map<Integer, Boolean> conflictMap = new HashMap<>();
-        Map<Integer, Boolean> onLeaveMap = new HashMap<>();
-        
-        LocalDateTime scheduleStartTime = LocalDateTime.of(
-                schedule.getScheduleDate(), 
-                schedule.getSlot().getStartTime()
-        );
-        LocalDateTime scheduleEndTime = LocalDateTime.of(
-                schedule.getScheduleDate(), 
-                schedule.getSlot().getEndTime()
-        );
-        
-        for (Doctor doctor : sameDepartmentDoctors) {
-            // 检查排班冲突
-            List<Schedule> doctorSchedules = scheduleRepository.findByDoctorAndScheduleDateBetween(
-                    doctor, 
+        if (candidates.isEmpty()) {
+            schedules.forEach(schedule -> result.put(schedule.getScheduleId(), new ArrayList<>()));
+            return result;
+        }
+
+        List<Integer> candidateIds = candidates.stream().map(Doctor::getDoctorId).collect(Collectors.toList());
+        LocalDate startDate = schedules.stream().map(Schedule::getScheduleDate).min(LocalDate::compareTo).get();
+        LocalDate endDate = schedules.stream().map(Schedule::getScheduleDate).max(LocalDate::compareTo).get();
+
+        // 候选医生的排班（按时段时间判断重叠）和已批准请假
+        ScheduleIntervalIndex occupancy = ScheduleIntervalIndex.of(
+                scheduleRepository.findActiveSchedulesByDoctorIdsAndDateRange(candidateIds, startDate, endDate));
+        Map<Integer, List<LeaveRequest>> leavesByDoctor = leaveRequestRepository
+                .findApprovedLeavesByDoctorIdsAndDateRange(candidateIds, startDate.atStartOfDay(), endDate.atTime(LocalTime.MAX))
+                .stream()
+                .collect(Collectors.groupingBy(leave -> leave.getDoctor().getDoctorId()));
+
+        for (Schedule schedule : schedules) {
+            LocalDateTime scheduleStartTime = LocalDateTime.of(
                     schedule.getScheduleDate(), 
-                    schedule.getScheduleDate()
+                    schedule.getSlot().getStartTime()
             );
-            boolean hasConflict = doctorSchedules.stream()
-                    .anyMatch(s -> s.getSlot().getSlotId().equals(schedule.getSlot().getSlotId()));
-            conflictMap.put(doctor.getDoctorId(), hasConflict);
-            
-            // 检查是否在请假中
-            List<LeaveRequest> doctorLeaves = leaveRequestRepository.findByDoctor(doctor);
-            boolean isOnLeave = doctorLeaves.stream()
-                    .filter(leave -> leave.getStatus() == LeaveRequestStatus.APPROVED)
-                    .anyMatch(leave -> {
-                        // 检查请假时间是否与排班时间有交集
-                        return !leave.getEndTime().isBefore(scheduleStartTime) 
-                                && !leave.getStartTime().isAfter(scheduleEndTime);
-                    });
-            onLeaveMap.put(doctor.getDoctorId(), isOnLeave);
+            LocalDateTime scheduleEndTime = LocalDateTime.of(
+                    schedule.getScheduleDate(), 
+                    schedule.getSlot().getEndTime()
+            );
+
+            List<SubstituteDoctorResponse> substitutes = new ArrayList<>(candidates.size());
+            for (Doctor doctor : candidates) {
+                SubstituteDoctorResponse dto = convertToSubstituteResponse(doctor, originalDoctor);
+                // 检查排班冲突
+                dto.setHasConflict(!occupancy.findDoctorOverlaps(
+                        doctor.getDoctorId(), schedule.getScheduleDate(), schedule.getSlot()).isEmpty());
+                // 检查请假时间是否与排班时间有交集
+                dto.setIsOnLeave(leavesByDoctor.getOrDefault(doctor.getDoctorId(), Collections.emptyList()).stream()
+                        .anyMatch(leave -> !leave.getEndTime().isBefore(scheduleStartTime)
+                                && !leave.getStartTime().isAfter(scheduleEndTime)));
+                substitutes.add(dto);
+            }
+            substitutes.sort(this::compareSubstitutes);
+            result.put(schedule.getScheduleId(), substitutes);
         }
-        
-        // 转换为响应DTO并设置匹配等级
-        List<SubstituteDoctorResponse> substitutes = sameDepartmentDoctors.stream()
-                .map(doctor -> {
-                    SubstituteDoctorResponse dto = new SubstituteDoctorResponse();
-                    dto.setDoctorId(doctor.getDoctorId());
-                    dto.setIdentifier(doctor.getIdentifier());
-                    dto.setFullName(doctor.getFullName());
-                    dto.setTitle(doctor.getTitle());
-                    dto.setTitleLevel(doctor.getTitleLevel());
-                    dto.setSpecialty(doctor.getSpecialty());
-                    dto.setPhotoUrl(doctor.getPhotoUrl());
-                    dto.setDepartmentId(doctor.getDepartment().getDepartmentId());
-                    dto.setDepartmentName(doctor.getDepartment().getName());
-                    dto.setHasConflict(conflictMap.get(doctor.getDoctorId()));
-                    dto.setIsOnLeave(onLeaveMap.get(doctor.getDoctorId()));
-                    
-                    // 设置匹配等级和原因
-                    setMatchLevel(dto, doctor, originalDoctor);
-                    
-                    return dto;
-                })
-                .sorted((a, b) -> {
-                    // 优先级排序：无请假 > 无冲突 > 平级 > 升级 > 降级
-                    // 先按请假排序
-                    if (!a.getIsOnLeave().equals(b.getIsOnLeave())) {
-                        return a.getIsOnLeave() ? 1 : -1;
-                    }
-                    // 再按排班冲突排序
-                    if (!a.getHasConflict().equals(b.getHasConflict())) {
-                        return a.getHasConflict() ? 1 : -1;
-                    }
-                    // 最后按职称匹配度排序
-                    int levelCompare = getMatchLevelPriority(a.getMatchLevel()) - getMatchLevelPriority(b.getMatchLevel());
-                    return levelCompare;
-                })
-                .collect(Collectors.toList());
-        
-        return substitutes;
+        return result;
+    }
+
+    /**
+     * 转换为替班医生响应DTO并设置匹配等级
+     */
+    private SubstituteDoctorResponse convertToSubstituteResponse(Doctor doctor, Doctor originalDoctor) {
+        SubstituteDoctorResponse dto = new SubstituteDoctorResponse();
+        dto.setDoctorId(doctor.getDoctorId());
+        dto.setIdentifier(doctor.getIdentifier());
+        dto.setFullName(doctor.getFullName());
+        dto.setTitle(doctor.getTitle());
+        dto.setTitleLevel(doctor.getTitleLevel());
+        dto.setSpecialty(doctor.getSpecialty());
+        dto.setPhotoUrl(doctor.getPhotoUrl());
+        dto.setDepartmentId(doctor.getDepartment().getDepartmentId());
+        dto.setDepartmentName(doctor.getDepartment().getName());
+
+        // 设置匹配等级和原因
+        setMatchLevel(dto, doctor, originalDoctor);
+        return dto;
+    }
+
+    /**
+     * 优先级排序：无请假 > 无冲突 > 平级 > 升级 > 降级
+     */
+    private int compareSubstitutes(SubstituteDoctorResponse a, SubstituteDoctorResponse b) {
+        // 先按请假排序
+        if (!a.getIsOnLeave().equals(b.getIsOnLeave())) {
+            return a.getIsOnLeave() ? 1 : -1;
+        }
+        // 再按排班冲突排序
+        if (!a.getHasConflict().equals(b.getHasConflict())) {
+            return a.getHasConflict() ? 1 : -1;
+        }
+        // 最后按职称匹配度排序
+        return getMatchLevelPriority(a.getMatchLevel()) - getMatchLevelPriority(b.getMatchLevel());
     }
     
     /**
@@ -692,6 +752,11 @@ public class LeaveRequestService {
     }
 
     private LeaveRequestResponse convertToResponseDto(LeaveRequest leaveRequest) {
+        return convertToResponseDto(leaveRequest, adminService::findAdminById);
+    }
+
+    private LeaveRequestResponse convertToResponseDto(LeaveRequest leaveRequest,
+                                                      Function<Integer, AdminResponse> approverLookup) {
         LeaveRequestResponse response = new LeaveRequestResponse();
         BeanUtils.copyProperties(leaveRequest, response, "doctor", "approver");
 
@@ -699,7 +764,7 @@ public class LeaveRequestService {
             response.setDoctor(doctorService.convertToResponseDto(leaveRequest.getDoctor()));
         }
         if (leaveRequest.getApprover() != null) {
-            response.setApprover(adminService.findAdminById(leaveRequest.getApprover().getAdminId())); // 避免无限递归，这里直接通过ID获取简单AdminResponse
+            response.setApprover(approverLookup.apply(leaveRequest.getApprover().getAdminId())); // 避免无限递归，这里直接通过ID获取简单AdminResponse
         }
         return response;
     }
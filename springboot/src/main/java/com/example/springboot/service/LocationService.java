@@ -29,6 +29,9 @@ public class LocationService {
     @Autowired
     private ScheduleRepository scheduleRepository;
 
+    @Autowired
+    private ReferenceDataCache referenceDataCache;
+
     /**
      * 根据科室ID获取所有门诊室名称
      * 
@@ -126,7 +129,7 @@ public class LocationService {
      * @return 所有地点列表
      */
     public List<LocationResponse> getAllLocations() {
-        return locationRepository.findAll().stream()
+        return referenceDataCache.getAllLocations().stream()
                 .map(this::convertToResponse)
                 .collect(Collectors.toList());
     }
@@ -138,7 +141,7 @@ public class LocationService {
      */
     public List<LocationResponse> getUnassignedLocations() {
         // 查询department为null的地点
-        return locationRepository.findAll().stream()
+        return referenceDataCache.getAllLocations().stream()
                 .filter(location -> location.getDepartment() == null)
                 .map(this::convertToResponse)
                 .collect(Collectors.toList());
@@ -24,6 +24,9 @@ public class MapNodeService {
     
     @Autowired
     private MapEdgeRepository mapEdgeRepository;
+
+    @Autowired
+    private NavigationService navigationService;
     
     /**
      * 获取所有节点
@@ -109,7 +112,9 @@ public class MapNodeService {
             node.setIsAccessible(true);
         }
         
-        return mapNodeRepository.save(node);
+        MapNode savedNode = mapNodeRepository.save(node);
+        navigationService.invalidateGraph();
+        return savedNode;
     }
     
     /**
@@ -159,7 +164,9 @@ public class MapNodeService {
             node.setIsAccessible(Boolean.parseBoolean(nodeData.get("isAccessible").toString()));
         }
         
-        return mapNodeRepository.save(node);
+        MapNode savedNode = mapNodeRepository.save(node);
+        navigationService.invalidateGraph();
+        return savedNode;
     }
     
     /**
@@ -176,6 +183,7 @@ public class MapNodeService {
         
         // 删除节点
         mapNodeRepository.delete(node);
+        navigationService.invalidateGraph();
     }
 }
 
@@ -1,18 +1,16 @@
 package com.example.springboot.service;
 
-import com.example.springboot.entity.SymptomDepartmentMapping;
 import com.example.springboot.entity.SymptomSynonym;
 import com.example.springboot.entity.Department;
 import com.example.springboot.entity.PatientProfile;
-import com.example.springboot.repository.SymptomDepartmentMappingRepository;
 import com.example.springboot.repository.SymptomSynonymRepository;
-import com.example.springboot.repository.DepartmentRepository;
 import com.example.springboot.repository.ScheduleRepository;
 import com.example.springboot.repository.PatientProfileRepository;
 import com.example.springboot.repository.AppointmentRepository;
 import com.example.springboot.repository.DoctorRepository;
 import com.example.springboot.entity.Doctor;
 import com.example.springboot.entity.Schedule;
+import com.example.springboot.entity.enums.AppointmentStatus;
 import com.example.springboot.entity.enums.DoctorStatus;
 import com.example.springboot.util.CosineSimilarityCalculator;
 import com.huaban.analysis.jieba.JiebaSegmenter;
@@ -39,18 +37,12 @@ public class NLPService {
 
     private static final Logger logger = LoggerFactory.getLogger(NLPService.class);
 
-    @Autowired
-    private SymptomDepartmentMappingRepository mappingRepository;
-
     @Autowired
     private SymptomSynonymRepository synonymRepository;
 
     @Autowired
     private DoctorRepository doctorRepository;
 
-    @Autowired
-    private DepartmentRepository departmentRepository;
-
     @Autowired
     private ScheduleRepository scheduleRepository;
 
@@ -63,6 +55,12 @@ public class NLPService {
     @Autowired
     private WordVectorService wordVectorService;
 
+    @Autowired
+    private SymptomKeywordIndex symptomKeywordIndex;
+
+    @Autowired
+    private ReferenceDataCache referenceDataCache;
+
     private final JiebaSegmenter segmenter = new JiebaSegmenter();
 
     // 停用词集合（可根据需要扩展）
@@ -96,23 +94,12 @@ public class NLPService {
 
         logger.debug("分词结果: {}", words);
 
-        // 3. 从symptom_department_mapping表学习症状关键词
-        Set<String> symptomKeywords = learnSymptomKeywordsFromMapping();
-
-        // 4. 匹配提取症状关键词
+        // 3. 通过症状关键词索引匹配（索引由symptom_department_mapping表构建，不查询数据库）
         List<String> extractedSymptoms = new ArrayList<>();
         for (String word : words) {
-            // 直接匹配
-            if (symptomKeywords.contains(word)) {
-                extractedSymptoms.add(word);
-            } else {
-                // 模糊匹配（包含关系）
-                for (String symptom : symptomKeywords) {
-                    if (symptom.contains(word) || word.contains(symptom)) {
-                        extractedSymptoms.add(symptom);
-                        break;
-                    }
-                }
+            String symptom = symptomKeywordIndex.match(word);
+            if (symptom != null) {
+                extractedSymptoms.add(symptom);
             }
         }
 
@@ -251,37 +238,6 @@ public class NLPService {
         return normalized;
     }
 
-    /**
-     * 从symptom_department_mapping表学习症状关键词
-     * @return 症状关键词集合
-     */
-    @Transactional(readOnly = true, noRollbackFor = {DataAccessException.class, RuntimeException.class})
-    private Set<String> learnSymptomKeywordsFromMapping() {
-        Set<String> keywords = new HashSet<>();
-        try {
-            List<SymptomDepartmentMapping> mappings = mappingRepository.findAll();
-
-            for (SymptomDepartmentMapping mapping : mappings) {
-                String symptomKeywords = mapping.getSymptomKeywords();
-                if (symptomKeywords != null && !symptomKeywords.trim().isEmpty()) {
-                    // 按逗号分割
-                    String[] parts = symptomKeywords.split("[,，、]");
-                    for (String part : parts) {
-                        String keyword = part.trim();
-                        if (!keyword.isEmpty()) {
-                            keywords.add(keyword);
-                        }
-                    }
-                }
-            }
-
-            logger.debug("从映射表学习的症状关键词数量: {}", keywords.size());
-        } catch (Exception e) {
-            logger.warn("从症状-科室映射表学习关键词失败（可能表不存在），返回空集合: {}", e.getMessage());
-            logger.debug("学习关键词异常详情", e);
-        }
-        return keywords;
-    }
 
 
 /**
@@ -433,7 +389,7 @@ private void adjustByMedicalHistory(List<DepartmentRecommendation> recommendatio
 
     for (DepartmentRecommendation rec : recommendations) {
         // 检查该科室是否与病史相关
-        Department dept = departmentRepository.findById(rec.getDepartmentId()).orElse(null);
+        Department dept = referenceDataCache.getDepartment(rec.getDepartmentId()).orElse(null);
         if (dept != null) {
             // 如果病史关键词与症状关键词有重叠，提升分数
             long overlap = historyKeywords.stream()
@@ -456,7 +412,7 @@ private void adjustDoctorRankingByHistory(List<DoctorRecommendationWithSchedule>
     List<String> historyKeywords = this.extractSymptomKeywords(medicalHistory);
 
     for (DoctorRecommendationWithSchedule rec : recommendations) {
-        Doctor doctor = doctorRepository.findById(rec.getDoctorId()).orElse(null);
+        Doctor doctor = referenceDataCache.getDoctor(rec.getDoctorId()).orElse(null);
         if (doctor != null && doctor.getSpecialty() != null) {
             // 检查医生专长是否与病史相关
             double historyMatch = this.calculateSymptomMatch(historyKeywords, doctor.getSpecialty());
@@ -475,7 +431,7 @@ private void enrichWithScheduleInfo(List<DoctorRecommendationWithSchedule> recom
     LocalDate futureDate = today.plusDays(30);
 
     for (DoctorRecommendationWithSchedule rec : recommendations) {
-        Doctor doctor = doctorRepository.findById(rec.getDoctorId()).orElse(null);
+        Doctor doctor = referenceDataCache.getDoctor(rec.getDoctorId()).orElse(null);
         if (doctor == null) continue;
 
         // 查询未来30天的排班
@@ -520,22 +476,7 @@ private void enrichWithScheduleInfo(List<DoctorRecommendationWithSchedule> recom
  */
 private double calculateDepartmentScore(Department dept, List<String> symptoms) {
     // 基于症状-科室映射的优先级
-    List<SymptomDepartmentMapping> mappings = mappingRepository
-            .findByDepartmentDepartmentId(dept.getDepartmentId());
-
-    double maxPriority = 0.0;
-    for (SymptomDepartmentMapping mapping : mappings) {
-        String keywords = mapping.getSymptomKeywords();
-        if (keywords != null) {
-            String[] parts = keywords.split("[,，、]");
-            for (String part : parts) {
-                if (symptoms.contains(part.trim())) {
-                    maxPriority = Math.max(maxPriority, mapping.getPriority() != null ?
-                            mapping.getPriority() : 1.0);
-                }
-            }
-        }
-    }
+    double maxPriority = symptomKeywordIndex.findMaxPriority(dept.getDepartmentId(), symptoms);
 
     return maxPriority / 10.0; // 归一化到0-1
 }
@@ -553,50 +494,21 @@ private String generateDepartmentReason(Department dept, List<String> symptoms)
  */
 @Transactional(readOnly = true, noRollbackFor = {DataAccessException.class, RuntimeException.class})
 private List<Department> matchDepartmentsBySymptoms(List<String> symptoms) {
-    Set<Integer> departmentIds = new HashSet<>();
-
     try {
         // 扩展同义词
         List<String> expandedSymptoms = expandSynonyms(symptoms);
 
-        // 查询所有症状映射
-        List<SymptomDepartmentMapping> allMappings = mappingRepository.findAll();
-
-        for (SymptomDepartmentMapping mapping : allMappings) {
-            try {
-                String symptomKeywords = mapping.getSymptomKeywords();
-                if (symptomKeywords == null || symptomKeywords.trim().isEmpty()) {
-                    continue;
-                }
-
-                // 检查是否有匹配的症状
-                String[] keywords = symptomKeywords.split("[,，、]");
-                for (String keyword : keywords) {
-                    String trimmedKeyword = keyword.trim();
-                    if (expandedSymptoms.contains(trimmedKeyword)) {
-                        // 安全获取 department，避免懒加载异常
-                        if (mapping.getDepartment() != null) {
-                            departmentIds.add(mapping.getDepartment().getDepartmentId());
-                        }
-                        break;
-                    }
-                }
-            } catch (Exception e) {
-                logger.warn("处理症状映射时出错，跳过该映射: {}", e.getMessage());
-                logger.debug("映射处理异常详情", e);
-                continue;
-            }
+        // 通过倒排索引查找症状对应的科室
+        Set<Integer> departmentIds = symptomKeywordIndex.findDepartmentIds(expandedSymptoms);
+        if (departmentIds.isEmpty()) {
+            return new ArrayList<>();
         }
 
-        // 根据优先级排序科室
-        List<Department> departments = new ArrayList<>();
-        for (Integer deptId : departmentIds) {
-            try {
-                departmentRepository.findById(deptId).ifPresent(departments::add);
-            } catch (Exception e) {
-                logger.warn("查询科室失败，跳过科室ID {}: {}", deptId, e.getMessage());
-            }
-        }
+        // 从基础数据缓存读取匹配的科室
+        List<Department> departments = departmentIds.stream()
+                .map(referenceDataCache::getDepartment)
+                .flatMap(Optional::stream)
+                .collect(Collectors.toCollection(ArrayList::new));
 
         return departments;
     } catch (Exception e) {
@@ -639,11 +551,8 @@ private double calculateTitleScore(Integer titleLevel) {
 private double calculatePopularityScore(Doctor doctor) {
     try {
         // 统计该医生的总预约数（排除已取消的）
-        long appointmentCount = appointmentRepository.findByScheduleDoctorDoctorId(doctor.getDoctorId())
-                .stream()
-                .filter(apt -> apt.getStatus() != null &&
-                        !apt.getStatus().name().equals("cancelled"))
-                .count();
+        long appointmentCount = appointmentRepository.countByScheduleDoctorDoctorIdAndStatusNot(
+                doctor.getDoctorId(), AppointmentStatus.cancelled);
 
         // 归一化到0-1（假设最大预约数为1000，可根据实际情况调整）
         double maxAppointments = 1000.0;
@@ -5,13 +5,19 @@ import com.example.springboot.entity.MapEdge;
 import com.example.springboot.repository.MapNodeRepository;
 import com.example.springboot.repository.MapEdgeRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 导航服务
  * 基于map_edges表进行路径规划和导航指引生成
+ * 节点和路径在内存中构建为不可变的导航图快照，仅在地图节点变更后重新构建；
+ * 入口和二维码节点预先计算最短路径树，最近查询过的路线缓存在LRU中，二者随快照一起失效
  */
 @Service
 public class NavigationService {
@@ -21,6 +27,20 @@ public class NavigationService {
     
     @Autowired
     private MapEdgeRepository mapEdgeRepository;
+
+    // 预计算最短路径树的起点数上限（入口和已激活二维码的节点）
+    @Value("${app.navigation.max-precomputed-sources:64}")
+    private int maxPrecomputedSources;
+
+    @Value("${app.navigation.route-cache-size:2000}")
+    private int routeCacheSize;
+
+    // 统计指标
+    private final AtomicLong routeCacheHits = new AtomicLong();
+    private final AtomicLong routeCacheMisses = new AtomicLong();
+    private final AtomicLong shortestPathTreeHits = new AtomicLong();
+    private final AtomicLong searchCount = new AtomicLong();
+    private final AtomicLong graphBuildCount = new AtomicLong();
     
     /**
      * 路径规划结果
@@ -86,132 +106,473 @@ public class NavigationService {
     }
     
     /**
-     * 计算从起点到终点的导航路径（使用Dijkstra算法）
+     * 导航图快照（不可变）
+     * 节点按下标存储，邻接关系采用CSR压缩存储：节点 i 的出边为 arcTarget[arcOffset[i] .. arcOffset[i+1])，
+     * 双向边在构建时展开为两条弧，查询时不再创建反向边对象。
+     */
+    static final class NavigationGraph {
+        final int nodeCount;
+        final MapNode[] nodes;
+        final Map<Integer, Integer> indexOf;
+        final double[] x;
+        final double[] y;
+        final int[] floor;
+        final int[] arcOffset;
+        final int[] arcTarget;
+        final double[] arcDistance;
+        final int[] arcWalkTime;
+        // A* 启发函数系数：保证 估价 <= 实际最短距离
+        final double distancePerUnit;  // 每单位平面坐标距离对应的最小路径距离
+        final double distancePerFloor; // 每跨一层对应的最小路径距离
+        // 热门起点的最短路径树和路线缓存，随快照一起失效
+        Map<Integer, ShortestPathTree> trees = Collections.emptyMap();
+        RouteCache routeCache;
+
+        NavigationGraph(List<MapNode> allNodes, List<MapEdge> allEdges) {
+            nodeCount = allNodes.size();
+            nodes = allNodes.toArray(new MapNode[0]);
+            indexOf = new HashMap<>(nodeCount * 2);
+            x = new double[nodeCount];
+            y = new double[nodeCount];
+            floor = new int[nodeCount];
+            for (int i = 0; i < nodeCount; i++) {
+                MapNode node = nodes[i];
+                indexOf.put(node.getNodeId(), i);
+                x[i] = node.getCoordinatesX() != null ? node.getCoordinatesX() : 0;
+                y[i] = node.getCoordinatesY() != null ? node.getCoordinatesY() : 0;
+                floor[i] = node.getFloorLevel() != null ? node.getFloorLevel() : 0;
+            }
+
+            // 第一遍：统计每个节点的出度（忽略端点不存在的边）
+            int[] outDegree = new int[nodeCount];
+            int arcCount = 0;
+            for (MapEdge edge : allEdges) {
+                Integer from = indexOf.get(edge.getStartNodeId());
+                Integer to = indexOf.get(edge.getEndNodeId());
+                if (from == null || to == null) {
+                    continue;
+                }
+                outDegree[from]++;
+                arcCount++;
+                if (Boolean.TRUE.equals(edge.getIsBidirectional())) {
+                    outDegree[to]++;
+                    arcCount++;
+                }
+            }
+            arcOffset = new int[nodeCount + 1];
+            for (int i = 0; i < nodeCount; i++) {
+                arcOffset[i + 1] = arcOffset[i] + outDegree[i];
+            }
+
+            // 第二遍：按原有边的顺序填充弧，同时计算启发函数系数
+            arcTarget = new int[arcCount];
+            arcDistance = new double[arcCount];
+            arcWalkTime = new int[arcCount];
+            int[] cursor = Arrays.copyOf(arcOffset, nodeCount);
+            double minPerUnit = Double.MAX_VALUE;
+            double minPerFloor = Double.MAX_VALUE;
+            for (MapEdge edge : allEdges) {
+                Integer from = indexOf.get(edge.getStartNodeId());
+                Integer to = indexOf.get(edge.getEndNodeId());
+                if (from == null || to == null) {
+                    continue;
+                }
+                double distance = edge.getDistance() != null ? edge.getDistance() : 0;
+                int walkTime = edge.getWalkTime() != null ? edge.getWalkTime() : 0;
+                addArc(cursor, from, to, distance, walkTime);
+                if (Boolean.TRUE.equals(edge.getIsBidirectional())) {
+                    addArc(cursor, to, from, distance, walkTime);
+                }
+
+                double planar = Math.hypot(x[to] - x[from], y[to] - y[from]);
+                if (planar > 0) {
+                    minPerUnit = Math.min(minPerUnit, distance / planar);
+                }
+                int floors = Math.abs(floor[to] - floor[from]);
+                if (floors > 0) {
+                    minPerFloor = Math.min(minPerFloor, distance / floors);
+                }
+            }
+            distancePerUnit = minPerUnit == Double.MAX_VALUE ? 0 : minPerUnit;
+            distancePerFloor = minPerFloor == Double.MAX_VALUE ? 0 : minPerFloor;
+        }
+
+        private void addArc(int[] cursor, int from, int to, double distance, int walkTime) {
+            int arc = cursor[from]++;
+            arcTarget[arc] = to;
+            arcDistance[arc] = distance;
+            arcWalkTime[arc] = walkTime;
+        }
+
+        /**
+         * 考虑楼层的估价：平面直线距离和跨楼层数分别换算成最小路径距离，取较大者
+         */
+        double heuristic(int from, int to) {
+            double planar = distancePerUnit * Math.hypot(x[to] - x[from], y[to] - y[from]);
+            double floors = distancePerFloor * Math.abs(floor[to] - floor[from]);
+            return Math.max(planar, floors);
+        }
+    }
+
+    /**
+     * 单线程复用的搜索状态，避免每次查询都分配与节点数等长的数组
+     * 通过搜索编号判断 g 值是否属于本次搜索，无需每次清空
+     */
+    private static final class SearchState {
+        double[] g = new double[0];
+        int[] prevArc = new int[0];
+        int[] prevNode = new int[0];
+        int[] stamp = new int[0];
+        int currentStamp;
+        // 二叉堆（允许重复入堆，出堆时跳过过期项）
+        double[] heapKey = new double[16];
+        int[] heapNode = new int[16];
+        int heapSize;
+        double lastKey;
+
+        void reset(int nodeCount) {
+            if (g.length < nodeCount) {
+                g = new double[nodeCount];
+                prevArc = new int[nodeCount];
+                prevNode = new int[nodeCount];
+                stamp = new int[nodeCount];
+                currentStamp = 0;
+            }
+            if (++currentStamp == Integer.MAX_VALUE) {
+                Arrays.fill(stamp, 0);
+                currentStamp = 1;
+            }
+            heapSize = 0;
+        }
+
+        double g(int node) {
+            return stamp[node] == currentStamp ? g[node] : Double.MAX_VALUE;
+        }
+
+        void setG(int node, double value, int fromNode, int arc) {
+            stamp[node] = currentStamp;
+            g[node] = value;
+            prevNode[node] = fromNode;
+            prevArc[node] = arc;
+        }
+
+        void push(int node, double key) {
+            if (heapSize == heapKey.length) {
+                heapKey = Arrays.copyOf(heapKey, heapSize * 2);
+                heapNode = Arrays.copyOf(heapNode, heapSize * 2);
+            }
+            int i = heapSize++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (heapKey[parent] <= key) {
+                    break;
+                }
+                heapKey[i] = heapKey[parent];
+                heapNode[i] = heapNode[parent];
+                i = parent;
+            }
+            heapKey[i] = key;
+            heapNode[i] = node;
+        }
+
+        /**
+         * 弹出堆顶，返回节点下标，弹出的键值存入 lastKey
+         */
+        int pop() {
+            int top = heapNode[0];
+            lastKey = heapKey[0];
+            heapSize--;
+            if (heapSize > 0) {
+                double key = heapKey[heapSize];
+                int node = heapNode[heapSize];
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= heapSize) {
+                        break;
+                    }
+                    if (child + 1 < heapSize && heapKey[child + 1] < heapKey[child]) {
+                        child++;
+                    }
+                    if (heapKey[child] >= key) {
+                        break;
+                    }
+                    heapKey[i] = heapKey[child];
+                    heapNode[i] = heapNode[child];
+                    i = child;
+                }
+                heapKey[i] = key;
+                heapNode[i] = node;
+            }
+            return top;
+        }
+    }
+
+    /**
+     * 单个起点的最短路径树
+     */
+    private static final class ShortestPathTree {
+        final double[] dist;
+        final int[] prevNode;
+        final int[] prevArc;
+
+        ShortestPathTree(int nodeCount) {
+            dist = new double[nodeCount];
+            prevNode = new int[nodeCount];
+            prevArc = new int[nodeCount];
+        }
+    }
+
+    /**
+     * 最近查询路线的LRU缓存
+     */
+    private static final class RouteCache {
+        private final LinkedHashMap<Long, NavigationPath> entries;
+
+        RouteCache(int capacity) {
+            entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, NavigationPath> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        synchronized NavigationPath get(long key) {
+            return entries.get(key);
+        }
+
+        synchronized void put(long key, NavigationPath path) {
+            entries.put(key, path);
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+    }
+
+    private static final ThreadLocal<SearchState> SEARCH_STATE = ThreadLocal.withInitial(SearchState::new);
+
+    // 导航图快照，节点变更后置空，下次查询时重新构建
+    private volatile NavigationGraph graph;
+
+    /**
+     * 获取导航图快照（不存在时从数据库构建）
+     */
+    NavigationGraph getGraph() {
+        NavigationGraph current = graph;
+        if (current == null) {
+            synchronized (this) {
+                current = graph;
+                if (current == null) {
+                    current = new NavigationGraph(mapNodeRepository.findAll(), mapEdgeRepository.findAll());
+                    current.trees = buildShortestPathTrees(current);
+                    current.routeCache = new RouteCache(routeCacheSize);
+                    graphBuildCount.incrementAndGet();
+                    graph = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 地图节点或路径变更后丢弃导航图快照（在事务中调用时提交后生效）
+     */
+    public void invalidateGraph() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            graph = null;
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                graph = null;
+            }
+        });
+    }
+
+    /**
+     * 计算从起点到终点的导航路径（使用A*算法，估价函数考虑楼层）
      * 
      * @param startNodeId 起点节点ID
      * @param endNodeId 终点节点ID
      * @return 导航路径
      */
     public NavigationPath calculatePath(Integer startNodeId, Integer endNodeId) {
-        // 获取所有节点和边
-        List<MapNode> allNodes = mapNodeRepository.findAll();
-        List<MapEdge> allEdges = mapEdgeRepository.findAll();
-        
-        // 构建图（邻接表）
-        Map<Integer, List<MapEdge>> graph = new HashMap<>();
-        Map<Integer, MapNode> nodeMap = new HashMap<>();
-        
-        for (MapNode node : allNodes) {
-            nodeMap.put(node.getNodeId(), node);
-            graph.put(node.getNodeId(), new ArrayList<>());
+        NavigationGraph graph = getGraph();
+
+        // 1. 最近查询过的路线直接返回
+        long key = ((long) startNodeId << 32) | (endNodeId & 0xFFFFFFFFL);
+        NavigationPath cached = graph.routeCache.get(key);
+        if (cached != null) {
+            routeCacheHits.incrementAndGet();
+            return cached;
         }
-        
-        for (MapEdge edge : allEdges) {
-            graph.get(edge.getStartNodeId()).add(edge);
-            // 如果是双向的，添加反向边
-            if (edge.getIsBidirectional()) {
-                MapEdge reverseEdge = new MapEdge();
-                reverseEdge.setStartNodeId(edge.getEndNodeId());
-                reverseEdge.setEndNodeId(edge.getStartNodeId());
-                reverseEdge.setDistance(edge.getDistance());
-                reverseEdge.setWalkTime(edge.getWalkTime());
-                reverseEdge.setIsBidirectional(true);
-                graph.get(edge.getEndNodeId()).add(reverseEdge);
-            }
+        routeCacheMisses.incrementAndGet();
+
+        Integer start = graph.indexOf.get(startNodeId);
+        Integer end = graph.indexOf.get(endNodeId);
+        if (start == null || end == null) {
+            throw new RuntimeException("无法找到从节点" + startNodeId + "到节点" + endNodeId + "的路径");
         }
-        
-        // Dijkstra算法
-        Map<Integer, Double> dist = new HashMap<>();
-        Map<Integer, MapEdge> prev = new HashMap<>();
-        PriorityQueue<Map.Entry<Integer, Double>> pq = new PriorityQueue<>(
-            Map.Entry.<Integer, Double>comparingByValue()
-        );
-        
-        // 初始化
-        for (Integer nodeId : graph.keySet()) {
-            dist.put(nodeId, Double.MAX_VALUE);
+
+        NavigationPath path;
+        ShortestPathTree tree = graph.trees.get(start);
+        if (tree != null) {
+            // 2. 起点是入口/二维码节点：直接从预计算的最短路径树中读取
+            shortestPathTreeHits.incrementAndGet();
+            if (tree.dist[end] == Double.MAX_VALUE) {
+                throw new RuntimeException("无法找到从节点" + startNodeId + "到节点" + endNodeId + "的路径");
+            }
+            path = buildPath(graph, start, end, tree.prevNode, tree.prevArc);
+        } else {
+            // 3. 其他起点：A*搜索
+            searchCount.incrementAndGet();
+            SearchState state = SEARCH_STATE.get();
+            if (!search(graph, state, start, end)) {
+                throw new RuntimeException("无法找到从节点" + startNodeId + "到节点" + endNodeId + "的路径");
+            }
+            path = buildPath(graph, start, end, state.prevNode, state.prevArc);
         }
-        dist.put(startNodeId, 0.0);
-        pq.offer(new AbstractMap.SimpleEntry<>(startNodeId, 0.0));
-        
+
+        graph.routeCache.put(key, path);
+        return path;
+    }
+
+    /**
+     * A*搜索，end 为 -1 时不设终点、不使用估价函数（即完整的Dijkstra，用于构建最短路径树）
+     *
+     * @return 是否到达终点
+     */
+    private static boolean search(NavigationGraph graph, SearchState state, int start, int end) {
+        state.reset(graph.nodeCount);
+        state.setG(start, 0.0, -1, -1);
+        state.push(start, end < 0 ? 0.0 : graph.heuristic(start, end));
+
         // 主循环
-        while (!pq.isEmpty()) {
-            Map.Entry<Integer, Double> current = pq.poll();
-            Integer currentNodeId = current.getKey();
-            double currentDist = current.getValue();
-            
-            if (currentDist > dist.get(currentNodeId)) {
-                continue;
+        while (state.heapSize > 0) {
+            int current = state.pop();
+            double currentG = state.g(current);
+            double currentH = end < 0 ? 0.0 : graph.heuristic(current, end);
+            if (state.lastKey > currentG + currentH) {
+                continue; // 过期的堆项
             }
-            
-            if (currentNodeId.equals(endNodeId)) {
-                break; // 找到终点
+
+            if (current == end) {
+                return true; // 找到终点
             }
-            
+
             // 遍历邻居
-            for (MapEdge edge : graph.get(currentNodeId)) {
-                Integer neighborId = edge.getEndNodeId();
-                double newDist = currentDist + edge.getDistance();
-                
-                if (newDist < dist.get(neighborId)) {
-                    dist.put(neighborId, newDist);
-                    prev.put(neighborId, edge);
-                    pq.offer(new AbstractMap.SimpleEntry<>(neighborId, newDist));
+            for (int arc = graph.arcOffset[current]; arc < graph.arcOffset[current + 1]; arc++) {
+                int neighbor = graph.arcTarget[arc];
+                double newG = currentG + graph.arcDistance[arc];
+                if (newG < state.g(neighbor)) {
+                    state.setG(neighbor, newG, current, arc);
+                    state.push(neighbor, newG + (end < 0 ? 0.0 : graph.heuristic(neighbor, end)));
                 }
             }
         }
-        
-        // 如果无法到达终点
-        if (dist.get(endNodeId) == Double.MAX_VALUE) {
-            throw new RuntimeException("无法找到从节点" + startNodeId + "到节点" + endNodeId + "的路径");
-        }
-        
-        // 重构路径
+        return false;
+    }
+
+    /**
+     * 根据前驱节点/前驱弧重构路径
+     */
+    private NavigationPath buildPath(NavigationGraph graph, int start, int end, int[] prevNode, int[] prevArc) {
         List<PathStep> steps = new ArrayList<>();
-        Integer currentNodeId = endNodeId;
         double totalDistance = 0;
         int totalTime = 0;
-        
-        while (currentNodeId != null && !currentNodeId.equals(startNodeId)) {
-            MapEdge edge = prev.get(currentNodeId);
-            if (edge == null) break;
-            
-            MapNode fromNode = nodeMap.get(edge.getStartNodeId());
-            MapNode toNode = nodeMap.get(edge.getEndNodeId());
-            
+
+        int current = end;
+        while (current != start) {
+            int arc = prevArc[current];
+            int from = prevNode[current];
+            MapNode fromNode = graph.nodes[from];
+            MapNode toNode = graph.nodes[current];
+            double distance = graph.arcDistance[arc];
+            int walkTime = graph.arcWalkTime[arc];
+
             // 只有整体路径的最后一个节点才是真正的“目的地”
-            boolean isFinalStep = toNode != null && toNode.getNodeId() != null
-                    && toNode.getNodeId().equals(endNodeId);
-            
-            String instruction = generateInstruction(fromNode, toNode, edge, isFinalStep);
-            
+            boolean isFinalStep = current == end;
+
+            String instruction = generateInstruction(fromNode, toNode, distance, walkTime, isFinalStep);
+
             PathStep step = new PathStep(
                 fromNode.getNodeId(),
                 fromNode.getNodeName(),
                 toNode.getNodeId(),
                 toNode.getNodeName(),
-                edge.getDistance(),
-                edge.getWalkTime(),
+                distance,
+                walkTime,
                 instruction,
                 fromNode.getFloorLevel(),
                 toNode.getFloorLevel(),
                 toNode.getNodeType() != null ? toNode.getNodeType().name() : null
             );
-            
-            steps.add(0, step); // 插入到开头
-            totalDistance += edge.getDistance();
-            totalTime += edge.getWalkTime();
-            
-            currentNodeId = edge.getStartNodeId();
+
+            steps.add(step);
+            totalDistance += distance;
+            totalTime += walkTime;
+
+            current = from;
         }
-        
-        return new NavigationPath(steps, totalDistance, totalTime);
+        Collections.reverse(steps);
+
+        return new NavigationPath(Collections.unmodifiableList(steps), totalDistance, totalTime);
+    }
+
+    /**
+     * 构建热门起点（入口、已激活二维码的节点）的最短路径树
+     */
+    private Map<Integer, ShortestPathTree> buildShortestPathTrees(NavigationGraph graph) {
+        Map<Integer, ShortestPathTree> trees = new HashMap<>();
+        SearchState state = new SearchState();
+        for (int i = 0; i < graph.nodeCount && trees.size() < maxPrecomputedSources; i++) {
+            MapNode node = graph.nodes[i];
+            boolean popular = node.getNodeType() == MapNode.NodeType.ENTRANCE
+                    || node.getQrcodeStatus() == MapNode.QRCodeStatus.ACTIVE;
+            if (!popular) {
+                continue;
+            }
+            search(graph, state, i, -1);
+            ShortestPathTree tree = new ShortestPathTree(graph.nodeCount);
+            for (int v = 0; v < graph.nodeCount; v++) {
+                tree.dist[v] = state.g(v);
+                tree.prevNode[v] = state.prevNode[v];
+                tree.prevArc[v] = state.prevArc[v];
+            }
+            trees.put(i, tree);
+        }
+        return trees;
+    }
+
+    /**
+     * 导航缓存统计（路线缓存命中/未命中、最短路径树命中、实时搜索次数）
+     */
+    public Map<String, Object> getRouteStats() {
+        NavigationGraph current = graph;
+        long hits = routeCacheHits.get();
+        long misses = routeCacheMisses.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("graphLoaded", current != null);
+        stats.put("nodeCount", current != null ? current.nodeCount : 0);
+        stats.put("precomputedSources", current != null ? current.trees.size() : 0);
+        stats.put("routeCacheSize", current != null ? current.routeCache.size() : 0);
+        stats.put("routeCacheCapacity", routeCacheSize);
+        stats.put("routeCacheHits", hits);
+        stats.put("routeCacheMisses", misses);
+        stats.put("routeCacheHitRate", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        stats.put("shortestPathTreeHits", shortestPathTreeHits.get());
+        stats.put("searches", searchCount.get());
+        stats.put("graphBuilds", graphBuildCount.get());
+        return stats;
     }
     
     /**
      * 生成导航指引（增强版：更人性化的指引）
      */
-    private String generateInstruction(MapNode fromNode, MapNode toNode, MapEdge edge, boolean isFinalStep) {
+    private String generateInstruction(MapNode fromNode, MapNode toNode, double distance, int walkTime, boolean isFinalStep) {
         // 判断楼层变化
         if (!fromNode.getFloorLevel().equals(toNode.getFloorLevel())) {
             int floorDiff = toNode.getFloorLevel() - fromNode.getFloorLevel();
@@ -221,7 +582,7 @@ public class NavigationService {
             // 判断是电梯还是楼梯
             if (toNode.getNodeType() == MapNode.NodeType.STAIRS) {
                 method = "楼梯";
-                return String.format("🚶 走%s到%d楼，预计%d秒", method, toNode.getFloorLevel(), edge.getWalkTime());
+                return String.format("🚶 走%s到%d楼，预计%d秒", method, toNode.getFloorLevel(), walkTime);
             } else if (toNode.getNodeType() == MapNode.NodeType.ELEVATOR) {
                 method = "电梯";
                 return String.format("🛗 乘坐%s%s到%d楼", method, direction, toNode.getFloorLevel());
@@ -231,8 +592,6 @@ public class NavigationService {
         }
         
         // 同楼层移动 - 计算方向和距离
-        double distance = edge.getDistance();
-        int walkTime = edge.getWalkTime();
         String distanceText = distance < 1 ? "几步" : String.format("约%.0f米", distance);
         String timeText = walkTime < 60 ? String.format("%d秒", walkTime) : String.format("%.1f分钟", walkTime / 60.0);
         
@@ -0,0 +1,238 @@
+package com.example.springboot.service;
+
+import com.example.springboot.dto.notification.NotificationCreateRequest;
+import com.example.springboot.entity.NotificationOutboxEvent;
+import com.example.springboot.entity.enums.NotificationPriority;
+import com.example.springboot.entity.enums.NotificationStatus;
+import com.example.springboot.entity.enums.OutboxStatus;
+import com.example.springboot.repository.NotificationOutboxRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 通知发件箱投递
+ * 定时按事件ID顺序取一批可投递事件，生成通知内容后在一个事务内批量插入通知表并删除这些事件；
+ * 整批失败时逐条重试定位失败事件，失败事件按指数退避重试，超过最大次数标记为 failed。
+ * 同一用户有事件在等待重试时，其后续事件暂不投递，保证每个用户的通知按产生顺序送达。
+ * 仅由定时任务单线程调用（单实例部署）。
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationOutboxDispatcher {
+
+    private static final String INSERT_NOTIFICATION_SQL =
+            "INSERT INTO notifications (user_id, user_type, type, title, content, related_entity, related_id, status, priority, sent_at) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final NotificationOutboxRepository outboxRepository;
+    private final NotificationService notificationService;
+    private final NotificationUnreadCounter unreadCounter;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    // 每批投递的事件数
+    @Value("${app.notification.outbox.batch-size:200}")
+    private int batchSize;
+
+    // 最大失败次数，超过后标记为 failed 不再重试
+    @Value("${app.notification.outbox.max-attempts:5}")
+    private int maxAttempts;
+
+    // 第一次重试的等待时间，之后每次翻倍
+    @Value("${app.notification.outbox.retry-base-delay-ms:5000}")
+    private long retryBaseDelayMillis;
+
+    // 重试等待时间上限
+    @Value("${app.notification.outbox.retry-max-delay-ms:600000}")
+    private long retryMaxDelayMillis;
+
+    // 统计指标
+    private final AtomicLong dispatchedCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong retryCount = new AtomicLong();
+    private final AtomicLong deadCount = new AtomicLong();
+    private final AtomicLong totalLatencyMillis = new AtomicLong();
+    private final AtomicLong maxLatencyMillis = new AtomicLong();
+    private final AtomicLong lastLatencyMillis = new AtomicLong();
+
+    /**
+     * 投递积压事件，直到取不满一批为止
+     */
+    @Scheduled(fixedDelayString = "${app.notification.outbox.poll-interval-ms:1000}")
+    public void dispatch() {
+        try {
+            while (dispatchBatch() >= batchSize) {
+                // 积压较多时连续投递
+            }
+        } catch (Exception e) {
+            log.error("通知发件箱投递失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 投递一批事件，返回本批取到的事件数
+     */
+    private int dispatchBatch() {
+        LocalDateTime now = LocalDateTime.now();
+        List<NotificationOutboxEvent> events = outboxRepository.findDispatchable(now, PageRequest.of(0, batchSize));
+        if (events.isEmpty()) {
+            return 0;
+        }
+
+        // 生成通知内容；生成失败的事件进入重试，该用户之后的事件本批不投递（之前的事件照常投递）
+        Set<String> blockedUsers = new HashSet<>();
+        List<NotificationOutboxEvent> rendered = new ArrayList<>(events.size());
+        List<NotificationCreateRequest> notifications = new ArrayList<>(events.size());
+        for (NotificationOutboxEvent event : events) {
+            if (blockedUsers.contains(userKey(event))) {
+                continue;
+            }
+            try {
+                notifications.add(notificationService.renderEvent(event));
+                rendered.add(event);
+            } catch (RuntimeException e) {
+                blockedUsers.add(userKey(event));
+                markFailed(event, e, now);
+            }
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> deliver(rendered, notifications));
+            recordDelivered(rendered);
+        } catch (RuntimeException e) {
+            log.warn("批量投递 {} 条通知失败，逐条重试: {}", rendered.size(), e.getMessage());
+            Set<String> failedUsers = new HashSet<>();
+            for (int i = 0; i < rendered.size(); i++) {
+                NotificationOutboxEvent event = rendered.get(i);
+                if (failedUsers.contains(userKey(event))) {
+                    continue;
+                }
+                List<NotificationOutboxEvent> single = List.of(event);
+                List<NotificationCreateRequest> singleNotification = List.of(notifications.get(i));
+                try {
+                    transactionTemplate.executeWithoutResult(status -> deliver(single, singleNotification));
+                    recordDelivered(single);
+                } catch (RuntimeException ex) {
+                    failedUsers.add(userKey(event));
+                    markFailed(event, ex, now);
+                }
+            }
+        }
+        batchCount.incrementAndGet();
+        return events.size();
+    }
+
+    /**
+     * 批量插入通知并删除对应事件（同一事务）
+     */
+    private void deliver(List<NotificationOutboxEvent> events, List<NotificationCreateRequest> notifications) {
+        if (events.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(notifications.size());
+        for (int i = 0; i < notifications.size(); i++) {
+            NotificationCreateRequest n = notifications.get(i);
+            NotificationPriority priority = n.getPriority() != null ? n.getPriority() : NotificationPriority.normal;
+            rows.add(new Object[]{
+                    n.getUserId(),
+                    n.getUserType() != null ? n.getUserType().name() : null,
+                    n.getType() != null ? n.getType().name() : null,
+                    n.getTitle(),
+                    n.getContent(),
+                    n.getRelatedEntity(),
+                    n.getRelatedId(),
+                    NotificationStatus.unread.name(),
+                    priority.name(),
+                    Timestamp.valueOf(events.get(i).getCreatedAt()) // 发送时间取事件产生时间
+            });
+        }
+        jdbcTemplate.batchUpdate(INSERT_NOTIFICATION_SQL, rows);
+        outboxRepository.deleteAllByIdInBatch(events.stream().map(NotificationOutboxEvent::getEventId).toList());
+    }
+
+    /**
+     * 投递成功后更新未读数缓存和统计
+     */
+    private void recordDelivered(List<NotificationOutboxEvent> events) {
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, List<NotificationOutboxEvent>> byUser = new LinkedHashMap<>();
+        for (NotificationOutboxEvent event : events) {
+            byUser.computeIfAbsent(userKey(event), k -> new ArrayList<>()).add(event);
+            long latency = Math.max(0, Duration.between(event.getCreatedAt(), now).toMillis());
+            totalLatencyMillis.addAndGet(latency);
+            maxLatencyMillis.accumulateAndGet(latency, Math::max);
+            lastLatencyMillis.set(latency);
+        }
+        for (List<NotificationOutboxEvent> userEvents : byUser.values()) {
+            NotificationOutboxEvent first = userEvents.get(0);
+            unreadCounter.increment(first.getUserId(), first.getUserType(), userEvents.size());
+        }
+        dispatchedCount.addAndGet(events.size());
+    }
+
+    /**
+     * 记录一次失败：未超过最大次数时按指数退避安排重试，否则标记为 failed
+     */
+    private void markFailed(NotificationOutboxEvent event, Exception e, LocalDateTime now) {
+        int attempts = event.getAttempts() + 1;
+        event.setAttempts(attempts);
+        String error = String.valueOf(e.getMessage());
+        event.setLastError(error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error);
+        if (attempts >= maxAttempts) {
+            event.setStatus(OutboxStatus.failed);
+            deadCount.incrementAndGet();
+            log.error("通知事件投递失败已达 {} 次，不再重试 - eventId: {}, 错误: {}", attempts, event.getEventId(), error);
+        } else {
+            long delay = Math.min(retryMaxDelayMillis, retryBaseDelayMillis << Math.min(attempts - 1, 20));
+            event.setNextAttemptAt(now.plusNanos(delay * 1_000_000L));
+            retryCount.incrementAndGet();
+            log.warn("通知事件投递失败，{} ms 后重试 - eventId: {}, 错误: {}", delay, event.getEventId(), error);
+        }
+        outboxRepository.save(event);
+    }
+
+    private static String userKey(NotificationOutboxEvent event) {
+        return event.getUserType() + ":" + event.getUserId();
+    }
+
+    /**
+     * 投递统计（积压数、失败数、投递数、延迟）
+     */
+    public Map<String, Object> getStats() {
+        long dispatched = dispatchedCount.get();
+        LocalDateTime oldestPending = outboxRepository.findOldestPendingCreatedAt();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queueDepth", outboxRepository.countByStatus(OutboxStatus.pending));
+        stats.put("failedEvents", outboxRepository.countByStatus(OutboxStatus.failed));
+        stats.put("oldestPendingAgeMs", oldestPending != null
+                ? Math.max(0, Duration.between(oldestPending, LocalDateTime.now()).toMillis()) : 0L);
+        stats.put("dispatched", dispatched);
+        stats.put("batches", batchCount.get());
+        stats.put("retries", retryCount.get());
+        stats.put("deadLettered", deadCount.get());
+        stats.put("avgLatencyMs", dispatched == 0 ? 0.0 : (double) totalLatencyMillis.get() / dispatched);
+        stats.put("maxLatencyMs", maxLatencyMillis.get());
+        stats.put("lastLatencyMs", lastLatencyMillis.get());
+        return stats;
+    }
+}
@@ -1,30 +1,54 @@
 package com.example.springboot.service;
 
+import com.example.springboot.dto.common.CursorPageResponse;
 import com.example.springboot.dto.notification.NotificationCreateRequest;
 import com.example.springboot.dto.notification.NotificationResponse;
 import com.example.springboot.entity.Notification;
+import com.example.springboot.entity.NotificationOutboxEvent;
+import com.example.springboot.entity.enums.NotificationEventType;
 import com.example.springboot.entity.enums.NotificationPriority;
 import com.example.springboot.entity.enums.NotificationStatus;
 import com.example.springboot.entity.enums.NotificationType;
 import com.example.springboot.entity.enums.UserType;
+import com.example.springboot.exception.BadRequestException;
+import com.example.springboot.repository.NotificationOutboxRepository;
 import com.example.springboot.repository.NotificationRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
 public class NotificationService {
 
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final String CURSOR_SEPARATOR = "_";
+
     private final NotificationRepository notificationRepository;
+    private final NotificationOutboxRepository outboxRepository;
+    private final NotificationUnreadCounter unreadCounter;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public NotificationService(NotificationRepository notificationRepository) {
+    public NotificationService(NotificationRepository notificationRepository,
+                               NotificationOutboxRepository outboxRepository,
+                               NotificationUnreadCounter unreadCounter,
+                               ObjectMapper objectMapper) {
         this.notificationRepository = notificationRepository;
+        this.outboxRepository = outboxRepository;
+        this.unreadCounter = unreadCounter;
+        this.objectMapper = objectMapper;
     }
 
     /**
@@ -44,238 +68,290 @@ public class NotificationService {
         notification.setStatus(NotificationStatus.unread);
 
         Notification saved = notificationRepository.save(notification);
+        unreadCounter.increment(saved.getUserId(), saved.getUserType(), 1);
         return convertToResponse(saved);
     }
 
     /**
-     * 发送预约成功通知
+     * 写入通知事件（只记录事件类型和模板参数，随调用方事务提交，由 NotificationOutboxDispatcher 后台投递）
      */
     @Transactional
-    public NotificationResponse sendAppointmentNotification(Integer patientId, Integer appointmentId,
-                                                           String departmentName, String doctorName,
-                                                           String scheduleDate, String slotName,
-                                                           String locationName, Integer appointmentNumber) {
-        NotificationCreateRequest request = new NotificationCreateRequest();
-        request.setUserId(patientId);
-        request.setUserType(UserType.patient);
-        request.setType(NotificationType.appointment_success);
-        request.setTitle("预约成功");
-        String content = String.format("您的预约已成功创建！\n科室：%s\n医生：%s\n就诊时间：%s %s\n就诊序号：%d\n", 
-                departmentName, doctorName, scheduleDate, slotName, appointmentNumber);
-        if (locationName != null && !locationName.trim().isEmpty()) {
-            content += String.format("就诊地点：%s\n", locationName);
-        }
-        content += "请及时完成支付，祝您早日康复！";
-        request.setContent(content);
-        request.setRelatedEntity("appointment");
-        request.setRelatedId(appointmentId);
-        request.setPriority(NotificationPriority.high);
+    public void enqueueNotification(NotificationCreateRequest request) {
+        appendEvent(NotificationEventType.CUSTOM, request.getUserId(), request.getUserType(), request.getRelatedId(),
+                payload("type", request.getType() != null ? request.getType().name() : null,
+                        "title", request.getTitle(),
+                        "content", request.getContent(),
+                        "relatedEntity", request.getRelatedEntity(),
+                        "priority", request.getPriority() != null ? request.getPriority().name() : null));
+    }
 
-        return createNotification(request);
+    /**
+     * 发送预约成功通知
+     */
+    @Transactional
+    public void sendAppointmentNotification(Integer patientId, Integer appointmentId,
+                                            String departmentName, String doctorName,
+                                            String scheduleDate, String slotName,
+                                            String locationName, Integer appointmentNumber) {
+        appendEvent(NotificationEventType.APPOINTMENT_CREATED, patientId, UserType.patient, appointmentId,
+                payload("departmentName", departmentName, "doctorName", doctorName, "scheduleDate", scheduleDate,
+                        "slotName", slotName, "locationName", locationName, "appointmentNumber", appointmentNumber));
     }
 
     /**
      * 发送支付成功通知
      */
     @Transactional
-    public NotificationResponse sendPaymentSuccessNotification(Integer patientId, Integer appointmentId, 
-                                                               String departmentName, String doctorName, 
-                                                               String scheduleDate, String slotName, 
-                                                               Double fee) {
-        NotificationCreateRequest request = new NotificationCreateRequest();
-        request.setUserId(patientId);
-        request.setUserType(UserType.patient);
-        request.setType(NotificationType.payment_success);
-        request.setTitle("支付成功");
-        request.setContent(String.format("您的挂号费用已支付成功！\n科室：%s\n医生：%s\n就诊时间：%s %s\n费用：¥%.2f\n请按时就诊，祝您早日康复！", 
-                departmentName, doctorName, scheduleDate, slotName, fee));
-        request.setRelatedEntity("appointment");
-        request.setRelatedId(appointmentId);
-        request.setPriority(NotificationPriority.high);
-
-        return createNotification(request);
+    public void sendPaymentSuccessNotification(Integer patientId, Integer appointmentId, 
+                                               String departmentName, String doctorName, 
+                                               String scheduleDate, String slotName, 
+                                               Double fee) {
+        appendEvent(NotificationEventType.PAYMENT_SUCCESS, patientId, UserType.patient, appointmentId,
+                payload("departmentName", departmentName, "doctorName", doctorName, "scheduleDate", scheduleDate,
+                        "slotName", slotName, "fee", fee));
     }
 
     /**
      * 发送候补可用通知
      */
     @Transactional
-    public NotificationResponse sendWaitlistAvailableNotification(Integer patientId, Integer waitlistId,
-                                                                  String departmentName, String doctorName,
-                                                                  String scheduleDate, String slotName) {
-        NotificationCreateRequest request = new NotificationCreateRequest();
-        request.setUserId(patientId);
-        request.setUserType(UserType.patient);
-        request.setType(NotificationType.waitlist_available);
-        request.setTitle("候补号源可用");
-        request.setContent(String.format("您候补的号源现在可以预约了！\n科室：%s\n医生：%s\n就诊时间：%s %s\n请在15分钟内完成支付，超时将自动取消。", 
-                departmentName, doctorName, scheduleDate, slotName));
-        request.setRelatedEntity("waitlist");
-        request.setRelatedId(waitlistId);
-        request.setPriority(NotificationPriority.urgent);
-
-        return createNotification(request);
+    public void sendWaitlistAvailableNotification(Integer patientId, Integer waitlistId,
+                                                  String departmentName, String doctorName,
+                                                  String scheduleDate, String slotName) {
+        appendEvent(NotificationEventType.WAITLIST_AVAILABLE, patientId, UserType.patient, waitlistId,
+                payload("departmentName", departmentName, "doctorName", doctorName, "scheduleDate", scheduleDate,
+                        "slotName", slotName));
     }
 
     /**
      * 发送取消预约通知
      */
     @Transactional
-    public NotificationResponse sendCancellationNotification(Integer patientId, Integer appointmentId,
-                                                             String departmentName, String doctorName,
-                                                             String scheduleDate, String slotName) {
-        NotificationCreateRequest request = new NotificationCreateRequest();
-        request.setUserId(patientId);
-        request.setUserType(UserType.patient);
-        request.setType(NotificationType.cancellation);
-        request.setTitle("预约已取消");
-        request.setContent(String.format("您的预约已取消\n科室：%s\n医生：%s\n就诊时间：%s %s\n如有疑问，请联系医院。", 
-                departmentName, doctorName, scheduleDate, slotName));
-        request.setRelatedEntity("appointment");
-        request.setRelatedId(appointmentId);
-        request.setPriority(NotificationPriority.normal);
-
-        return createNotification(request);
+    public void sendCancellationNotification(Integer patientId, Integer appointmentId,
+                                             String departmentName, String doctorName,
+                                             String scheduleDate, String slotName) {
+        appendEvent(NotificationEventType.APPOINTMENT_CANCELLED, patientId, UserType.patient, appointmentId,
+                payload("departmentName", departmentName, "doctorName", doctorName, "scheduleDate", scheduleDate,
+                        "slotName", slotName));
     }
 
     /**
      * 发送请假批准通知
      */
     @Transactional
-    public NotificationResponse sendLeaveApprovedNotification(Integer doctorId, Integer leaveRequestId,
-                                                              String startTime, String endTime,
-                                                              String approverComments) {
-        NotificationCreateRequest request = new NotificationCreateRequest();
-        request.setUserId(doctorId);
-        request.setUserType(UserType.doctor);
-        request.setType(NotificationType.leave_approved);
-        request.setTitle("请假申请已批准");
-        
-        String content = String.format("您的请假申请已批准！\n请假时间：%s 至 %s", startTime, endTime);
-        if (approverComments != null && !approverComments.trim().isEmpty()) {
-            content += "\n审批意见：" + approverComments;
-        }
-        
-        request.setContent(content);
-        request.setRelatedEntity("leave_request");
-        request.setRelatedId(leaveRequestId);
-        request.setPriority(NotificationPriority.high);
-
-        return createNotification(request);
+    public void sendLeaveApprovedNotification(Integer doctorId, Integer leaveRequestId,
+                                              String startTime, String endTime,
+                                              String approverComments) {
+        appendEvent(NotificationEventType.LEAVE_APPROVED, doctorId, UserType.doctor, leaveRequestId,
+                payload("startTime", startTime, "endTime", endTime, "approverComments", approverComments));
     }
 
     /**
      * 发送请假拒绝通知
      */
     @Transactional
-    public NotificationResponse sendLeaveRejectedNotification(Integer doctorId, Integer leaveRequestId,
-                                                              String startTime, String endTime,
-                                                              String approverComments) {
-        NotificationCreateRequest request = new NotificationCreateRequest();
-        request.setUserId(doctorId);
-        request.setUserType(UserType.doctor);
-        request.setType(NotificationType.leave_rejected);
-        request.setTitle("请假申请已拒绝");
-        
-        String content = String.format("您的请假申请已被拒绝\n请假时间：%s 至 %s", startTime, endTime);
-        if (approverComments != null && !approverComments.trim().isEmpty()) {
-            content += "\n拒绝理由：" + approverComments;
-        }
-        
-        request.setContent(content);
-        request.setRelatedEntity("leave_request");
-        request.setRelatedId(leaveRequestId);
-        request.setPriority(NotificationPriority.high);
-
-        return createNotification(request);
+    public void sendLeaveRejectedNotification(Integer doctorId, Integer leaveRequestId,
+                                              String startTime, String endTime,
+                                              String approverComments) {
+        appendEvent(NotificationEventType.LEAVE_REJECTED, doctorId, UserType.doctor, leaveRequestId,
+                payload("startTime", startTime, "endTime", endTime, "approverComments", approverComments));
     }
 
     /**
      * 发送医生替换通知（给患者）
      */
     @Transactional
-    public NotificationResponse sendDoctorChangeNotification(Integer patientId, Integer appointmentId,
-                                                             String originalDoctorName, String newDoctorName,
-                                                             String departmentName, String scheduleDate, 
-                                                             String slotName, String locationName) {
-        NotificationCreateRequest request = new NotificationCreateRequest();
-        request.setUserId(patientId);
-        request.setUserType(UserType.patient);
-        request.setType(NotificationType.schedule_change);
-        request.setTitle("就诊医生变更通知");
-        
-        String content = String.format("由于原医生 %s 请假，您的预约医生已变更为 %s\n" +
-                "科室：%s\n" +
-                "就诊时间：%s %s\n" +
-                "就诊地点：%s\n" +
-                "如有疑问，请联系医院。给您带来不便，敬请谅解！", 
-                originalDoctorName, newDoctorName, departmentName, scheduleDate, slotName, locationName);
-        
-        request.setContent(content);
-        request.setRelatedEntity("appointment");
-        request.setRelatedId(appointmentId);
-        request.setPriority(NotificationPriority.high);
-
-        return createNotification(request);
+    public void sendDoctorChangeNotification(Integer patientId, Integer appointmentId,
+                                             String originalDoctorName, String newDoctorName,
+                                             String departmentName, String scheduleDate, 
+                                             String slotName, String locationName) {
+        appendEvent(NotificationEventType.DOCTOR_CHANGED, patientId, UserType.patient, appointmentId,
+                payload("originalDoctorName", originalDoctorName, "newDoctorName", newDoctorName,
+                        "departmentName", departmentName, "scheduleDate", scheduleDate,
+                        "slotName", slotName, "locationName", locationName));
     }
 
     /**
      * 发送排班取消通知（给患者）
      */
     @Transactional
-    public NotificationResponse sendScheduleCancelledNotification(Integer patientId, Integer appointmentId,
-                                                                  String doctorName, String departmentName,
-                                                                  String scheduleDate, String slotName) {
-        NotificationCreateRequest request = new NotificationCreateRequest();
-        request.setUserId(patientId);
-        request.setUserType(UserType.patient);
-        request.setType(NotificationType.schedule_cancelled);
-        request.setTitle("预约已取消");
-        
-        String content = String.format("由于医生 %s 请假且无法安排替班，您的预约已被取消\n" +
-                "科室：%s\n" +
-                "原就诊时间：%s %s\n" +
-                "您的挂号费用将原路退回。\n" +
-                "如需重新预约，请联系医院。给您带来不便，敬请谅解！", 
-                doctorName, departmentName, scheduleDate, slotName);
-        
-        request.setContent(content);
-        request.setRelatedEntity("appointment");
-        request.setRelatedId(appointmentId);
-        request.setPriority(NotificationPriority.urgent);
-
-        return createNotification(request);
+    public void sendScheduleCancelledNotification(Integer patientId, Integer appointmentId,
+                                                  String doctorName, String departmentName,
+                                                  String scheduleDate, String slotName) {
+        appendEvent(NotificationEventType.SCHEDULE_CANCELLED, patientId, UserType.patient, appointmentId,
+                payload("doctorName", doctorName, "departmentName", departmentName, "scheduleDate", scheduleDate,
+                        "slotName", slotName));
     }
 
     /**
      * 发送医生降级退款通知（给患者）
      */
     @Transactional
-    public NotificationResponse sendDoctorDowngradeRefundNotification(Integer patientId, Integer appointmentId,
-                                                                       String originalDoctorName, String originalTitle,
-                                                                       String newDoctorName, String newTitle,
-                                                                       String departmentName, String scheduleDate,
-                                                                       String slotName, Double refundAmount) {
+    public void sendDoctorDowngradeRefundNotification(Integer patientId, Integer appointmentId,
+                                                      String originalDoctorName, String originalTitle,
+                                                      String newDoctorName, String newTitle,
+                                                      String departmentName, String scheduleDate,
+                                                      String slotName, Double refundAmount) {
+        appendEvent(NotificationEventType.DOCTOR_DOWNGRADE_REFUND, patientId, UserType.patient, appointmentId,
+                payload("originalDoctorName", originalDoctorName, "originalTitle", originalTitle,
+                        "newDoctorName", newDoctorName, "newTitle", newTitle,
+                        "departmentName", departmentName, "scheduleDate", scheduleDate,
+                        "slotName", slotName, "refundAmount", refundAmount));
+    }
+
+    /**
+     * 按事件类型和模板参数生成通知（发件箱投递时调用）
+     */
+    public NotificationCreateRequest renderEvent(NotificationOutboxEvent event) {
+        Map<String, Object> p = readPayload(event.getPayload());
         NotificationCreateRequest request = new NotificationCreateRequest();
-        request.setUserId(patientId);
-        request.setUserType(UserType.patient);
-        request.setType(NotificationType.schedule_change);
-        request.setTitle("医生变更及退款通知");
-        
-        String content = String.format("由于原医生 %s（%s）请假，您的预约医生已变更为 %s（%s）\n" +
-                "科室：%s\n" +
-                "就诊时间：%s %s\n" +
-                "由于替班医生职称降级，差额挂号费 %.2f 元将原路退回。\n" +
-                "如有疑问，请联系医院。给您带来不便，敬请谅解！", 
-                originalDoctorName, originalTitle, newDoctorName, newTitle,
-                departmentName, scheduleDate, slotName, refundAmount);
-        
-        request.setContent(content);
-        request.setRelatedEntity("appointment");
-        request.setRelatedId(appointmentId);
-        request.setPriority(NotificationPriority.high);
+        request.setUserId(event.getUserId());
+        request.setUserType(event.getUserType());
+        request.setRelatedId(event.getRelatedId());
+
+        switch (event.getEventType()) {
+            case APPOINTMENT_CREATED -> {
+                request.setType(NotificationType.appointment_success);
+                request.setTitle("预约成功");
+                String content = String.format("您的预约已成功创建！\n科室：%s\n医生：%s\n就诊时间：%s %s\n就诊序号：%d\n", 
+                        p.get("departmentName"), p.get("doctorName"), p.get("scheduleDate"), p.get("slotName"),
+                        p.get("appointmentNumber"));
+                String locationName = (String) p.get("locationName");
+                if (locationName != null && !locationName.trim().isEmpty()) {
+                    content += String.format("就诊地点：%s\n", locationName);
+                }
+                content += "请及时完成支付，祝您早日康复！";
+                request.setContent(content);
+                request.setRelatedEntity("appointment");
+                request.setPriority(NotificationPriority.high);
+            }
+            case PAYMENT_SUCCESS -> {
+                request.setType(NotificationType.payment_success);
+                request.setTitle("支付成功");
+                request.setContent(String.format("您的挂号费用已支付成功！\n科室：%s\n医生：%s\n就诊时间：%s %s\n费用：¥%.2f\n请按时就诊，祝您早日康复！", 
+                        p.get("departmentName"), p.get("doctorName"), p.get("scheduleDate"), p.get("slotName"),
+                        toDouble(p.get("fee"))));
+                request.setRelatedEntity("appointment");
+                request.setPriority(NotificationPriority.high);
+            }
+            case WAITLIST_AVAILABLE -> {
+                request.setType(NotificationType.waitlist_available);
+                request.setTitle("候补号源可用");
+                request.setContent(String.format("您候补的号源现在可以预约了！\n科室：%s\n医生：%s\n就诊时间：%s %s\n请在15分钟内完成支付，超时将自动取消。", 
+                        p.get("departmentName"), p.get("doctorName"), p.get("scheduleDate"), p.get("slotName")));
+                request.setRelatedEntity("waitlist");
+                request.setPriority(NotificationPriority.urgent);
+            }
+            case APPOINTMENT_CANCELLED -> {
+                request.setType(NotificationType.cancellation);
+                request.setTitle("预约已取消");
+                request.setContent(String.format("您的预约已取消\n科室：%s\n医生：%s\n就诊时间：%s %s\n如有疑问，请联系医院。", 
+                        p.get("departmentName"), p.get("doctorName"), p.get("scheduleDate"), p.get("slotName")));
+                request.setRelatedEntity("appointment");
+                request.setPriority(NotificationPriority.normal);
+            }
+            case LEAVE_APPROVED, LEAVE_REJECTED -> {
+                boolean approved = event.getEventType() == NotificationEventType.LEAVE_APPROVED;
+                request.setType(approved ? NotificationType.leave_approved : NotificationType.leave_rejected);
+                request.setTitle(approved ? "请假申请已批准" : "请假申请已拒绝");
+
+                String content = String.format(approved ? "您的请假申请已批准！\n请假时间：%s 至 %s" : "您的请假申请已被拒绝\n请假时间：%s 至 %s",
+                        p.get("startTime"), p.get("endTime"));
+                String approverComments = (String) p.get("approverComments");
+                if (approverComments != null && !approverComments.trim().isEmpty()) {
+                    content += (approved ? "\n审批意见：" : "\n拒绝理由：") + approverComments;
+                }
+
+                request.setContent(content);
+                request.setRelatedEntity("leave_request");
+                request.setPriority(NotificationPriority.high);
+            }
+            case DOCTOR_CHANGED -> {
+                request.setType(NotificationType.schedule_change);
+                request.setTitle("就诊医生变更通知");
+                request.setContent(String.format("由于原医生 %s 请假，您的预约医生已变更为 %s\n" +
+                        "科室：%s\n" +
+                        "就诊时间：%s %s\n" +
+                        "就诊地点：%s\n" +
+                        "如有疑问，请联系医院。给您带来不便，敬请谅解！", 
+                        p.get("originalDoctorName"), p.get("newDoctorName"), p.get("departmentName"),
+                        p.get("scheduleDate"), p.get("slotName"), p.get("locationName")));
+                request.setRelatedEntity("appointment");
+                request.setPriority(NotificationPriority.high);
+            }
+            case SCHEDULE_CANCELLED -> {
+                request.setType(NotificationType.schedule_cancelled);
+                request.setTitle("预约已取消");
+                request.setContent(String.format("由于医生 %s 请假且无法安排替班，您的预约已被取消\n" +
+                        "科室：%s\n" +
+                        "原就诊时间：%s %s\n" +
+                        "您的挂号费用将原路退回。\n" +
+                        "如需重新预约，请联系医院。给您带来不便，敬请谅解！", 
+                        p.get("doctorName"), p.get("departmentName"), p.get("scheduleDate"), p.get("slotName")));
+                request.setRelatedEntity("appointment");
+                request.setPriority(NotificationPriority.urgent);
+            }
+            case DOCTOR_DOWNGRADE_REFUND -> {
+                request.setType(NotificationType.schedule_change);
+                request.setTitle("医生变更及退款通知");
+                request.setContent(String.format("由于原医生 %s（%s）请假，您的预约医生已变更为 %s（%s）\n" +
+                        "科室：%s\n" +
+                        "就诊时间：%s %s\n" +
+                        "由于替班医生职称降级，差额挂号费 %.2f 元将原路退回。\n" +
+                        "如有疑问，请联系医院。给您带来不便，敬请谅解！", 
+                        p.get("originalDoctorName"), p.get("originalTitle"), p.get("newDoctorName"), p.get("newTitle"),
+                        p.get("departmentName"), p.get("scheduleDate"), p.get("slotName"), toDouble(p.get("refundAmount"))));
+                request.setRelatedEntity("appointment");
+                request.setPriority(NotificationPriority.high);
+            }
+            case CUSTOM -> {
+                request.setType(p.get("type") != null ? NotificationType.valueOf((String) p.get("type")) : null);
+                request.setTitle((String) p.get("title"));
+                request.setContent((String) p.get("content"));
+                request.setRelatedEntity((String) p.get("relatedEntity"));
+                request.setPriority(p.get("priority") != null ? NotificationPriority.valueOf((String) p.get("priority")) : null);
+            }
+        }
+        return request;
+    }
 
-        return createNotification(request);
+    private void appendEvent(NotificationEventType eventType, Integer userId, UserType userType,
+                             Integer relatedId, Map<String, Object> payload) {
+        NotificationOutboxEvent event = new NotificationOutboxEvent();
+        event.setEventType(eventType);
+        event.setUserId(userId);
+        event.setUserType(userType);
+        event.setRelatedId(relatedId);
+        try {
+            event.setPayload(objectMapper.writeValueAsString(payload));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("通知事件参数序列化失败: " + e.getMessage(), e);
+        }
+        outboxRepository.save(event);
+    }
+
+    /**
+     * 模板参数（键值交替，允许空值）
+     */
+    private static Map<String, Object> payload(Object... keyValues) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            payload.put((String) keyValues[i], keyValues[i + 1]);
+        }
+        return payload;
+    }
+
+    private Map<String, Object> readPayload(String json) {
+        try {
+            return objectMapper.readValue(json, new TypeReference<Map<String, Object>>() {});
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("通知事件参数解析失败: " + e.getMessage(), e);
+        }
+    }
+
+    // JSON 中的整数金额会读成 Integer，统一转为 Double 以匹配 %.2f
+    private static Double toDouble(Object value) {
+        return value instanceof Number number ? number.doubleValue() : null;
     }
 
     /**
@@ -303,12 +379,64 @@ public class NotificationService {
     }
 
     /**
-     * 获取未读通知数量
+     * 游标分页获取用户通知（按发送时间、ID倒序）
+     *
+     * @param unreadOnly 只返回未读通知
+     * @param cursor     上一页返回的 nextCursor，为空时取第一页
+     * @param size       每页条数（1-100）
+     */
+    @Transactional(readOnly = true)
+    public CursorPageResponse<NotificationResponse> getNotificationPage(Integer userId, UserType userType,
+                                                                        boolean unreadOnly, String cursor, int size) {
+        int pageSize = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        // 多取一条判断是否还有下一页
+        Pageable limit = PageRequest.of(0, pageSize + 1);
+
+        List<Notification> notifications;
+        if (cursor == null || cursor.isBlank()) {
+            notifications = unreadOnly
+                    ? notificationRepository.findByUserIdAndUserTypeAndStatusOrderBySentAtDescNotificationIdDesc(
+                            userId, userType, NotificationStatus.unread, limit)
+                    : notificationRepository.findByUserIdAndUserTypeOrderBySentAtDescNotificationIdDesc(
+                            userId, userType, limit);
+        } else {
+            int separator = cursor.lastIndexOf(CURSOR_SEPARATOR);
+            LocalDateTime sentAt;
+            Long notificationId;
+            try {
+                sentAt = LocalDateTime.parse(cursor.substring(0, separator));
+                notificationId = Long.parseLong(cursor.substring(separator + 1));
+            } catch (RuntimeException e) {
+                throw new BadRequestException("无效的分页游标: " + cursor);
+            }
+            notifications = unreadOnly
+                    ? notificationRepository.findPageBeforeByStatus(
+                            userId, userType, NotificationStatus.unread, sentAt, notificationId, limit)
+                    : notificationRepository.findPageBefore(userId, userType, sentAt, notificationId, limit);
+        }
+
+        boolean hasMore = notifications.size() > pageSize;
+        if (hasMore) {
+            notifications = notifications.subList(0, pageSize);
+        }
+        String nextCursor = null;
+        if (hasMore) {
+            Notification last = notifications.get(notifications.size() - 1);
+            nextCursor = last.getSentAt() + CURSOR_SEPARATOR + last.getNotificationId();
+        }
+        List<NotificationResponse> content = notifications.stream()
+                .map(this::convertToResponse)
+                .collect(Collectors.toList());
+        return new CursorPageResponse<>(content, nextCursor, hasMore, pageSize);
+    }
+
+    /**
+     * 获取未读通知数量（优先读缓存）
      */
     @Transactional(readOnly = true)
     public long getUnreadCount(Integer userId, UserType userType) {
-        return notificationRepository.countByUserIdAndUserTypeAndStatus(
-                userId, userType, NotificationStatus.unread);
+        return unreadCounter.get(userId, userType, () -> notificationRepository.countByUserIdAndUserTypeAndStatus(
+                userId, userType, NotificationStatus.unread));
     }
 
     /**
@@ -318,6 +446,9 @@ public class NotificationService {
     public NotificationResponse markAsRead(Long notificationId) {
         Notification notification = notificationRepository.findById(notificationId)
                 .orElseThrow(() -> new RuntimeException("Notification not found with id " + notificationId));
+        if (notification.getStatus() == NotificationStatus.unread) {
+            unreadCounter.increment(notification.getUserId(), notification.getUserType(), -1);
+        }
         
         notification.setStatus(NotificationStatus.read);
         notification.setReadAt(LocalDateTime.now());
@@ -331,16 +462,9 @@ public class NotificationService {
      */
     @Transactional
     public void markAllAsRead(Integer userId, UserType userType) {
-        List<Notification> notifications = notificationRepository
-                .findByUserIdAndUserTypeAndStatusOrderBySentAtDesc(userId, userType, NotificationStatus.unread);
-        
-        LocalDateTime now = LocalDateTime.now();
-        notifications.forEach(notification -> {
-            notification.setStatus(NotificationStatus.read);
-            notification.setReadAt(now);
-        });
-        
-        notificationRepository.saveAll(notifications);
+        // 一条 UPDATE 完成，不逐条加载
+        notificationRepository.markAllAsRead(userId, userType, LocalDateTime.now());
+        unreadCounter.reset(userId, userType);
     }
 
     /**
@@ -350,6 +474,9 @@ public class NotificationService {
     public void deleteNotification(Long notificationId) {
         Notification notification = notificationRepository.findById(notificationId)
                 .orElseThrow(() -> new RuntimeException("Notification not found with id " + notificationId));
+        if (notification.getStatus() == NotificationStatus.unread) {
+            unreadCounter.increment(notification.getUserId(), notification.getUserType(), -1);
+        }
         
         notification.setStatus(NotificationStatus.deleted);
         notificationRepository.save(notification);
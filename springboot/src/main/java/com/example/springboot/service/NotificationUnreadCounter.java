@@ -0,0 +1,109 @@
+package com.example.springboot.service;
+
+import com.example.springboot.entity.enums.UserType;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * 未读通知数缓存（Redis，按 userId + userType）
+ * 读取时未命中则查库并写入；新通知、标记已读、删除等变更在事务提交后增减计数，
+ * 键不存在时不创建（下次读取再查库）。计数带过期时间，缓存与数据库的偶发偏差最多持续一个过期周期。
+ * Redis 不可用时直接查库。
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationUnreadCounter {
+
+    private static final String KEY_PREFIX = "notification:unread:";
+
+    // 键存在时才增减；减到负数说明缓存已偏差，删除后由下次读取重新查库
+    private static final DefaultRedisScript<Long> INCREMENT_IF_EXISTS = new DefaultRedisScript<>(
+            "if redis.call('exists', KEYS[1]) == 0 then return nil end " +
+                    "local v = redis.call('incrby', KEYS[1], ARGV[1]) " +
+                    "if v < 0 then redis.call('del', KEYS[1]) end " +
+                    "return v",
+            Long.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+
+    @Value("${app.notification.unread-cache-ttl-seconds:600}")
+    private long ttlSeconds;
+
+    /**
+     * 读取未读数，未命中时用 loader 查库并写入缓存
+     */
+    public long get(Integer userId, UserType userType, LongSupplier loader) {
+        String key = key(userId, userType);
+        try {
+            String cached = redisTemplate.opsForValue().get(key);
+            if (cached != null) {
+                return Long.parseLong(cached);
+            }
+        } catch (Exception e) {
+            log.warn("读取未读通知数缓存失败，改为查库 - key: {}, 错误: {}", key, e.getMessage());
+            return loader.getAsLong();
+        }
+
+        long count = loader.getAsLong();
+        try {
+            redisTemplate.opsForValue().setIfAbsent(key, String.valueOf(count), ttlSeconds, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            log.warn("写入未读通知数缓存失败 - key: {}, 错误: {}", key, e.getMessage());
+        }
+        return count;
+    }
+
+    /**
+     * 未读数增减（事务提交后生效）
+     */
+    public void increment(Integer userId, UserType userType, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        String key = key(userId, userType);
+        afterCommit(() -> redisTemplate.execute(INCREMENT_IF_EXISTS, List.of(key), String.valueOf(delta)));
+    }
+
+    /**
+     * 未读数清零（全部标记已读，事务提交后生效）
+     */
+    public void reset(Integer userId, UserType userType) {
+        String key = key(userId, userType);
+        afterCommit(() -> redisTemplate.opsForValue().set(key, "0", ttlSeconds, TimeUnit.SECONDS));
+    }
+
+    private void afterCommit(Runnable action) {
+        Runnable safeAction = () -> {
+            try {
+                action.run();
+            } catch (Exception e) {
+                log.warn("更新未读通知数缓存失败: {}", e.getMessage());
+            }
+        };
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            safeAction.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                safeAction.run();
+            }
+        });
+    }
+
+    private static String key(Integer userId, UserType userType) {
+        return KEY_PREFIX + userType + ":" + userId;
+    }
+}
@@ -16,6 +16,9 @@ public class ParentDepartmentService {
     @Autowired
     private ParentDepartmentRepository parentDepartmentRepository;
 
+    @Autowired
+    private ReferenceDataCache referenceDataCache;
+
     /**
      * 创建父科室
      */
@@ -46,7 +49,7 @@ public class ParentDepartmentService {
      * 获取所有父科室
      */
     public List<ParentDepartment> findAll() {
-        return parentDepartmentRepository.findAll();
+        return referenceDataCache.getAllParentDepartments();
     }
 
     /**
@@ -187,6 +187,7 @@ package com.example.springboot.service;
 
 // 导入 Spring Boot 核心组件和实体/DTO
 import com.example.springboot.dto.auth.LoginResponse;
+import com.example.springboot.dto.common.CursorPageResponse;
 import com.example.springboot.dto.common.PageResponse; // 导入新增方法所需的DTO
 import com.example.springboot.dto.patient.MedicalHistoryResponse; // 导入新增方法所需的DTO
 import com.example.springboot.dto.patient.MedicalHistoryUpdateRequest; // 导入新增方法所需的DTO
@@ -199,6 +200,8 @@ import com.example.springboot.entity.enums.PatientStatus; // <<<<<< 确保导入
 import com.example.springboot.exception.ResourceNotFoundException;
 import com.example.springboot.repository.PatientRepository;
 import com.example.springboot.repository.PatientProfileRepository;
+import com.example.springboot.util.CursorPaging;
+import com.example.springboot.util.NdjsonWriter;
 import com.example.springboot.util.PasswordEncoderUtil; // 导入您的密码工具类
 import jakarta.persistence.criteria.JoinType;
 import org.hibernate.Hibernate;
@@ -211,12 +214,15 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.data.domain.PageRequest;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class PatientService {
@@ -224,13 +230,15 @@ public class PatientService {
     private final PatientRepository patientRepository;
     private final PatientProfileRepository patientProfileRepository;
     private final PasswordEncoderUtil passwordEncoderUtil;
+    private final NdjsonWriter ndjsonWriter;
 
     // 构造函数注入
     @Autowired
-    public PatientService(PatientRepository patientRepository, PatientProfileRepository patientProfileRepository, PasswordEncoderUtil passwordEncoderUtil) {
+    public PatientService(PatientRepository patientRepository, PatientProfileRepository patientProfileRepository, PasswordEncoderUtil passwordEncoderUtil, NdjsonWriter ndjsonWriter) {
         this.patientRepository = patientRepository;
         this.patientProfileRepository = patientProfileRepository;
         this.passwordEncoderUtil = passwordEncoderUtil;
+        this.ndjsonWriter = ndjsonWriter;
     }
 
     // =========================================================================
@@ -379,6 +387,27 @@ public class PatientService {
         return patientRepository.findAll();
     }
 
+    /**
+     * 患者游标分页（按ID倒序），cursor 传上一页返回的 nextCursor
+     */
+    @Transactional(readOnly = true)
+    public CursorPageResponse<PatientResponse> getPatientPage(PatientStatus status, String cursor, Integer size) {
+        int pageSize = CursorPaging.pageSize(size);
+        List<Patient> rows = patientRepository.findPageWithProfile(
+                status, CursorPaging.parseLongCursor(cursor), CursorPaging.limit(pageSize));
+        return CursorPaging.toPage(rows, pageSize, this::convertToResponseDto, Patient::getPatientId);
+    }
+
+    /**
+     * 以 NDJSON 流式导出患者（按ID倒序），供批量拉取使用，内存占用与总条数无关
+     */
+    @Transactional(readOnly = true)
+    public void writePatientsNdjson(PatientStatus status, OutputStream out) throws IOException {
+        try (Stream<Patient> patients = patientRepository.streamWithProfile(status)) {
+            ndjsonWriter.write(patients, this::convertToResponseDto, out);
+        }
+    }
+
     @Transactional(readOnly = true)
     public Optional<Patient> findPatientById(Long id) {
         return patientRepository.findById(id);
@@ -27,13 +27,15 @@ import java.util.UUID;
 public class QRCodeService {
     
     private final MapNodeRepository mapNodeRepository;
+    private final NavigationService navigationService;
     
     @Value("${app.qrcode.upload-dir:uploads/qrcodes}")
     private String uploadDir;
     
     @Autowired
-    public QRCodeService(MapNodeRepository mapNodeRepository) {
+    public QRCodeService(MapNodeRepository mapNodeRepository, NavigationService navigationService) {
         this.mapNodeRepository = mapNodeRepository;
+        this.navigationService = navigationService;
     }
     
     /**
@@ -110,7 +112,9 @@ public class QRCodeService {
         node.setQrcodeGeneratedAt(LocalDateTime.now());
         node.setQrcodeStatus(MapNode.QRCodeStatus.ACTIVE);
         
-        return mapNodeRepository.save(node);
+        MapNode savedNode = mapNodeRepository.save(node);
+        navigationService.invalidateGraph(); // 已激活二维码的节点是预计算最短路径树的起点
+        return savedNode;
     }
     
     /**
@@ -143,7 +147,9 @@ public class QRCodeService {
                 .orElseThrow(() -> new ResourceNotFoundException("节点不存在: " + nodeId));
         
         node.setQrcodeStatus(status);
-        return mapNodeRepository.save(node);
+        MapNode savedNode = mapNodeRepository.save(node);
+        navigationService.invalidateGraph();
+        return savedNode;
     }
     
     /**
@@ -154,7 +160,9 @@ public class QRCodeService {
                 .orElseThrow(() -> new ResourceNotFoundException("节点不存在: " + nodeId));
         
         node.setQrcodeStatus(MapNode.QRCodeStatus.INACTIVE);
-        return mapNodeRepository.save(node);
+        MapNode savedNode = mapNodeRepository.save(node);
+        navigationService.invalidateGraph();
+        return savedNode;
     }
     
     /**
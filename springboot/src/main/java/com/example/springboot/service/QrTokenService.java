@@ -0,0 +1,188 @@
+package com.example.springboot.service;
+
+import com.example.springboot.util.BloomFilter;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 签到二维码 Token
+ * Token 自带预约ID、排班ID、过期时间和随机数，并用 HMAC-SHA256 签名：v1.{预约ID}.{排班ID}.{过期时间}.{随机数}.{签名}。
+ * 生成和校验签名都在本地完成（签名按常量时间比较），不访问 Redis，Redis 不可用时仍可签到。
+ *
+ * 签名密钥由 app.qr-token.secret 配置（至少32字节），多节点必须相同；未配置时启动失败，
+ * 不使用随机密钥，避免重启后已发放的二维码全部失效、各节点互相校验不通过。
+ *
+ * 已使用或已作废的 Token 记入本地布隆过滤器（两代轮换），判断是否已使用只查本地，扫码签到全程不访问 Redis，
+ * Redis 变慢或不可用都不会拖慢签到。本节点未记录的 Token（其他节点作废、本节点重启）由预约状态兜底：
+ * 已签到、已取消等非 scheduled 状态的预约不能再签到，预约改到其他排班时 Token 中的排班ID不再匹配。
+ */
+@Service
+public class QrTokenService {
+
+    private static final String VERSION = "v1";
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int NONCE_BYTES = 12;
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    // 签名密钥最小长度（HMAC-SHA256 的输出长度）
+    private static final int MIN_SECRET_BYTES = 32;
+
+    // 签名密钥，多节点部署必须配置相同的密钥
+    @Value("${app.qr-token.secret:}")
+    private String secret;
+
+    // 每代布隆过滤器预计容纳的已使用 Token 数
+    @Value("${app.qr-token.used-filter-capacity:100000}")
+    private int usedFilterCapacity;
+
+    private SecretKeySpec signingKey;
+    private ThreadLocal<Mac> macs;
+    private volatile BloomFilter currentUsed;
+    private volatile BloomFilter previousUsed;
+
+    // 统计指标
+    private final AtomicLong issuedCount = new AtomicLong();
+    private final AtomicLong verifiedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong usedHitCount = new AtomicLong();
+
+    /**
+     * 校验通过的 Token 内容
+     *
+     * @param expiresAt 过期时间（秒级时间戳）
+     */
+    public record QrToken(String token, Integer appointmentId, Integer scheduleId, long expiresAt, String nonce) {
+    }
+
+    @PostConstruct
+    public void init() {
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalStateException("未配置签到二维码签名密钥 app.qr-token.secret");
+        }
+        byte[] keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length < MIN_SECRET_BYTES) {
+            throw new IllegalStateException("签到二维码签名密钥 app.qr-token.secret 长度不能少于" + MIN_SECRET_BYTES + "字节");
+        }
+        signingKey = new SecretKeySpec(keyBytes, HMAC_ALGORITHM);
+        macs = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+                mac.init(signingKey);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("初始化二维码签名失败", e);
+            }
+        });
+        currentUsed = new BloomFilter(usedFilterCapacity, 0.001);
+        previousUsed = new BloomFilter(usedFilterCapacity, 0.001);
+    }
+
+    /**
+     * 生成签名 Token
+     *
+     * @param expireSeconds 有效期（秒）
+     */
+    public String issue(Integer appointmentId, Integer scheduleId, long expireSeconds) {
+        long expiresAt = System.currentTimeMillis() / 1000 + expireSeconds;
+        byte[] nonce = new byte[NONCE_BYTES];
+        secureRandom.nextBytes(nonce);
+        String payload = String.join(".", VERSION, String.valueOf(appointmentId), String.valueOf(scheduleId),
+                String.valueOf(expiresAt), ENCODER.encodeToString(nonce));
+        issuedCount.incrementAndGet();
+        return payload + "." + ENCODER.encodeToString(sign(payload));
+    }
+
+    /**
+     * 校验签名和过期时间
+     *
+     * @return 格式错误、签名不符或已过期时返回 null
+     */
+    public QrToken verify(String token) {
+        String[] parts = token.split("\\.");
+        if (parts.length != 6 || !VERSION.equals(parts[0])) {
+            rejectedCount.incrementAndGet();
+            return null;
+        }
+        String payload = token.substring(0, token.lastIndexOf('.'));
+        try {
+            byte[] signature = DECODER.decode(parts[5]);
+            if (!MessageDigest.isEqual(sign(payload), signature)) {
+                rejectedCount.incrementAndGet();
+                return null;
+            }
+            QrToken qrToken = new QrToken(token, Integer.valueOf(parts[1]), Integer.valueOf(parts[2]),
+                    Long.parseLong(parts[3]), parts[4]);
+            if (qrToken.expiresAt() < System.currentTimeMillis() / 1000) {
+                rejectedCount.incrementAndGet();
+                return null;
+            }
+            verifiedCount.incrementAndGet();
+            return qrToken;
+        } catch (IllegalArgumentException e) {
+            // Base64 或数字格式错误
+            rejectedCount.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Token 是否已在本节点使用或作废（布隆过滤器命中按已使用处理，误判率约 0.1%，患者刷新二维码即可）
+     */
+    public boolean isUsed(QrToken qrToken) {
+        String nonce = qrToken.nonce();
+        if (currentUsed.mightContain(nonce) || previousUsed.mightContain(nonce)) {
+            usedHitCount.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 标记 Token 已使用（签到完成或签到被拒后作废）
+     */
+    public void markUsed(QrToken qrToken) {
+        currentUsed.put(qrToken.nonce());
+    }
+
+    /**
+     * 轮换布隆过滤器，避免误判率随插入数上升
+     * 每24小时执行一次
+     */
+    @Scheduled(fixedDelay = 86400000, initialDelay = 86400000)
+    public void rotateUsedFilter() {
+        previousUsed = currentUsed;
+        currentUsed = new BloomFilter(usedFilterCapacity, 0.001);
+    }
+
+    /**
+     * 二维码 Token 统计（发放数、校验通过数、拒绝数、判定为已使用的次数）
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("issued", issuedCount.get());
+        stats.put("verified", verifiedCount.get());
+        stats.put("rejected", rejectedCount.get());
+        stats.put("usedHits", usedHitCount.get());
+        return stats;
+    }
+
+    private byte[] sign(String payload) {
+        return macs.get().doFinal(payload.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,337 @@
+package com.example.springboot.service;
+
+import com.example.springboot.dto.appointment.AppointmentResponse;
+import com.example.springboot.dto.appointment.QueueEvent;
+import com.example.springboot.dto.appointment.QueueSnapshot;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 叫号队列推送服务（SSE）
+ * 候诊大屏和小程序按排班或科室订阅，签到、叫号、完成就诊、过号等变更在事务提交后推送增量事件，
+ * 客户端不再需要轮询叫号队列接口。
+ *
+ * 每个连接有独立的有界发送缓冲，由共享线程池异步发送，慢连接不会阻塞业务线程；
+ * 缓冲满时丢弃积压事件并发送一个 RESYNC 事件，客户端收到后重新拉取完整队列。
+ * 连接总数有上限，超过上限时拒绝新的订阅。
+ *
+ * 订阅排班时先登记连接再读取快照，读取期间发布的事件暂存在连接的缓冲中，快照发出后再发送，不会丢失；
+ * 每个事件带全局递增的序号，快照记录读取前的序号，客户端丢弃序号不超过快照序号的事件，其余事件按预约ID更新。
+ */
+@Service
+public class QueueStreamService {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueueStreamService.class);
+
+    private static final String SCHEDULE_KEY_PREFIX = "schedule:";
+    private static final String DEPARTMENT_KEY_PREFIX = "department:";
+
+    @Value("${app.queue-stream.max-connections:1000}")
+    private int maxConnections;
+
+    @Value("${app.queue-stream.buffer-size:64}")
+    private int bufferSize;
+
+    // 连接超时后客户端（EventSource）会自动重连
+    @Value("${app.queue-stream.timeout-ms:1800000}")
+    private long timeoutMillis;
+
+    // 订阅键（schedule:1 / department:2）-> 订阅者
+    private final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final ExecutorService sender = Executors.newFixedThreadPool(4, runnable -> {
+        Thread thread = new Thread(runnable, "queue-stream-sender");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // 统计指标
+    private final AtomicLong publishedCount = new AtomicLong();
+    private final AtomicLong rejectedConnectionCount = new AtomicLong();
+    private final AtomicLong droppedEventCount = new AtomicLong();
+
+    /**
+     * 订阅某个排班的叫号队列，订阅成功后先推送一次完整队列
+     * 先登记连接、记录当前序号，再读取快照：读取期间提交的变更一定会作为事件推送给该连接
+     *
+     * @param snapshotLoader 读取完整队列
+     * @return 连接数已达上限时返回 null
+     */
+    public SseEmitter subscribeSchedule(Integer scheduleId, Supplier<List<AppointmentResponse>> snapshotLoader) {
+        Subscriber subscriber = register(SCHEDULE_KEY_PREFIX + scheduleId, true);
+        if (subscriber == null) {
+            return null;
+        }
+        // 事件在事务提交后才分配序号，序号不超过该值的事件对应的变更已提交，一定包含在随后读取的快照中
+        long snapshotSequence = sequence.get();
+        List<AppointmentResponse> snapshot;
+        try {
+            snapshot = snapshotLoader.get();
+        } catch (RuntimeException e) {
+            unregister(subscriber);
+            subscriber.emitter.completeWithError(e);
+            throw e;
+        }
+        subscriber.release(new Message("snapshot", new QueueSnapshot(snapshotSequence, snapshot)));
+        return subscriber.emitter;
+    }
+
+    /**
+     * 订阅某个科室下所有排班的叫号队列变更
+     *
+     * @return 连接数已达上限时返回 null
+     */
+    public SseEmitter subscribeDepartment(Integer departmentId) {
+        Subscriber subscriber = register(DEPARTMENT_KEY_PREFIX + departmentId, false);
+        return subscriber == null ? null : subscriber.emitter;
+    }
+
+    /**
+     * 发布队列变更事件，在事务中调用时提交后才推送
+     */
+    public void publish(QueueEvent event) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            dispatch(event);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                dispatch(event);
+            }
+        });
+    }
+
+    /**
+     * 推送统计（当前连接数、已发布事件数、拒绝连接数、丢弃事件数）
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("connections", connectionCount.get());
+        stats.put("maxConnections", maxConnections);
+        stats.put("topics", subscribers.size());
+        stats.put("published", publishedCount.get());
+        stats.put("rejectedConnections", rejectedConnectionCount.get());
+        stats.put("droppedEvents", droppedEventCount.get());
+        return stats;
+    }
+
+    /**
+     * 心跳：保持代理连接不断开，同时清理已断开的连接
+     * 每20秒执行一次
+     */
+    @Scheduled(fixedDelay = 20000)
+    public void heartbeat() {
+        for (Set<Subscriber> set : subscribers.values()) {
+            for (Subscriber subscriber : set) {
+                subscriber.offer(Message.HEARTBEAT);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sender.shutdownNow();
+        for (Set<Subscriber> set : subscribers.values()) {
+            for (Subscriber subscriber : set) {
+                subscriber.emitter.complete();
+            }
+        }
+    }
+
+    /**
+     * @param holdUntilSnapshot 为 true 时事件先暂存，调用 Subscriber.release 发送快照后才开始发送
+     */
+    private Subscriber register(String key, boolean holdUntilSnapshot) {
+        while (true) {
+            int current = connectionCount.get();
+            if (current >= maxConnections) {
+                rejectedConnectionCount.incrementAndGet();
+                logger.warn("叫号推送连接数已达上限 - 当前连接数: {}, 订阅: {}", current, key);
+                return null;
+            }
+            if (connectionCount.compareAndSet(current, current + 1)) {
+                break;
+            }
+        }
+
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(key, emitter, holdUntilSnapshot);
+        subscribers.compute(key, (k, set) -> {
+            Set<Subscriber> target = set != null ? set : ConcurrentHashMap.newKeySet();
+            target.add(subscriber);
+            return target;
+        });
+        emitter.onCompletion(() -> unregister(subscriber));
+        emitter.onTimeout(() -> unregister(subscriber));
+        emitter.onError(e -> unregister(subscriber));
+        return subscriber;
+    }
+
+    private void unregister(Subscriber subscriber) {
+        if (!subscriber.closed.compareAndSet(false, true)) {
+            return;
+        }
+        connectionCount.decrementAndGet();
+        subscribers.computeIfPresent(subscriber.key, (k, set) -> {
+            set.remove(subscriber);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    private void dispatch(QueueEvent event) {
+        publishedCount.incrementAndGet();
+        event.setSequence(sequence.incrementAndGet());
+        Message message = new Message(event.getType().name().toLowerCase(), event);
+        offerAll(SCHEDULE_KEY_PREFIX + event.getScheduleId(), message);
+        if (event.getDepartmentId() != null) {
+            offerAll(DEPARTMENT_KEY_PREFIX + event.getDepartmentId(), message);
+        }
+    }
+
+    private void offerAll(String key, Message message) {
+        Set<Subscriber> set = subscribers.get(key);
+        if (set == null) {
+            return;
+        }
+        for (Subscriber subscriber : set) {
+            subscriber.offer(message);
+        }
+    }
+
+    /**
+     * 待发送的消息（SseEventBuilder 不能在多个连接间复用，发送时再构建）
+     */
+    private static class Message {
+        private static final Message HEARTBEAT = new Message(null, null);
+
+        private final String name;
+        private final Object data;
+
+        Message(String name, Object data) {
+            this.name = name;
+            this.data = data;
+        }
+
+        SseEmitter.SseEventBuilder toEvent() {
+            if (name == null) {
+                return SseEmitter.event().comment("heartbeat");
+            }
+            return SseEmitter.event().name(name).data(data);
+        }
+    }
+
+    /**
+     * 单个SSE连接：有界发送缓冲 + 串行发送
+     */
+    private class Subscriber {
+        private final String key;
+        private final SseEmitter emitter;
+        private final Deque<Message> buffer = new ArrayDeque<>();
+        private final AtomicBoolean draining = new AtomicBoolean(false);
+        private final AtomicBoolean closed = new AtomicBoolean(false);
+        // 等待快照期间只缓冲不发送（在 synchronized(buffer) 下访问）
+        private boolean holding;
+
+        Subscriber(String key, SseEmitter emitter, boolean holding) {
+            this.key = key;
+            this.emitter = emitter;
+            this.holding = holding;
+        }
+
+        /**
+         * 把快照放在缓冲最前面，开始发送快照及等待期间暂存的事件
+         */
+        void release(Message snapshot) {
+            synchronized (buffer) {
+                buffer.addFirst(snapshot);
+                holding = false;
+            }
+            if (draining.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        void offer(Message message) {
+            if (closed.get()) {
+                return;
+            }
+            synchronized (buffer) {
+                if (buffer.size() >= bufferSize) {
+                    // 客户端跟不上：丢弃积压，让客户端重新拉取完整队列
+                    droppedEventCount.addAndGet(buffer.size());
+                    buffer.clear();
+                    QueueEvent resync = new QueueEvent();
+                    resync.setType(QueueEvent.Type.RESYNC);
+                    resync.setOccurredAt(LocalDateTime.now());
+                    buffer.add(new Message("resync", resync));
+                }
+                buffer.add(message);
+                if (holding) {
+                    return;
+                }
+            }
+            if (draining.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                while (true) {
+                    Message message;
+                    synchronized (buffer) {
+                        message = buffer.poll();
+                    }
+                    if (message == null) {
+                        break;
+                    }
+                    emitter.send(message.toEvent());
+                }
+            } catch (IOException | IllegalStateException e) {
+                // 连接已断开
+                unregister(this);
+                emitter.completeWithError(e);
+                return;
+            } finally {
+                draining.set(false);
+            }
+            // 释放标记后可能有新事件进入缓冲
+            boolean pending;
+            synchronized (buffer) {
+                pending = !buffer.isEmpty();
+            }
+            if (pending && draining.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+    }
+}
@@ -2,16 +2,14 @@ package com.example.springboot.service;
 
 import com.example.springboot.entity.Department;
 import com.example.springboot.entity.Doctor;
-import com.example.springboot.entity.SymptomDepartmentMapping;
+import com.example.springboot.entity.enums.AppointmentStatus;
 import com.example.springboot.entity.enums.DoctorStatus;
 import com.example.springboot.repository.AppointmentRepository;
 import com.example.springboot.repository.DepartmentRepository;
 import com.example.springboot.repository.DoctorRepository;
 import com.example.springboot.repository.ScheduleRepository;
-import com.example.springboot.repository.SymptomDepartmentMappingRepository;
-import com.example.springboot.util.CosineSimilarityCalculator;
-import com.example.springboot.util.TFIDFCalculator;
 import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -48,7 +46,7 @@ public class RecommendationAlgorithmService {
     private DepartmentRepository departmentRepository;
 
     @Autowired
-    private SymptomDepartmentMappingRepository mappingRepository;
+    private SymptomKeywordIndex symptomKeywordIndex;
 
     @Autowired
     private AppointmentRepository appointmentRepository;
@@ -62,6 +60,16 @@ public class RecommendationAlgorithmService {
     // 缓存：医生ID -> 特征向量 (避免每次重复计算医生向量)
     private final Map<Integer, INDArray> doctorVectorCache = new ConcurrentHashMap<>();
 
+    // 可参与AI召回的医生（在职且有擅长领域向量）
+    private final Set<Integer> recallableDoctorIds = ConcurrentHashMap.newKeySet();
+
+    // AI召回用的医生向量矩阵（按行归一化），医生变更后标记为过期，下次召回时重建
+    private volatile DoctorEmbeddingMatrix embeddingMatrix;
+    private volatile boolean embeddingMatrixDirty = true;
+
+    // 向量缓存是否已覆盖全部医生；启动预计算或医生变更时编码失败则为 false，下次召回前补齐
+    private volatile boolean doctorVectorsComplete = false;
+
     // 权重配置（可根据实际效果调整）
     private static final double W1_SYMPTOM_MATCH = 0.4;      // 症状匹配度权重
     private static final double W2_DEPARTMENT_MATCH = 0.3;  // 科室匹配度权重
@@ -110,16 +118,54 @@ public class RecommendationAlgorithmService {
 
                     if (vector != null) {
                         doctorVectorCache.put(doc.getDoctorId(), vector);
+                        if (doc.getStatus() == DoctorStatus.active) {
+                            recallableDoctorIds.add(doc.getDoctorId());
+                        }
                         count++;
                     }
                 }
             }
+            embeddingMatrixDirty = true;
+            doctorVectorsComplete = true;
             logger.info("✅ 已构建 {} 位医生的 AI 语义索引。", count);
         } catch (ExceptionInInitializerError | NoClassDefFoundError e) {
             logger.warn("⚠️ ND4J 不可用，无法构建医生向量缓存: {}", e.getMessage());
         }
     }
 
+    /**
+     * 医生新增、修改、删除后更新该医生的向量缓存（由 DoctorChangeListener 在事务提交后调用）
+     *
+     * @param specialty 擅长领域，删除时为 null
+     * @param recallable 是否在职（可参与AI召回）
+     */
+    public void onDoctorChanged(Integer doctorId, String specialty, boolean recallable) {
+        if (doctorId == null || wordVectorService == null || !wordVectorService.isReady()) {
+            return;
+        }
+
+        try {
+            INDArray vector = null;
+            if (specialty != null && !specialty.trim().isEmpty()) {
+                vector = wordVectorService.encodeText(nlpService.segmentText(specialty));
+            }
+            if (vector != null) {
+                doctorVectorCache.put(doctorId, vector);
+            } else {
+                doctorVectorCache.remove(doctorId);
+            }
+            if (vector != null && recallable) {
+                recallableDoctorIds.add(doctorId);
+            } else {
+                recallableDoctorIds.remove(doctorId);
+            }
+            embeddingMatrixDirty = true;
+        } catch (ExceptionInInitializerError | NoClassDefFoundError e) {
+            doctorVectorsComplete = false;
+            logger.warn("⚠️ ND4J 不可用，无法更新医生向量: {}", e.getMessage());
+        }
+    }
+
     /**
      * 混合推荐策略（升级版：AI可用于召回）
      *
@@ -329,11 +375,8 @@ public class RecommendationAlgorithmService {
     private double calculatePopularityScore(Doctor doctor) {
         try {
             // 统计该医生的总预约数（排除已取消的）
-            long appointmentCount = appointmentRepository.findByScheduleDoctorDoctorId(doctor.getDoctorId())
-                    .stream()
-                    .filter(apt -> apt.getStatus() != null &&
-                            !apt.getStatus().name().equals("cancelled"))
-                    .count();
+            long appointmentCount = appointmentRepository.countByScheduleDoctorDoctorIdAndStatusNot(
+                    doctor.getDoctorId(), AppointmentStatus.cancelled);
 
             // 归一化到0-1（假设最大预约数为1000，可根据实际情况调整）
             double maxAppointments = 1000.0;
@@ -433,6 +476,9 @@ public class RecommendationAlgorithmService {
             logger.warn("AI模型未就绪，无法进行AI召回");
             return new ArrayList<>();
         }
+        if (maxCandidates <= 0) {
+            return new ArrayList<>();
+        }
 
         // 1. 计算患者症状的向量
         INDArray symptomVector = wordVectorService.encodeText(symptomKeywords);
@@ -441,57 +487,161 @@ public class RecommendationAlgorithmService {
             return new ArrayList<>();
         }
 
-        // 2. 获取所有活跃医生
-        List<Doctor> allDoctors = doctorRepository.findAll().stream()
-                .filter(d -> d.getStatus() == DoctorStatus.active)
-                .filter(d -> d.getSpecialty() != null && !d.getSpecialty().trim().isEmpty())
-                .collect(Collectors.toList());
+        // 2. 一次矩阵-向量乘法计算所有在职医生与症状的余弦相似度（矩阵各行已归一化）
+        ensureDoctorVectors();
+        DoctorEmbeddingMatrix matrix = getEmbeddingMatrix();
+        if (matrix == null || matrix.doctorIds.length == 0) {
+            return new ArrayList<>();
+        }
+        double norm = symptomVector.norm2Number().doubleValue();
+        if (norm == 0) {
+            return new ArrayList<>();
+        }
+        INDArray query = symptomVector.castTo(matrix.vectors.dataType()).reshape(matrix.dimension, 1).div(norm);
+        float[] similarities = matrix.vectors.mmul(query).data().asFloat();
 
-        logger.debug("全量医生数量: {}", allDoctors.size());
+        logger.debug("参与召回的医生数量: {}", matrix.doctorIds.length);
 
-        // 3. 计算每个医生与症状的相似度
-        List<DoctorScore> doctorScores = new ArrayList<>();
-        for (Doctor doctor : allDoctors) {
-            // 优先使用缓存的向量
-            INDArray doctorVector = doctorVectorCache.get(doctor.getDoctorId());
+        // 3. 小顶堆取相似度最高的 maxCandidates 个（只保留相似度大于阈值的医生，避免召回不相关的）
+        PriorityQueue<int[]> topK = new PriorityQueue<>(maxCandidates + 1,
+                (a, b) -> Float.compare(similarities[a[0]], similarities[b[0]]));
+        for (int row = 0; row < similarities.length; row++) {
+            if (similarities[row] <= 0.1f) { // 阈值可调
+                continue;
+            }
+            if (topK.size() < maxCandidates) {
+                topK.offer(new int[]{row});
+            } else if (similarities[row] > similarities[topK.peek()[0]]) {
+                topK.poll();
+                topK.offer(new int[]{row});
+            }
+        }
 
-            // 如果没有缓存，实时计算（但不会缓存，避免影响性能）
-            if (doctorVector == null) {
-                List<String> keywords = nlpService.segmentText(doctor.getSpecialty());
-                doctorVector = wordVectorService.encodeText(keywords);
-                if (doctorVector == null) {
-                    continue;
+        List<Integer> rankedIds = new ArrayList<>(topK.size());
+        while (!topK.isEmpty()) {
+            rankedIds.add(matrix.doctorIds[topK.poll()[0]]);
+        }
+        Collections.reverse(rankedIds);
+
+        // 4. 只加载召回到的医生，按相似度排序返回
+        Map<Integer, Doctor> doctorsById = new HashMap<>();
+        for (Doctor doctor : doctorRepository.findAllById(rankedIds)) {
+            doctorsById.put(doctor.getDoctorId(), doctor);
+        }
+        return rankedIds.stream()
+                .map(doctorsById::get)
+                .filter(d -> d != null && d.getStatus() == DoctorStatus.active)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 补齐缺失的医生向量：启动预计算失败或医生变更时未能编码的医生，在召回前实时编码并加入缓存，
+     * 避免这些医生一直不参与召回（已缓存的医生不重复编码）
+     */
+    private void ensureDoctorVectors() {
+        if (doctorVectorsComplete) {
+            return;
+        }
+        synchronized (this) {
+            if (doctorVectorsComplete) {
+                return;
+            }
+            try {
+                int count = 0;
+                for (Doctor doc : doctorRepository.findAll()) {
+                    if (doc.getSpecialty() == null || doc.getSpecialty().trim().isEmpty()
+                            || doctorVectorCache.containsKey(doc.getDoctorId())) {
+                        continue;
+                    }
+                    INDArray vector = wordVectorService.encodeText(nlpService.segmentText(doc.getSpecialty()));
+                    if (vector == null) {
+                        continue;
+                    }
+                    doctorVectorCache.put(doc.getDoctorId(), vector);
+                    if (doc.getStatus() == DoctorStatus.active) {
+                        recallableDoctorIds.add(doc.getDoctorId());
+                    }
+                    count++;
+                }
+                if (count > 0) {
+                    embeddingMatrixDirty = true;
                 }
+                doctorVectorsComplete = true;
+                logger.info("✅ 已补充 {} 位医生的 AI 语义索引。", count);
+            } catch (ExceptionInInitializerError | NoClassDefFoundError e) {
+                logger.warn("⚠️ ND4J 不可用，无法补充医生向量: {}", e.getMessage());
             }
+        }
+    }
 
-            // 计算相似度
-            double similarity = wordVectorService.calculateSimilarity(symptomVector, doctorVector);
-
-            // 只保留相似度大于阈值的医生（避免召回不相关的）
-            if (similarity > 0.1) { // 阈值可调
-                doctorScores.add(new DoctorScore(doctor, similarity));
+    /**
+     * 获取医生向量矩阵（过期时由向量缓存重建）
+     */
+    private DoctorEmbeddingMatrix getEmbeddingMatrix() {
+        if (!embeddingMatrixDirty) {
+            return embeddingMatrix;
+        }
+        synchronized (this) {
+            if (embeddingMatrixDirty) {
+                embeddingMatrixDirty = false;
+                try {
+                    embeddingMatrix = buildEmbeddingMatrix();
+                } catch (ExceptionInInitializerError | NoClassDefFoundError e) {
+                    logger.warn("⚠️ ND4J 不可用，无法构建医生向量矩阵: {}", e.getMessage());
+                    embeddingMatrix = null;
+                }
             }
+            return embeddingMatrix;
         }
+    }
 
-        // 4. 按相似度排序，返回Top-N
-        doctorScores.sort((a, b) -> Double.compare(b.score, a.score));
+    private DoctorEmbeddingMatrix buildEmbeddingMatrix() {
+        List<Integer> ids = new ArrayList<>();
+        List<float[]> rows = new ArrayList<>();
+        int dimension = -1;
+        for (Integer doctorId : recallableDoctorIds) {
+            INDArray vector = doctorVectorCache.get(doctorId);
+            if (vector == null) {
+                continue;
+            }
+            float[] row = vector.toFloatVector();
+            double norm = 0;
+            for (float v : row) {
+                norm += v * v;
+            }
+            if (norm == 0 || (dimension >= 0 && row.length != dimension)) {
+                continue;
+            }
+            dimension = row.length;
+            float scale = (float) (1.0 / Math.sqrt(norm));
+            for (int i = 0; i < row.length; i++) {
+                row[i] *= scale;
+            }
+            ids.add(doctorId);
+            rows.add(row);
+        }
+        if (ids.isEmpty()) {
+            return new DoctorEmbeddingMatrix(new int[0], null, 0);
+        }
 
-        return doctorScores.stream()
-                .limit(maxCandidates)
-                .map(ds -> ds.doctor)
-                .collect(Collectors.toList());
+        INDArray vectors = Nd4j.create(rows.toArray(new float[0][]));
+        int[] doctorIds = ids.stream().mapToInt(Integer::intValue).toArray();
+        logger.info("✅ 已构建医生向量矩阵: {} x {}", doctorIds.length, dimension);
+        return new DoctorEmbeddingMatrix(doctorIds, vectors, dimension);
     }
 
     /**
-     * 医生评分辅助类
+     * 医生向量矩阵：第 i 行为 doctorIds[i] 的归一化向量
      */
-    private static class DoctorScore {
-        Doctor doctor;
-        double score;
-
-        DoctorScore(Doctor doctor, double score) {
-            this.doctor = doctor;
-            this.score = score;
+    private static class DoctorEmbeddingMatrix {
+        final int[] doctorIds;
+        final INDArray vectors;
+        final int dimension;
+
+        DoctorEmbeddingMatrix(int[] doctorIds, INDArray vectors, int dimension) {
+            this.doctorIds = doctorIds;
+            this.vectors = vectors;
+            this.dimension = dimension;
         }
     }
 
@@ -500,36 +650,16 @@ public class RecommendationAlgorithmService {
      */
     @Transactional(readOnly = true, noRollbackFor = {DataAccessException.class, RuntimeException.class})
     private List<Department> matchDepartmentsBySymptoms(List<String> symptoms) {
-        Set<Integer> departmentIds = new HashSet<>();
-        
         // 扩展同义词
         List<String> expandedSymptoms = nlpService.expandSynonyms(symptoms);
-        
-        // 查询所有症状映射
-        List<SymptomDepartmentMapping> allMappings = mappingRepository.findAll();
-        
-        for (SymptomDepartmentMapping mapping : allMappings) {
-            String symptomKeywords = mapping.getSymptomKeywords();
-            if (symptomKeywords == null || symptomKeywords.trim().isEmpty()) {
-                continue;
-            }
-            
-            // 检查是否有匹配的症状
-            String[] keywords = symptomKeywords.split("[,，、]");
-            for (String keyword : keywords) {
-                String trimmedKeyword = keyword.trim();
-                if (expandedSymptoms.contains(trimmedKeyword)) {
-                    departmentIds.add(mapping.getDepartment().getDepartmentId());
-                    break;
-                }
-            }
-        }
-        
-        // 根据优先级排序科室
-        List<Department> departments = new ArrayList<>();
-        for (Integer deptId : departmentIds) {
-            departmentRepository.findById(deptId).ifPresent(departments::add);
+
+        // 通过倒排索引查找症状对应的科室
+        Set<Integer> departmentIds = symptomKeywordIndex.findDepartmentIds(expandedSymptoms);
+        if (departmentIds.isEmpty()) {
+            return new ArrayList<>();
         }
+
+        List<Department> departments = new ArrayList<>(departmentRepository.findAllById(departmentIds));
         
         return departments;
     }
@@ -0,0 +1,246 @@
+package com.example.springboot.service;
+
+import com.example.springboot.entity.Department;
+import com.example.springboot.entity.Doctor;
+import com.example.springboot.entity.Location;
+import com.example.springboot.entity.ParentDepartment;
+import com.example.springboot.entity.TimeSlot;
+import com.example.springboot.repository.DepartmentRepository;
+import com.example.springboot.repository.DoctorRepository;
+import com.example.springboot.repository.LocationRepository;
+import com.example.springboot.repository.ParentDepartmentRepository;
+import com.example.springboot.repository.TimeSlotRepository;
+import com.example.springboot.util.BoundedCache;
+import jakarta.annotation.PostConstruct;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * 基础数据本地缓存（时段、父科室、科室、诊室、医生）
+ * 这些表很少变化，却在自动排班、科室树、智能导诊推荐等高频路径上反复查询，缓存后大部分请求不再访问数据库。
+ *
+ * 缓存的是已脱离会话的实体，多对一关联（科室的父科室、诊室和医生的所属科室）在加载时已初始化，可直接读取；
+ * 一对多集合（科室下的医生等）未加载，调用方不能访问，也不能修改缓存中的实体或把它们交给 save。
+ * 加载使用独立的只读事务，只缓存已提交的数据；实体变更由 ReferenceDataChangeListener 在事务提交后失效对应缓存，
+ * 所有写这些表的地方都无需单独调用，TTL 兜底其他途径（如直接改库）的修改。
+ */
+@Service
+public class ReferenceDataCache {
+
+    private static final String ALL = "all";
+    // 单个实体对象头和基本字段的估算字节数
+    private static final long ENTITY_OVERHEAD_BYTES = 96;
+
+    private final TimeSlotRepository timeSlotRepository;
+    private final ParentDepartmentRepository parentDepartmentRepository;
+    private final DepartmentRepository departmentRepository;
+    private final LocationRepository locationRepository;
+    private final DoctorRepository doctorRepository;
+    private final TransactionTemplate loadTransaction;
+
+    // 缓存条目有效期
+    @Value("${app.reference-cache.ttl-minutes:10}")
+    private long ttlMinutes;
+
+    // 按ID缓存的科室、医生的最大条目数
+    @Value("${app.reference-cache.max-entries:2000}")
+    private int maxEntries;
+
+    private BoundedCache<String, List<TimeSlot>> timeSlots;
+    private BoundedCache<String, List<ParentDepartment>> parentDepartments;
+    private BoundedCache<String, List<Department>> departments;
+    private BoundedCache<Integer, Department> departmentById;
+    private BoundedCache<String, List<Location>> locations;
+    private BoundedCache<Integer, Doctor> doctorById;
+
+    @Autowired
+    public ReferenceDataCache(TimeSlotRepository timeSlotRepository,
+                              ParentDepartmentRepository parentDepartmentRepository,
+                              DepartmentRepository departmentRepository,
+                              LocationRepository locationRepository,
+                              DoctorRepository doctorRepository,
+                              PlatformTransactionManager transactionManager) {
+        this.timeSlotRepository = timeSlotRepository;
+        this.parentDepartmentRepository = parentDepartmentRepository;
+        this.departmentRepository = departmentRepository;
+        this.locationRepository = locationRepository;
+        this.doctorRepository = doctorRepository;
+        this.loadTransaction = new TransactionTemplate(transactionManager);
+        this.loadTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.loadTransaction.setReadOnly(true);
+    }
+
+    @PostConstruct
+    public void init() {
+        long ttlMillis = TimeUnit.MINUTES.toMillis(ttlMinutes);
+        timeSlots = new BoundedCache<>(1, ttlMillis, list -> listBytes(list, ReferenceDataCache::timeSlotBytes));
+        parentDepartments = new BoundedCache<>(1, ttlMillis, list -> listBytes(list, ReferenceDataCache::parentDepartmentBytes));
+        departments = new BoundedCache<>(1, ttlMillis, list -> listBytes(list, ReferenceDataCache::departmentBytes));
+        departmentById = new BoundedCache<>(maxEntries, ttlMillis, ReferenceDataCache::departmentBytes);
+        locations = new BoundedCache<>(1, ttlMillis, list -> listBytes(list, ReferenceDataCache::locationBytes));
+        doctorById = new BoundedCache<>(maxEntries, ttlMillis, ReferenceDataCache::doctorBytes);
+    }
+
+    /**
+     * 所有时段
+     */
+    public List<TimeSlot> getAllTimeSlots() {
+        return timeSlots.get(ALL, key -> load(() -> List.copyOf(timeSlotRepository.findAll())));
+    }
+
+    public Optional<TimeSlot> getTimeSlot(Integer slotId) {
+        return getAllTimeSlots().stream()
+                .filter(slot -> slot.getSlotId().equals(slotId))
+                .findFirst();
+    }
+
+    /**
+     * 所有父科室
+     */
+    public List<ParentDepartment> getAllParentDepartments() {
+        return parentDepartments.get(ALL, key -> load(() -> List.copyOf(parentDepartmentRepository.findAll())));
+    }
+
+    /**
+     * 所有科室（父科室已初始化）
+     */
+    public List<Department> getAllDepartments() {
+        return departments.get(ALL, key -> load(() -> {
+            List<Department> all = departmentRepository.findAll();
+            all.forEach(department -> Hibernate.initialize(department.getParentDepartment()));
+            return List.copyOf(all);
+        }));
+    }
+
+    /**
+     * 按ID查询科室（父科室已初始化）
+     */
+    public Optional<Department> getDepartment(Integer departmentId) {
+        return Optional.ofNullable(departmentById.get(departmentId, id -> load(() -> {
+            Department department = departmentRepository.findById(id).orElse(null);
+            if (department != null) {
+                Hibernate.initialize(department.getParentDepartment());
+            }
+            return department;
+        })));
+    }
+
+    /**
+     * 所有诊室（所属科室已初始化）
+     */
+    public List<Location> getAllLocations() {
+        return locations.get(ALL, key -> load(() -> {
+            List<Location> all = locationRepository.findAll();
+            all.forEach(location -> Hibernate.initialize(location.getDepartment()));
+            return List.copyOf(all);
+        }));
+    }
+
+    /**
+     * 按ID查询医生（所属科室已初始化）
+     */
+    public Optional<Doctor> getDoctor(Integer doctorId) {
+        return Optional.ofNullable(doctorById.get(doctorId, id -> load(() -> {
+            Doctor doctor = doctorRepository.findById(id).orElse(null);
+            if (doctor != null) {
+                Hibernate.initialize(doctor.getDepartment());
+            }
+            return doctor;
+        })));
+    }
+
+    public void onTimeSlotChanged() {
+        timeSlots.invalidateAll();
+    }
+
+    public void onParentDepartmentChanged() {
+        parentDepartments.invalidateAll();
+        // 科室缓存中带有父科室名称
+        departments.invalidateAll();
+        departmentById.invalidateAll();
+    }
+
+    public void onDepartmentChanged(Integer departmentId) {
+        departments.invalidateAll();
+        departmentById.invalidate(departmentId);
+        // 诊室、医生缓存中带有所属科室
+        locations.invalidateAll();
+        doctorById.invalidateAll();
+    }
+
+    public void onLocationChanged() {
+        locations.invalidateAll();
+    }
+
+    public void onDoctorChanged(Integer doctorId) {
+        doctorById.invalidate(doctorId);
+    }
+
+    /**
+     * 各缓存的命中率和估算内存
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("timeSlots", timeSlots.getStats());
+        stats.put("parentDepartments", parentDepartments.getStats());
+        stats.put("departments", departments.getStats());
+        stats.put("departmentById", departmentById.getStats());
+        stats.put("locations", locations.getStats());
+        stats.put("doctorById", doctorById.getStats());
+        return stats;
+    }
+
+    private <T> T load(Supplier<T> loader) {
+        return loadTransaction.execute(status -> loader.get());
+    }
+
+    private static <T> long listBytes(List<T> list, ToLongFunction<T> sizer) {
+        long bytes = 16 + 4L * list.size();
+        for (T item : list) {
+            bytes += sizer.applyAsLong(item);
+        }
+        return bytes;
+    }
+
+    private static long timeSlotBytes(TimeSlot slot) {
+        return ENTITY_OVERHEAD_BYTES + stringBytes(slot.getSlotName());
+    }
+
+    private static long parentDepartmentBytes(ParentDepartment parent) {
+        return ENTITY_OVERHEAD_BYTES + stringBytes(parent.getName()) + stringBytes(parent.getDescription());
+    }
+
+    private static long departmentBytes(Department department) {
+        return ENTITY_OVERHEAD_BYTES + stringBytes(department.getName()) + stringBytes(department.getDescription());
+    }
+
+    private static long locationBytes(Location location) {
+        return ENTITY_OVERHEAD_BYTES + stringBytes(location.getLocationName())
+                + stringBytes(location.getBuilding()) + stringBytes(location.getRoomNumber());
+    }
+
+    private static long doctorBytes(Doctor doctor) {
+        return ENTITY_OVERHEAD_BYTES * 2 + stringBytes(doctor.getIdentifier()) + stringBytes(doctor.getPasswordHash())
+                + stringBytes(doctor.getFullName()) + stringBytes(doctor.getIdCardNumber())
+                + stringBytes(doctor.getPhoneNumber()) + stringBytes(doctor.getTitle())
+                + stringBytes(doctor.getSpecialty()) + stringBytes(doctor.getBio()) + stringBytes(doctor.getPhotoUrl());
+    }
+
+    // 字符串对象头加字符数组（按每字符2字节估算）
+    private static long stringBytes(String value) {
+        return value == null ? 0 : 40 + 2L * value.length();
+    }
+}
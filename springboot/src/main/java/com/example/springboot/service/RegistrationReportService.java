@@ -11,15 +11,16 @@ import com.example.springboot.entity.enums.AppointmentStatus;
 import com.example.springboot.repository.AppointmentRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.poi.ss.usermodel.Cell;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.Duration;
@@ -30,12 +31,15 @@ import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -47,113 +51,62 @@ public class RegistrationReportService {
     private static final DateTimeFormatter DATE_TIME_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm", Locale.CHINA);
     private static final BigDecimal DEFAULT_COEFFICIENT = BigDecimal.ONE;
     private static final ZoneId TARGET_ZONE = ZoneId.of("Asia/Shanghai");
+    private static final int EXCEL_ROW_WINDOW = 200; // SXSSF 内存中保留的行数，超出部分写入临时文件
 
     private final AppointmentRepository appointmentRepository;
 
-    public List<RegistrationHoursResponse> collectRegistrationHours(Integer departmentId,
-                                                                    Integer doctorId,
-                                                                    LocalDate startDate,
-                                                                    LocalDate endDate) {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * 校验统计日期范围（导出为流式响应，需在开始写出前校验）
+     */
+    public void validateDateRange(LocalDate startDate, LocalDate endDate) {
         if (startDate == null || endDate == null) {
             throw new IllegalArgumentException("必须提供起止日期");
         }
         if (endDate.isBefore(startDate)) {
             throw new IllegalArgumentException("结束日期不能早于开始日期");
         }
+    }
+
+    @Transactional(readOnly = true)
+    public List<RegistrationHoursResponse> collectRegistrationHours(Integer departmentId,
+                                                                    Integer doctorId,
+                                                                    LocalDate startDate,
+                                                                    LocalDate endDate) {
+        validateDateRange(startDate, endDate);
 
         log.info("开始计算挂号工时，departmentId={}, doctorId={}, startDate={}, endDate={}",
                 departmentId, doctorId, startDate, endDate);
 
-        List<Appointment> appointments = appointmentRepository.findAppointmentsForRegistrationHours(
-                departmentId,
-                doctorId,
-                startDate,
-                endDate,
-                AppointmentStatus.completed
-        );
-
-        log.info("查询到满足条件的号源 {} 条", appointments.size());
-
-        if (appointments.isEmpty()) {
-            return List.of();
-        }
-
-        Map<DoctorDayKey, List<VisitPoint>> grouped = new LinkedHashMap<>();
-        for (Appointment appointment : appointments) {
-            Schedule schedule = appointment.getSchedule();
-            if (schedule == null || schedule.getDoctor() == null) {
-                continue;
-            }
-            LocalDate workDate = schedule.getScheduleDate();
-            if (workDate == null) {
-                continue;
-            }
-
-            LocalDateTime rawCallTime = resolveCallTime(appointment, schedule);
-            LocalDateTime rawEndTime = resolveEndTime(appointment, schedule, rawCallTime);
-            LocalDateTime callTime = convertToTargetZone(rawCallTime);
-            LocalDateTime endTime = convertToTargetZone(rawEndTime);
-            if (callTime == null || endTime == null) {
-                continue;
-            }
-
-            Doctor doctor = schedule.getDoctor();
-            Department department = doctor.getDepartment();
-
-            DoctorDayKey key = new DoctorDayKey(
-                    doctor.getDoctorId(),
-                    doctor.getFullName(),
-                    department != null ? department.getDepartmentId() : null,
-                    department != null ? department.getName() : null,
-                    department != null && department.getParentDepartment() != null ? department.getParentDepartment().getParentDepartmentId() : null,
-                    department != null && department.getParentDepartment() != null ? department.getParentDepartment().getName() : null,
-                    workDate
-            );
-
-            VisitPoint point = new VisitPoint(callTime, endTime, extractLocation(schedule));
-            grouped.computeIfAbsent(key, k -> new ArrayList<>()).add(point);
-        }
-
         List<RegistrationHoursResponse> responses = new ArrayList<>();
-        for (Map.Entry<DoctorDayKey, List<VisitPoint>> entry : grouped.entrySet()) {
-            List<VisitPoint> points = entry.getValue();
-            points.sort(Comparator.comparing(VisitPoint::callTime));
-            List<Segment> segments = splitSegments(points);
-            int index = 1;
-            for (Segment segment : segments) {
-                responses.add(buildResponse(entry.getKey(), segment, index++));
-            }
-            log.debug("医生 {} 日期 {} 共拆分 {} 个班段", entry.getKey().doctorName(), entry.getKey().workDate(), segments.size());
-            for (int i = 0; i < segments.size(); i++) {
-                Segment seg = segments.get(i);
-                log.debug("  班段{}: start={}, end={}, rawHours={}, regHours={}, visits={}",
-                        i + 1,
-                        seg.getFirstCallTime(),
-                        seg.getLastEndTime(),
-                        seg.getRawHours(),
-                        seg.getRegHours(),
-                        seg.getVisitCount());
-            }
-        }
-
-        responses.sort(Comparator
-                .comparing(RegistrationHoursResponse::getWorkDate)
-                .thenComparing(RegistrationHoursResponse::getDoctorName, Comparator.nullsLast(String::compareTo))
-                .thenComparing(RegistrationHoursResponse::getSegmentIndex));
+        long appointmentCount = forEachRegistrationHours(departmentId, doctorId, startDate, endDate, responses::add);
 
-        log.info("挂号工时生成完成，总记录数 {}", responses.size());
+        log.info("挂号工时生成完成，号源 {} 条，总记录数 {}", appointmentCount, responses.size());
 
         return responses;
     }
 
-    public byte[] exportRegistrationHoursExcel(Integer departmentId,
-                                               Integer doctorId,
-                                               LocalDate startDate,
-                                               LocalDate endDate) {
-        List<RegistrationHoursResponse> data = collectRegistrationHours(departmentId, doctorId, startDate, endDate);
-        log.info("开始导出挂号工时 Excel，记录数 {}", data.size());
-        try (Workbook workbook = new XSSFWorkbook()) {
-            Sheet sheet = workbook.createSheet("挂号工时");
+    /**
+     * 流式导出挂号工时 Excel
+     * 预约按排班日期流式读取，逐日计算班段并写入 SXSSF 工作簿（内存中只保留滑动窗口内的行），
+     * 内存占用与导出行数无关。
+     */
+    @Transactional(readOnly = true)
+    public void writeRegistrationHoursExcel(Integer departmentId,
+                                            Integer doctorId,
+                                            LocalDate startDate,
+                                            LocalDate endDate,
+                                            OutputStream out) throws IOException {
+        validateDateRange(startDate, endDate);
+        log.info("开始导出挂号工时 Excel，departmentId={}, doctorId={}, startDate={}, endDate={}",
+                departmentId, doctorId, startDate, endDate);
+
+        SXSSFWorkbook workbook = new SXSSFWorkbook(EXCEL_ROW_WINDOW);
+        try {
+            SXSSFSheet sheet = workbook.createSheet("挂号工时");
+            sheet.trackAllColumnsForAutoSizing();
             String[] headers = {
                     "医生",
                     "所属科室",
@@ -175,35 +128,145 @@ public class RegistrationReportService {
                 headerRow.createCell(i).setCellValue(headers[i]);
             }
 
-            int rowIdx = 1;
-            for (RegistrationHoursResponse item : data) {
-                Row row = sheet.createRow(rowIdx++);
-                int col = 0;
-                row.createCell(col++).setCellValue(nvl(item.getDoctorName()));
-                row.createCell(col++).setCellValue(nvl(item.getDepartmentName()));
-                row.createCell(col++).setCellValue(item.getWorkDate() != null ? item.getWorkDate().toString() : "");
-                row.createCell(col++).setCellValue(nvl(item.getSegmentLabel()));
-                row.createCell(col++).setCellValue(formatDateTime(item.getFirstCallTime()));
-                row.createCell(col++).setCellValue(formatDateTime(item.getLastEndTime()));
-                row.createCell(col++).setCellValue(toDouble(item.getRawHours()));
-                row.createCell(col++).setCellValue(toDouble(item.getRegHours()));
-                row.createCell(col++).setCellValue(item.getVisitCount() != null ? item.getVisitCount() : 0);
-                row.createCell(col++).setCellValue(item.isNightFlag() ? "是" : "否");
-                row.createCell(col++).setCellValue(nvl(item.getLocations()));
-                row.createCell(col++).setCellValue(toDouble(item.getDepartmentCoefficient()));
-                row.createCell(col).setCellValue(toDouble(item.getPerformancePoints()));
-            }
+            int[] rowIdx = {1};
+            forEachRegistrationHours(departmentId, doctorId, startDate, endDate,
+                    item -> writeRow(sheet.createRow(rowIdx[0]++), item));
 
             for (int i = 0; i < headers.length; i++) {
                 sheet.autoSizeColumn(i);
             }
 
-            ByteArrayOutputStream bos = new ByteArrayOutputStream();
-            workbook.write(bos);
-            return bos.toByteArray();
-        } catch (IOException e) {
-            throw new IllegalStateException("导出挂号工时报表失败", e);
+            workbook.write(out);
+            log.info("挂号工时 Excel 导出完成，记录数 {}", rowIdx[0] - 1);
+        } finally {
+            // 删除滑动窗口写出的临时文件
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    /**
+     * 按排班日期流式读取已完成预约，每读完一天计算该天各医生的班段并按（医生姓名、班段）顺序输出，
+     * 整体输出顺序为 日期 > 医生姓名 > 班段，内存中只保留一天的就诊记录。
+     *
+     * @return 读取的预约数
+     */
+    private long forEachRegistrationHours(Integer departmentId,
+                                          Integer doctorId,
+                                          LocalDate startDate,
+                                          LocalDate endDate,
+                                          Consumer<RegistrationHoursResponse> consumer) {
+        long appointmentCount = 0;
+        LocalDate currentDate = null;
+        Map<DoctorDayKey, List<VisitPoint>> grouped = new LinkedHashMap<>();
+
+        try (Stream<Appointment> appointments = appointmentRepository.streamAppointmentsForRegistrationHours(
+                departmentId,
+                doctorId,
+                startDate,
+                endDate,
+                AppointmentStatus.completed
+        )) {
+            Iterator<Appointment> iterator = appointments.iterator();
+            while (iterator.hasNext()) {
+                Appointment appointment = iterator.next();
+                appointmentCount++;
+                DoctorDayKey key = null;
+                VisitPoint point = null;
+
+                Schedule schedule = appointment.getSchedule();
+                if (schedule != null && schedule.getDoctor() != null && schedule.getScheduleDate() != null) {
+                    LocalDate workDate = schedule.getScheduleDate();
+                    LocalDateTime rawCallTime = resolveCallTime(appointment, schedule);
+                    LocalDateTime rawEndTime = resolveEndTime(appointment, schedule, rawCallTime);
+                    LocalDateTime callTime = convertToTargetZone(rawCallTime);
+                    LocalDateTime endTime = convertToTargetZone(rawEndTime);
+                    if (callTime != null && endTime != null) {
+                        Doctor doctor = schedule.getDoctor();
+                        Department department = doctor.getDepartment();
+
+                        key = new DoctorDayKey(
+                                doctor.getDoctorId(),
+                                doctor.getFullName(),
+                                department != null ? department.getDepartmentId() : null,
+                                department != null ? department.getName() : null,
+                                department != null && department.getParentDepartment() != null ? department.getParentDepartment().getParentDepartmentId() : null,
+                                department != null && department.getParentDepartment() != null ? department.getParentDepartment().getName() : null,
+                                workDate
+                        );
+                        point = new VisitPoint(callTime, endTime, extractLocation(schedule));
+                    }
+                }
+                // 预约实体用完即从持久化上下文移除，避免大范围导出时上下文不断增长
+                entityManager.detach(appointment);
+
+                if (key == null) {
+                    continue;
+                }
+                if (!key.workDate().equals(currentDate)) {
+                    emitDay(grouped, consumer);
+                    currentDate = key.workDate();
+                }
+                grouped.computeIfAbsent(key, k -> new ArrayList<>()).add(point);
+            }
+        }
+        emitDay(grouped, consumer);
+
+        log.info("查询到满足条件的号源 {} 条", appointmentCount);
+        return appointmentCount;
+    }
+
+    /**
+     * 计算一天内各医生的班段并输出，输出后清空缓冲
+     */
+    private void emitDay(Map<DoctorDayKey, List<VisitPoint>> grouped, Consumer<RegistrationHoursResponse> consumer) {
+        if (grouped.isEmpty()) {
+            return;
         }
+        List<RegistrationHoursResponse> dayResponses = new ArrayList<>();
+        for (Map.Entry<DoctorDayKey, List<VisitPoint>> entry : grouped.entrySet()) {
+            List<VisitPoint> points = entry.getValue();
+            points.sort(Comparator.comparing(VisitPoint::callTime));
+            List<Segment> segments = splitSegments(points);
+            int index = 1;
+            for (Segment segment : segments) {
+                dayResponses.add(buildResponse(entry.getKey(), segment, index++));
+            }
+            log.debug("医生 {} 日期 {} 共拆分 {} 个班段", entry.getKey().doctorName(), entry.getKey().workDate(), segments.size());
+            for (int i = 0; i < segments.size(); i++) {
+                Segment seg = segments.get(i);
+                log.debug("  班段{}: start={}, end={}, rawHours={}, regHours={}, visits={}",
+                        i + 1,
+                        seg.getFirstCallTime(),
+                        seg.getLastEndTime(),
+                        seg.getRawHours(),
+                        seg.getRegHours(),
+                        seg.getVisitCount());
+            }
+        }
+        grouped.clear();
+
+        dayResponses.sort(Comparator
+                .comparing(RegistrationHoursResponse::getDoctorName, Comparator.nullsLast(String::compareTo))
+                .thenComparing(RegistrationHoursResponse::getSegmentIndex));
+        dayResponses.forEach(consumer);
+    }
+
+    private void writeRow(Row row, RegistrationHoursResponse item) {
+        int col = 0;
+        row.createCell(col++).setCellValue(nvl(item.getDoctorName()));
+        row.createCell(col++).setCellValue(nvl(item.getDepartmentName()));
+        row.createCell(col++).setCellValue(item.getWorkDate() != null ? item.getWorkDate().toString() : "");
+        row.createCell(col++).setCellValue(nvl(item.getSegmentLabel()));
+        row.createCell(col++).setCellValue(formatDateTime(item.getFirstCallTime()));
+        row.createCell(col++).setCellValue(formatDateTime(item.getLastEndTime()));
+        row.createCell(col++).setCellValue(toDouble(item.getRawHours()));
+        row.createCell(col++).setCellValue(toDouble(item.getRegHours()));
+        row.createCell(col++).setCellValue(item.getVisitCount() != null ? item.getVisitCount() : 0);
+        row.createCell(col++).setCellValue(item.isNightFlag() ? "是" : "否");
+        row.createCell(col++).setCellValue(nvl(item.getLocations()));
+        row.createCell(col++).setCellValue(toDouble(item.getDepartmentCoefficient()));
+        row.createCell(col).setCellValue(toDouble(item.getPerformancePoints()));
     }
 
     private RegistrationHoursResponse buildResponse(DoctorDayKey key, Segment segment, int segmentIndex) {
@@ -1,5 +1,6 @@
 package com.example.springboot.service;
 
+import com.example.springboot.dto.common.CursorPageResponse;
 import com.example.springboot.dto.slotapplication.SlotApplicationCreateRequest;
 import com.example.springboot.dto.slotapplication.SlotApplicationResponse;
 import com.example.springboot.dto.slotapplication.SlotApplicationUpdateRequest;
@@ -7,16 +8,21 @@ import com.example.springboot.entity.Appointment;
 import com.example.springboot.entity.*;
 import com.example.springboot.entity.enums.SlotApplicationStatus;
 import com.example.springboot.repository.*;
+import com.example.springboot.util.CursorPaging;
+import com.example.springboot.util.NdjsonWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * 加号申请服务类
@@ -31,6 +37,8 @@ public class SlotApplicationService {
     private final ScheduleRepository scheduleRepository;
     private final PatientRepository patientRepository;
     private final AdminRepository adminRepository;
+    private final ReferenceDataCache referenceDataCache;
+    private final NdjsonWriter ndjsonWriter;
     private AddOnSlotService addOnSlotService; // 延迟注入，避免循环依赖
 
     @Autowired
@@ -39,12 +47,16 @@ public class SlotApplicationService {
             DoctorRepository doctorRepository,
             ScheduleRepository scheduleRepository,
             PatientRepository patientRepository,
-            AdminRepository adminRepository) {
+            AdminRepository adminRepository,
+            ReferenceDataCache referenceDataCache,
+            NdjsonWriter ndjsonWriter) {
         this.slotApplicationRepository = slotApplicationRepository;
         this.doctorRepository = doctorRepository;
         this.scheduleRepository = scheduleRepository;
         this.patientRepository = patientRepository;
         this.adminRepository = adminRepository;
+        this.referenceDataCache = referenceDataCache;
+        this.ndjsonWriter = ndjsonWriter;
     }
     
     @Autowired
@@ -191,6 +203,28 @@ public class SlotApplicationService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * 加号申请游标分页（按ID倒序），cursor 传上一页返回的 nextCursor
+     */
+    @Transactional(readOnly = true)
+    public CursorPageResponse<SlotApplicationResponse> getApplicationPage(SlotApplicationStatus status, String cursor, Integer size) {
+        int pageSize = CursorPaging.pageSize(size);
+        List<Object[]> rows = slotApplicationRepository.findPageWithDetails(
+                status, CursorPaging.parseIntCursor(cursor), CursorPaging.limit(pageSize));
+        return CursorPaging.toPage(rows, pageSize, this::convertRowToResponse,
+                row -> ((SlotApplication) row[0]).getApplicationId());
+    }
+
+    /**
+     * 以 NDJSON 流式导出加号申请（按ID倒序），供批量拉取使用，内存占用与总条数无关
+     */
+    @Transactional(readOnly = true)
+    public void writeApplicationsNdjson(SlotApplicationStatus status, OutputStream out) throws IOException {
+        try (Stream<Object[]> rows = slotApplicationRepository.streamWithDetails(status)) {
+            ndjsonWriter.write(rows, this::convertRowToResponse, out);
+        }
+    }
+
     /**
      * 根据状态获取加号申请（管理员用）
      */
@@ -205,23 +239,10 @@ public class SlotApplicationService {
      * 转换为响应DTO
      */
     private SlotApplicationResponse convertToResponse(SlotApplication application) {
-        SlotApplicationResponse response = new SlotApplicationResponse();
-        response.setApplicationId(application.getApplicationId());
-        response.setDoctorId(application.getDoctorId());
-        response.setScheduleId(application.getScheduleId());
-        response.setAddedSlots(application.getAddedSlots());
-        response.setPatientId(application.getPatientId());
-        response.setUrgencyLevel(application.getUrgencyLevel());
-        response.setReason(application.getReason());
-        response.setStatus(application.getStatus());
-        response.setApproverId(application.getApproverId());
-        response.setApproverComments(application.getApproverComments());
-        response.setApprovedAt(application.getApprovedAt());
-        response.setCreatedAt(application.getCreatedAt());
-        response.setUpdatedAt(application.getUpdatedAt());
+        SlotApplicationResponse response = convertBasicFields(application);
 
         // 获取医生信息
-        doctorRepository.findById(application.getDoctorId()).ifPresent(doctor -> {
+        referenceDataCache.getDoctor(application.getDoctorId()).ifPresent(doctor -> {
             response.setDoctorName(doctor.getFullName());
         });
 
@@ -231,12 +252,7 @@ public class SlotApplicationService {
             
             // 从TimeSlot获取时间信息
             if (schedule.getSlot() != null) {
-                response.setStartTime(schedule.getSlot().getStartTime().toString());
-                response.setEndTime(schedule.getSlot().getEndTime().toString());
-                
-                // 判断时段
-                LocalTime startTime = schedule.getSlot().getStartTime();
-                response.setTimeSlot(startTime.getHour() < 12 ? "MORNING" : "AFTERNOON");
+                setSlotTime(response, schedule.getSlot().getStartTime(), schedule.getSlot().getEndTime());
             }
             
             // 从Location获取地点信息
@@ -260,4 +276,48 @@ public class SlotApplicationService {
 
         return response;
     }
+
+    /**
+     * 转换联表查询结果（见 SlotApplicationRepository.findPageWithDetails），不再逐条查询关联信息
+     */
+    private SlotApplicationResponse convertRowToResponse(Object[] row) {
+        SlotApplicationResponse response = convertBasicFields((SlotApplication) row[0]);
+        response.setDoctorName((String) row[1]);
+        if (row[2] != null) {
+            response.setScheduleDate(row[2].toString());
+        }
+        if (row[3] != null && row[4] != null) {
+            setSlotTime(response, (LocalTime) row[3], (LocalTime) row[4]);
+        }
+        response.setLocation((String) row[5]);
+        response.setPatientName((String) row[6]);
+        response.setPatientPhone((String) row[7]);
+        response.setApproverName((String) row[8]);
+        return response;
+    }
+
+    private void setSlotTime(SlotApplicationResponse response, LocalTime startTime, LocalTime endTime) {
+        response.setStartTime(startTime.toString());
+        response.setEndTime(endTime.toString());
+        // 判断时段
+        response.setTimeSlot(startTime.getHour() < 12 ? "MORNING" : "AFTERNOON");
+    }
+
+    private SlotApplicationResponse convertBasicFields(SlotApplication application) {
+        SlotApplicationResponse response = new SlotApplicationResponse();
+        response.setApplicationId(application.getApplicationId());
+        response.setDoctorId(application.getDoctorId());
+        response.setScheduleId(application.getScheduleId());
+        response.setAddedSlots(application.getAddedSlots());
+        response.setPatientId(application.getPatientId());
+        response.setUrgencyLevel(application.getUrgencyLevel());
+        response.setReason(application.getReason());
+        response.setStatus(application.getStatus());
+        response.setApproverId(application.getApproverId());
+        response.setApproverComments(application.getApproverComments());
+        response.setApprovedAt(application.getApprovedAt());
+        response.setCreatedAt(application.getCreatedAt());
+        response.setUpdatedAt(application.getUpdatedAt());
+        return response;
+    }
 }
@@ -0,0 +1,322 @@
+package com.example.springboot.service;
+
+import com.example.springboot.entity.Schedule;
+import com.example.springboot.repository.ScheduleRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 号源库存服务
+ * 占号以数据库的条件更新（booked_slots < total_slots 且排班可预约）为唯一依据，一次数据库往返完成，不重试、不等待；
+ * 条件更新返回0即号源已满或排班不可预约，再试也不会成功。
+ * 内存中以排班为单位维护的计数器只是提示：显示已满的请求直接拒绝，不访问数据库；
+ * 为避免计数偏高（其他节点释放号源、事务回滚后的残留等）一直拒绝，显示已满且距上次核对超过
+ * app.slot-inventory.recheck-interval-ms 时，由一个线程在新事务中读取已提交的号源数重新校准。
+ *
+ * 所有修改已预约数的地方（预约、现场挂号、候补锁号、加号支付、取消/爽约/删除）都必须通过本服务，
+ * 不能再对 Schedule 实体做 setBookedSlots + save。
+ */
+@Service
+public class SlotInventoryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SlotInventoryService.class);
+
+    private final ScheduleRepository scheduleRepository;
+
+    // 读取已提交号源数的独立只读事务，不受调用方事务快照（REPEATABLE READ）影响
+    private final TransactionTemplate recheckTransaction;
+
+    // scheduleId -> 号源计数器
+    private final Map<Integer, SlotCounter> counters = new ConcurrentHashMap<>();
+
+    // 内存显示已满时与数据库核对的最小间隔
+    @Value("${app.slot-inventory.recheck-interval-ms:1000}")
+    private long recheckIntervalMillis;
+
+    // 统计指标
+    private final AtomicLong claimSuccessCount = new AtomicLong();
+    private final AtomicLong memoryRejectCount = new AtomicLong();
+    private final AtomicLong databaseRejectCount = new AtomicLong();
+    private final AtomicLong recheckCount = new AtomicLong();
+    private final AtomicLong releaseCount = new AtomicLong();
+
+    @Autowired
+    public SlotInventoryService(ScheduleRepository scheduleRepository, PlatformTransactionManager transactionManager) {
+        this.scheduleRepository = scheduleRepository;
+        this.recheckTransaction = new TransactionTemplate(transactionManager);
+        this.recheckTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.recheckTransaction.setReadOnly(true);
+    }
+
+    /**
+     * 尝试占用一个号源（不超过总号源数，排班必须为可预约状态）
+     * 必须在事务中调用，事务回滚时数据库与内存计数一起恢复
+     *
+     * @return true 占用成功；false 号源已满或排班不可预约
+     */
+    public boolean tryAcquire(Schedule schedule) {
+        SlotCounter counter = counterOf(schedule);
+        if (looksFull(counter, schedule)) {
+            memoryRejectCount.incrementAndGet();
+            return false;
+        }
+        if (scheduleRepository.claimSlot(counter.scheduleId) == 1) {
+            claimSuccessCount.incrementAndGet();
+            counter.booked.incrementAndGet();
+            counter.rejected = false;
+            rollbackOnFailure(counter, 1);
+            return true;
+        }
+        // 条件更新基于最新已提交数据判断，返回0说明确实已满或不可预约：记为已满，到下次核对前在内存中拒绝
+        databaseRejectCount.incrementAndGet();
+        counter.rejected = true;
+        counter.lastCheckedAt.set(System.currentTimeMillis());
+        logger.info("条件占号失败（号源已满或排班不可预约） - scheduleId: {}", counter.scheduleId);
+        return false;
+    }
+
+    /**
+     * 强制占用一个号源（允许超过总号源数）
+     * 用于加号：加号采用预留机制，支付成功后直接计入已预约数
+     */
+    public void forceAcquire(Schedule schedule) {
+        SlotCounter counter = counterOf(schedule);
+        scheduleRepository.forceClaimSlot(counter.scheduleId);
+        counter.booked.incrementAndGet();
+        rollbackOnFailure(counter, 1);
+    }
+
+    /**
+     * 释放一个号源（已预约数不会小于0）
+     *
+     * @return true 释放成功；false 已预约数已经是0
+     */
+    public boolean release(Schedule schedule) {
+        SlotCounter counter = counterOf(schedule);
+        if (scheduleRepository.releaseSlot(counter.scheduleId) == 0) {
+            logger.warn("释放号源时已预约数已经是0 - scheduleId: {}", counter.scheduleId);
+            resync(counter);
+            return false;
+        }
+        if (!counter.tryDecrement()) {
+            resync(counter);
+        }
+        counter.rejected = false;
+        releaseCount.incrementAndGet();
+        rollbackOnFailure(counter, -1);
+        return true;
+    }
+
+    /**
+     * 当前已预约数
+     */
+    public int getBookedSlots(Schedule schedule) {
+        return counterOf(schedule).booked.get();
+    }
+
+    /**
+     * 是否还有空余号源（内存显示已满时按核对间隔与数据库核对）
+     */
+    public boolean hasAvailable(Schedule schedule) {
+        return !looksFull(counterOf(schedule), schedule);
+    }
+
+    /**
+     * 排班总号源数变更后同步到计数器
+     * 在事务提交后生效，事务回滚时计数器保持原值；
+     * 提交前同一事务内的占号按排班实体上的新总号源数判断，见 looksFull
+     */
+    public void updateTotalSlots(Schedule schedule) {
+        Integer scheduleId = schedule.getScheduleId();
+        Integer totalSlots = schedule.getTotalSlots();
+        if (totalSlots == null) {
+            return;
+        }
+        afterCommit(() -> {
+            SlotCounter counter = counters.get(scheduleId);
+            if (counter != null) {
+                counter.total = totalSlots;
+                counter.rejected = false;
+            }
+        });
+    }
+
+    /**
+     * 排班删除后移除计数器
+     */
+    public void evict(Integer scheduleId) {
+        counters.remove(scheduleId);
+    }
+
+    /**
+     * 号源库存统计（占号成功、内存拒绝、数据库拒绝及与数据库核对次数）
+     */
+    public Map<String, Object> getStats() {
+        long success = claimSuccessCount.get();
+        long databaseRejects = databaseRejectCount.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("trackedSchedules", counters.size());
+        stats.put("claimSuccess", success);
+        stats.put("memoryRejected", memoryRejectCount.get());
+        stats.put("databaseRejected", databaseRejects);
+        stats.put("rechecks", recheckCount.get());
+        stats.put("releases", releaseCount.get());
+        stats.put("databaseRejectRate", success + databaseRejects == 0 ? 0.0 : (double) databaseRejects / (success + databaseRejects));
+        return stats;
+    }
+
+    /**
+     * 移除已过期排班的计数器，释放内存
+     * 每小时执行一次
+     */
+    @Scheduled(fixedDelay = 3600000)
+    public void evictExpired() {
+        LocalDate today = LocalDate.now();
+        counters.values().removeIf(counter -> counter.scheduleDate != null && counter.scheduleDate.isBefore(today));
+    }
+
+    private SlotCounter counterOf(Schedule schedule) {
+        return counters.computeIfAbsent(schedule.getScheduleId(), id -> new SlotCounter(
+                id,
+                schedule.getScheduleDate(),
+                schedule.getBookedSlots() != null ? schedule.getBookedSlots() : 0,
+                schedule.getTotalSlots() != null ? schedule.getTotalSlots() : 0));
+    }
+
+    /**
+     * 内存计数是否显示已满
+     * 总号源数取计数器与排班实体中较大者：同一事务内刚调大的总号源数提交前尚未同步到计数器，
+     * 计数器只用于快速拒绝，宁可放行交给条件更新判断，也不能误拒。
+     * 显示已满且到了核对时间的，由抢到核对权的线程读取已提交的号源数后重新判断，其余线程直接拒绝。
+     */
+    private boolean looksFull(SlotCounter counter, Schedule schedule) {
+        if (!counter.rejected && counter.booked.get() < totalOf(counter, schedule)) {
+            return false;
+        }
+        if (!counter.tryStartRecheck(recheckIntervalMillis)) {
+            return true;
+        }
+        recheckCount.incrementAndGet();
+        resync(counter);
+        return counter.booked.get() >= totalOf(counter, schedule);
+    }
+
+    private int totalOf(SlotCounter counter, Schedule schedule) {
+        Integer entityTotal = schedule.getTotalSlots();
+        return entityTotal != null ? Math.max(counter.total, entityTotal) : counter.total;
+    }
+
+    /**
+     * 在独立的只读事务中读取已提交的已预约数和总号源数
+     * 不能用调用方的事务：REPEATABLE READ 下读到的仍是事务开始时的快照
+     */
+    private void resync(SlotCounter counter) {
+        List<Object[]> rows;
+        try {
+            rows = recheckTransaction.execute(status -> scheduleRepository.findSlotCounts(counter.scheduleId));
+        } catch (RuntimeException e) {
+            logger.warn("读取号源数失败，保留内存计数 - scheduleId: {}, 原因: {}", counter.scheduleId, e.getMessage());
+            return;
+        }
+        counter.lastCheckedAt.set(System.currentTimeMillis());
+        if (rows == null || rows.isEmpty()) {
+            return;
+        }
+        Object[] row = rows.get(0);
+        counter.booked.set(((Number) row[0]).intValue());
+        counter.total = ((Number) row[1]).intValue();
+        counter.rejected = false;
+    }
+
+    /**
+     * 事务提交后执行；没有事务时立即执行
+     */
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * 事务回滚时撤销内存中的变化（数据库中的条件更新随事务一起回滚）
+     */
+    private void rollbackOnFailure(SlotCounter counter, int delta) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    counter.booked.updateAndGet(current -> Math.max(0, current - delta));
+                }
+            }
+        });
+    }
+
+    /**
+     * 单个排班的号源计数器
+     */
+    private static class SlotCounter {
+        private final Integer scheduleId;
+        private final LocalDate scheduleDate;
+        private final AtomicInteger booked;
+        private volatile int total;
+        // 最近一次条件更新被数据库拒绝（可能是排班不可预约，已预约数未满），到下次核对前按已满处理
+        private volatile boolean rejected;
+        // 最近一次与数据库核对的时间
+        private final AtomicLong lastCheckedAt = new AtomicLong(System.currentTimeMillis());
+
+        SlotCounter(Integer scheduleId, LocalDate scheduleDate, int booked, int total) {
+            this.scheduleId = scheduleId;
+            this.scheduleDate = scheduleDate;
+            this.booked = new AtomicInteger(booked);
+            this.total = total;
+        }
+
+        /**
+         * 距上次核对已超过间隔时抢占本次核对，同一时刻只有一个线程能成功
+         */
+        boolean tryStartRecheck(long intervalMillis) {
+            long last = lastCheckedAt.get();
+            long now = System.currentTimeMillis();
+            return now - last >= intervalMillis && lastCheckedAt.compareAndSet(last, now);
+        }
+
+        boolean tryDecrement() {
+            while (true) {
+                int current = booked.get();
+                if (current <= 0) {
+                    return false;
+                }
+                if (booked.compareAndSet(current, current - 1)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.example.springboot.service;
+
+import com.example.springboot.entity.SymptomDepartmentMapping;
+import com.example.springboot.repository.SymptomDepartmentMappingRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 症状关键词索引
+ * 将 symptom_department_mapping 表编译为内存索引，症状提取和科室匹配不再查询数据库：
+ * 1. Aho-Corasick 自动机：一次扫描找出分词结果中包含的症状关键词
+ * 2. 子串索引：分词结果是某个症状关键词的一部分时，找到该关键词
+ * 3. 倒排索引：症状关键词 -> 科室ID -> 映射优先级
+ *
+ * 映射表只在 SymptomMappingService 新增、修改、删除时变化，变化后（事务提交后）丢弃索引，下次使用时重新构建。
+ */
+@Component
+public class SymptomKeywordIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(SymptomKeywordIndex.class);
+
+    @Autowired
+    private SymptomDepartmentMappingRepository mappingRepository;
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * 将一个分词结果匹配到症状关键词
+     * 匹配顺序：完全相同 > 分词是关键词的一部分 > 分词中包含关键词（取最长的）
+     *
+     * @return 匹配到的症状关键词，未匹配返回 null
+     */
+    public String match(String word) {
+        return getSnapshot().match(word);
+    }
+
+    /**
+     * 症状（含同义词扩展结果）匹配到的科室ID
+     */
+    public Set<Integer> findDepartmentIds(Collection<String> symptoms) {
+        Snapshot current = getSnapshot();
+        Set<Integer> departmentIds = new LinkedHashSet<>();
+        for (String symptom : symptoms) {
+            Map<Integer, Integer> departments = current.departmentsByKeyword.get(symptom);
+            if (departments != null) {
+                departmentIds.addAll(departments.keySet());
+            }
+        }
+        return departmentIds;
+    }
+
+    /**
+     * 症状在某个科室的映射中命中的最高优先级，未命中返回 0
+     */
+    public int findMaxPriority(Integer departmentId, Collection<String> symptoms) {
+        Snapshot current = getSnapshot();
+        int maxPriority = 0;
+        for (String symptom : symptoms) {
+            Map<Integer, Integer> departments = current.departmentsByKeyword.get(symptom);
+            if (departments != null) {
+                Integer priority = departments.get(departmentId);
+                if (priority != null) {
+                    maxPriority = Math.max(maxPriority, priority);
+                }
+            }
+        }
+        return maxPriority;
+    }
+
+    /**
+     * 症状映射变更后丢弃索引（在事务中调用时提交后生效）
+     */
+    public void invalidate() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            snapshot = null;
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                snapshot = null;
+            }
+        });
+    }
+
+    private Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (snapshot == null) {
+                try {
+                    snapshot = new Snapshot(mappingRepository.findAll());
+                    logger.info("症状关键词索引已构建，关键词数量: {}", snapshot.keywords.size());
+                } catch (Exception e) {
+                    // 表不存在或查询失败时本次按空索引处理，不缓存，下次再尝试构建
+                    logger.warn("构建症状关键词索引失败（可能表不存在），返回空索引: {}", e.getMessage());
+                    logger.debug("构建症状关键词索引异常详情", e);
+                    return new Snapshot(Collections.emptyList());
+                }
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * 索引快照（不可变）
+     */
+    private static final class Snapshot {
+        final List<String> keywords = new ArrayList<>();
+        final Set<String> keywordSet = new HashSet<>();
+        // 关键词的子串（长度>=2） -> 包含该子串的最短关键词
+        final Map<String, String> keywordBySubstring = new HashMap<>();
+        // 关键词 -> 科室ID -> 最高优先级
+        final Map<String, Map<Integer, Integer>> departmentsByKeyword = new HashMap<>();
+
+        // Aho-Corasick 自动机
+        final List<Map<Character, Integer>> transitions = new ArrayList<>();
+        int[] fail;
+        int[] longestMatch; // 到达该状态时能匹配到的最长关键词下标，-1 表示无
+
+        Snapshot(List<SymptomDepartmentMapping> mappings) {
+            for (SymptomDepartmentMapping mapping : mappings) {
+                String symptomKeywords = mapping.getSymptomKeywords();
+                if (symptomKeywords == null || symptomKeywords.trim().isEmpty() || mapping.getDepartment() == null) {
+                    continue;
+                }
+                Integer departmentId = mapping.getDepartment().getDepartmentId();
+                int priority = mapping.getPriority() != null ? mapping.getPriority() : 1;
+                // 按逗号分割
+                for (String part : symptomKeywords.split("[,，、]")) {
+                    String keyword = part.trim();
+                    if (keyword.isEmpty()) {
+                        continue;
+                    }
+                    if (keywordSet.add(keyword)) {
+                        keywords.add(keyword);
+                    }
+                    departmentsByKeyword.computeIfAbsent(keyword, k -> new HashMap<>())
+                            .merge(departmentId, priority, Math::max);
+                }
+            }
+
+            for (String keyword : keywords) {
+                for (int begin = 0; begin < keyword.length(); begin++) {
+                    for (int end = begin + 2; end <= keyword.length(); end++) {
+                        keywordBySubstring.merge(keyword.substring(begin, end), keyword,
+                                (existing, candidate) -> candidate.length() < existing.length() ? candidate : existing);
+                    }
+                }
+            }
+
+            buildAutomaton();
+        }
+
+        private void buildAutomaton() {
+            transitions.add(new HashMap<>());
+            List<Integer> terminal = new ArrayList<>();
+            terminal.add(-1);
+            for (int k = 0; k < keywords.size(); k++) {
+                String keyword = keywords.get(k);
+                int state = 0;
+                for (int i = 0; i < keyword.length(); i++) {
+                    Integer next = transitions.get(state).get(keyword.charAt(i));
+                    if (next == null) {
+                        next = transitions.size();
+                        transitions.add(new HashMap<>());
+                        terminal.add(-1);
+                        transitions.get(state).put(keyword.charAt(i), next);
+                    }
+                    state = next;
+                }
+                terminal.set(state, k);
+            }
+
+            int stateCount = transitions.size();
+            fail = new int[stateCount];
+            longestMatch = new int[stateCount];
+            for (int state = 0; state < stateCount; state++) {
+                longestMatch[state] = terminal.get(state);
+            }
+
+            // 按广度优先计算失败指针，同时沿失败链合并最长匹配
+            Deque<Integer> queue = new ArrayDeque<>(transitions.get(0).values());
+            while (!queue.isEmpty()) {
+                int state = queue.poll();
+                for (Map.Entry<Character, Integer> edge : transitions.get(state).entrySet()) {
+                    int child = edge.getValue();
+                    int f = fail[state];
+                    while (f != 0 && !transitions.get(f).containsKey(edge.getKey())) {
+                        f = fail[f];
+                    }
+                    Integer target = transitions.get(f).get(edge.getKey());
+                    fail[child] = (target != null && target != child) ? target : 0;
+                    if (longestMatch[child] < 0) {
+                        longestMatch[child] = longestMatch[fail[child]];
+                    }
+                    queue.add(child);
+                }
+            }
+        }
+
+        String match(String word) {
+            if (word == null || word.isEmpty() || keywords.isEmpty()) {
+                return null;
+            }
+            // 直接匹配
+            if (keywordSet.contains(word)) {
+                return word;
+            }
+            // 分词是某个关键词的一部分
+            String containing = keywordBySubstring.get(word);
+            if (containing != null) {
+                return containing;
+            }
+            // 分词中包含某个关键词：自动机扫描一遍，取最长的
+            String best = null;
+            int state = 0;
+            for (int i = 0; i < word.length(); i++) {
+                char c = word.charAt(i);
+                Integer next = transitions.get(state).get(c);
+                while (next == null && state != 0) {
+                    state = fail[state];
+                    next = transitions.get(state).get(c);
+                }
+                state = next != null ? next : 0;
+                if (longestMatch[state] >= 0) {
+                    String found = keywords.get(longestMatch[state]);
+                    if (best == null || found.length() > best.length()) {
+                        best = found;
+                    }
+                }
+            }
+            return best;
+        }
+    }
+}
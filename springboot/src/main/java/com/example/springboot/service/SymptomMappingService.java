@@ -23,6 +23,9 @@ public class SymptomMappingService {
     @Autowired
     private DepartmentRepository departmentRepository;
     
+    @Autowired
+    private SymptomKeywordIndex symptomKeywordIndex;
+    
     /**
      * 获取所有症状映射
      */
@@ -55,6 +58,7 @@ public class SymptomMappingService {
         mapping.setPriority(request.getPriority() != null ? request.getPriority() : 1);
         
         SymptomDepartmentMapping saved = mappingRepository.save(mapping);
+        symptomKeywordIndex.invalidate();
         return convertToResponse(saved);
     }
     
@@ -81,6 +85,7 @@ public class SymptomMappingService {
         }
         
         SymptomDepartmentMapping updated = mappingRepository.save(mapping);
+        symptomKeywordIndex.invalidate();
         return convertToResponse(updated);
     }
     
@@ -93,6 +98,7 @@ public class SymptomMappingService {
             throw new ResourceNotFoundException("症状映射不存在，ID: " + mappingId);
         }
         mappingRepository.deleteById(mappingId);
+        symptomKeywordIndex.invalidate();
     }
     
     /**
@@ -20,22 +20,24 @@ import java.util.stream.Collectors;
 public class TimeSlotService {
 
     private final TimeSlotRepository timeSlotRepository;
+    private final ReferenceDataCache referenceDataCache;
 
     @Autowired
-    public TimeSlotService(TimeSlotRepository timeSlotRepository) {
+    public TimeSlotService(TimeSlotRepository timeSlotRepository, ReferenceDataCache referenceDataCache) {
         this.timeSlotRepository = timeSlotRepository;
+        this.referenceDataCache = referenceDataCache;
     }
 
     @Transactional(readOnly = true)
     public List<TimeSlotResponse> findAllTimeSlots() {
-        return timeSlotRepository.findAll().stream()
+        return referenceDataCache.getAllTimeSlots().stream()
                 .map(this::convertToResponseDto)
                 .collect(Collectors.toList());
     }
 
     @Transactional(readOnly = true)
     public TimeSlotResponse findTimeSlotById(Integer id) {
-        TimeSlot timeSlot = timeSlotRepository.findById(id)
+        TimeSlot timeSlot = referenceDataCache.getTimeSlot(id)
                 .orElseThrow(() -> new ResourceNotFoundException("TimeSlot not found with id " + id));
         return convertToResponseDto(timeSlot);
     }
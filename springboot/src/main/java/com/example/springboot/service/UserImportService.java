@@ -0,0 +1,284 @@
+package com.example.springboot.service;
+
+import com.example.springboot.dto.user.UserCreateRequest;
+import com.example.springboot.dto.user.UserImportResponse;
+import com.example.springboot.entity.enums.BlacklistStatus;
+import com.example.springboot.exception.BadRequestException;
+import com.example.springboot.repository.AdminRepository;
+import com.example.springboot.repository.DoctorRepository;
+import com.example.springboot.repository.PatientProfileRepository;
+import com.example.springboot.repository.PatientRepository;
+import com.example.springboot.util.PasswordEncoderUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 用户批量导入
+ * 1. 一次性批量查询文件中出现的已有账号和身份证号，放入哈希集合，逐行查重不再访问数据库；
+ * 2. 患者账号按块处理：块内密码在线程池中并行加密，再用 JDBC 批量插入患者表和患者档案表，每块一个事务；
+ * 3. 某块批量插入失败（如手机号重复）时回滚该块并逐条重新插入，定位失败的行。
+ * 医生等其他角色的行沿用单条创建逻辑。每行的失败信息与单条创建时相同。
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UserImportService {
+
+    // 批量查重时 IN 查询每次携带的参数个数
+    private static final int PREFETCH_BATCH_SIZE = 1000;
+
+    private static final String INSERT_PATIENT_SQL =
+            "INSERT INTO patients (identifier, patient_type, password_hash, full_name, phone_number, status, created_at, updated_at) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_PATIENT_PROFILE_SQL =
+            "INSERT INTO patient_profiles (patient_id, id_card_number, allergies, medical_history, no_show_count, blacklist_status) " +
+                    "VALUES (?, ?, ?, ?, 0, ?)";
+
+    private final PatientRepository patientRepository;
+    private final DoctorRepository doctorRepository;
+    private final AdminRepository adminRepository;
+    private final PatientProfileRepository patientProfileRepository;
+    private final PasswordEncoderUtil passwordEncoderUtil;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    // 每个事务写入的患者数
+    @Value("${app.user-import.chunk-size:500}")
+    private int chunkSize;
+
+    // 密码加密线程数，0 表示使用 CPU 核数
+    @Value("${app.user-import.hash-threads:0}")
+    private int hashThreads;
+
+    private ExecutorService hashExecutor;
+
+    /**
+     * 待写入的患者账号
+     */
+    private static final class PendingPatient {
+        final int row;
+        final UserCreateRequest request;
+        String passwordHash;
+
+        PendingPatient(int row, UserCreateRequest request) {
+            this.row = row;
+            this.request = request;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        int threads = hashThreads > 0 ? hashThreads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        hashExecutor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "user-import-hash-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hashExecutor.shutdownNow();
+    }
+
+    /**
+     * 批量导入用户
+     *
+     * @param requests      解析后的导入行
+     * @param singleCreator 非患者账号的单条创建逻辑
+     */
+    public UserImportResponse importUsers(List<UserCreateRequest> requests, Consumer<UserCreateRequest> singleCreator) {
+        long startedAt = System.currentTimeMillis();
+        String[] errors = new String[requests.size()];
+
+        Set<String> identifiers = prefetch(requests, UserCreateRequest::getId, ids -> {
+            List<String> existing = new ArrayList<>(patientRepository.findExistingIdentifiers(ids));
+            existing.addAll(doctorRepository.findExistingIdentifiers(ids));
+            existing.addAll(adminRepository.findExistingUsernames(ids));
+            return existing;
+        });
+        Set<String> idCardNumbers = prefetch(requests, UserCreateRequest::getId_card,
+                patientProfileRepository::findExistingIdCardNumbers);
+
+        List<PendingPatient> chunk = new ArrayList<>(chunkSize);
+        for (int row = 0; row < requests.size(); row++) {
+            UserCreateRequest request = requests.get(row);
+            try {
+                if (request.getId() != null && identifiers.contains(normalize(request.getId()))) {
+                    throw new BadRequestException("账号已存在: " + request.getId());
+                }
+                if (request.getRole() != null && "PATIENT".equals(request.getRole().toUpperCase())) {
+                    if (request.getId_card() != null && idCardNumbers.contains(normalize(request.getId_card()))) {
+                        throw new BadRequestException("身份证号已存在: " + request.getId_card());
+                    }
+                    identifiers.add(normalize(request.getId()));
+                    if (request.getId_card() != null) {
+                        idCardNumbers.add(normalize(request.getId_card()));
+                    }
+                    chunk.add(new PendingPatient(row, request));
+                    if (chunk.size() >= chunkSize) {
+                        writeChunk(chunk, errors);
+                        chunk.clear();
+                    }
+                } else {
+                    // 先写入前面的患者，保持与逐行创建相同的顺序
+                    writeChunk(chunk, errors);
+                    chunk.clear();
+                    transactionTemplate.executeWithoutResult(status -> singleCreator.accept(request));
+                    if (request.getId() != null) {
+                        identifiers.add(normalize(request.getId()));
+                    }
+                }
+            } catch (Exception e) {
+                errors[row] = String.valueOf(e.getMessage());
+            }
+        }
+        writeChunk(chunk, errors);
+
+        UserImportResponse response = new UserImportResponse();
+        response.setTotal(requests.size());
+        for (int row = 0; row < requests.size(); row++) {
+            if (errors[row] == null) {
+                response.setSuccess(response.getSuccess() + 1);
+            } else {
+                response.setFailed(response.getFailed() + 1);
+                response.getErrorMessages().add(
+                        String.format("账号[%s]创建失败: %s", requests.get(row).getId(), errors[row])
+                );
+            }
+        }
+        log.info("用户批量导入完成，共 {} 行，成功 {} 行，失败 {} 行，耗时 {} ms",
+                response.getTotal(), response.getSuccess(), response.getFailed(), System.currentTimeMillis() - startedAt);
+        return response;
+    }
+
+    /**
+     * 分批查询文件中已存在于数据库的取值
+     */
+    private Set<String> prefetch(List<UserCreateRequest> requests,
+                                 Function<UserCreateRequest, String> field,
+                                 Function<Collection<String>, List<String>> query) {
+        List<String> values = requests.stream().map(field).filter(Objects::nonNull).distinct().toList();
+        Set<String> existing = new HashSet<>();
+        for (int from = 0; from < values.size(); from += PREFETCH_BATCH_SIZE) {
+            List<String> batch = values.subList(from, Math.min(from + PREFETCH_BATCH_SIZE, values.size()));
+            for (String value : query.apply(batch)) {
+                existing.add(normalize(value));
+            }
+        }
+        return existing;
+    }
+
+    /**
+     * 查重用的规范化取值：数据库排序规则不区分大小写（如身份证号末位 x/X）
+     */
+    private static String normalize(String value) {
+        return value.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * 并行加密密码后在一个事务内批量写入；失败时逐条重试，记录失败行
+     */
+    private void writeChunk(List<PendingPatient> chunk, String[] errors) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        CompletableFuture.allOf(chunk.stream()
+                .map(pending -> CompletableFuture.runAsync(() -> pending.passwordHash = encodePassword(pending.request.getPassword()), hashExecutor))
+                .toArray(CompletableFuture[]::new)).join();
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> insertPatients(chunk));
+        } catch (RuntimeException e) {
+            log.warn("批量写入 {} 个患者账号失败，逐条重试: {}", chunk.size(), e.getMessage());
+            for (PendingPatient pending : chunk) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> insertPatients(List.of(pending)));
+                } catch (RuntimeException ex) {
+                    errors[pending.row] = String.valueOf(ex.getMessage());
+                }
+            }
+        }
+    }
+
+    private String encodePassword(String password) {
+        // 与 PatientService.createPatient 一致：空密码不加密
+        return password != null && !password.isEmpty() ? passwordEncoderUtil.encodePassword(password) : password;
+    }
+
+    private void insertPatients(List<PendingPatient> patients) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(con -> con.prepareStatement(INSERT_PATIENT_SQL, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        PendingPatient pending = patients.get(i);
+                        UserCreateRequest request = pending.request;
+                        ps.setString(1, request.getId());
+                        ps.setString(2, request.getPatientType() != null ? request.getPatientType().name() : null);
+                        ps.setString(3, pending.passwordHash);
+                        ps.setString(4, request.getName());
+                        ps.setString(5, request.getPhone());
+                        ps.setString(6, request.getPatientStatus() != null ? request.getPatientStatus().name() : null);
+                        ps.setTimestamp(7, now);
+                        ps.setTimestamp(8, now);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return patients.size();
+                    }
+                }, keyHolder);
+
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        if (keys.size() != patients.size()) {
+            throw new IllegalStateException("患者主键回填数量不一致: " + keys.size() + "/" + patients.size());
+        }
+
+        List<Object[]> profiles = new ArrayList<>(patients.size());
+        for (int i = 0; i < patients.size(); i++) {
+            UserCreateRequest request = patients.get(i).request;
+            if (request.getId_card() == null) {
+                continue;
+            }
+            Number patientId = (Number) keys.get(i).values().iterator().next();
+            profiles.add(new Object[]{patientId.longValue(), request.getId_card(), request.getAllergy_history(),
+                    request.getPast_medical_history(), BlacklistStatus.normal.name()});
+        }
+        if (!profiles.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_PATIENT_PROFILE_SQL, profiles);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.springboot.service;
+
+import com.example.springboot.entity.Waitlist;
+import com.example.springboot.entity.enums.WaitlistStatus;
+import com.example.springboot.repository.WaitlistRepository;
+import com.example.springboot.util.OrderStatisticTree;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 候补排名索引
+ * 以排班为单位在内存中维护等待中（waiting）候补的顺序统计树（按加入时间、候补ID排序），
+ * 查询排队位置和等待总人数为 O(log n)，不再读取整个候补队列。
+ *
+ * 索引在首次查询时从数据库加载；候补记录的新增、状态变化、删除由 WaitlistChangeListener 在事务提交后同步到索引，
+ * 所有写候补表的地方（加入、取消、候补填充、超时处理等）都无需单独调用。
+ * 索引加载超过一定时间后整体丢弃、下次查询重新加载，兜底修正并发提交顺序导致的偏差。
+ */
+@Service
+public class WaitlistRankIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(WaitlistRankIndex.class);
+
+    private static final Comparator<QueueEntry> QUEUE_ORDER = Comparator
+            .comparing(QueueEntry::createdAt)
+            .thenComparing(QueueEntry::waitlistId);
+
+    private final WaitlistRepository waitlistRepository;
+    // 加载使用独立的只读事务，读到的是加载时刻已提交的数据（不受调用方事务快照影响）
+    private final TransactionTemplate loadTransaction;
+
+    // scheduleId -> 候补队列
+    private final Map<Integer, ScheduleQueue> queues = new ConcurrentHashMap<>();
+
+    // 索引加载后的最长保留时间
+    @Value("${app.waitlist.rank-index.max-age-minutes:30}")
+    private long maxAgeMinutes;
+
+    // 统计指标
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong loadCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * 排队位置
+     *
+     * @param position     排队位置（从1开始），不在等待队列中时为 0
+     * @param totalWaiting 等待中的总人数
+     */
+    public record Rank(int position, int totalWaiting) {
+    }
+
+    private record QueueEntry(LocalDateTime createdAt, Integer waitlistId) {
+    }
+
+    @Autowired
+    public WaitlistRankIndex(WaitlistRepository waitlistRepository, PlatformTransactionManager transactionManager) {
+        this.waitlistRepository = waitlistRepository;
+        this.loadTransaction = new TransactionTemplate(transactionManager);
+        this.loadTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.loadTransaction.setReadOnly(true);
+    }
+
+    /**
+     * 查询候补的排队位置和所在排班的等待总人数
+     *
+     * @return 索引正在由其他线程加载或加载失败时返回 null，由调用方查库
+     */
+    public Rank rankOf(Waitlist waitlist) {
+        Integer scheduleId = waitlist.getSchedule().getScheduleId();
+        ScheduleQueue queue = queues.computeIfAbsent(scheduleId, id -> new ScheduleQueue());
+        synchronized (queue) {
+            if (queue.loaded) {
+                hitCount.incrementAndGet();
+                return queue.rankOf(waitlist.getWaitlistId());
+            }
+            if (queue.pendingChanges != null) {
+                missCount.incrementAndGet();
+                return null;
+            }
+            queue.pendingChanges = new ArrayList<>();
+        }
+
+        // 加载期间不持有锁，期间提交的变更先记入 pendingChanges，加载完成后按顺序重放
+        List<Object[]> rows;
+        try {
+            rows = loadTransaction.execute(status -> waitlistRepository.findQueueEntries(scheduleId, WaitlistStatus.waiting));
+        } catch (RuntimeException e) {
+            logger.warn("加载候补排名索引失败，改为查库 - scheduleId: {}, 错误: {}", scheduleId, e.getMessage());
+            synchronized (queue) {
+                queue.pendingChanges = null;
+            }
+            missCount.incrementAndGet();
+            return null;
+        }
+
+        synchronized (queue) {
+            for (Object[] row : rows) {
+                queue.add((Integer) row[0], (LocalDateTime) row[1]);
+            }
+            for (Runnable change : queue.pendingChanges) {
+                change.run();
+            }
+            queue.pendingChanges = null;
+            queue.loaded = true;
+            queue.loadedAt = System.currentTimeMillis();
+            loadCount.incrementAndGet();
+            return queue.rankOf(waitlist.getWaitlistId());
+        }
+    }
+
+    /**
+     * 候补记录新增或更新后同步索引（由 WaitlistChangeListener 在事务提交后调用）
+     */
+    public void onWaitlistSaved(Integer scheduleId, Integer waitlistId, LocalDateTime createdAt, WaitlistStatus status) {
+        if (status == WaitlistStatus.waiting && createdAt != null) {
+            apply(scheduleId, queue -> queue.add(waitlistId, createdAt));
+        } else {
+            apply(scheduleId, queue -> queue.remove(waitlistId));
+        }
+    }
+
+    /**
+     * 候补记录删除后同步索引（由 WaitlistChangeListener 在事务提交后调用）
+     */
+    public void onWaitlistRemoved(Integer scheduleId, Integer waitlistId) {
+        apply(scheduleId, queue -> queue.remove(waitlistId));
+    }
+
+    private void apply(Integer scheduleId, Consumer<ScheduleQueue> change) {
+        ScheduleQueue queue = queues.get(scheduleId);
+        if (queue == null) {
+            return; // 尚未加载，下次查询时从数据库读取
+        }
+        synchronized (queue) {
+            if (queue.loaded) {
+                change.accept(queue);
+            } else if (queue.pendingChanges != null) {
+                queue.pendingChanges.add(() -> change.accept(queue));
+            }
+        }
+    }
+
+    /**
+     * 候补排名索引统计
+     */
+    public Map<String, Object> getStats() {
+        long hits = hitCount.get();
+        long misses = missCount.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("trackedSchedules", queues.size());
+        stats.put("hits", hits);
+        stats.put("loads", loadCount.get());
+        stats.put("fallbacks", misses);
+        stats.put("hitRate", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        return stats;
+    }
+
+    /**
+     * 丢弃加载时间超过上限的索引，下次查询重新加载
+     * 每分钟执行一次
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void evictExpired() {
+        long deadline = System.currentTimeMillis() - maxAgeMinutes * 60_000L;
+        queues.values().removeIf(queue -> {
+            synchronized (queue) {
+                return queue.loaded && queue.loadedAt < deadline;
+            }
+        });
+    }
+
+    /**
+     * 单个排班的等待队列
+     */
+    private static class ScheduleQueue {
+        private final OrderStatisticTree<QueueEntry> tree = new OrderStatisticTree<>(QUEUE_ORDER);
+        // waitlistId -> 排序键（删除时需要）
+        private final Map<Integer, QueueEntry> entries = new HashMap<>();
+        private boolean loaded;
+        private long loadedAt;
+        // 加载中记录的变更，加载完成后重放；为 null 表示没有在加载
+        private List<Runnable> pendingChanges;
+
+        void add(Integer waitlistId, LocalDateTime createdAt) {
+            if (entries.containsKey(waitlistId)) {
+                return;
+            }
+            QueueEntry entry = new QueueEntry(createdAt, waitlistId);
+            entries.put(waitlistId, entry);
+            tree.add(entry);
+        }
+
+        void remove(Integer waitlistId) {
+            QueueEntry entry = entries.remove(waitlistId);
+            if (entry != null) {
+                tree.remove(entry);
+            }
+        }
+
+        Rank rankOf(Integer waitlistId) {
+            QueueEntry entry = entries.get(waitlistId);
+            return new Rank(entry != null ? tree.rank(entry) + 1 : 0, tree.size());
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.example.springboot.service;
 
 import com.example.springboot.dto.appointment.AppointmentResponse;
 import com.example.springboot.dto.appointment.AppointmentUpdateRequest;
+import com.example.springboot.dto.common.CursorPageResponse;
 import com.example.springboot.dto.common.PageResponse;
 import com.example.springboot.dto.patient.PatientSimpleResponse;
 import com.example.springboot.dto.payment.PaymentRequest;
@@ -22,6 +23,8 @@ import com.example.springboot.repository.AppointmentRepository;
 import com.example.springboot.repository.PatientRepository;
 import com.example.springboot.repository.ScheduleRepository;
 import com.example.springboot.repository.WaitlistRepository;
+import com.example.springboot.util.CursorPaging;
+import com.example.springboot.util.NdjsonWriter;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
@@ -31,14 +34,23 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.function.ToIntFunction;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class WaitlistService {
 
+    // 候补通知后的支付时限（分钟），超时未支付自动过期并释放号源
+    public static final int PAYMENT_TIMEOUT_MINUTES = 15;
+
     private final WaitlistRepository waitlistRepository;
     private final PatientRepository patientRepository;
     private final ScheduleRepository scheduleRepository;
@@ -47,6 +59,10 @@ public class WaitlistService {
     private final ScheduleService scheduleService;
     private final AppointmentService appointmentService; // For converting schedule entity to DTO
     private final NotificationService notificationService;
+    private final SlotInventoryService slotInventoryService;
+    private final WaitlistRankIndex waitlistRankIndex;
+    private final ExpiryTimerService expiryTimerService;
+    private final NdjsonWriter ndjsonWriter;
 
     @Autowired
     public WaitlistService(WaitlistRepository waitlistRepository,
@@ -56,7 +72,11 @@ public class WaitlistService {
                            PatientService patientService,
                            ScheduleService scheduleService,
                            AppointmentService appointmentService,
-                           NotificationService notificationService) {
+                           NotificationService notificationService,
+                           SlotInventoryService slotInventoryService,
+                           WaitlistRankIndex waitlistRankIndex,
+                           ExpiryTimerService expiryTimerService,
+                           NdjsonWriter ndjsonWriter) {
         this.waitlistRepository = waitlistRepository;
         this.patientRepository = patientRepository;
         this.scheduleRepository = scheduleRepository;
@@ -65,6 +85,10 @@ public class WaitlistService {
         this.scheduleService = scheduleService;
         this.appointmentService = appointmentService;
         this.notificationService = notificationService;
+        this.slotInventoryService = slotInventoryService;
+        this.waitlistRankIndex = waitlistRankIndex;
+        this.expiryTimerService = expiryTimerService;
+        this.ndjsonWriter = ndjsonWriter;
     }
 
     @Transactional(readOnly = true)
@@ -74,6 +98,51 @@ public class WaitlistService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * 候补游标分页（按ID倒序），cursor 传上一页返回的 nextCursor
+     */
+    @Transactional(readOnly = true)
+    public CursorPageResponse<WaitlistResponse> getWaitlistPage(WaitlistStatus status, String cursor, Integer size) {
+        int pageSize = CursorPaging.pageSize(size);
+        List<Waitlist> rows = waitlistRepository.findPageWithDetails(
+                status, CursorPaging.parseIntCursor(cursor), CursorPaging.limit(pageSize));
+        return CursorPaging.toPage(rows, pageSize, this::convertToResponseDto, Waitlist::getWaitlistId);
+    }
+
+    /**
+     * 以 NDJSON 流式导出候补（按ID倒序），供批量拉取使用，内存占用与总条数无关
+     */
+    @Transactional(readOnly = true)
+    public void writeWaitlistsNdjson(WaitlistStatus status, OutputStream out) throws IOException {
+        // 流式读取期间同一连接不能执行其他语句，排队位置在打开结果集前一次算好
+        Map<Integer, Integer> positions = status == null || status == WaitlistStatus.waiting
+                ? waitingPositions()
+                : Map.of();
+        try (Stream<Waitlist> waitlists = waitlistRepository.streamWithDetails(status)) {
+            ndjsonWriter.write(waitlists,
+                    waitlist -> convertToResponseDto(waitlist, w -> positions.getOrDefault(w.getWaitlistId(), 0)),
+                    out);
+        }
+    }
+
+    /**
+     * 所有等待中候补的排队位置（waitlistId -> 位置，从1开始），排序规则与候补排名索引一致
+     */
+    private Map<Integer, Integer> waitingPositions() {
+        Map<Integer, Integer> positions = new HashMap<>();
+        Integer currentScheduleId = null;
+        int position = 0;
+        for (Object[] row : waitlistRepository.findAllQueueEntries(WaitlistStatus.waiting)) {
+            Integer scheduleId = (Integer) row[0];
+            if (!scheduleId.equals(currentScheduleId)) {
+                currentScheduleId = scheduleId;
+                position = 0;
+            }
+            positions.put((Integer) row[1], ++position);
+        }
+        return positions;
+    }
+
     @Transactional(readOnly = true)
     public WaitlistResponse findWaitlistById(Integer id) {
         Waitlist waitlist = waitlistRepository.findById(id)
@@ -157,10 +226,10 @@ public class WaitlistService {
                 .orElseThrow(() -> new ResourceNotFoundException("Schedule not found with id " + scheduleId));
 
         // 检查是否有空余号源
-        System.out.println("候补填充检查号源 - bookedSlots: " + schedule.getBookedSlots() + ", totalSlots: " + schedule.getTotalSlots());
+        System.out.println("候补填充检查号源 - bookedSlots: " + slotInventoryService.getBookedSlots(schedule) + ", totalSlots: " + schedule.getTotalSlots());
         
-        if (schedule.getBookedSlots() >= schedule.getTotalSlots()) {
-            System.out.println("号源已满（bookedSlots: " + schedule.getBookedSlots() + "），无法填充候补");
+        if (!slotInventoryService.hasAvailable(schedule)) {
+            System.out.println("号源已满（bookedSlots: " + slotInventoryService.getBookedSlots(schedule) + "），无法填充候补");
             return null; // 没有空余号源
         }
 
@@ -189,25 +258,19 @@ public class WaitlistService {
             }
 
             // 找到合适的候补人员，通知患者支付
-            // 重要：此时需要锁定号源，防止其他人预约
-            // 刷新 schedule 对象，确保获取最新的 bookedSlots 值
-            schedule = scheduleRepository.findById(schedule.getScheduleId())
-                    .orElseThrow(() -> new ResourceNotFoundException("Schedule not found"));
-            
-            // 再次检查号源是否还有空位（防止并发问题）
-            if (schedule.getBookedSlots() >= schedule.getTotalSlots()) {
-                System.out.println("候补填充时号源已被占用，跳过此候补");
-                continue;
+            // 重要：此时需要锁定号源，防止其他人预约（原子占用，并发下不会超卖）
+            if (!slotInventoryService.tryAcquire(schedule)) {
+                System.out.println("候补填充时号源已被占用，停止填充");
+                return null;
             }
-            
-            // 锁定号源：bookedSlots + 1（为候补患者预留）
-            schedule.setBookedSlots(schedule.getBookedSlots() + 1);
-            scheduleRepository.save(schedule);
-            System.out.println("候补号源已锁定，bookedSlots: " + schedule.getBookedSlots() + ", totalSlots: " + schedule.getTotalSlots());
+            System.out.println("候补号源已锁定，bookedSlots: " + slotInventoryService.getBookedSlots(schedule) + ", totalSlots: " + schedule.getTotalSlots());
             
             waitlist.setStatus(WaitlistStatus.notified); // 标记为已通知（等待支付）
             waitlist.setNotificationSentAt(LocalDateTime.now()); // 记录通知发送时间
             waitlistRepository.save(waitlist); // 保存候补
+            // 登记支付截止时间，超时由到期定时器触发过期处理
+            expiryTimerService.schedule(ExpiryTimerService.ExpiryType.WAITLIST_PAYMENT, waitlist.getWaitlistId(),
+                    waitlist.getNotificationSentAt().plusMinutes(PAYMENT_TIMEOUT_MINUTES));
             
             System.out.println("候补通知已发送，号源已锁定，等待患者支付，waitlistId: " + waitlist.getWaitlistId());
             
@@ -254,7 +317,24 @@ public class WaitlistService {
     }
 
 
+    /**
+     * 等待中候补的排队位置（从1开始）
+     * 优先取候补排名索引；索引未就绪或记录尚未提交（如刚加入队列）时按创建时间计数
+     */
+    private int queuePositionOf(Waitlist waitlist) {
+        WaitlistRankIndex.Rank rank = waitlistRankIndex.rankOf(waitlist);
+        if (rank != null && rank.position() > 0) {
+            return rank.position();
+        }
+        return (int) waitlistRepository.countByScheduleAndStatusAndCreatedAtBefore(
+                waitlist.getSchedule(), WaitlistStatus.waiting, waitlist.getCreatedAt()) + 1;
+    }
+
     public WaitlistResponse convertToResponseDto(Waitlist waitlist) {
+        return convertToResponseDto(waitlist, this::queuePositionOf);
+    }
+
+    private WaitlistResponse convertToResponseDto(Waitlist waitlist, ToIntFunction<Waitlist> positionOf) {
         WaitlistResponse response = new WaitlistResponse();
         BeanUtils.copyProperties(waitlist, response, "patient", "schedule");
         response.setPatient(patientService.convertToResponseDto(waitlist.getPatient()));
@@ -262,12 +342,7 @@ public class WaitlistService {
         
         // 计算排队位置（仅对 waiting 状态）
         if (waitlist.getStatus() == WaitlistStatus.waiting) {
-            long position = waitlistRepository.countByScheduleAndStatusAndCreatedAtBefore(
-                waitlist.getSchedule(), 
-                WaitlistStatus.waiting, 
-                waitlist.getCreatedAt()
-            ) + 1;
-            response.setQueuePosition((int) position);
+            response.setQueuePosition(positionOf.applyAsInt(waitlist));
         } else {
             response.setQueuePosition(null);
         }
@@ -298,19 +373,13 @@ public class WaitlistService {
         if (waitlist.getStatus() == WaitlistStatus.notified) {
             Schedule schedule = waitlist.getSchedule();
             if (schedule != null) {
-                // 刷新 schedule 对象，确保获取最新的 bookedSlots 值
-                schedule = scheduleRepository.findById(schedule.getScheduleId())
-                        .orElseThrow(() -> new ResourceNotFoundException("Schedule not found"));
-                
                 // 释放号源：bookedSlots - 1（因为通知时已经锁定了）
-                if (schedule.getBookedSlots() > 0) {
-                    schedule.setBookedSlots(schedule.getBookedSlots() - 1);
-                    scheduleRepository.save(schedule);
-                    System.out.println("候补取消 - 释放号源，bookedSlots: " + schedule.getBookedSlots() + ", totalSlots: " + schedule.getTotalSlots());
+                if (slotInventoryService.release(schedule)) {
+                    System.out.println("候补取消 - 释放号源，bookedSlots: " + slotInventoryService.getBookedSlots(schedule) + ", totalSlots: " + schedule.getTotalSlots());
                 }
                 
                 // 触发自动填充（通知下一个候补）
-                if (schedule.getBookedSlots() < schedule.getTotalSlots()) {
+                if (slotInventoryService.hasAvailable(schedule)) {
                     try {
                         createAppointmentFromWaitlist(schedule.getScheduleId());
                     } catch (Exception e) {
@@ -345,11 +414,12 @@ public class WaitlistService {
 
         // 3. 检查号源是否已被占用（号源在通知时已锁定，这里只需要检查是否超出）
         // 注意：bookedSlots 在通知时已经 +1（锁定），所以这里应该 <= totalSlots
-        System.out.println("候补支付检查号源 - bookedSlots(已锁定): " + schedule.getBookedSlots() + ", totalSlots: " + schedule.getTotalSlots());
+        int bookedSlots = slotInventoryService.getBookedSlots(schedule);
+        System.out.println("候补支付检查号源 - bookedSlots(已锁定): " + bookedSlots + ", totalSlots: " + schedule.getTotalSlots());
         
         // 如果 bookedSlots 超过 totalSlots，说明号源已被其他人占用（不应该发生，但需要检查）
-        if (schedule.getBookedSlots() > schedule.getTotalSlots()) {
-            System.out.println("候补支付时号源异常（bookedSlots: " + schedule.getBookedSlots() + " > totalSlots: " + schedule.getTotalSlots() + "），无法完成支付");
+        if (bookedSlots > schedule.getTotalSlots()) {
+            System.out.println("候补支付时号源异常（bookedSlots: " + bookedSlots + " > totalSlots: " + schedule.getTotalSlots() + "），无法完成支付");
             throw new BadRequestException("No available slot, the schedule is already fully booked");
         }
 
@@ -372,7 +442,7 @@ public class WaitlistService {
 
         // 6. 号源已经在通知时锁定了（bookedSlots + 1），所以这里不需要再增加
         // 只需要确保 bookedSlots 正确（如果之前同步更新过，这里不需要再改）
-        System.out.println("候补支付成功，创建预约，bookedSlots: " + schedule.getBookedSlots() + "（号源已在通知时锁定）");
+        System.out.println("候补支付成功，创建预约，bookedSlots: " + bookedSlots + "（号源已在通知时锁定）");
 
         // 7. 更新候补状态为已预约
         waitlist.setStatus(WaitlistStatus.booked);
@@ -445,17 +515,17 @@ public class WaitlistService {
         Waitlist waitlist = waitlistRepository.findById(waitlistId)
                 .orElseThrow(() -> new ResourceNotFoundException("Waitlist entry not found with id " + waitlistId));
 
-        // 获取同一排班下状态为waiting的所有候补记录（按创建时间升序）
-        List<Waitlist> waitingList = waitlistRepository
-                .findByScheduleAndStatusOrderByCreatedAtAsc(waitlist.getSchedule(), WaitlistStatus.waiting);
-
-        // 计算当前位置
-        int position = 0;
-        for (int i = 0; i < waitingList.size(); i++) {
-            if (waitingList.get(i).getWaitlistId().equals(waitlistId)) {
-                position = i + 1; // 位置从1开始
-                break;
-            }
+        // 从候补排名索引取当前位置和等待总人数（不在等待队列中时位置为0）
+        int position;
+        int totalWaiting;
+        WaitlistRankIndex.Rank rank = waitlistRankIndex.rankOf(waitlist);
+        if (rank != null && (rank.position() > 0 || waitlist.getStatus() != WaitlistStatus.waiting)) {
+            position = rank.position();
+            totalWaiting = rank.totalWaiting();
+        } else {
+            // 索引正在加载或尚未同步到该记录，按创建时间计数
+            position = waitlist.getStatus() == WaitlistStatus.waiting ? queuePositionOf(waitlist) : 0;
+            totalWaiting = (int) waitlistRepository.countByScheduleAndStatus(waitlist.getSchedule(), WaitlistStatus.waiting);
         }
 
         // 构建响应对象
@@ -464,7 +534,7 @@ public class WaitlistService {
         response.setScheduleId(waitlist.getSchedule().getScheduleId());
         response.setStatus(waitlist.getStatus());
         response.setPosition(position);
-        response.setTotalWaiting(waitingList.size());
+        response.setTotalWaiting(totalWaiting);
 
         // 简单估算等待时间（实际项目中可根据历史数据进行更精确的估算）
         if (position > 0) {
@@ -522,9 +592,7 @@ public class WaitlistService {
 
                     // 计算候补位置（仅waiting状态有效）
                     if (waitlist.getStatus() == WaitlistStatus.waiting) {
-                        long position = waitlistRepository.countByScheduleAndStatusAndCreatedAtBefore(
-                                schedule, WaitlistStatus.waiting, waitlist.getCreatedAt()) + 1;
-                        response.setPosition((int) position);
+                        response.setPosition(queuePositionOf(waitlist));
                     } else {
                         response.setPosition(null);
                     }
@@ -543,14 +611,14 @@ public class WaitlistService {
     }
 
     /**
-     * 处理超时的候补记录
+     * 处理超时的候补记录（兜底扫描）
      * 将状态为 notified 且通知发送时间超过15分钟的候补记录更新为 expired
      * 如果该候补对应的排班还有空余号源，触发自动填充流程
      */
     @Transactional
     public void expireNotifiedWaitlists() {
         // 计算过期时间点（当前时间减去15分钟）
-        LocalDateTime expireTime = LocalDateTime.now().minusMinutes(15);
+        LocalDateTime expireTime = LocalDateTime.now().minusMinutes(PAYMENT_TIMEOUT_MINUTES);
         
         // 查询超时的候补记录
         List<Waitlist> expiredWaitlists = waitlistRepository.findExpiredNotifiedWaitlists(
@@ -559,44 +627,74 @@ public class WaitlistService {
         System.out.println("候补超时处理 - 找到 " + expiredWaitlists.size() + " 个超时的候补记录");
         
         for (Waitlist waitlist : expiredWaitlists) {
-            System.out.println("处理超时候补 - waitlistId: " + waitlist.getWaitlistId() + 
-                    ", notificationSentAt: " + waitlist.getNotificationSentAt());
-            
-            // 更新状态为 expired
-            waitlist.setStatus(WaitlistStatus.expired);
-            waitlistRepository.save(waitlist);
+            expireWaitlist(waitlist);
+        }
+        
+        System.out.println("候补超时处理完成 - 共处理 " + expiredWaitlists.size() + " 个超时的候补记录");
+    }
+
+    /**
+     * 处理单个超时的候补记录（到期定时器触发）
+     * 已支付、已取消或尚未超时的候补直接跳过
+     */
+    @Transactional
+    public void expireNotifiedWaitlist(Integer waitlistId) {
+        Waitlist waitlist = waitlistRepository.findById(waitlistId).orElse(null);
+        if (waitlist == null || waitlist.getStatus() != WaitlistStatus.notified || waitlist.getNotificationSentAt() == null
+                || waitlist.getNotificationSentAt().plusMinutes(PAYMENT_TIMEOUT_MINUTES).isAfter(LocalDateTime.now())) {
+            return;
+        }
+        expireWaitlist(waitlist);
+    }
+
+    /**
+     * 候补过期：更新状态、释放锁定的号源并通知下一个候补
+     */
+    private void expireWaitlist(Waitlist waitlist) {
+        System.out.println("处理超时候补 - waitlistId: " + waitlist.getWaitlistId() + 
+                ", notificationSentAt: " + waitlist.getNotificationSentAt());
+        
+        // 更新状态为 expired
+        waitlist.setStatus(WaitlistStatus.expired);
+        waitlistRepository.save(waitlist);
+        
+        // 释放锁定的号源（候补超时未支付）
+        Schedule schedule = waitlist.getSchedule();
+        if (schedule != null) {
+            // 释放号源：bookedSlots - 1（因为通知时已经锁定了）
+            if (slotInventoryService.release(schedule)) {
+                System.out.println("候补超时处理 - 释放号源，bookedSlots: " + slotInventoryService.getBookedSlots(schedule) + ", totalSlots: " + schedule.getTotalSlots());
+            }
             
-            // 释放锁定的号源（候补超时未支付）
-            Schedule schedule = waitlist.getSchedule();
-            if (schedule != null) {
-                // 刷新 schedule 对象，确保获取最新的 bookedSlots 值
-                schedule = scheduleRepository.findById(schedule.getScheduleId())
-                        .orElseThrow(() -> new ResourceNotFoundException("Schedule not found"));
-                
-                // 释放号源：bookedSlots - 1（因为通知时已经锁定了）
-                if (schedule.getBookedSlots() > 0) {
-                    schedule.setBookedSlots(schedule.getBookedSlots() - 1);
-                    scheduleRepository.save(schedule);
-                    System.out.println("候补超时处理 - 释放号源，bookedSlots: " + schedule.getBookedSlots() + ", totalSlots: " + schedule.getTotalSlots());
-                }
-                
-                // 检查是否还有空余号源，触发自动填充（通知下一个候补）
-                if (schedule.getBookedSlots() < schedule.getTotalSlots()) {
-                    System.out.println("候补超时处理 - 触发自动填充，scheduleId: " + schedule.getScheduleId());
-                    try {
-                        createAppointmentFromWaitlist(schedule.getScheduleId());
-                    } catch (Exception e) {
-                        // 自动填充失败不影响超时处理流程，只记录日志
-                        System.err.println("候补超时处理 - 自动填充失败: " + e.getMessage());
-                        e.printStackTrace();
-                    }
-                } else {
-                    System.out.println("候补超时处理 - 号源已满，无需自动填充");
+            // 检查是否还有空余号源，触发自动填充（通知下一个候补）
+            if (slotInventoryService.hasAvailable(schedule)) {
+                System.out.println("候补超时处理 - 触发自动填充，scheduleId: " + schedule.getScheduleId());
+                try {
+                    createAppointmentFromWaitlist(schedule.getScheduleId());
+                } catch (Exception e) {
+                    // 自动填充失败不影响超时处理流程，只记录日志
+                    System.err.println("候补超时处理 - 自动填充失败: " + e.getMessage());
+                    e.printStackTrace();
                 }
+            } else {
+                System.out.println("候补超时处理 - 号源已满，无需自动填充");
             }
         }
-        
-        System.out.println("候补超时处理完成 - 共处理 " + expiredWaitlists.size() + " 个超时的候补记录");
+    }
+
+    /**
+     * 为所有等待支付中的候补登记到期定时器（应用启动时调用，定时只保存在内存中）
+     *
+     * @return 登记的候补数
+     */
+    @Transactional(readOnly = true)
+    public int schedulePendingExpirations() {
+        List<Waitlist> notified = waitlistRepository.findByStatusAndNotificationSentAtIsNotNull(WaitlistStatus.notified);
+        for (Waitlist waitlist : notified) {
+            expiryTimerService.schedule(ExpiryTimerService.ExpiryType.WAITLIST_PAYMENT, waitlist.getWaitlistId(),
+                    waitlist.getNotificationSentAt().plusMinutes(PAYMENT_TIMEOUT_MINUTES));
+        }
+        return notified.size();
     }
 
 }
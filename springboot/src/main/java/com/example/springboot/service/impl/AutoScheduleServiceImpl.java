@@ -7,8 +7,11 @@ import com.example.springboot.entity.enums.DoctorStatus;
 import com.example.springboot.entity.enums.ScheduleStatus;
 import com.example.springboot.repository.*;
 import com.example.springboot.service.AutoScheduleService;
+import com.example.springboot.service.ReferenceDataCache;
 import com.example.springboot.util.ConflictDetector;
+import com.example.springboot.util.ScheduleAvailabilityIndex;
 import com.example.springboot.util.ScheduleConstraintValidator;
+import com.example.springboot.util.ScheduleOptimizer;
 import com.example.springboot.util.WorkloadCalculator;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -33,7 +36,7 @@ public class AutoScheduleServiceImpl implements AutoScheduleService {
     private DoctorRepository doctorRepository;
     
     @Autowired
-    private TimeSlotRepository timeSlotRepository;
+    private ReferenceDataCache referenceDataCache;
     
     @Autowired
     private LocationRepository locationRepository;
@@ -53,6 +56,9 @@ public class AutoScheduleServiceImpl implements AutoScheduleService {
     @Autowired
     private ConflictDetector conflictDetector;
     
+    @Autowired
+    private ScheduleOptimizer scheduleOptimizer;
+    
     @Override
     @Transactional
     public AutoScheduleResponse autoGenerateSchedule(AutoScheduleRequest request) {
@@ -72,7 +78,7 @@ public class AutoScheduleServiceImpl implements AutoScheduleService {
             
             // 2. 数据准备
             List<Doctor> doctors = prepareActiveDoctors(request.getDepartmentId());
-            List<TimeSlot> allTimeSlots = timeSlotRepository.findAll();
+            List<TimeSlot> allTimeSlots = referenceDataCache.getAllTimeSlots();
             
             // 🔥 新增：上午/下午各选择一个时段
             List<TimeSlot> timeSlots = selectRepresentativeSlots(allTimeSlots);
@@ -87,140 +93,36 @@ public class AutoScheduleServiceImpl implements AutoScheduleService {
                 doctors.size(), timeSlots.size(), allTimeSlots.size(), locations.size());
             
             // 3. 初始化
-            List<Schedule> generatedSchedules = new ArrayList<>();
-            Map<Integer, Integer> workloadMap = new HashMap<>();
-            List<UnassignedSlot> unassignedSlots = new ArrayList<>();
-            int relaxedCount = 0; // 统计使用放宽限制的次数
-            
             // 🔥 新增：为每个医生预分配固定诊室（避免诊室冲突）
             Map<Integer, Location> doctorLocationMap = assignDoctorLocations(doctors, locations);
             
-            // 4. 主算法循环 - CSP + 贪心策略
-            LocalDate currentDate = request.getStartDate();
-            while (!currentDate.isAfter(request.getEndDate())) {
-                for (TimeSlot slot : timeSlots) {
-                    // 🔥 获取该时段需要的医生人数
-                    int minDoctors = Math.max(1, request.getRules().getMinDoctorsPerSlot());
-                    int maxDoctors = Math.max(minDoctors, request.getRules().getMaxDoctorsPerSlot());
-                    
-                    // 🔥 记录该时段已分配的医生数量和已使用的诊室
-                    Set<Integer> slotDoctorsAssigned = new HashSet<>();
-                    Set<Integer> slotLocationsUsed = new HashSet<>();
-                    
-                    // 🔥 为该时段分配多个医生（minDoctors ~ maxDoctors）
-                    int assignedCount = 0;
-                    int attemptCount = 0;
-                    int maxAttempts = doctors.size(); // 防止无限循环
-                    
-                    while (assignedCount < minDoctors && attemptCount < maxAttempts) {
-                        attemptCount++;
-                        
-                        // 4.1 筛选可用医生（只排除该时段已排班的医生）
-                        List<Doctor> availableDoctors = filterAvailableDoctors(
-                            doctors, currentDate, slot, workloadMap, 
-                            leaveMap, generatedSchedules, existingSchedules, request.getRules()
-                        );
-                        
-                        // 🔥 排除该时段已排班的医生（允许医生在同一天的不同时段工作）
-                        availableDoctors = availableDoctors.stream()
-                            .filter(d -> !slotDoctorsAssigned.contains(d.getDoctorId()))
-                            .collect(Collectors.toList());
-                        
-                        if (availableDoctors.isEmpty()) {
-                            // 检查是否启用严格模式
-                            if (request.getRules().getStrictMode() != null && request.getRules().getStrictMode()) {
-                                // 严格模式：不放宽限制
-                                log.warn("⚠️ 严格模式：{}的时段{}已分配{}个医生，需要{}个但无更多可用医生", 
-                                    currentDate, slot.getSlotName(), assignedCount, minDoctors);
-                                break;
-                            } else {
-                                // 非严格模式：尝试放宽连续工作天数限制
-                                log.warn("{}的时段{}已分配{}个医生，需要{}个，尝试放宽连续工作限制", 
-                                    currentDate, slot.getSlotName(), assignedCount, minDoctors);
-                                availableDoctors = filterAvailableDoctorsRelaxed(
-                                    doctors, currentDate, slot, workloadMap, 
-                                    leaveMap, generatedSchedules, existingSchedules, request.getRules()
-                                );
-                                
-                                // 🔥 排除该时段已排班的医生（允许医生在同一天的不同时段工作）
-                                availableDoctors = availableDoctors.stream()
-                                    .filter(d -> !slotDoctorsAssigned.contains(d.getDoctorId()))
-                                    .collect(Collectors.toList());
-                                
-                                if (availableDoctors.isEmpty()) {
-                                    log.warn("{}的时段{}已分配{}个医生，需要{}个但无更多可用医生（已放宽限制）", 
-                                        currentDate, slot.getSlotName(), assignedCount, minDoctors);
-                                    break;
-                                } else {
-                                    relaxedCount++;
-                                    log.warn("⚠️ 已为{}的时段{}放宽连续工作限制（第{}个医生）", 
-                                        currentDate, slot.getSlotName(), assignedCount + 1);
-                                }
-                            }
-                        }
-                        
-                        // 4.2 智能选择医生（综合考虑工作量和连续工作天数）
-                        Doctor selectedDoctor = selectBestDoctor(
-                            availableDoctors, workloadMap, generatedSchedules, 
-                            currentDate, request.getRules()
-                        );
-                        
-                        // 4.4 获取医生的固定诊室
-                        Location assignedLocation = doctorLocationMap.get(selectedDoctor.getDoctorId());
-                        
-                        if (assignedLocation == null) {
-                            log.warn("医生{}未分配诊室，跳过", selectedDoctor.getFullName());
-                            continue;
-                        }
-                        
-                        // 🔥 检查诊室是否已被该时段其他医生使用
-                        if (slotLocationsUsed.contains(assignedLocation.getLocationId())) {
-                            log.warn("诊室{}在{}的时段{}已被占用，跳过医生{}", 
-                                assignedLocation.getLocationName(), currentDate, slot.getSlotName(), 
-                                selectedDoctor.getFullName());
-                            continue;
-                        }
-                        
-                        // 4.5 创建排班记录
-                        Schedule schedule = buildSchedule(
-                            selectedDoctor, currentDate, slot, 
-                            assignedLocation, request.getRules()
-                        );
-                        
-                        generatedSchedules.add(schedule);
-                        
-                        // 4.6 更新工作量
-                        workloadMap.merge(selectedDoctor.getDoctorId(), 1, Integer::sum);
-                        
-                        // 🔥 记录该医生已在该时段排班（允许同一天不同时段工作）
-                        slotDoctorsAssigned.add(selectedDoctor.getDoctorId());
-                        slotLocationsUsed.add(assignedLocation.getLocationId());
-                        assignedCount++;
-                        
-                        // 如果达到最大医生数，停止为该时段分配
-                        if (assignedCount >= maxDoctors) {
-                            break;
-                        }
-                    }
-                    
-                    // 如果未达到最小医生数，记录为未完全分配
-                    if (assignedCount < minDoctors) {
-                        UnassignedSlot unassigned = new UnassignedSlot();
-                        unassigned.setDate(currentDate);
-                        unassigned.setSlotId(slot.getSlotId());
-                        unassigned.setSlotName(slot.getSlotName());
-                        unassigned.setReason(String.format("仅分配了%d个医生，未达到最小要求%d个", 
-                            assignedCount, minDoctors));
-                        unassigned.setSuggestions(Arrays.asList(
-                            "增加医生数量", 
-                            "减少每时段最小医生数", 
-                            "调整请假安排", 
-                            "关闭严格模式"));
-                        unassignedSlots.add(unassigned);
-                    }
-                }
-                currentDate = currentDate.plusDays(1);
+            // 可用性位图：预先计算已有排班、请假，每个方案使用自己的副本并增量更新。
+            // 已有排班是当前会话中的托管实体（时段为懒加载代理），只能在请求线程上访问，因此在这里构建一次，
+            // 优化器的工作线程只使用位图副本
+            ScheduleAvailabilityIndex baseAvailability = new ScheduleAvailabilityIndex(
+                doctors, request.getStartDate(), request.getEndDate(), timeSlots,
+                existingSchedules, leaveMap, request.getRules()
+            );
+            
+            // 4. 生成排班方案；启用优化时在时间预算内并行搜索工作量更均衡的方案
+            ScheduleRules rules = request.getRules();
+            ScheduleOptimizer.Plan plan;
+            if (Boolean.TRUE.equals(rules.getOptimize())) {
+                long timeBudget = rules.getOptimizeTimeBudgetMs() != null ? rules.getOptimizeTimeBudgetMs() : 3000L;
+                ScheduleOptimizer.Result result = scheduleOptimizer.optimize(
+                    random -> generatePlan(request, doctors, timeSlots, baseAvailability, 
+                        doctorLocationMap, random),
+                    doctors, doctorLocationMap, rules, timeBudget
+                );
+                plan = result.plan();
+            } else {
+                plan = generatePlan(request, doctors, timeSlots, baseAvailability, 
+                    doctorLocationMap, null);
             }
+            List<Schedule> generatedSchedules = plan.schedules();
+            Map<Integer, Integer> workloadMap = plan.workloadMap();
+            List<UnassignedSlot> unassignedSlots = plan.unassignedSlots();
+            int relaxedCount = plan.relaxedCount();
             
             log.info("排班生成完成: 共生成{}条排班记录，其中{}条使用了放宽限制", 
                 generatedSchedules.size(), relaxedCount);
@@ -252,7 +154,8 @@ public class AutoScheduleServiceImpl implements AutoScheduleService {
                 
                 // 保存新排班（如果没有冲突或已启用覆盖模式）
                 if (conflicts.isEmpty()) {
-                    scheduleRepository.saveAll(generatedSchedules);
+                    // 使用保存后返回的实体构建响应（包含排班ID、创建时间）
+                    generatedSchedules = scheduleRepository.saveAll(generatedSchedules);
                     log.info("排班已保存到数据库");
                 } else {
                     log.warn("检测到{}个冲突，排班未保存", conflicts.size());
@@ -417,54 +320,151 @@ public class AutoScheduleServiceImpl implements AutoScheduleService {
     }
     
     /**
-     * 筛选可用医生
+     * 贪心生成一个排班方案
+     * 
+     * @param random 为 null 时按评分确定性选择医生；否则在评分上叠加随机扰动，供优化器多起点搜索使用
      */
-    private List<Doctor> filterAvailableDoctors(
+    private ScheduleOptimizer.Plan generatePlan(
+            AutoScheduleRequest request,
             List<Doctor> doctors,
-            LocalDate date,
-            TimeSlot slot,
-            Map<Integer, Integer> workloadMap,
-            Map<Integer, List<LeaveRequest>> leaveMap,
-            List<Schedule> generatedSchedules,
-            List<Schedule> existingSchedules,
-            ScheduleRules rules) {
-        
-        // 合并已有排班和新生成的排班
-        List<Schedule> allSchedules = new ArrayList<>();
-        allSchedules.addAll(existingSchedules);
-        allSchedules.addAll(generatedSchedules);
+            List<TimeSlot> timeSlots,
+            ScheduleAvailabilityIndex baseAvailability,
+            Map<Integer, Location> doctorLocationMap,
+            Random random) {
+        
+        ScheduleRules rules = request.getRules();
+        // 只有确定性贪心输出逐时段日志，优化器中的随机化方案不逐条记录
+        boolean verbose = random == null;
+        
+        List<Schedule> generatedSchedules = new ArrayList<>();
+        Map<Integer, Integer> workloadMap = new HashMap<>();
+        List<UnassignedSlot> unassignedSlots = new ArrayList<>();
+        int relaxedCount = 0; // 统计使用放宽限制的次数
+        
+        // 可用性位图副本，分配后增量更新
+        ScheduleAvailabilityIndex availability = baseAvailability.copy();
+        
+        // 主算法循环 - CSP + 贪心策略
+        LocalDate currentDate = request.getStartDate();
+        while (!currentDate.isAfter(request.getEndDate())) {
+            for (TimeSlot slot : timeSlots) {
+                // 🔥 获取该时段需要的医生人数
+                int minDoctors = Math.max(1, rules.getMinDoctorsPerSlot());
+                int maxDoctors = Math.max(minDoctors, rules.getMaxDoctorsPerSlot());
+            
+                // 🔥 记录该时段已使用的诊室
+                Set<Integer> slotLocationsUsed = new HashSet<>();
+            
+                // 🔥 为该时段分配多个医生（minDoctors ~ maxDoctors）
+                int assignedCount = 0;
+                int attemptCount = 0;
+                int maxAttempts = doctors.size(); // 防止无限循环
+            
+                while (assignedCount < minDoctors && attemptCount < maxAttempts) {
+                    attemptCount++;
+                
+                    // 4.1 筛选可用医生（该时段已排班的医生已在位图中排除，允许医生在同一天的不同时段工作）
+                    List<Doctor> availableDoctors = availability.findAvailableDoctors(
+                        currentDate, slot, false
+                    );
+                
+                    if (availableDoctors.isEmpty()) {
+                        // 检查是否启用严格模式
+                        if (rules.getStrictMode() != null && rules.getStrictMode()) {
+                            // 严格模式：不放宽限制
+                            logDetail(verbose, "⚠️ 严格模式：{}的时段{}已分配{}个医生，需要{}个但无更多可用医生", 
+                                currentDate, slot.getSlotName(), assignedCount, minDoctors);
+                            break;
+                        } else {
+                            // 非严格模式：尝试放宽连续工作天数限制
+                            logDetail(verbose, "{}的时段{}已分配{}个医生，需要{}个，尝试放宽连续工作限制", 
+                                currentDate, slot.getSlotName(), assignedCount, minDoctors);
+                            availableDoctors = availability.findAvailableDoctors(
+                                currentDate, slot, true
+                            );
+                        
+                            if (availableDoctors.isEmpty()) {
+                                logDetail(verbose, "{}的时段{}已分配{}个医生，需要{}个但无更多可用医生（已放宽限制）", 
+                                    currentDate, slot.getSlotName(), assignedCount, minDoctors);
+                                break;
+                            } else {
+                                relaxedCount++;
+                                logDetail(verbose, "⚠️ 已为{}的时段{}放宽连续工作限制（第{}个医生）", 
+                                    currentDate, slot.getSlotName(), assignedCount + 1);
+                            }
+                        }
+                    }
+                
+                    // 4.2 智能选择医生（综合考虑工作量和连续工作天数）
+                    Doctor selectedDoctor = selectBestDoctor(
+                        availableDoctors, workloadMap, availability, currentDate, random
+                    );
+                
+                    // 4.4 获取医生的固定诊室
+                    Location assignedLocation = doctorLocationMap.get(selectedDoctor.getDoctorId());
+                
+                    if (assignedLocation == null) {
+                        logDetail(verbose, "医生{}未分配诊室，跳过", selectedDoctor.getFullName());
+                        continue;
+                    }
+                
+                    // 🔥 检查诊室是否已被该时段其他医生使用
+                    if (slotLocationsUsed.contains(assignedLocation.getLocationId())) {
+                        logDetail(verbose, "诊室{}在{}的时段{}已被占用，跳过医生{}", 
+                            assignedLocation.getLocationName(), currentDate, slot.getSlotName(), 
+                            selectedDoctor.getFullName());
+                        continue;
+                    }
+                
+                    // 4.5 创建排班记录
+                    Schedule schedule = buildSchedule(
+                        selectedDoctor, currentDate, slot, 
+                        assignedLocation, rules
+                    );
+                
+                    generatedSchedules.add(schedule);
+                    availability.assign(selectedDoctor, currentDate, slot);
+                
+                    // 4.6 更新工作量
+                    workloadMap.merge(selectedDoctor.getDoctorId(), 1, Integer::sum);
+                
+                    slotLocationsUsed.add(assignedLocation.getLocationId());
+                    assignedCount++;
+                
+                    // 如果达到最大医生数，停止为该时段分配
+                    if (assignedCount >= maxDoctors) {
+                        break;
+                    }
+                }
+            
+                // 如果未达到最小医生数，记录为未完全分配
+                if (assignedCount < minDoctors) {
+                    UnassignedSlot unassigned = new UnassignedSlot();
+                    unassigned.setDate(currentDate);
+                    unassigned.setSlotId(slot.getSlotId());
+                    unassigned.setSlotName(slot.getSlotName());
+                    unassigned.setReason(String.format("仅分配了%d个医生，未达到最小要求%d个", 
+                        assignedCount, minDoctors));
+                    unassigned.setSuggestions(Arrays.asList(
+                        "增加医生数量", 
+                        "减少每时段最小医生数", 
+                        "调整请假安排", 
+                        "关闭严格模式"));
+                    unassignedSlots.add(unassigned);
+                }
+            }
+            currentDate = currentDate.plusDays(1);
+        }
         
-        return doctors.stream()
-            .filter(doctor -> constraintValidator.checkHardConstraints(
-                doctor, date, slot, leaveMap, allSchedules, workloadMap, rules
-            ))
-            .collect(Collectors.toList());
+        return new ScheduleOptimizer.Plan(
+            generatedSchedules, workloadMap, unassignedSlots, relaxedCount, availability
+        );
     }
     
-    /**
-     * 筛选可用医生（放宽连续工作天数限制）
-     * 用于紧急情况，确保每天至少有医生可用
-     */
-    private List<Doctor> filterAvailableDoctorsRelaxed(
-            List<Doctor> doctors,
-            LocalDate date,
-            TimeSlot slot,
-            Map<Integer, Integer> workloadMap,
-            Map<Integer, List<LeaveRequest>> leaveMap,
-            List<Schedule> generatedSchedules,
-            List<Schedule> existingSchedules,
-            ScheduleRules rules) {
-        
-        // 合并已有排班和新生成的排班
-        List<Schedule> allSchedules = new ArrayList<>();
-        allSchedules.addAll(existingSchedules);
-        allSchedules.addAll(generatedSchedules);
-        
-        return doctors.stream()
-            .filter(doctor -> constraintValidator.checkHardConstraintsRelaxed(
-                doctor, date, slot, leaveMap, allSchedules, workloadMap, rules
-            ))
-            .collect(Collectors.toList());
+    private void logDetail(boolean verbose, String format, Object... args) {
+        if (verbose) {
+            log.warn(format, args);
+        }
     }
     
     /**
@@ -474,9 +474,9 @@ public class AutoScheduleServiceImpl implements AutoScheduleService {
     private Doctor selectBestDoctor(
             List<Doctor> availableDoctors,
             Map<Integer, Integer> workloadMap,
-            List<Schedule> generatedSchedules,
+            ScheduleAvailabilityIndex availability,
             LocalDate date,
-            ScheduleRules rules) {
+            Random random) {
         
         if (availableDoctors.isEmpty()) {
             throw new IllegalStateException("无可用医生");
@@ -495,13 +495,15 @@ public class AutoScheduleServiceImpl implements AutoScheduleService {
             int workload = workloadMap.getOrDefault(doctor.getDoctorId(), 0);
             
             // 计算连续工作天数
-            int consecutiveDays = constraintValidator.getConsecutiveWorkDays(
-                doctor, date, generatedSchedules
-            );
+            int consecutiveDays = availability.getConsecutiveGeneratedDays(doctor, date);
             
             // 综合评分：工作量权重0.6 + 连续天数权重0.4
             // 连续天数越多，越需要休息，分数越高
             double score = workload * 0.6 + consecutiveDays * 0.4;
+            if (random != null) {
+                // 随机扰动：让评分相近的医生都有机会被选中
+                score += random.nextDouble() * 0.6;
+            }
             
             if (score < bestScore) {
                 bestScore = score;
@@ -678,7 +680,7 @@ public class AutoScheduleServiceImpl implements AutoScheduleService {
         statistics.setMinWorkload((Integer) workloadSummary.get("min"));
         
         // 覆盖率计算
-        List<TimeSlot> timeSlots = timeSlotRepository.findAll();
+        List<TimeSlot> timeSlots = referenceDataCache.getAllTimeSlots();
         int totalSlots = statistics.getCoveredDays() * timeSlots.size();
         double coverageRate = totalSlots > 0 
             ? (double) schedules.size() / totalSlots 
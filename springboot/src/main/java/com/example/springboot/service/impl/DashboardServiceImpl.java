@@ -1,10 +1,10 @@
 package com.example.springboot.service.impl;
 
 import com.example.springboot.dto.dashboard.*;
-import com.example.springboot.entity.Schedule;
 import com.example.springboot.entity.enums.*;
 import com.example.springboot.repository.*;
 import com.example.springboot.service.DashboardService;
+import com.example.springboot.service.DashboardStatsAggregator;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -24,115 +24,63 @@ public class DashboardServiceImpl implements DashboardService {
     private final PatientRepository patientRepository;
     private final DoctorRepository doctorRepository;
     private final DepartmentRepository departmentRepository;
-    private final ScheduleRepository scheduleRepository;
     private final LeaveRequestRepository leaveRequestRepository;
     private final PatientProfileRepository patientProfileRepository;
+    private final DashboardStatsAggregator dashboardStatsAggregator;
 
+    /**
+     * 运营总览：从物化统计读取（增量维护 + 定时对账），正常情况下不执行SQL
+     */
     @Override
-    @Transactional(readOnly = true)
     public OverviewStatsResponse getOverviewStats() {
         OverviewStatsResponse response = new OverviewStatsResponse();
-        LocalDate today = LocalDate.now();
-        LocalDateTime todayStart = today.atStartOfDay();
-        LocalDateTime todayEnd = today.atTime(LocalTime.MAX);
-        
-        System.out.println("=== Dashboard Stats Query ===");
-        System.out.println("Today: " + today);
-        System.out.println("Today Start: " + todayStart);
-        System.out.println("Today End: " + todayEnd);
+        DashboardStatsAggregator.Snapshot stats = dashboardStatsAggregator.getSnapshot();
 
         // 1. 今日挂号量（问诊日期为今天的预约数，不是今天创建的预约数）
-        long todayAppointments = appointmentRepository.countBySchedule_ScheduleDate(today);
-        // 调试：查询今天创建的预约数量（用于对比）
-        long todayCreatedAppointments = appointmentRepository.countByCreatedAtBetween(todayStart, todayEnd);
-        System.out.println("今日挂号量（问诊日期为今天）: " + todayAppointments);
-        System.out.println("今日创建的预约数（对比）: " + todayCreatedAppointments);
-        response.setTodayAppointments(todayAppointments);
+        response.setTodayAppointments(stats.todayAppointments());
 
         // 2. 今日出诊医生数
-        // 先查询排班列表用于调试
-        List<Schedule> todaySchedules = scheduleRepository.findActiveSchedulesByDate(today);
-        System.out.println("今日排班数量: " + todaySchedules.size());
-        if (!todaySchedules.isEmpty()) {
-            System.out.println("今日排班详情:");
-            todaySchedules.forEach(s -> {
-                System.out.println("  - 医生ID: " + (s.getDoctor() != null ? s.getDoctor().getDoctorId() : "NULL") + 
-                                 ", 日期: " + s.getScheduleDate() + 
-                                 ", 状态: " + s.getStatus());
-            });
-        }
-        long activeDoctorsToday = scheduleRepository.countDistinctDoctorsByScheduleDate(today);
-        System.out.println("今日出诊医生数: " + activeDoctorsToday);
-        response.setActiveDoctorsToday(activeDoctorsToday);
+        response.setActiveDoctorsToday(stats.activeDoctorsToday());
 
         // 3. 当前候诊人数（已签到且未完成的总人数，不管日期）
-        long pendingPatients = appointmentRepository.countCheckedInAndNotCompleted();
-        // 调试：查询所有已签到的预约数（用于对比）
-        long allCheckedInCount = appointmentRepository.countByStatusIn(Arrays.asList(AppointmentStatus.CHECKED_IN));
-        System.out.println("当前候诊人数（已签到且未完成）: " + pendingPatients);
-        System.out.println("所有已签到预约数（对比）: " + allCheckedInCount);
-        response.setPendingPatients(pendingPatients);
+        response.setPendingPatients(stats.pendingPatients());
 
         // 4. 累计注册用户（统计所有状态不是deleted的患者）
-        // 使用自定义查询确保正确统计
-        long totalPatients = patientRepository.countTotalActivePatients();
-        // 调试：也查询总数和按状态统计
-        long allPatientsCount = patientRepository.count();
-        System.out.println("累计注册用户（非deleted）: " + totalPatients);
-        System.out.println("所有患者总数: " + allPatientsCount);
-        response.setTotalPatients(totalPatients);
+        response.setTotalPatients(stats.totalPatients());
 
-        // 5. 近7天挂号趋势
-        LocalDate sevenDaysAgo = today.minusDays(6);
-        List<Map<String, Object>> trendData = appointmentRepository.countByDateRangeGroupByDate(
-            sevenDaysAgo.atStartOfDay(), todayEnd
-        );
-        
+        // 5. 近7天挂号趋势（按日期升序，没有预约的日期为0）
         List<String> dates = new ArrayList<>();
         List<Integer> counts = new ArrayList<>();
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MM-dd");
-        
-        for (int i = 0; i < 7; i++) {
-            LocalDate date = sevenDaysAgo.plusDays(i);
-            String dateStr = date.format(formatter);
-            dates.add(dateStr);
-            
-            // 查找对应日期的数据
-            Optional<Map<String, Object>> dayData = trendData.stream()
-                .filter(d -> {
-                    LocalDate dDate = ((java.sql.Date) d.get("date")).toLocalDate();
-                    return dDate.equals(date);
-                })
-                .findFirst();
-            
-            counts.add(dayData.map(d -> ((Number) d.get("count")).intValue()).orElse(0));
+        for (Map.Entry<LocalDate, Long> day : stats.dailyCreated().entrySet()) {
+            dates.add(day.getKey().format(formatter));
+            counts.add(day.getValue().intValue());
         }
-        
         response.setLast7DaysDates(dates);
         response.setLast7DaysCounts(counts);
 
-        // 6. 支付状态分布
-        List<Map<String, Object>> paymentStats = appointmentRepository.countByPaymentStatus();
-        List<SimpleNameValue> paymentStatus = paymentStats.stream()
-            .map(stat -> {
-                SimpleNameValue item = new SimpleNameValue();
-                PaymentStatus statusEnum = (PaymentStatus) stat.get("status");
-                String statusName;
-                if (statusEnum == null) {
-                    statusName = "未知";
-                } else {
-                    switch (statusEnum) {
-                        case paid -> statusName = "已支付";
-                        case unpaid -> statusName = "待支付";
-                        case refunded -> statusName = "退款";
-                        default -> statusName = statusEnum.name();
-                    }
+        // 6. 支付状态分布（支付状态为空的历史预约显示为“未知”）
+        List<SimpleNameValue> paymentStatus = new ArrayList<>();
+        for (Map.Entry<PaymentStatus, Long> entry : stats.paymentCounts().entrySet()) {
+            if (entry.getValue() <= 0) {
+                continue;
+            }
+            SimpleNameValue item = new SimpleNameValue();
+            String statusName;
+            if (entry.getKey() == null) {
+                statusName = "未知";
+            } else {
+                switch (entry.getKey()) {
+                    case paid -> statusName = "已支付";
+                    case unpaid -> statusName = "待支付";
+                    case refunded -> statusName = "退款";
+                    default -> statusName = entry.getKey().name();
                 }
-                item.setName(statusName);
-                item.setValue(((Number) stat.get("count")).longValue());
-                return item;
-            })
-            .collect(Collectors.toList());
+            }
+            item.setName(statusName);
+            item.setValue(entry.getValue());
+            paymentStatus.add(item);
+        }
         response.setPaymentStatus(paymentStatus);
 
         return response;
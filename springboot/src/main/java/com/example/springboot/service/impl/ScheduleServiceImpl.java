@@ -13,7 +13,10 @@ import com.example.springboot.repository.LocationRepository;
 import com.example.springboot.repository.ScheduleRepository;
 import com.example.springboot.repository.TimeSlotRepository;
 import com.example.springboot.service.ScheduleService;
+import com.example.springboot.service.CallQueueService;
+import com.example.springboot.service.SlotInventoryService;
 import com.example.springboot.service.WaitlistService;
+import com.example.springboot.util.ScheduleIntervalIndex;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.data.domain.Page;
@@ -51,6 +54,12 @@ public class ScheduleServiceImpl implements ScheduleService {
     @Autowired
     private com.example.springboot.repository.AppointmentRepository appointmentRepository;
 
+    @Autowired
+    private SlotInventoryService slotInventoryService;
+
+    @Autowired
+    private CallQueueService callQueueService;
+
 
     
 //    @Override
@@ -140,6 +149,7 @@ public class ScheduleServiceImpl implements ScheduleService {
         }
         
         Schedule savedSchedule = scheduleRepository.save(schedule);
+        slotInventoryService.updateTotalSlots(savedSchedule);
         
         // 如果号源数量增加了，尝试触发候补自动填充
         if (slotsIncreased) {
@@ -149,9 +159,7 @@ public class ScheduleServiceImpl implements ScheduleService {
                 int slotsToFill = request.getTotalSlots() - oldTotalSlots;
                 for (int i = 0; i < slotsToFill; i++) {
                     // 检查是否还有空位
-                    Schedule refreshedSchedule = scheduleRepository.findById(scheduleId)
-                            .orElseThrow(() -> new RuntimeException("排班不存在"));
-                    if (refreshedSchedule.getBookedSlots() < refreshedSchedule.getTotalSlots()) {
+                    if (slotInventoryService.hasAvailable(savedSchedule)) {
                         waitlistService.createAppointmentFromWaitlist(scheduleId);
                     } else {
                         System.out.println("号源已满，停止填充候补");
@@ -195,6 +203,7 @@ public class ScheduleServiceImpl implements ScheduleService {
                     }
                     
                     Schedule savedSchedule = scheduleRepository.save(schedule);
+                    slotInventoryService.updateTotalSlots(savedSchedule);
                     
                     // 如果号源数量增加了，尝试触发候补自动填充
                     if (slotsIncreased) {
@@ -204,9 +213,7 @@ public class ScheduleServiceImpl implements ScheduleService {
                             int slotsToFill = updateItem.getTotalSlots() - oldTotalSlots;
                             for (int i = 0; i < slotsToFill; i++) {
                                 // 检查是否还有空位
-                                Schedule refreshedSchedule = scheduleRepository.findById(updateItem.getScheduleId())
-                                        .orElseThrow(() -> new RuntimeException("排班不存在"));
-                                if (refreshedSchedule.getBookedSlots() < refreshedSchedule.getTotalSlots()) {
+                                if (slotInventoryService.hasAvailable(savedSchedule)) {
                                     waitlistService.createAppointmentFromWaitlist(updateItem.getScheduleId());
                                 } else {
                                     System.out.println("号源已满，停止填充候补");
@@ -241,6 +248,8 @@ public class ScheduleServiceImpl implements ScheduleService {
             throw new RuntimeException("排班不存在");
         }
         scheduleRepository.deleteById(scheduleId);
+        slotInventoryService.evict(scheduleId);
+        callQueueService.invalidate(scheduleId);
     }
 
     @Override
@@ -267,6 +276,8 @@ public class ScheduleServiceImpl implements ScheduleService {
 
         // 4. 执行删除
         scheduleRepository.delete(schedule);
+        slotInventoryService.evict(schedule.getScheduleId());
+        callQueueService.invalidate(schedule.getScheduleId());
     }
 
     @Override
@@ -288,7 +299,20 @@ public class ScheduleServiceImpl implements ScheduleService {
             throw new BadRequestException("该医生在指定日期和时间段已存在排班");
         }
 
-        // 3. 创建排班实体
+        // 3. 检查时段重叠（时段按时间判断，如 08:00-09:00 与 08:00-08:30 重叠）
+        ScheduleIntervalIndex intervalIndex = ScheduleIntervalIndex.of(scheduleRepository
+                .findActiveSchedulesByDateAndDoctorOrLocation(request.getScheduleDate(), doctor.getDoctorId(), location.getLocationId()));
+        if (!intervalIndex.findDoctorOverlaps(doctor.getDoctorId(), request.getScheduleDate(), slot).isEmpty()) {
+            throw new BadRequestException("该医生在指定日期已有时间重叠的排班");
+        }
+        boolean locationOccupied = intervalIndex.findLocationOverlaps(location.getLocationId(), request.getScheduleDate(), slot)
+                .stream()
+                .anyMatch(s -> !s.getDoctor().getDoctorId().equals(doctor.getDoctorId()));
+        if (locationOccupied) {
+            throw new BadRequestException("该诊室在指定时间已被其他医生的排班占用");
+        }
+
+        // 4. 创建排班实体
         Schedule schedule = new Schedule();
         schedule.setDoctor(doctor);
         schedule.setScheduleDate(request.getScheduleDate());
@@ -300,10 +324,10 @@ public class ScheduleServiceImpl implements ScheduleService {
         schedule.setStatus(ScheduleStatus.available); // 初始状态为可用
         schedule.setRemarks(request.getRemarks());
 
-        // 4. 保存到数据库
+        // 5. 保存到数据库
         Schedule savedSchedule = scheduleRepository.save(schedule);
 
-        // 5. 转换为响应DTO并返回
+        // 6. 转换为响应DTO并返回
         return ScheduleResponse.fromEntity(savedSchedule);
     }
 
@@ -23,6 +23,7 @@ import com.example.springboot.repository.*;
 import com.example.springboot.service.AdminService;
 import com.example.springboot.service.DoctorService;
 import com.example.springboot.service.PatientService;
+import com.example.springboot.service.UserImportService;
 import com.example.springboot.service.UserService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
@@ -49,6 +50,7 @@ public class UserServiceImpl implements UserService {
     private final DoctorService doctorService;
     private final AdminService adminService;
     private final PasswordEncoderUtil passwordEncoderUtil;
+    private final UserImportService userImportService;
 
     @Override
     @Transactional
@@ -66,25 +68,9 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
-    @Transactional
     public UserImportResponse importUsers(List<UserCreateRequest> requests) {
-        UserImportResponse response = new UserImportResponse();
-        response.setTotal(requests.size());
-
-        for (UserCreateRequest request : requests) {
-            try {
-                // 复用单个创建逻辑
-                createUser(request);
-                response.setSuccess(response.getSuccess() + 1);
-            } catch (Exception e) {
-                response.setFailed(response.getFailed() + 1);
-                response.getErrorMessages().add(
-                        String.format("账号[%s]创建失败: %s", request.getId(), e.getMessage())
-                );
-            }
-        }
-
-        return response;
+        // 患者账号批量查重、并行加密、分块批量写入（每块一个事务，不在外层开启事务）；其他角色复用单个创建逻辑
+        return userImportService.importUsers(requests, this::createUser);
     }
 
     private void validateIdentifierUniqueness(String identifier) {
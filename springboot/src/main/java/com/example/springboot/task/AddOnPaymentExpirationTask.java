@@ -7,21 +7,26 @@ import com.example.springboot.entity.enums.AppointmentType;
 import com.example.springboot.entity.enums.ScheduleStatus;
 import com.example.springboot.repository.AppointmentRepository;
 import com.example.springboot.repository.ScheduleRepository;
+import com.example.springboot.service.ExpiryTimerService;
 import com.example.springboot.service.NotificationService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.List;
 
 /**
- * 加号支付超时处理定时任务
+ * 加号支付超时处理
  * 参考候补超时处理（WaitlistExpirationTask）的实现方式
- * 每1分钟执行一次，检查payment_deadline < NOW()的加号预约，自动取消并释放虚拟号源
+ * 加号预约创建时登记支付截止时间（payment_deadline），到期后由到期定时器（ExpiryTimerService）立即取消并释放虚拟号源；
+ * 应用启动时为所有待支付的加号预约重新登记，另保留低频数据库扫描作为兜底。
  */
 @Component
 public class AddOnPaymentExpirationTask {
@@ -31,22 +36,63 @@ public class AddOnPaymentExpirationTask {
     private final AppointmentRepository appointmentRepository;
     private final ScheduleRepository scheduleRepository;
     private final NotificationService notificationService;
+    private final ExpiryTimerService expiryTimerService;
+    private final TransactionTemplate transactionTemplate;
 
     @Autowired
     public AddOnPaymentExpirationTask(
             AppointmentRepository appointmentRepository,
             ScheduleRepository scheduleRepository,
-            NotificationService notificationService) {
+            NotificationService notificationService,
+            ExpiryTimerService expiryTimerService,
+            TransactionTemplate transactionTemplate) {
         this.appointmentRepository = appointmentRepository;
         this.scheduleRepository = scheduleRepository;
         this.notificationService = notificationService;
+        this.expiryTimerService = expiryTimerService;
+        this.transactionTemplate = transactionTemplate;
+        expiryTimerService.registerHandler(ExpiryTimerService.ExpiryType.ADD_ON_PAYMENT, this::expireAddOnPayment);
     }
 
     /**
-     * 加号支付超时处理任务
-     * 每60秒执行一次（参考候补的fixedRate = 60000）
+     * 应用启动后重新登记待支付的加号预约
      */
-    @Scheduled(fixedRate = 60000)
+    @EventListener(ApplicationReadyEvent.class)
+    public void schedulePendingExpirations() {
+        try {
+            List<Appointment> pending = appointmentRepository.findByAppointmentTypeAndStatus(
+                    AppointmentType.ADD_ON, AppointmentStatus.PENDING_PAYMENT);
+            int count = 0;
+            for (Appointment appointment : pending) {
+                if (appointment.getPaymentDeadline() != null) {
+                    expiryTimerService.schedule(ExpiryTimerService.ExpiryType.ADD_ON_PAYMENT,
+                            appointment.getAppointmentId(), appointment.getPaymentDeadline());
+                    count++;
+                }
+            }
+            logger.info("已为 {} 个待支付的加号预约登记到期定时器", count);
+        } catch (Exception e) {
+            logger.error("登记加号预约到期定时器失败，由兜底扫描处理", e);
+        }
+    }
+
+    /**
+     * 单个加号预约支付超时（到期定时器触发）
+     * 已支付、已取消或截止时间已延后的预约直接跳过
+     */
+    private void expireAddOnPayment(Integer appointmentId) {
+        transactionTemplate.executeWithoutResult(status -> appointmentRepository.findById(appointmentId)
+                .filter(appointment -> appointment.getStatus() == AppointmentStatus.PENDING_PAYMENT
+                        && appointment.getPaymentDeadline() != null
+                        && !appointment.getPaymentDeadline().isAfter(LocalDateTime.now()))
+                .ifPresent(this::processExpiredAppointment));
+    }
+
+    /**
+     * 加号支付超时兜底扫描
+     * 默认每10分钟执行一次
+     */
+    @Scheduled(fixedRateString = "${app.expiry-timer.sweep-interval-ms:600000}")
     @Transactional
     public void checkExpiredAddOnPayments() {
         try {
@@ -119,7 +165,7 @@ public class AddOnPaymentExpirationTask {
             notification.setRelatedEntity("appointment");
             notification.setRelatedId(appointment.getAppointmentId());
             notification.setPriority(com.example.springboot.entity.enums.NotificationPriority.high);
-            notificationService.createNotification(notification);
+            notificationService.enqueueNotification(notification);
             
             logger.info("已发送超时通知给患者 - patientId: {}", 
                     appointment.getPatient().getPatientId());
@@ -1,15 +1,19 @@
 package com.example.springboot.task;
 
+import com.example.springboot.service.ExpiryTimerService;
 import com.example.springboot.service.WaitlistService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 /**
- * 候补超时处理定时任务
- * 每1分钟执行一次，检查状态为 notified 的候补记录，如果通知发送时间超过15分钟仍未支付，自动将状态更新为 expired
+ * 候补超时处理
+ * 候补通知时登记支付截止时间，到期后由到期定时器（ExpiryTimerService）立即将超过15分钟仍未支付的候补更新为 expired；
+ * 应用启动时为所有等待支付中的候补重新登记，另保留低频数据库扫描作为兜底（定时丢失或到期处理失败时）。
  */
 @Component
 public class WaitlistExpirationTask {
@@ -19,15 +23,30 @@ public class WaitlistExpirationTask {
     private final WaitlistService waitlistService;
 
     @Autowired
-    public WaitlistExpirationTask(WaitlistService waitlistService) {
+    public WaitlistExpirationTask(WaitlistService waitlistService, ExpiryTimerService expiryTimerService) {
         this.waitlistService = waitlistService;
+        expiryTimerService.registerHandler(ExpiryTimerService.ExpiryType.WAITLIST_PAYMENT,
+                waitlistService::expireNotifiedWaitlist);
     }
 
     /**
-     * 候补超时处理任务
-     * 每1分钟执行一次（60000毫秒）
+     * 应用启动后重新登记等待支付中的候补
      */
-    @Scheduled(fixedRate = 60000) // 每60秒执行一次
+    @EventListener(ApplicationReadyEvent.class)
+    public void schedulePendingExpirations() {
+        try {
+            int count = waitlistService.schedulePendingExpirations();
+            logger.info("已为 {} 个等待支付的候补登记到期定时器", count);
+        } catch (Exception e) {
+            logger.error("登记候补到期定时器失败，由兜底扫描处理", e);
+        }
+    }
+
+    /**
+     * 候补超时兜底扫描
+     * 默认每10分钟执行一次
+     */
+    @Scheduled(fixedRateString = "${app.expiry-timer.sweep-interval-ms:600000}")
     public void checkExpiredWaitlists() {
         try {
             logger.debug("开始执行候补超时处理任务");
@@ -38,4 +57,3 @@ public class WaitlistExpirationTask {
         }
     }
 }
-
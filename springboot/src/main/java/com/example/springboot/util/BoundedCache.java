@@ -0,0 +1,121 @@
+package com.example.springboot.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * 有界本地缓存
+ * 按最近访问顺序淘汰（LRU），条目写入后超过 TTL 视为过期。未命中时调用 loader 加载，加载过程不持有锁；
+ * 加载期间发生失效（invalidate）的，加载结果只返回给本次调用，不写入缓存，避免把旧数据放回去。
+ * 记录命中、未命中、淘汰次数，并按 sizer 估算占用内存。线程安全。
+ */
+public class BoundedCache<K, V> {
+
+    private record Entry<V>(V value, long loadedAt) {
+    }
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final ToLongFunction<V> sizer;
+    private final LinkedHashMap<K, Entry<V>> entries;
+    // 每次失效加一，用于判断加载期间是否发生过失效
+    private long generation;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    /**
+     * @param maxSize   最大条目数
+     * @param ttlMillis 条目有效期（毫秒）
+     * @param sizer     单个值的估算字节数
+     */
+    public BoundedCache(int maxSize, long ttlMillis, ToLongFunction<V> sizer) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.sizer = sizer;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * 读取缓存，未命中或已过期时调用 loader 加载；loader 返回 null 时不缓存
+     */
+    public V get(K key, Function<K, V> loader) {
+        long loadGeneration;
+        synchronized (this) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null) {
+                if (System.currentTimeMillis() - entry.loadedAt() < ttlMillis) {
+                    hitCount.incrementAndGet();
+                    return entry.value();
+                }
+                entries.remove(key);
+            }
+            loadGeneration = generation;
+        }
+        missCount.incrementAndGet();
+        V value = loader.apply(key);
+        if (value == null) {
+            return null;
+        }
+        synchronized (this) {
+            if (generation == loadGeneration) {
+                entries.put(key, new Entry<>(value, System.currentTimeMillis()));
+                evictOverflow();
+            }
+        }
+        return value;
+    }
+
+    public synchronized void invalidate(K key) {
+        generation++;
+        entries.remove(key);
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * 缓存统计（条目数、命中、未命中、命中率、淘汰次数、估算内存）
+     */
+    public Map<String, Object> getStats() {
+        long estimatedBytes = 0;
+        int size;
+        synchronized (this) {
+            size = entries.size();
+            for (Entry<V> entry : entries.values()) {
+                estimatedBytes += sizer.applyAsLong(entry.value());
+            }
+        }
+        long hits = hitCount.get();
+        long misses = missCount.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", size);
+        stats.put("maxSize", maxSize);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("hitRatio", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        stats.put("evictions", evictionCount.get());
+        stats.put("estimatedBytes", estimatedBytes);
+        return stats;
+    }
+
+    private void evictOverflow() {
+        Iterator<K> iterator = entries.keySet().iterator();
+        while (entries.size() > maxSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evictionCount.incrementAndGet();
+        }
+    }
+}
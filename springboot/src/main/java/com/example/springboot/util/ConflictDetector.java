@@ -3,11 +3,14 @@ package com.example.springboot.util;
 import com.example.springboot.dto.ConflictType;
 import com.example.springboot.dto.ScheduleConflict;
 import com.example.springboot.entity.Schedule;
+import com.example.springboot.entity.TimeSlot;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 冲突检测器
@@ -18,6 +21,8 @@ public class ConflictDetector {
     
     /**
      * 检测排班冲突
+     * 按（医生, 日期）分组，组内按时段开始时间排序后扫描，只比较时间上可能重叠的排班，
+     * 复杂度 O(n log n + 冲突数)。时段按时间判断重叠（同一时段或时间区间有交集）。
      * 
      * @param newSchedules 新生成的排班列表
      * @param existingSchedules 已存在的排班列表
@@ -29,23 +34,40 @@ public class ConflictDetector {
         
         List<ScheduleConflict> conflicts = new ArrayList<>();
         
-        // 合并所有排班进行检查
-        List<Schedule> allSchedules = new ArrayList<>();
-        allSchedules.addAll(newSchedules);
-        allSchedules.addAll(existingSchedules);
+        // 合并所有排班，按医生和日期分组
+        Map<String, List<Schedule>> groups = new LinkedHashMap<>();
+        for (List<Schedule> source : Arrays.asList(newSchedules, existingSchedules)) {
+            for (Schedule schedule : source) {
+                if (schedule.getDoctor() == null || schedule.getScheduleDate() == null || schedule.getSlot() == null) {
+                    continue;
+                }
+                String key = schedule.getDoctor().getDoctorId() + "|" + schedule.getScheduleDate();
+                groups.computeIfAbsent(key, k -> new ArrayList<>()).add(schedule);
+            }
+        }
         
         // 检查时空冲突（同一医生在同一时间有多个排班）
-        for (int i = 0; i < allSchedules.size(); i++) {
-            for (int j = i + 1; j < allSchedules.size(); j++) {
-                Schedule s1 = allSchedules.get(i);
-                Schedule s2 = allSchedules.get(j);
-                
-                if (isTimeConflict(s1, s2)) {
-                    conflicts.add(buildConflict(
-                        ConflictType.TIME_CONFLICT,
-                        "医生在同一时间有多个排班",
-                        s1, s2
-                    ));
+        for (List<Schedule> group : groups.values()) {
+            if (group.size() < 2) {
+                continue;
+            }
+            group.sort(ScheduleIntervalIndex.BY_TIME);
+            for (int i = 0; i < group.size(); i++) {
+                TimeSlot slot = group.get(i).getSlot();
+                for (int j = i + 1; j < group.size(); j++) {
+                    TimeSlot other = group.get(j).getSlot();
+                    // 之后的排班开始时间都不早于 other，不会再与 slot 重叠
+                    if (!other.getStartTime().isBefore(slot.getEndTime())
+                            && !other.getStartTime().equals(slot.getStartTime())) {
+                        break;
+                    }
+                    if (ScheduleIntervalIndex.overlaps(slot, other)) {
+                        conflicts.add(buildConflict(
+                            ConflictType.TIME_CONFLICT,
+                            "医生在同一时间有多个排班",
+                            group.get(i), group.get(j)
+                        ));
+                    }
                 }
             }
         }
@@ -53,32 +75,6 @@ public class ConflictDetector {
         return conflicts;
     }
     
-    /**
-     * 判断两个排班是否存在时间冲突
-     * 
-     * @param s1 排班1
-     * @param s2 排班2
-     * @return true表示有冲突
-     */
-    private boolean isTimeConflict(Schedule s1, Schedule s2) {
-        // 必须是同一个医生
-        if (!s1.getDoctor().getDoctorId().equals(s2.getDoctor().getDoctorId())) {
-            return false;
-        }
-        
-        // 必须是同一天
-        if (!s1.getScheduleDate().equals(s2.getScheduleDate())) {
-            return false;
-        }
-        
-        // 必须是同一个时间段
-        if (!s1.getSlot().getSlotId().equals(s2.getSlot().getSlotId())) {
-            return false;
-        }
-        
-        return true;
-    }
-    
     /**
      * 构建冲突对象
      * 
@@ -23,27 +23,19 @@ public class CosineSimilarityCalculator {
             return 0.0;
         }
         
-        // 获取所有键的并集
-        Set<String> allKeys = new HashSet<>(vector1.keySet());
-        allKeys.addAll(vector2.keySet());
+        // 点积只需遍历较小的向量，模长各自遍历一次（不再构造键的并集）
+        Map<String, Double> smaller = vector1.size() <= vector2.size() ? vector1 : vector2;
+        Map<String, Double> larger = smaller == vector1 ? vector2 : vector1;
         
-        if (allKeys.isEmpty()) {
-            return 0.0;
-        }
-        
-        // 计算点积
         double dotProduct = 0.0;
-        double norm1 = 0.0;
-        double norm2 = 0.0;
-        
-        for (String key : allKeys) {
-            double v1 = vector1.getOrDefault(key, 0.0);
-            double v2 = vector2.getOrDefault(key, 0.0);
-            
-            dotProduct += v1 * v2;
-            norm1 += v1 * v1;
-            norm2 += v2 * v2;
+        for (Map.Entry<String, Double> entry : smaller.entrySet()) {
+            Double other = larger.get(entry.getKey());
+            if (other != null && entry.getValue() != null) {
+                dotProduct += entry.getValue() * other;
+            }
         }
+        double norm1 = squaredNorm(vector1);
+        double norm2 = squaredNorm(vector2);
         
         // 计算余弦相似度
         double denominator = Math.sqrt(norm1) * Math.sqrt(norm2);
@@ -99,4 +91,14 @@ public class CosineSimilarityCalculator {
         
         return vector;
     }
-}
\ No newline at end of file
+    
+    private static double squaredNorm(Map<String, Double> vector) {
+        double sum = 0.0;
+        for (Double value : vector.values()) {
+            if (value != null) {
+                sum += value * value;
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.springboot.util;
+
+import com.example.springboot.dto.common.CursorPageResponse;
+import com.example.springboot.exception.BadRequestException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 按主键倒序的游标分页
+ * 游标为上一页最后一条记录的ID，下一页查询 ID 小于游标的记录；每页多取一条判断是否还有下一页。
+ * 主键唯一且不变，翻页期间新增、删除记录不会导致重复或遗漏。
+ */
+public final class CursorPaging {
+
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private CursorPaging() {
+    }
+
+    public static int pageSize(Integer size) {
+        return size == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    }
+
+    /**
+     * 查询条数（多取一条）
+     */
+    public static Pageable limit(int pageSize) {
+        return PageRequest.of(0, pageSize + 1);
+    }
+
+    /**
+     * @return 未传游标（第一页）时返回 null
+     */
+    public static Integer parseIntCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(cursor.trim());
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("无效的分页游标: " + cursor);
+        }
+    }
+
+    /**
+     * @return 未传游标（第一页）时返回 null
+     */
+    public static Long parseLongCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(cursor.trim());
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("无效的分页游标: " + cursor);
+        }
+    }
+
+    /**
+     * 将多取一条的查询结果转换为分页响应
+     *
+     * @param idOf 取记录ID，作为下一页游标
+     */
+    public static <E, T> CursorPageResponse<T> toPage(List<E> rows, int pageSize,
+                                                       Function<E, T> converter, Function<E, ?> idOf) {
+        boolean hasMore = rows.size() > pageSize;
+        List<E> page = hasMore ? rows.subList(0, pageSize) : rows;
+        String nextCursor = hasMore ? String.valueOf(idOf.apply(page.get(page.size() - 1))) : null;
+        List<T> content = page.stream()
+                .map(converter)
+                .collect(Collectors.toList());
+        return new CursorPageResponse<>(content, nextCursor, hasMore, pageSize);
+    }
+}
@@ -4,14 +4,34 @@ import com.example.springboot.dto.user.UserCreateRequest;
 import com.example.springboot.entity.enums.PatientStatus;
 import com.example.springboot.entity.enums.PatientType;
 import com.example.springboot.exception.BadRequestException;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.poifs.filesystem.FileMagic;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.SharedStrings;
 import org.springframework.stereotype.Component;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
 
+import javax.xml.parsers.ParserConfigurationException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
+/**
+ * 用户批量导入 Excel 解析
+ * .xlsx 使用 SAX 事件模式逐行读取工作表 XML，不构建整个工作簿的对象模型；.xls 仍按工作簿模型读取。
+ * 两种格式的单元格取值规则一致：文本去除首尾空格，数值取整数部分，公式、布尔、错误及空单元格视为空。
+ */
 @Component
 public class ExcelUserParser {
 
@@ -24,62 +44,116 @@ public class ExcelUserParser {
     private static final int PHONE_INDEX = 5;
     private static final int ALLERGY_INDEX = 6;
     private static final int MEDICAL_HISTORY_INDEX = 7;
+    private static final int COLUMN_COUNT = 8;
+
+    /**
+     * 一行原始数据
+     *
+     * @param rowNum 行下标（从0开始，0为表头）
+     * @param cells  各列取值
+     */
+    private record RawRow(int rowNum, String[] cells) {
+    }
 
     public List<UserCreateRequest> parseExcel(InputStream inputStream) throws IOException {
-        List<UserCreateRequest> requests = new ArrayList<>();
-        Workbook workbook = WorkbookFactory.create(inputStream);
-        Sheet sheet = workbook.getSheetAt(0); // 读取第一个工作表
-
-        // 从第二行开始读取（跳过表头）
-        for (int rowNum = 1; rowNum <= sheet.getLastRowNum(); rowNum++) {
-            Row row = sheet.getRow(rowNum);
-            if (row == null) continue;
-
-            UserCreateRequest request = new UserCreateRequest();
-            try {
-                // 解析必填字段
-                String id = getCellValue(row.getCell(ID_INDEX));
-                String name = getCellValue(row.getCell(NAME_INDEX));
-                String password = getCellValue(row.getCell(PASSWORD_INDEX));
-                String role = getCellValue(row.getCell(ROLE_INDEX));
-                String idCard = getCellValue(row.getCell(ID_CARD_INDEX));
-                String phone = getCellValue(row.getCell(PHONE_INDEX));
-
-                // 验证必填字段
-                validateRequiredField(id, "学号/工号", rowNum + 1);
-                validateRequiredField(name, "姓名", rowNum + 1);
-                validateRequiredField(password, "密码", rowNum + 1);
-                validateRequiredField(role, "角色", rowNum + 1);
-                validateRequiredField(idCard, "身份证号", rowNum + 1);
-                validateRequiredField(phone, "手机号", rowNum + 1);
-                validateRole(role, rowNum + 1);
-
-                // 设置公共字段
-                request.setId(id);
-                request.setName(name);
-                request.setPassword(password);
-                request.setRole(role);
-                request.setId_card(idCard);
-                request.setPhone(phone);
-
-                // 设置可选字段
-                request.setAllergy_history(getCellValue(row.getCell(ALLERGY_INDEX)));
-                request.setPast_medical_history(getCellValue(row.getCell(MEDICAL_HISTORY_INDEX)));
-
-                // 设置默认状态（根据角色）
-                if ("PATIENT".equals(role)) {
-                    request.setPatientType(PatientType.student); // 默认学生类型
-                    request.setPatientStatus(PatientStatus.active);
-                }
+        InputStream in = FileMagic.prepareToCheckMagic(inputStream);
+        List<RawRow> rows = FileMagic.valueOf(in) == FileMagic.OOXML ? readXlsx(in) : readWorkbook(in);
+
+        List<UserCreateRequest> requests = new ArrayList<>(rows.size());
+        for (RawRow row : rows) {
+            requests.add(toRequest(row));
+        }
+        return requests;
+    }
 
-                requests.add(request);
-            } catch (Exception e) {
-                throw new BadRequestException("第" + (rowNum + 1) + "行数据解析失败: " + e.getMessage());
+    /**
+     * SAX 方式读取 .xlsx 第一个工作表（跳过表头）
+     */
+    private List<RawRow> readXlsx(InputStream in) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(in)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            SheetHandler handler = new SheetHandler(new ReadOnlySharedStringsTable(pkg));
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                return handler.rows;
             }
+            try (InputStream sheet = sheets.next()) { // 读取第一个工作表
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(handler);
+                parser.parse(new InputSource(sheet));
+            }
+            return handler.rows;
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("Excel文件读取失败: " + e.getMessage(), e);
         }
+    }
 
-        workbook.close();
-        return requests;
+    /**
+     * 工作簿模型读取 .xls 第一个工作表（跳过表头）
+     */
+    private List<RawRow> readWorkbook(InputStream in) throws IOException {
+        List<RawRow> rows = new ArrayList<>();
+        try (Workbook workbook = WorkbookFactory.create(in)) {
+            Sheet sheet = workbook.getSheetAt(0); // 读取第一个工作表
+
+            // 从第二行开始读取（跳过表头）
+            for (int rowNum = 1; rowNum <= sheet.getLastRowNum(); rowNum++) {
+                Row row = sheet.getRow(rowNum);
+                if (row == null) continue;
+
+                String[] cells = new String[COLUMN_COUNT];
+                for (int col = 0; col < COLUMN_COUNT; col++) {
+                    cells[col] = getCellValue(row.getCell(col));
+                }
+                rows.add(new RawRow(rowNum, cells));
+            }
+        }
+        return rows;
+    }
+
+    private UserCreateRequest toRequest(RawRow row) {
+        int rowNum = row.rowNum();
+        String[] cells = row.cells();
+        UserCreateRequest request = new UserCreateRequest();
+        try {
+            // 解析必填字段
+            String id = cells[ID_INDEX];
+            String name = cells[NAME_INDEX];
+            String password = cells[PASSWORD_INDEX];
+            String role = cells[ROLE_INDEX];
+            String idCard = cells[ID_CARD_INDEX];
+            String phone = cells[PHONE_INDEX];
+
+            // 验证必填字段
+            validateRequiredField(id, "学号/工号", rowNum + 1);
+            validateRequiredField(name, "姓名", rowNum + 1);
+            validateRequiredField(password, "密码", rowNum + 1);
+            validateRequiredField(role, "角色", rowNum + 1);
+            validateRequiredField(idCard, "身份证号", rowNum + 1);
+            validateRequiredField(phone, "手机号", rowNum + 1);
+            validateRole(role, rowNum + 1);
+
+            // 设置公共字段
+            request.setId(id);
+            request.setName(name);
+            request.setPassword(password);
+            request.setRole(role);
+            request.setId_card(idCard);
+            request.setPhone(phone);
+
+            // 设置可选字段
+            request.setAllergy_history(cells[ALLERGY_INDEX]);
+            request.setPast_medical_history(cells[MEDICAL_HISTORY_INDEX]);
+
+            // 设置默认状态（根据角色）
+            if ("PATIENT".equals(role)) {
+                request.setPatientType(PatientType.student); // 默认学生类型
+                request.setPatientStatus(PatientStatus.active);
+            }
+            return request;
+        } catch (Exception e) {
+            throw new BadRequestException("第" + (rowNum + 1) + "行数据解析失败: " + e.getMessage());
+        }
     }
 
     private String getCellValue(Cell cell) {
@@ -105,4 +179,106 @@ public class ExcelUserParser {
             throw new BadRequestException("角色必须是PATIENT/DOCTOR/ADMIN（第" + rowNum + "行）");
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * 工作表 XML 事件处理：按 &lt;row&gt;/&lt;c&gt; 元素收集前 COLUMN_COUNT 列的取值，
+     * 与 getCellValue 的规则保持一致
+     */
+    private static final class SheetHandler extends DefaultHandler {
+        private final SharedStrings sharedStrings;
+        private final List<RawRow> rows = new ArrayList<>();
+        private final StringBuilder text = new StringBuilder();
+
+        private int rowNum = -1;
+        private String[] cells;
+        private int column;
+        private String cellType;
+        private boolean hasFormula;
+        private boolean hasValue;
+        private boolean inValue;
+        private boolean inInlineString;
+        private boolean inPhonetic;
+        private boolean inText;
+
+        SheetHandler(SharedStrings sharedStrings) {
+            this.sharedStrings = sharedStrings;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (localName) {
+                case "row" -> {
+                    String ref = attributes.getValue("r");
+                    rowNum = ref != null ? Integer.parseInt(ref) - 1 : rowNum + 1;
+                    cells = new String[COLUMN_COUNT];
+                    column = -1;
+                }
+                case "c" -> {
+                    String ref = attributes.getValue("r");
+                    column = ref != null ? new CellReference(ref).getCol() : column + 1;
+                    cellType = attributes.getValue("t");
+                    hasFormula = false;
+                    hasValue = false;
+                    text.setLength(0);
+                }
+                case "f" -> hasFormula = true;
+                case "v" -> {
+                    inValue = true;
+                    hasValue = true;
+                }
+                case "is" -> {
+                    inInlineString = true;
+                    hasValue = true;
+                }
+                case "rPh" -> inPhonetic = true;
+                case "t" -> inText = inInlineString && !inPhonetic;
+                default -> {
+                }
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            switch (localName) {
+                case "v" -> inValue = false;
+                case "t" -> inText = false;
+                case "rPh" -> inPhonetic = false;
+                case "is" -> inInlineString = false;
+                case "c" -> {
+                    if (column >= 0 && column < COLUMN_COUNT) {
+                        cells[column] = cellValue();
+                    }
+                }
+                case "row" -> {
+                    // 跳过表头
+                    if (rowNum >= 1) {
+                        rows.add(new RawRow(rowNum, cells));
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inValue || inText) {
+                text.append(ch, start, length);
+            }
+        }
+
+        private String cellValue() {
+            if (hasFormula || !hasValue) {
+                return null;
+            }
+            if (cellType == null || "n".equals(cellType)) {
+                return String.valueOf((long) Double.parseDouble(text.toString()));
+            }
+            return switch (cellType) {
+                case "s" -> sharedStrings.getItemAt(Integer.parseInt(text.toString().trim())).getString().trim();
+                case "inlineStr", "str" -> text.toString().trim();
+                default -> null;
+            };
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.springboot.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * NDJSON（每行一个 JSON 对象）流式写出
+ * 从数据库游标逐行读取、转换并写出，每写出一批后 flush 并清空持久化上下文，
+ * 内存占用只与批大小有关，与总行数无关。需在只读事务中调用，Stream 由调用方关闭。
+ */
+@Component
+public class NdjsonWriter {
+
+    private static final int BATCH_SIZE = 500;
+    private static final byte NEWLINE = '\n';
+
+    private final ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    public NdjsonWriter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @return 写出的行数
+     */
+    public <E, T> long write(Stream<E> rows, Function<E, T> converter, OutputStream out) throws IOException {
+        long count = 0;
+        Iterator<E> iterator = rows.iterator();
+        while (iterator.hasNext()) {
+            out.write(objectMapper.writeValueAsBytes(converter.apply(iterator.next())));
+            out.write(NEWLINE);
+            if (++count % BATCH_SIZE == 0) {
+                out.flush();
+                entityManager.clear();
+            }
+        }
+        out.flush();
+        return count;
+    }
+}
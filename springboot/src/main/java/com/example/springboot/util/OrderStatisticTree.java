@@ -0,0 +1,157 @@
+package com.example.springboot.util;
+
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 顺序统计树（记录子树大小的 Treap）
+ * 插入、删除、按元素求名次均为期望 O(log n)；比较结果为 0 的元素视为同一元素，不重复插入。
+ * 非线程安全，由调用方加锁。
+ */
+public class OrderStatisticTree<T> {
+
+    private static final class Node<T> {
+        final T key;
+        final int priority;
+        int size = 1;
+        Node<T> left;
+        Node<T> right;
+
+        Node(T key) {
+            this.key = key;
+            this.priority = ThreadLocalRandom.current().nextInt();
+        }
+    }
+
+    private final Comparator<? super T> comparator;
+    private Node<T> root;
+
+    public OrderStatisticTree(Comparator<? super T> comparator) {
+        this.comparator = comparator;
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    /**
+     * 插入元素
+     *
+     * @return false 元素已存在
+     */
+    public boolean add(T key) {
+        if (rank(key) >= 0) {
+            return false;
+        }
+        root = insert(root, key);
+        return true;
+    }
+
+    /**
+     * 删除元素
+     *
+     * @return false 元素不存在
+     */
+    public boolean remove(T key) {
+        if (rank(key) < 0) {
+            return false;
+        }
+        root = delete(root, key);
+        return true;
+    }
+
+    /**
+     * 元素的名次：树中比它小的元素个数（从0开始），不存在时返回 -1
+     */
+    public int rank(T key) {
+        int rank = 0;
+        Node<T> node = root;
+        while (node != null) {
+            int c = comparator.compare(key, node.key);
+            if (c < 0) {
+                node = node.left;
+            } else if (c > 0) {
+                rank += size(node.left) + 1;
+                node = node.right;
+            } else {
+                return rank + size(node.left);
+            }
+        }
+        return -1;
+    }
+
+    public void clear() {
+        root = null;
+    }
+
+    private Node<T> insert(Node<T> node, T key) {
+        if (node == null) {
+            return new Node<>(key);
+        }
+        if (comparator.compare(key, node.key) < 0) {
+            node.left = insert(node.left, key);
+            if (node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, key);
+            if (node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+        update(node);
+        return node;
+    }
+
+    private Node<T> delete(Node<T> node, T key) {
+        int c = comparator.compare(key, node.key);
+        if (c < 0) {
+            node.left = delete(node.left, key);
+        } else if (c > 0) {
+            node.right = delete(node.right, key);
+        } else {
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            // 把优先级较高的子节点旋转上来，待删除节点下沉一层后继续删除
+            if (node.left.priority > node.right.priority) {
+                node = rotateRight(node);
+                node.right = delete(node.right, key);
+            } else {
+                node = rotateLeft(node);
+                node.left = delete(node.left, key);
+            }
+        }
+        update(node);
+        return node;
+    }
+
+    private Node<T> rotateRight(Node<T> node) {
+        Node<T> left = node.left;
+        node.left = left.right;
+        left.right = node;
+        update(node);
+        update(left);
+        return left;
+    }
+
+    private Node<T> rotateLeft(Node<T> node) {
+        Node<T> right = node.right;
+        node.right = right.left;
+        right.left = node;
+        update(node);
+        update(right);
+        return right;
+    }
+
+    private static void update(Node<?> node) {
+        node.size = size(node.left) + size(node.right) + 1;
+    }
+
+    private static int size(Node<?> node) {
+        return node != null ? node.size : 0;
+    }
+}
@@ -0,0 +1,372 @@
+package com.example.springboot.util;
+
+import com.example.springboot.dto.ScheduleRules;
+import com.example.springboot.entity.Doctor;
+import com.example.springboot.entity.LeaveRequest;
+import com.example.springboot.entity.Schedule;
+import com.example.springboot.entity.TimeSlot;
+import com.example.springboot.entity.enums.DoctorStatus;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 排班可用性位图（单次自动排班内使用）
+ * 医生按下标编号，每个（日期, 时段）、每个日期各维护一个医生位图：
+ * busy - 该时段已有排班（已有排班按时间重叠计入 + 本次生成），worked - 当天有任意排班，generatedWorked - 当天有本次生成的排班，
+ * leave - 当天请假；另有不可排班（非在职）、工作量已满两个全局位图。
+ * 构建时一次扫描已有排班和请假记录，分配或撤销排班后增量更新；筛选可用医生只需按64位字做与/非运算，
+ * 不再对每个医生逐条扫描排班列表。
+ * 非线程安全，每个排班方案使用自己的实例：在请求线程上构建一次，再通过 copy() 为每个方案复制一份
+ * （复制只拷贝位图数组，不再访问排班、请假等实体）。
+ */
+public class ScheduleAvailabilityIndex {
+
+    // 与 ScheduleConstraintValidator.getConsecutiveWorkDays 一致：连续工作天数最多往前统计到 31 天
+    private static final int MAX_CONSECUTIVE_DAYS = 31;
+
+    private final List<Doctor> doctors;
+    private final Map<Integer, Integer> doctorIndex = new HashMap<>();
+    private final List<TimeSlot> slots;
+    private final Map<Integer, Integer> slotIndex = new HashMap<>();
+    private final LocalDate startDate;
+    private final int dayCount;
+    private final int slotCount;
+    private final int words;
+
+    private final long[][] busy;              // [day * slotCount + slot]
+    private final long[][] worked;            // [day]
+    private final long[][] generatedWorked;   // [day]
+    private final long[][] leave;             // [day]
+    private final int[][] dayShifts;          // [day][doctor] 当天排班数（已有 + 本次生成）
+    private final int[][] generatedDayShifts; // [day][doctor] 当天本次生成的排班数
+    private final long[] unavailable;
+    private final long[] overloaded;
+    private final long[] allDoctors;
+    private final int[] workload;
+
+    private final int maxShiftsPerDoctor;
+    private final int consecutiveLimit;
+
+    /**
+     * @param doctors           参与排班的医生
+     * @param slots             参与排班的时段
+     * @param existingSchedules 日期范围内的已有排班
+     * @param leaveMap          医生ID -> 已批准的请假记录
+     */
+    public ScheduleAvailabilityIndex(List<Doctor> doctors,
+                                     LocalDate startDate,
+                                     LocalDate endDate,
+                                     List<TimeSlot> slots,
+                                     List<Schedule> existingSchedules,
+                                     Map<Integer, List<LeaveRequest>> leaveMap,
+                                     ScheduleRules rules) {
+        this.doctors = doctors;
+        this.slots = slots;
+        this.startDate = startDate;
+        this.dayCount = (int) ChronoUnit.DAYS.between(startDate, endDate) + 1;
+        this.slotCount = slots.size();
+        this.words = (doctors.size() + 63) >>> 6;
+
+        for (int i = 0; i < doctors.size(); i++) {
+            doctorIndex.put(doctors.get(i).getDoctorId(), i);
+        }
+        for (int s = 0; s < slots.size(); s++) {
+            slotIndex.put(slots.get(s).getSlotId(), s);
+        }
+
+        busy = new long[dayCount * slotCount][words];
+        worked = new long[dayCount][words];
+        generatedWorked = new long[dayCount][words];
+        dayShifts = new int[dayCount][doctors.size()];
+        generatedDayShifts = new int[dayCount][doctors.size()];
+        leave = new long[dayCount][words];
+        unavailable = new long[words];
+        overloaded = new long[words];
+        allDoctors = new long[words];
+        workload = new int[doctors.size()];
+
+        maxShiftsPerDoctor = rules.getMaxShiftsPerDoctor();
+        Integer limit = rules.getConsecutiveWorkDaysLimit();
+        consecutiveLimit = limit != null ? limit : 0;
+
+        for (int i = 0; i < doctors.size(); i++) {
+            set(allDoctors, i);
+            if (doctors.get(i).getStatus() != DoctorStatus.active) {
+                set(unavailable, i);
+            }
+            if (maxShiftsPerDoctor <= 0) {
+                set(overloaded, i);
+            }
+        }
+
+        for (Schedule schedule : existingSchedules) {
+            if (schedule.getDoctor() == null || schedule.getScheduleDate() == null) {
+                continue;
+            }
+            Integer i = doctorIndex.get(schedule.getDoctor().getDoctorId());
+            int day = dayOf(schedule.getScheduleDate());
+            if (i == null || day < 0) {
+                continue;
+            }
+            if (dayShifts[day][i]++ == 0) {
+                set(worked[day], i);
+            }
+            if (schedule.getSlot() == null) {
+                continue;
+            }
+            // 已有排班的时段不一定是参与排班的时段，时间重叠的时段都不能再排
+            for (int s = 0; s < slotCount; s++) {
+                if (ScheduleIntervalIndex.overlaps(schedule.getSlot(), slots.get(s))) {
+                    set(busy[day * slotCount + s], i);
+                }
+            }
+        }
+
+        // leaveMap 由已批准请假查询构建，请假时间与当天 [00:00, 23:59:59] 有交集即视为当天请假
+        for (Map.Entry<Integer, List<LeaveRequest>> entry : leaveMap.entrySet()) {
+            Integer i = doctorIndex.get(entry.getKey());
+            if (i == null) {
+                continue;
+            }
+            for (LeaveRequest leaveRequest : entry.getValue()) {
+                LocalDateTime leaveStart = leaveRequest.getStartTime();
+                LocalDateTime leaveEnd = leaveRequest.getEndTime();
+                if (leaveStart == null || leaveEnd == null) {
+                    continue;
+                }
+                for (int day = 0; day < dayCount; day++) {
+                    LocalDate date = startDate.plusDays(day);
+                    if (!leaveStart.isAfter(date.atTime(23, 59, 59)) && !leaveEnd.isBefore(date.atStartOfDay())) {
+                        set(leave[day], i);
+                    }
+                }
+            }
+        }
+    }
+
+    private ScheduleAvailabilityIndex(ScheduleAvailabilityIndex source) {
+        // 医生、时段列表和下标映射构建后不再修改，可以共享
+        this.doctors = source.doctors;
+        this.doctorIndex.putAll(source.doctorIndex);
+        this.slots = source.slots;
+        this.slotIndex.putAll(source.slotIndex);
+        this.startDate = source.startDate;
+        this.dayCount = source.dayCount;
+        this.slotCount = source.slotCount;
+        this.words = source.words;
+        this.busy = copyOf(source.busy);
+        this.worked = copyOf(source.worked);
+        this.generatedWorked = copyOf(source.generatedWorked);
+        this.leave = copyOf(source.leave);
+        this.dayShifts = copyOf(source.dayShifts);
+        this.generatedDayShifts = copyOf(source.generatedDayShifts);
+        this.unavailable = source.unavailable.clone();
+        this.overloaded = source.overloaded.clone();
+        this.allDoctors = source.allDoctors.clone();
+        this.workload = source.workload.clone();
+        this.maxShiftsPerDoctor = source.maxShiftsPerDoctor;
+        this.consecutiveLimit = source.consecutiveLimit;
+    }
+
+    /**
+     * 复制当前位图状态，副本与原实例互不影响，可交给其他线程使用
+     */
+    public ScheduleAvailabilityIndex copy() {
+        return new ScheduleAvailabilityIndex(this);
+    }
+
+    /**
+     * 筛选指定日期、时段满足硬约束的医生（保持传入医生列表的顺序）
+     *
+     * @param relaxConsecutiveLimit true 时跳过连续工作天数限制（放宽版本）
+     */
+    public List<Doctor> findAvailableDoctors(LocalDate date, TimeSlot slot, boolean relaxConsecutiveLimit) {
+        int day = dayOf(date);
+        Integer s = slotIndex.get(slot.getSlotId());
+        List<Doctor> result = new ArrayList<>();
+        if (day < 0 || s == null) {
+            return result;
+        }
+
+        long[] slotBusy = busy[day * slotCount + s];
+        long[] dayLeave = leave[day];
+        // 连续工作天数 >= 上限：前 limit 天每天都有排班（超过统计上限时永远不会触发）
+        boolean checkConsecutive = !relaxConsecutiveLimit && consecutiveLimit > 0
+                && consecutiveLimit <= MAX_CONSECUTIVE_DAYS && day >= consecutiveLimit;
+
+        for (int w = 0; w < words; w++) {
+            long candidates = allDoctors[w] & ~slotBusy[w] & ~dayLeave[w] & ~unavailable[w] & ~overloaded[w];
+            if (checkConsecutive) {
+                long blocked = -1L;
+                for (int d = day - consecutiveLimit; d < day && blocked != 0; d++) {
+                    blocked &= worked[d][w];
+                }
+                candidates &= ~blocked;
+            }
+            while (candidates != 0) {
+                int bit = Long.numberOfTrailingZeros(candidates);
+                result.add(doctors.get((w << 6) + bit));
+                candidates &= candidates - 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 记录新生成的排班，增量更新各位图和工作量
+     */
+    public void assign(Doctor doctor, LocalDate date, TimeSlot slot) {
+        Integer i = doctorIndex.get(doctor.getDoctorId());
+        int day = dayOf(date);
+        if (i == null || day < 0) {
+            return;
+        }
+        Integer s = slotIndex.get(slot.getSlotId());
+        if (s != null) {
+            set(busy[day * slotCount + s], i);
+        }
+        if (dayShifts[day][i]++ == 0) {
+            set(worked[day], i);
+        }
+        if (generatedDayShifts[day][i]++ == 0) {
+            set(generatedWorked[day], i);
+        }
+        if (++workload[i] >= maxShiftsPerDoctor) {
+            set(overloaded, i);
+        }
+    }
+
+    /**
+     * 撤销一条本次生成的排班（assign 的逆操作）
+     */
+    public void release(Doctor doctor, LocalDate date, TimeSlot slot) {
+        Integer i = doctorIndex.get(doctor.getDoctorId());
+        int day = dayOf(date);
+        if (i == null || day < 0 || generatedDayShifts[day][i] == 0) {
+            return;
+        }
+        // 生成排班时该时段必然空闲，撤销后恢复空闲
+        Integer s = slotIndex.get(slot.getSlotId());
+        if (s != null) {
+            clear(busy[day * slotCount + s], i);
+        }
+        if (--dayShifts[day][i] == 0) {
+            clear(worked[day], i);
+        }
+        if (--generatedDayShifts[day][i] == 0) {
+            clear(generatedWorked[day], i);
+        }
+        if (--workload[i] < maxShiftsPerDoctor) {
+            clear(overloaded, i);
+        }
+    }
+
+    /**
+     * 检查医生能否承担指定日期、时段的排班
+     * 除 findAvailableDoctors 的硬约束外，还要求加入后包含当天的连续工作天数不超过上限，
+     * 用于调整已有方案（当天之后的排班已经存在）
+     */
+    public boolean canAssign(Doctor doctor, LocalDate date, TimeSlot slot) {
+        Integer i = doctorIndex.get(doctor.getDoctorId());
+        int day = dayOf(date);
+        Integer s = slotIndex.get(slot.getSlotId());
+        if (i == null || day < 0 || s == null) {
+            return false;
+        }
+        if (get(busy[day * slotCount + s], i) || get(leave[day], i)
+                || get(unavailable, i) || get(overloaded, i)) {
+            return false;
+        }
+        if (consecutiveLimit <= 0 || get(worked[day], i)) {
+            return true;
+        }
+        int run = 1;
+        for (int d = day - 1; d >= 0 && get(worked[d], i); d--) {
+            run++;
+        }
+        for (int d = day + 1; d < dayCount && get(worked[d], i); d++) {
+            run++;
+        }
+        return run <= consecutiveLimit;
+    }
+
+    /**
+     * 医生本次生成的排班数
+     */
+    public int getWorkload(Doctor doctor) {
+        Integer i = doctorIndex.get(doctor.getDoctorId());
+        return i != null ? workload[i] : 0;
+    }
+
+    /**
+     * 医生本次生成排班的最长连续工作天数
+     */
+    public int getMaxConsecutiveGeneratedDays(Doctor doctor) {
+        Integer i = doctorIndex.get(doctor.getDoctorId());
+        if (i == null) {
+            return 0;
+        }
+        int max = 0;
+        int run = 0;
+        for (int d = 0; d < dayCount; d++) {
+            run = get(generatedWorked[d], i) ? run + 1 : 0;
+            max = Math.max(max, run);
+        }
+        return max;
+    }
+
+    /**
+     * 医生在指定日期前连续有本次生成排班的天数（不含当天）
+     */
+    public int getConsecutiveGeneratedDays(Doctor doctor, LocalDate date) {
+        Integer i = doctorIndex.get(doctor.getDoctorId());
+        int day = dayOf(date);
+        if (i == null || day < 0) {
+            return 0;
+        }
+        int consecutiveDays = 0;
+        for (int d = day - 1; d >= 0 && consecutiveDays < MAX_CONSECUTIVE_DAYS && get(generatedWorked[d], i); d--) {
+            consecutiveDays++;
+        }
+        return consecutiveDays;
+    }
+
+    private static long[][] copyOf(long[][] bits) {
+        long[][] copy = new long[bits.length][];
+        for (int i = 0; i < bits.length; i++) {
+            copy[i] = bits[i].clone();
+        }
+        return copy;
+    }
+
+    private static int[][] copyOf(int[][] counts) {
+        int[][] copy = new int[counts.length][];
+        for (int i = 0; i < counts.length; i++) {
+            copy[i] = counts[i].clone();
+        }
+        return copy;
+    }
+
+    private int dayOf(LocalDate date) {
+        long day = ChronoUnit.DAYS.between(startDate, date);
+        return day >= 0 && day < dayCount ? (int) day : -1;
+    }
+
+    private static void set(long[] bits, int i) {
+        bits[i >>> 6] |= 1L << i;
+    }
+
+    private static void clear(long[] bits, int i) {
+        bits[i >>> 6] &= ~(1L << i);
+    }
+
+    private static boolean get(long[] bits, int i) {
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+}
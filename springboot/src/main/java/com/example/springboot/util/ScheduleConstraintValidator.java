@@ -2,162 +2,25 @@ package com.example.springboot.util;
 
 import com.example.springboot.dto.ScheduleRules;
 import com.example.springboot.entity.Doctor;
-import com.example.springboot.entity.LeaveRequest;
 import com.example.springboot.entity.Schedule;
-import com.example.springboot.entity.TimeSlot;
-import com.example.springboot.entity.enums.DoctorStatus;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDate;
-import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
 
 /**
  * 排班约束验证器
- * 负责检查所有硬约束条件
+ * 负责统计连续工作天数、检查软约束；自动排班的硬约束（时间重叠、请假、在职、工作量、连续工作天数）
+ * 由 ScheduleAvailabilityIndex 按位图判断，排班冲突由 ConflictDetector / ScheduleIntervalIndex 按时间重叠判断
  */
 @Component
 public class ScheduleConstraintValidator {
     
-    /**
-     * 检查所有硬约束
-     * 
-     * @param doctor 医生
-     * @param date 日期
-     * @param slot 时间段
-     * @param leaveMap 请假记录映射
-     * @param existingSchedules 已有排班列表
-     * @param workloadMap 当前工作量映射
-     * @param rules 排班规则
-     * @return true表示通过所有硬约束，false表示违反约束
-     */
-    public boolean checkHardConstraints(
-            Doctor doctor, 
-            LocalDate date, 
-            TimeSlot slot,
-            Map<Integer, List<LeaveRequest>> leaveMap,
-            List<Schedule> existingSchedules,
-            Map<Integer, Integer> workloadMap,
-            ScheduleRules rules) {
-        
-        // HC-1: 时空唯一性检查
-        if (hasTimeConflict(doctor, date, slot, existingSchedules)) {
-            return false;
-        }
-        
-        // HC-2: 请假约束检查
-        if (isOnLeave(doctor, date, leaveMap)) {
-            return false;
-        }
-        
-        // HC-3: 医生状态检查
-        if (doctor.getStatus() != DoctorStatus.active) {
-            return false;
-        }
-        
-        // HC-4: 工作量上限检查
-        Integer currentWorkload = workloadMap.getOrDefault(doctor.getDoctorId(), 0);
-        if (currentWorkload >= rules.getMaxShiftsPerDoctor()) {
-            return false;
-        }
-        
-        // HC-5: 连续工作天数限制检查
-        if (rules.getConsecutiveWorkDaysLimit() != null && rules.getConsecutiveWorkDaysLimit() > 0) {
-            int consecutiveDays = calculateConsecutiveWorkDays(doctor, date, existingSchedules);
-            if (consecutiveDays >= rules.getConsecutiveWorkDaysLimit()) {
-                return false;
-            }
-        }
-        
-        return true;
-    }
-    
-    /**
-     * 检查时间冲突
-     * 同一医生不能在同一时间有多个排班
-     */
-    private boolean hasTimeConflict(
-            Doctor doctor, 
-            LocalDate date, 
-            TimeSlot slot,
-            List<Schedule> schedules) {
-        
-        return schedules.stream()
-            .anyMatch(s -> 
-                s.getDoctor().getDoctorId().equals(doctor.getDoctorId())
-                && s.getScheduleDate().equals(date)
-                && s.getSlot().getSlotId().equals(slot.getSlotId())
-            );
-    }
-    
-    /**
-     * 检查医生是否在请假
-     */
-    private boolean isOnLeave(
-            Doctor doctor, 
-            LocalDate date,
-            Map<Integer, List<LeaveRequest>> leaveMap) {
-        
-        List<LeaveRequest> leaves = leaveMap.get(doctor.getDoctorId());
-        if (leaves == null || leaves.isEmpty()) {
-            return false;
-        }
-        
-        LocalDateTime checkDateTime = date.atStartOfDay();
-        LocalDateTime endOfDay = date.atTime(23, 59, 59);
-        
-        return leaves.stream()
-            .filter(lr -> "approved".equals(lr.getStatus()))
-            .anyMatch(lr -> {
-                // 检查日期是否在请假时间范围内
-                LocalDateTime leaveStart = lr.getStartTime();
-                LocalDateTime leaveEnd = lr.getEndTime();
-                
-                // 如果请假开始时间 <= 当天结束 且 请假结束时间 >= 当天开始，则有冲突
-                return !leaveStart.isAfter(endOfDay) && !leaveEnd.isBefore(checkDateTime);
-            });
-    }
-    
-    /**
-     * 检查硬约束（放宽版本：跳过连续工作天数限制）
-     * 用于紧急情况，确保每天至少有医生可用
-     */
-    public boolean checkHardConstraintsRelaxed(
-            Doctor doctor, 
-            LocalDate date, 
-            TimeSlot slot,
-            Map<Integer, List<LeaveRequest>> leaveMap,
-            List<Schedule> existingSchedules,
-            Map<Integer, Integer> workloadMap,
-            ScheduleRules rules) {
-        
-        // HC-1: 时空唯一性检查
-        if (hasTimeConflict(doctor, date, slot, existingSchedules)) {
-            return false;
-        }
-        
-        // HC-2: 请假约束检查
-        if (isOnLeave(doctor, date, leaveMap)) {
-            return false;
-        }
-        
-        // HC-3: 医生状态检查
-        if (doctor.getStatus() != DoctorStatus.active) {
-            return false;
-        }
-        
-        // HC-4: 工作量上限检查
-        Integer currentWorkload = workloadMap.getOrDefault(doctor.getDoctorId(), 0);
-        if (currentWorkload >= rules.getMaxShiftsPerDoctor()) {
-            return false;
-        }
-        
-        // HC-5: 跳过连续工作天数限制检查（放宽版本）
-        
-        return true;
-    }
-    
     /**
      * 获取医生在指定日期前的连续工作天数（公共方法）
      * 
@@ -225,9 +88,57 @@ public class ScheduleConstraintValidator {
      * @return 警告信息列表
      */
     public List<String> checkSoftConstraints(List<Schedule> schedules, ScheduleRules rules) {
-        // TODO: 实现软约束检查，如连续工作天数等
-        // 这部分可以在后续版本实现
-        return List.of();
+        List<String> warnings = new ArrayList<>();
+        
+        Map<Integer, TreeSet<LocalDate>> workDaysByDoctor = new HashMap<>();
+        Map<Integer, String> doctorNames = new HashMap<>();
+        Map<String, Integer> doctorsPerSlot = new HashMap<>();
+        for (Schedule schedule : schedules) {
+            Integer doctorId = schedule.getDoctor().getDoctorId();
+            workDaysByDoctor.computeIfAbsent(doctorId, k -> new TreeSet<>()).add(schedule.getScheduleDate());
+            doctorNames.putIfAbsent(doctorId, schedule.getDoctor().getFullName());
+            doctorsPerSlot.merge(schedule.getScheduleDate() + " " + schedule.getSlot().getSlotName(), 1, Integer::sum);
+        }
+        
+        // SC-1: 连续工作天数超过上限（放宽限制时可能出现）
+        Integer consecutiveLimit = rules.getConsecutiveWorkDaysLimit();
+        if (consecutiveLimit != null && consecutiveLimit > 0) {
+            for (Map.Entry<Integer, TreeSet<LocalDate>> entry : workDaysByDoctor.entrySet()) {
+                LocalDate runStart = null;
+                LocalDate previous = null;
+                for (LocalDate day : entry.getValue()) {
+                    if (previous == null || !day.equals(previous.plusDays(1))) {
+                        addConsecutiveWarning(warnings, doctorNames.get(entry.getKey()), runStart, previous, consecutiveLimit);
+                        runStart = day;
+                    }
+                    previous = day;
+                }
+                addConsecutiveWarning(warnings, doctorNames.get(entry.getKey()), runStart, previous, consecutiveLimit);
+            }
+        }
+        
+        // SC-2: 每个时段医生数超过上限
+        Integer maxDoctors = rules.getMaxDoctorsPerSlot();
+        if (maxDoctors != null && maxDoctors > 0) {
+            doctorsPerSlot.forEach((slotKey, count) -> {
+                if (count > maxDoctors) {
+                    warnings.add(String.format("%s安排了%d个医生，超过上限%d个", slotKey, count, maxDoctors));
+                }
+            });
+        }
+        
+        return warnings;
+    }
+    
+    private void addConsecutiveWarning(List<String> warnings, String doctorName,
+                                       LocalDate runStart, LocalDate runEnd, int limit) {
+        if (runStart == null) {
+            return;
+        }
+        long days = ChronoUnit.DAYS.between(runStart, runEnd) + 1;
+        if (days > limit) {
+            warnings.add(String.format("医生%s从%s起连续工作%d天，超过上限%d天", doctorName, runStart, days, limit));
+        }
     }
 }
 
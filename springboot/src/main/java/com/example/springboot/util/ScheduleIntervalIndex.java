@@ -0,0 +1,133 @@
+package com.example.springboot.util;
+
+import com.example.springboot.entity.Schedule;
+import com.example.springboot.entity.TimeSlot;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 排班时间区间索引
+ * 按（医生, 日期）和（诊室, 日期）分桶，桶内排班按时段开始时间排序并维护前缀最大结束时间，
+ * 查询与某个时间区间重叠的排班时二分定位后向前扫描，复杂度 O(log n + k)。
+ * 时段重叠按时间判断（如 08:00-09:00 与 08:00-08:30 重叠），同一时段视为重叠。
+ */
+public class ScheduleIntervalIndex {
+
+    static final Comparator<Schedule> BY_TIME = Comparator
+            .comparing((Schedule s) -> s.getSlot().getStartTime())
+            .thenComparing(s -> s.getSlot().getEndTime());
+
+    private final Map<Key, Bucket> byDoctor = new HashMap<>();
+    private final Map<Key, Bucket> byLocation = new HashMap<>();
+
+    private record Key(Integer resourceId, LocalDate date) {
+    }
+
+    /**
+     * 由排班列表构建索引
+     */
+    public static ScheduleIntervalIndex of(Collection<Schedule> schedules) {
+        ScheduleIntervalIndex index = new ScheduleIntervalIndex();
+        for (Schedule schedule : schedules) {
+            index.add(schedule);
+        }
+        return index;
+    }
+
+    /**
+     * 加入一条排班（缺少医生、日期或时段的排班忽略）
+     */
+    public void add(Schedule schedule) {
+        if (schedule.getScheduleDate() == null || schedule.getSlot() == null) {
+            return;
+        }
+        if (schedule.getDoctor() != null) {
+            byDoctor.computeIfAbsent(new Key(schedule.getDoctor().getDoctorId(), schedule.getScheduleDate()),
+                    k -> new Bucket()).add(schedule);
+        }
+        if (schedule.getLocation() != null) {
+            byLocation.computeIfAbsent(new Key(schedule.getLocation().getLocationId(), schedule.getScheduleDate()),
+                    k -> new Bucket()).add(schedule);
+        }
+    }
+
+    /**
+     * 医生在指定日期与该时段重叠的排班
+     */
+    public List<Schedule> findDoctorOverlaps(Integer doctorId, LocalDate date, TimeSlot slot) {
+        Bucket bucket = byDoctor.get(new Key(doctorId, date));
+        return bucket != null ? bucket.findOverlaps(slot) : Collections.emptyList();
+    }
+
+    /**
+     * 诊室在指定日期与该时段重叠的排班
+     */
+    public List<Schedule> findLocationOverlaps(Integer locationId, LocalDate date, TimeSlot slot) {
+        Bucket bucket = byLocation.get(new Key(locationId, date));
+        return bucket != null ? bucket.findOverlaps(slot) : Collections.emptyList();
+    }
+
+    /**
+     * 两个时段是否重叠
+     */
+    public static boolean overlaps(TimeSlot a, TimeSlot b) {
+        if (Objects.equals(a.getSlotId(), b.getSlotId())) {
+            return true;
+        }
+        return a.getStartTime().isBefore(b.getEndTime()) && b.getStartTime().isBefore(a.getEndTime());
+    }
+
+    /**
+     * 同一资源同一天的排班，按开始时间排序
+     */
+    private static final class Bucket {
+        final List<Schedule> schedules = new ArrayList<>();
+        // maxEnd[i] = schedules[0..i] 中最晚的结束时间
+        final List<LocalTime> maxEnd = new ArrayList<>();
+
+        void add(Schedule schedule) {
+            int pos = Collections.binarySearch(schedules, schedule, BY_TIME);
+            pos = pos < 0 ? -pos - 1 : pos;
+            schedules.add(pos, schedule);
+            maxEnd.add(null);
+            LocalTime running = pos > 0 ? maxEnd.get(pos - 1) : null;
+            for (int i = pos; i < schedules.size(); i++) {
+                LocalTime end = schedules.get(i).getSlot().getEndTime();
+                running = running == null || end.isAfter(running) ? end : running;
+                maxEnd.set(i, running);
+            }
+        }
+
+        List<Schedule> findOverlaps(TimeSlot slot) {
+            // 第一个开始时间晚于查询结束时间的位置（开始时间相同也可能是同一时段，一并纳入）
+            int lo = 0;
+            int hi = schedules.size();
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (schedules.get(mid).getSlot().getStartTime().isAfter(slot.getEndTime())) {
+                    hi = mid;
+                } else {
+                    lo = mid + 1;
+                }
+            }
+            List<Schedule> result = new ArrayList<>();
+            for (int i = lo - 1; i >= 0 && !maxEnd.get(i).isBefore(slot.getStartTime()); i--) {
+                Schedule candidate = schedules.get(i);
+                if (overlaps(candidate.getSlot(), slot)) {
+                    result.add(candidate);
+                }
+            }
+            Collections.reverse(result);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package com.example.springboot.util;
+
+import com.example.springboot.dto.DoctorWorkload;
+import com.example.springboot.dto.ScheduleRules;
+import com.example.springboot.dto.UnassignedSlot;
+import com.example.springboot.entity.Doctor;
+import com.example.springboot.entity.Location;
+import com.example.springboot.entity.Schedule;
+import com.example.springboot.entity.TimeSlot;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 排班方案优化器（多起点并行搜索）
+ * 在限定的时间内，多个工作线程并行执行：随机化贪心构造一个方案 -> 局部搜索（移动/交换）改进 -> 重新开始，
+ * 最后返回评分最好的方案。第一个工作线程的第一个方案使用确定性贪心（与普通模式结果相同），
+ * 因此优化结果不会比普通模式差。
+ *
+ * 方案评分（越低越好）：未满足最少医生数的时段数 × 1000 + 软约束违反数 × 100
+ * + 班次数方差 × 10 + 平均最长连续工作天数，其中工作量分布由 WorkloadCalculator 计算，
+ * 软约束由 ScheduleConstraintValidator.checkSoftConstraints 检查。
+ */
+@Slf4j
+@Component
+public class ScheduleOptimizer {
+
+    private static final double UNASSIGNED_WEIGHT = 1000.0;
+    private static final double SOFT_VIOLATION_WEIGHT = 100.0;
+    private static final double WORKLOAD_VARIANCE_WEIGHT = 10.0;
+
+    // 局部搜索中单个医生的代价：班次数平方 × 权重 + 最长连续工作天数平方
+    private static final int LOCAL_WORKLOAD_WEIGHT = 10;
+
+    @Autowired
+    private WorkloadCalculator workloadCalculator;
+
+    @Autowired
+    private ScheduleConstraintValidator constraintValidator;
+
+    // 并行度，0 表示使用 CPU 核数
+    @Value("${app.schedule.optimizer.parallelism:0}")
+    private int parallelism;
+
+    // 单次优化允许的最长时间（请求中的时间预算超过该值时截断）
+    @Value("${app.schedule.optimizer.max-time-budget-ms:10000}")
+    private long maxTimeBudgetMillis;
+
+    private ForkJoinPool pool;
+
+    /**
+     * 排班方案：生成的排班、工作量、未满足的时段和对应的可用性位图
+     */
+    public record Plan(List<Schedule> schedules,
+                       Map<Integer, Integer> workloadMap,
+                       List<UnassignedSlot> unassignedSlots,
+                       int relaxedCount,
+                       ScheduleAvailabilityIndex availability) {
+    }
+
+    /**
+     * 优化结果
+     */
+    public record Result(Plan plan, double score, double baselineScore, int plansEvaluated) {
+    }
+
+    @PostConstruct
+    public void init() {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        pool = new ForkJoinPool(threads);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * 在时间预算内搜索最优方案
+     *
+     * @param planBuilder       方案构造函数，参数为 null 时执行确定性贪心，否则按该随机数生成器随机化
+     * @param doctors           参与排班的医生
+     * @param doctorLocationMap 医生ID -> 固定诊室
+     * @param rules             排班规则
+     * @param timeBudgetMillis  时间预算（毫秒）
+     */
+    public Result optimize(Function<Random, Plan> planBuilder,
+                           List<Doctor> doctors,
+                           Map<Integer, Location> doctorLocationMap,
+                           ScheduleRules rules,
+                           long timeBudgetMillis) {
+        long budget = Math.max(1, Math.min(timeBudgetMillis, maxTimeBudgetMillis));
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budget);
+        int workers = pool.getParallelism();
+        SplittableRandom seeds = new SplittableRandom();
+
+        List<ForkJoinTask<Result>> tasks = new ArrayList<>(workers);
+        for (int w = 0; w < workers; w++) {
+            boolean baselineFirst = w == 0;
+            long seed = seeds.nextLong();
+            tasks.add(pool.submit(() -> runWorker(
+                    planBuilder, doctors, doctorLocationMap, rules, deadline, baselineFirst, new Random(seed))));
+        }
+
+        Result best = null;
+        double baselineScore = Double.NaN;
+        int plansEvaluated = 0;
+        for (ForkJoinTask<Result> task : tasks) {
+            Result result = task.join();
+            plansEvaluated += result.plansEvaluated();
+            if (!Double.isNaN(result.baselineScore())) {
+                baselineScore = result.baselineScore();
+            }
+            // 每个工作线程至少完成一个方案
+            if (best == null || result.score() < best.score()) {
+                best = result;
+            }
+        }
+
+        log.info("排班优化完成: 耗时预算{}ms, 并行度{}, 共评估{}个方案, 评分 {} -> {}",
+                budget, workers, plansEvaluated, String.format("%.2f", baselineScore), String.format("%.2f", best.score()));
+        return new Result(best.plan(), best.score(), baselineScore, plansEvaluated);
+    }
+
+    private Result runWorker(Function<Random, Plan> planBuilder,
+                             List<Doctor> doctors,
+                             Map<Integer, Location> doctorLocationMap,
+                             ScheduleRules rules,
+                             long deadline,
+                             boolean baselineFirst,
+                             Random random) {
+        Plan best = null;
+        double bestScore = Double.MAX_VALUE;
+        double baselineScore = Double.NaN;
+        int plansEvaluated = 0;
+        boolean first = true;
+
+        do {
+            Plan plan = planBuilder.apply(first && baselineFirst ? null : random);
+            if (first && baselineFirst) {
+                baselineScore = score(plan, doctors, rules);
+            }
+            first = false;
+            improve(plan, doctors, doctorLocationMap, deadline, random);
+
+            double score = score(plan, doctors, rules);
+            plansEvaluated++;
+            if (score < bestScore) {
+                bestScore = score;
+                best = plan;
+            }
+        } while (System.nanoTime() < deadline);
+
+        return new Result(best, bestScore, baselineScore, plansEvaluated);
+    }
+
+    /**
+     * 方案评分（越低越好）
+     */
+    public double score(Plan plan, List<Doctor> doctors, ScheduleRules rules) {
+        Map<Integer, DoctorWorkload> distribution =
+                workloadCalculator.calculateWorkloadDistribution(plan.schedules(), doctors);
+        List<String> softViolations = constraintValidator.checkSoftConstraints(plan.schedules(), rules);
+
+        double mean = 0.0;
+        double consecutive = 0.0;
+        for (DoctorWorkload workload : distribution.values()) {
+            mean += workload.getTotalShifts();
+            consecutive += workload.getMaxConsecutiveDays();
+        }
+        int n = Math.max(1, distribution.size());
+        mean /= n;
+        double variance = 0.0;
+        for (DoctorWorkload workload : distribution.values()) {
+            double diff = workload.getTotalShifts() - mean;
+            variance += diff * diff;
+        }
+        variance /= n;
+
+        return plan.unassignedSlots().size() * UNASSIGNED_WEIGHT
+                + softViolations.size() * SOFT_VIOLATION_WEIGHT
+                + variance * WORKLOAD_VARIANCE_WEIGHT
+                + consecutive / n;
+    }
+
+    /**
+     * 局部搜索：随机尝试移动（把一条排班交给班次更少的医生）和交换（两条排班互换医生），
+     * 只接受满足硬约束和诊室唯一、且降低相关医生代价的修改；长时间没有改进或到达截止时间时停止
+     */
+    private void improve(Plan plan,
+                         List<Doctor> doctors,
+                         Map<Integer, Location> doctorLocationMap,
+                         long deadline,
+                         Random random) {
+        List<Schedule> schedules = plan.schedules();
+        if (schedules.isEmpty() || doctors.size() < 2) {
+            return;
+        }
+        // (日期, 时段) -> 已使用的诊室
+        Map<SlotKey, Set<Integer>> locationsInUse = new HashMap<>();
+        for (Schedule schedule : schedules) {
+            locationsInUse.computeIfAbsent(SlotKey.of(schedule), k -> new HashSet<>())
+                    .add(schedule.getLocation().getLocationId());
+        }
+
+        int maxStale = schedules.size() * 20;
+        int stale = 0;
+        for (int iteration = 0; stale < maxStale; iteration++) {
+            if ((iteration & 63) == 0 && System.nanoTime() >= deadline) {
+                break;
+            }
+            boolean improved = random.nextBoolean()
+                    ? tryMove(plan, doctors, doctorLocationMap, locationsInUse, random)
+                    : trySwap(plan, doctorLocationMap, locationsInUse, random);
+            stale = improved ? 0 : stale + 1;
+        }
+    }
+
+    private boolean tryMove(Plan plan,
+                            List<Doctor> doctors,
+                            Map<Integer, Location> doctorLocationMap,
+                            Map<SlotKey, Set<Integer>> locationsInUse,
+                            Random random) {
+        ScheduleAvailabilityIndex availability = plan.availability();
+        Schedule schedule = plan.schedules().get(random.nextInt(plan.schedules().size()));
+        Doctor from = schedule.getDoctor();
+        Doctor to = doctors.get(random.nextInt(doctors.size()));
+        if (to.getDoctorId().equals(from.getDoctorId())
+                || availability.getWorkload(to) >= availability.getWorkload(from) - 1) {
+            return false;
+        }
+        Location toLocation = doctorLocationMap.get(to.getDoctorId());
+        if (toLocation == null) {
+            return false;
+        }
+        LocalDate date = schedule.getScheduleDate();
+        TimeSlot slot = schedule.getSlot();
+        Set<Integer> used = locationsInUse.get(SlotKey.of(schedule));
+        Integer fromLocationId = schedule.getLocation().getLocationId();
+        if (!toLocation.getLocationId().equals(fromLocationId) && used.contains(toLocation.getLocationId())) {
+            return false;
+        }
+
+        long before = cost(availability, from) + cost(availability, to);
+        availability.release(from, date, slot);
+        if (!availability.canAssign(to, date, slot)) {
+            availability.assign(from, date, slot);
+            return false;
+        }
+        availability.assign(to, date, slot);
+        long after = cost(availability, from) + cost(availability, to);
+        if (after >= before) {
+            availability.release(to, date, slot);
+            availability.assign(from, date, slot);
+            return false;
+        }
+
+        used.remove(fromLocationId);
+        used.add(toLocation.getLocationId());
+        schedule.setDoctor(to);
+        schedule.setLocation(toLocation);
+        plan.workloadMap().merge(from.getDoctorId(), -1, Integer::sum);
+        plan.workloadMap().merge(to.getDoctorId(), 1, Integer::sum);
+        return true;
+    }
+
+    private boolean trySwap(Plan plan,
+                            Map<Integer, Location> doctorLocationMap,
+                            Map<SlotKey, Set<Integer>> locationsInUse,
+                            Random random) {
+        ScheduleAvailabilityIndex availability = plan.availability();
+        List<Schedule> schedules = plan.schedules();
+        Schedule first = schedules.get(random.nextInt(schedules.size()));
+        Schedule second = schedules.get(random.nextInt(schedules.size()));
+        Doctor a = first.getDoctor();
+        Doctor b = second.getDoctor();
+        SlotKey firstKey = SlotKey.of(first);
+        SlotKey secondKey = SlotKey.of(second);
+        if (a.getDoctorId().equals(b.getDoctorId()) || firstKey.equals(secondKey)) {
+            return false;
+        }
+        Location aLocation = first.getLocation();
+        Location bLocation = second.getLocation();
+        // 交换后 a 使用自己的诊室出 second 的诊，b 使用自己的诊室出 first 的诊
+        if (!aLocation.getLocationId().equals(bLocation.getLocationId())
+                && (locationsInUse.get(secondKey).contains(aLocation.getLocationId())
+                    || locationsInUse.get(firstKey).contains(bLocation.getLocationId()))) {
+            return false;
+        }
+
+        long before = cost(availability, a) + cost(availability, b);
+        availability.release(a, first.getScheduleDate(), first.getSlot());
+        availability.release(b, second.getScheduleDate(), second.getSlot());
+        boolean feasible = availability.canAssign(a, second.getScheduleDate(), second.getSlot());
+        if (feasible) {
+            availability.assign(a, second.getScheduleDate(), second.getSlot());
+            feasible = availability.canAssign(b, first.getScheduleDate(), first.getSlot());
+            if (!feasible) {
+                availability.release(a, second.getScheduleDate(), second.getSlot());
+            }
+        }
+        if (feasible) {
+            availability.assign(b, first.getScheduleDate(), first.getSlot());
+            if (cost(availability, a) + cost(availability, b) < before) {
+                Set<Integer> firstUsed = locationsInUse.get(firstKey);
+                Set<Integer> secondUsed = locationsInUse.get(secondKey);
+                firstUsed.remove(aLocation.getLocationId());
+                firstUsed.add(bLocation.getLocationId());
+                secondUsed.remove(bLocation.getLocationId());
+                secondUsed.add(aLocation.getLocationId());
+                first.setDoctor(b);
+                first.setLocation(bLocation);
+                second.setDoctor(a);
+                second.setLocation(aLocation);
+                return true;
+            }
+            availability.release(a, second.getScheduleDate(), second.getSlot());
+            availability.release(b, first.getScheduleDate(), first.getSlot());
+        }
+        availability.assign(a, first.getScheduleDate(), first.getSlot());
+        availability.assign(b, second.getScheduleDate(), second.getSlot());
+        return false;
+    }
+
+    private static long cost(ScheduleAvailabilityIndex availability, Doctor doctor) {
+        long workload = availability.getWorkload(doctor);
+        long consecutive = availability.getMaxConsecutiveGeneratedDays(doctor);
+        return workload * workload * LOCAL_WORKLOAD_WEIGHT + consecutive * consecutive;
+    }
+
+    private record SlotKey(LocalDate date, Integer slotId) {
+        static SlotKey of(Schedule schedule) {
+            return new SlotKey(schedule.getScheduleDate(), schedule.getSlot().getSlotId());
+        }
+    }
+}
@@ -77,10 +77,21 @@ public class TFIDFCalculator {
             Set<String> vocabulary) {
         
         Map<String, Double> vector = new HashMap<>();
+        if (vocabulary == null || vocabulary.isEmpty()) {
+            return vector;
+        }
+        
+        // 文档词频只统计一次，文档频率对全部文档只扫描一次（而不是每个词各扫描一遍）
+        Map<String, Integer> termCounts = countTerms(document);
+        Map<String, Integer> documentFrequency = countDocumentFrequency(documents, vocabulary);
+        int documentSize = document == null ? 0 : document.size();
+        int documentCount = documents == null ? 0 : documents.size();
         
         for (String term : vocabulary) {
-            double tfidfValue = tfidf(term, document, documents);
-            vector.put(term, tfidfValue);
+            double tfValue = documentSize == 0 ? 0.0 : (double) termCounts.getOrDefault(term, 0) / documentSize;
+            int docCount = documentFrequency.getOrDefault(term, 0);
+            double idfValue = docCount == 0 ? 0.0 : Math.log((double) documentCount / docCount);
+            vector.put(term, tfValue * idfValue);
         }
         
         return vector;
@@ -98,4 +109,40 @@ public class TFIDFCalculator {
                 .filter(Objects::nonNull)
                 .collect(Collectors.toSet());
     }
-}
\ No newline at end of file
+    
+    /**
+     * 统计文档中每个词出现的次数
+     */
+    private static Map<String, Integer> countTerms(List<String> document) {
+        Map<String, Integer> counts = new HashMap<>();
+        if (document != null) {
+            for (String word : document) {
+                if (word != null) {
+                    counts.merge(word, 1, Integer::sum);
+                }
+            }
+        }
+        return counts;
+    }
+    
+    /**
+     * 统计词汇表中每个词出现在多少个文档中
+     */
+    private static Map<String, Integer> countDocumentFrequency(List<List<String>> documents, Set<String> vocabulary) {
+        Map<String, Integer> frequency = new HashMap<>();
+        if (documents == null) {
+            return frequency;
+        }
+        for (List<String> doc : documents) {
+            if (doc == null) {
+                continue;
+            }
+            for (String term : new HashSet<>(doc)) {
+                if (term != null && vocabulary.contains(term)) {
+                    frequency.merge(term, 1, Integer::sum);
+                }
+            }
+        }
+        return frequency;
+    }
+}
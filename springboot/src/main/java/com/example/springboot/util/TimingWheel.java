@@ -0,0 +1,133 @@
+package com.example.springboot.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 分层时间轮
+ * 第 0 层每格一个 tick，第 L 层每格 wheelSize^L 个 tick；到期时间较远的定时先放在高层，
+ * 随时间推进逐层下放，到第 0 层对应格子时到期。登记、推进的开销与定时总数无关。
+ * 同一个 key 重复登记时以最后一次为准（旧的定时在轮到时丢弃）；超出最高层范围的定时先放在最高层最远的格子，下放时重新计算位置。
+ * 非线程安全，由调用方加锁。
+ */
+public class TimingWheel<K> {
+
+    private record Timer<K>(K key, long deadlineTick) {
+    }
+
+    private final long tickMillis;
+    private final int wheelSize;
+    private final long[] levelTicks; // 第 L 层每格的 tick 数
+    private final List<List<ArrayDeque<Timer<K>>>> levels = new ArrayList<>();
+    // key -> 最近一次登记的到期 tick，用于去重和取消
+    private final Map<K, Long> deadlines = new HashMap<>();
+    private long currentTick;
+
+    /**
+     * @param tickMillis 每格时长（毫秒）
+     * @param wheelSize  每层格数
+     * @param levelCount 层数
+     * @param nowMillis  当前时间（毫秒时间戳）
+     */
+    public TimingWheel(long tickMillis, int wheelSize, int levelCount, long nowMillis) {
+        this.tickMillis = tickMillis;
+        this.wheelSize = wheelSize;
+        this.levelTicks = new long[levelCount];
+        long ticks = 1;
+        for (int level = 0; level < levelCount; level++) {
+            levelTicks[level] = ticks;
+            ticks *= wheelSize;
+            List<ArrayDeque<Timer<K>>> buckets = new ArrayList<>(wheelSize);
+            for (int i = 0; i < wheelSize; i++) {
+                buckets.add(new ArrayDeque<>());
+            }
+            levels.add(buckets);
+        }
+        this.currentTick = nowMillis / tickMillis;
+    }
+
+    /**
+     * 登记（或改期）一个定时，已到期的在下一个 tick 返回
+     */
+    public void schedule(K key, long deadlineMillis) {
+        // 向上取整，保证返回时当前时间不早于到期时间
+        long deadlineTick = Math.max(Math.floorDiv(deadlineMillis + tickMillis - 1, tickMillis), currentTick + 1);
+        deadlines.put(key, deadlineTick);
+        place(new Timer<>(key, deadlineTick));
+    }
+
+    public void cancel(K key) {
+        deadlines.remove(key);
+    }
+
+    /**
+     * 等待中的定时数
+     */
+    public int size() {
+        return deadlines.size();
+    }
+
+    /**
+     * 推进到当前时间，返回到期的 key（按到期先后）
+     */
+    public List<K> advance(long nowMillis) {
+        List<K> due = new ArrayList<>();
+        long targetTick = nowMillis / tickMillis;
+        while (currentTick < targetTick) {
+            currentTick++;
+            // 先从高层往低层下放本 tick 开始的格子，再处理第 0 层
+            for (int level = levels.size() - 1; level >= 1; level--) {
+                if (currentTick % levelTicks[level] == 0) {
+                    ArrayDeque<Timer<K>> bucket = bucketOf(level, currentTick);
+                    List<Timer<K>> timers = new ArrayList<>(bucket);
+                    bucket.clear();
+                    timers.forEach(this::place);
+                }
+            }
+            ArrayDeque<Timer<K>> bucket = bucketOf(0, currentTick);
+            for (Timer<K> timer : bucket) {
+                if (isCurrent(timer)) {
+                    deadlines.remove(timer.key());
+                    due.add(timer.key());
+                }
+            }
+            bucket.clear();
+        }
+        return due;
+    }
+
+    private void place(Timer<K> timer) {
+        if (!isCurrent(timer)) {
+            return; // 已取消或已改期
+        }
+        // 下放时恰好在本 tick 到期的，放入本 tick 的第 0 层格子，随后处理
+        long remaining = Math.max(timer.deadlineTick() - currentTick, 0);
+        if (remaining == 0) {
+            bucketOf(0, currentTick).add(timer);
+            return;
+        }
+        int top = levels.size() - 1;
+        for (int level = 0; level <= top; level++) {
+            long span = levelTicks[level] * wheelSize;
+            if (remaining < span) {
+                bucketOf(level, timer.deadlineTick()).add(timer);
+                return;
+            }
+        }
+        // 超出范围：放在最高层最远的格子，下放时重新计算
+        long farthest = currentTick + levelTicks[top] * wheelSize - 1;
+        bucketOf(top, farthest).add(timer);
+    }
+
+    private boolean isCurrent(Timer<K> timer) {
+        Long deadlineTick = deadlines.get(timer.key());
+        return deadlineTick != null && deadlineTick == timer.deadlineTick();
+    }
+
+    private ArrayDeque<Timer<K>> bucketOf(int level, long tick) {
+        return levels.get(level).get((int) ((tick / levelTicks[level]) % wheelSize));
+    }
+}
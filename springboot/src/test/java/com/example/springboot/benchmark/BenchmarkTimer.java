@@ -0,0 +1,48 @@
+package com.example.springboot.benchmark;
+
+import java.util.function.Supplier;
+
+/**
+ * 基准测试计时工具
+ * 先预热若干轮让 JIT 编译热点代码，再计时若干轮取平均值；
+ * 每次调用的返回值累加到 sink 中，防止被 JIT 当作无用代码消除。
+ * 基准测试类标注 @Tag("benchmark")，默认构建不执行，使用 mvn test -Pbenchmark 运行。
+ */
+public final class BenchmarkTimer {
+
+    private static volatile int sink;
+
+    private BenchmarkTimer() {
+    }
+
+    /**
+     * 测量一次调用的平均耗时
+     *
+     * @param name       输出时显示的名称
+     * @param warmup     预热轮数
+     * @param iterations 计时轮数
+     * @param operation  被测操作
+     * @return 平均耗时（毫秒）
+     */
+    public static double measure(String name, int warmup, int iterations, Supplier<?> operation) {
+        int hash = 0;
+        for (int i = 0; i < warmup; i++) {
+            hash += System.identityHashCode(operation.get());
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            hash += System.identityHashCode(operation.get());
+        }
+        double averageMillis = (System.nanoTime() - start) / 1_000_000.0 / iterations;
+        sink += hash;
+        System.out.printf("[benchmark] %-48s %10.3f ms/op（%d 轮）%n", name, averageMillis, iterations);
+        return averageMillis;
+    }
+
+    /**
+     * 输出两种实现的耗时对比
+     */
+    public static void report(String name, double baselineMillis, double optimizedMillis) {
+        System.out.printf("[benchmark] %-48s 提速 %.1f 倍%n", name, baselineMillis / optimizedMillis);
+    }
+}
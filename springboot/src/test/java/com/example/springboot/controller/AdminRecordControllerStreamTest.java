@@ -0,0 +1,336 @@
+package com.example.springboot.controller;
+
+import com.example.springboot.dto.admin.AdminResponse;
+import com.example.springboot.entity.*;
+import com.example.springboot.entity.enums.*;
+import com.example.springboot.repository.*;
+import com.example.springboot.service.*;
+import com.example.springboot.util.NdjsonWriter;
+import com.example.springboot.util.PasswordEncoderUtil;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Answers;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+/**
+ * 管理员记录流式导出测试
+ * 仓库 mock 模拟 MySQL 流式结果集的限制：流未关闭前对任何仓库发起查询都会失败，
+ * 用于保证各导出接口在逐行转换时不再执行第二条语句。
+ */
+class AdminRecordControllerStreamTest {
+
+    /**
+     * 模拟同一连接上的流式结果集：打开期间任何仓库调用都抛出异常（对应 Connector/J 的
+     * "Streaming result set is still active"），关闭后恢复正常
+     */
+    static class StreamingConnection implements Answer<Object> {
+        private boolean streaming;
+
+        <T> Stream<T> open(List<T> rows) {
+            streaming = true;
+            return rows.stream().onClose(() -> streaming = false);
+        }
+
+        boolean isStreaming() {
+            return streaming;
+        }
+
+        @Override
+        public Object answer(InvocationOnMock invocation) throws Throwable {
+            if (streaming) {
+                throw new IllegalStateException("Streaming result set is still active, cannot execute "
+                        + invocation.getMethod().getName());
+            }
+            return Answers.RETURNS_DEFAULTS.answer(invocation);
+        }
+    }
+
+    private final StreamingConnection connection = new StreamingConnection();
+    private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+
+    private AppointmentRepository appointmentRepository;
+    private WaitlistRepository waitlistRepository;
+    private LeaveRequestRepository leaveRequestRepository;
+    private AuditLogRepository auditLogRepository;
+    private SlotApplicationRepository slotApplicationRepository;
+    private PatientRepository patientRepository;
+    private AdminService adminService;
+
+    private AdminRecordController controller;
+
+    @BeforeEach
+    void setUp() {
+        appointmentRepository = repository(AppointmentRepository.class);
+        waitlistRepository = repository(WaitlistRepository.class);
+        leaveRequestRepository = repository(LeaveRequestRepository.class);
+        auditLogRepository = repository(AuditLogRepository.class);
+        slotApplicationRepository = repository(SlotApplicationRepository.class);
+        patientRepository = repository(PatientRepository.class);
+        ScheduleRepository scheduleRepository = repository(ScheduleRepository.class);
+        DoctorRepository doctorRepository = repository(DoctorRepository.class);
+        AdminRepository adminRepository = repository(AdminRepository.class);
+        adminService = mock(AdminService.class);
+
+        NdjsonWriter ndjsonWriter = new NdjsonWriter(objectMapper);
+        ReflectionTestUtils.setField(ndjsonWriter, "entityManager", mock(EntityManager.class));
+
+        PatientService patientService = new PatientService(patientRepository,
+                repository(PatientProfileRepository.class), mock(PasswordEncoderUtil.class), ndjsonWriter);
+        AppointmentService appointmentService = new AppointmentService(appointmentRepository, patientRepository,
+                scheduleRepository, patientService, mock(DoctorService.class), mock(DepartmentService.class),
+                mock(TimeSlotService.class), mock(ScheduleService.class), mock(NotificationService.class),
+                mock(WaitlistService.class), mock(SlotInventoryService.class), mock(CallQueueService.class),
+                mock(QueueStreamService.class), mock(QrTokenService.class), ndjsonWriter);
+        WaitlistService waitlistService = new WaitlistService(waitlistRepository, patientRepository,
+                scheduleRepository, appointmentRepository, patientService, mock(ScheduleService.class),
+                appointmentService, mock(NotificationService.class), mock(SlotInventoryService.class),
+                mock(WaitlistRankIndex.class), mock(ExpiryTimerService.class), ndjsonWriter);
+        LeaveRequestService leaveRequestService = new LeaveRequestService(leaveRequestRepository, doctorRepository,
+                adminRepository, scheduleRepository, mock(DoctorService.class), adminService,
+                mock(NotificationService.class), appointmentRepository, ndjsonWriter);
+        AuditLogService auditLogService = new AuditLogService(auditLogRepository, ndjsonWriter);
+        SlotApplicationService slotApplicationService = new SlotApplicationService(slotApplicationRepository,
+                doctorRepository, scheduleRepository, patientRepository, adminRepository,
+                mock(ReferenceDataCache.class), ndjsonWriter);
+
+        controller = new AdminRecordController(appointmentService, waitlistService, leaveRequestService,
+                auditLogService, slotApplicationService, patientService);
+    }
+
+    @Test
+    void streamsAppointments() throws IOException {
+        Schedule schedule = schedule(10);
+        List<Appointment> rows = List.of(appointment(3, schedule), appointment(2, schedule), appointment(1, schedule));
+        when(appointmentRepository.streamWithDetails(isNull())).thenAnswer(invocation -> connection.open(rows));
+
+        List<JsonNode> lines = readLines(controller.streamAppointments(null));
+
+        assertEquals(3, lines.size());
+        assertEquals(3, lines.get(0).get("appointmentId").asInt());
+        assertEquals("张医生", lines.get(0).get("schedule").get("doctorName").asText());
+        assertEquals("患者3", lines.get(0).get("patient").get("fullName").asText());
+        assertFalse(connection.isStreaming());
+    }
+
+    @Test
+    void streamsWaitlistsWithQueuePositions() throws IOException {
+        Schedule first = schedule(10);
+        Schedule second = schedule(11);
+        LocalDateTime now = LocalDateTime.now();
+        List<Waitlist> rows = List.of(
+                waitlist(4, second, WaitlistStatus.waiting, now),
+                waitlist(3, first, WaitlistStatus.waiting, now.minusMinutes(1)),
+                waitlist(2, first, WaitlistStatus.expired, now.minusMinutes(2)),
+                waitlist(1, first, WaitlistStatus.waiting, now.minusMinutes(3)));
+        when(waitlistRepository.findAllQueueEntries(WaitlistStatus.waiting)).thenReturn(List.of(
+                new Object[]{10, 1, now.minusMinutes(3)},
+                new Object[]{10, 3, now.minusMinutes(1)},
+                new Object[]{11, 4, now}));
+        when(waitlistRepository.streamWithDetails(isNull())).thenAnswer(invocation -> connection.open(rows));
+
+        List<JsonNode> lines = readLines(controller.streamWaitlists(null));
+
+        assertEquals(4, lines.size());
+        assertEquals(1, lines.get(0).get("queuePosition").asInt());
+        assertEquals(2, lines.get(1).get("queuePosition").asInt());
+        assertTrue(lines.get(2).get("queuePosition").isNull());
+        assertEquals(1, lines.get(3).get("queuePosition").asInt());
+        assertFalse(connection.isStreaming());
+    }
+
+    @Test
+    void streamsLeaveRequestsWithApprovers() throws IOException {
+        Admin approver = new Admin();
+        approver.setAdminId(7);
+        AdminResponse approverResponse = new AdminResponse();
+        approverResponse.setAdminId(7);
+        approverResponse.setFullName("李管理员");
+        List<LeaveRequest> rows = List.of(leaveRequest(2, approver), leaveRequest(1, approver), leaveRequest(0, null));
+        when(leaveRequestRepository.findApproverIds(isNull())).thenReturn(List.of(7));
+        when(adminService.findAdminById(7)).thenReturn(approverResponse);
+        when(leaveRequestRepository.streamWithDetails(isNull())).thenAnswer(invocation -> connection.open(rows));
+
+        List<JsonNode> lines = readLines(controller.streamLeaveRequests(null));
+
+        assertEquals(3, lines.size());
+        assertEquals("李管理员", lines.get(0).get("approver").get("fullName").asText());
+        assertEquals("李管理员", lines.get(1).get("approver").get("fullName").asText());
+        assertTrue(lines.get(2).get("approver").isNull());
+        verify(adminService, times(1)).findAdminById(7);
+        assertFalse(connection.isStreaming());
+    }
+
+    @Test
+    void streamsAuditLogs() throws IOException {
+        List<AuditLog> rows = new ArrayList<>();
+        for (long id = 3; id >= 1; id--) {
+            AuditLog log = new AuditLog();
+            log.setLogId(id);
+            log.setActorType(ActorType.admin);
+            log.setAction("操作" + id);
+            log.setCreatedAt(LocalDateTime.now());
+            rows.add(log);
+        }
+        when(auditLogRepository.streamAll(isNull())).thenAnswer(invocation -> connection.open(rows));
+
+        List<JsonNode> lines = readLines(controller.streamAuditLogs(null));
+
+        assertEquals(3, lines.size());
+        assertEquals("操作3", lines.get(0).get("action").asText());
+        assertFalse(connection.isStreaming());
+    }
+
+    @Test
+    void streamsSlotApplicationsFromJoinedRows() throws IOException {
+        List<Object[]> rows = List.of(
+                slotApplicationRow(2, "08:00", "王管理员"),
+                slotApplicationRow(1, "14:00", null));
+        when(slotApplicationRepository.streamWithDetails(isNull())).thenAnswer(invocation -> connection.open(rows));
+
+        List<JsonNode> lines = readLines(controller.streamSlotApplications(null));
+
+        assertEquals(2, lines.size());
+        assertEquals("张医生", lines.get(0).get("doctorName").asText());
+        assertEquals("MORNING", lines.get(0).get("timeSlot").asText());
+        assertEquals("王管理员", lines.get(0).get("approverName").asText());
+        assertEquals("AFTERNOON", lines.get(1).get("timeSlot").asText());
+        assertEquals("患者1", lines.get(1).get("patientName").asText());
+        assertFalse(connection.isStreaming());
+    }
+
+    @Test
+    void streamsPatients() throws IOException {
+        List<Patient> rows = List.of(patient(3L), patient(2L), patient(1L));
+        when(patientRepository.streamWithProfile(isNull())).thenAnswer(invocation -> connection.open(rows));
+
+        List<JsonNode> lines = readLines(controller.streamPatients(null));
+
+        assertEquals(3, lines.size());
+        assertEquals(3, lines.get(0).get("patientId").asLong());
+        assertFalse(connection.isStreaming());
+    }
+
+    @Test
+    void streamingConnectionRejectsQueriesWhileOpen() {
+        when(slotApplicationRepository.streamWithDetails(isNull()))
+                .thenAnswer(invocation -> connection.open(List.<Object[]>of()));
+        try (Stream<Object[]> rows = slotApplicationRepository.streamWithDetails(null)) {
+            assertThrows(IllegalStateException.class, () -> patientRepository.findById(1L));
+        }
+        assertEquals(Optional.empty(), patientRepository.findById(1L));
+    }
+
+    private <T> T repository(Class<T> type) {
+        return mock(type, connection);
+    }
+
+    private List<JsonNode> readLines(ResponseEntity<StreamingResponseBody> response) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            if (!line.isEmpty()) {
+                lines.add(objectMapper.readTree(line));
+            }
+        }
+        return lines;
+    }
+
+    private static Schedule schedule(int scheduleId) {
+        Department department = new Department();
+        department.setDepartmentId(1);
+        department.setName("内科");
+        Doctor doctor = new Doctor();
+        doctor.setDoctorId(5);
+        doctor.setFullName("张医生");
+        doctor.setDepartment(department);
+        TimeSlot slot = new TimeSlot();
+        slot.setSlotId(1);
+        slot.setStartTime(LocalTime.of(8, 0));
+        slot.setEndTime(LocalTime.of(8, 30));
+        Location location = new Location();
+        location.setLocationId(2);
+        location.setLocationName("101诊室");
+        Schedule schedule = new Schedule();
+        schedule.setScheduleId(scheduleId);
+        schedule.setScheduleDate(LocalDate.now());
+        schedule.setDoctor(doctor);
+        schedule.setSlot(slot);
+        schedule.setLocation(location);
+        schedule.setTotalSlots(10);
+        schedule.setBookedSlots(3);
+        schedule.setStatus(ScheduleStatus.available);
+        return schedule;
+    }
+
+    private static Patient patient(Long patientId) {
+        Patient patient = new Patient();
+        patient.setPatientId(patientId);
+        patient.setFullName("患者" + patientId);
+        patient.setStatus(PatientStatus.active);
+        return patient;
+    }
+
+    private static Appointment appointment(int appointmentId, Schedule schedule) {
+        Appointment appointment = new Appointment();
+        appointment.setAppointmentId(appointmentId);
+        appointment.setPatient(patient((long) appointmentId));
+        appointment.setSchedule(schedule);
+        appointment.setStatus(AppointmentStatus.scheduled);
+        return appointment;
+    }
+
+    private static Waitlist waitlist(int waitlistId, Schedule schedule, WaitlistStatus status, LocalDateTime createdAt) {
+        Waitlist waitlist = new Waitlist();
+        waitlist.setWaitlistId(waitlistId);
+        waitlist.setPatient(patient((long) waitlistId));
+        waitlist.setSchedule(schedule);
+        waitlist.setStatus(status);
+        waitlist.setCreatedAt(createdAt);
+        return waitlist;
+    }
+
+    private static LeaveRequest leaveRequest(int requestId, Admin approver) {
+        LeaveRequest request = new LeaveRequest();
+        request.setRequestId(requestId);
+        request.setDoctor(schedule(1).getDoctor());
+        request.setApprover(approver);
+        request.setStatus(approver != null ? LeaveRequestStatus.APPROVED : LeaveRequestStatus.PENDING);
+        return request;
+    }
+
+    private static Object[] slotApplicationRow(int applicationId, String startTime, String approverName) {
+        SlotApplication application = new SlotApplication();
+        application.setApplicationId(applicationId);
+        application.setDoctorId(5);
+        application.setScheduleId(10);
+        application.setPatientId((long) applicationId);
+        application.setAddedSlots(1);
+        LocalTime start = LocalTime.parse(startTime);
+        return new Object[]{application, "张医生", LocalDate.now(), start, start.plusMinutes(30), "101诊室",
+                "患者" + applicationId, "13800000000", approverName};
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.springboot.service;
+
+import com.example.springboot.dto.appointment.AppointmentResponse;
+import com.example.springboot.entity.*;
+import com.example.springboot.entity.enums.*;
+import com.example.springboot.repository.AppointmentRepository;
+import com.example.springboot.repository.PatientProfileRepository;
+import com.example.springboot.repository.PatientRepository;
+import com.example.springboot.repository.ScheduleRepository;
+import com.example.springboot.util.NdjsonWriter;
+import com.example.springboot.util.PasswordEncoderUtil;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 预约列表查询语句数测试
+ * 患者、医生的预约列表连同转换为 AppointmentResponse 所需的患者、档案、排班、医生、科室、时段、诊室
+ * 必须由一条 SQL 查出，不能逐行懒加载。查询前清空持久化上下文，保证关联对象不是从一级缓存取到的。
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+class AppointmentServiceStatementCountTest {
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private PatientProfileRepository patientProfileRepository;
+
+    @Autowired
+    private ScheduleRepository scheduleRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private AppointmentService appointmentService;
+    private Statistics statistics;
+
+    private Patient patientWithProfile;
+    private Patient patientWithoutProfile;
+    private Doctor doctor;
+
+    @BeforeEach
+    void setUp() {
+        PatientService patientService = new PatientService(patientRepository, patientProfileRepository,
+                mock(PasswordEncoderUtil.class), mock(NdjsonWriter.class));
+        appointmentService = new AppointmentService(appointmentRepository, patientRepository, scheduleRepository,
+                patientService, mock(DoctorService.class), mock(DepartmentService.class), mock(TimeSlotService.class),
+                mock(ScheduleService.class), mock(NotificationService.class), mock(WaitlistService.class),
+                mock(SlotInventoryService.class), mock(CallQueueService.class), mock(QueueStreamService.class),
+                mock(QrTokenService.class), mock(NdjsonWriter.class));
+        statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+
+        createAppointments();
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void findByPatientIdUsesOneStatement() {
+        assertEquals(3, assertSingleStatement(() -> appointmentService.findByPatientId(patientWithProfile.getPatientId())));
+        assertEquals(2, assertSingleStatement(() -> appointmentService.findByPatientId(patientWithoutProfile.getPatientId())));
+    }
+
+    @Test
+    void findUpcomingByPatientIdUsesOneStatement() {
+        assertEquals(2, assertSingleStatement(() -> appointmentService.findUpcomingByPatientId(patientWithProfile.getPatientId())));
+    }
+
+    @Test
+    void findByDoctorIdUsesOneStatement() {
+        assertEquals(5, assertSingleStatement(() -> appointmentService.findByDoctorId(doctor.getDoctorId())));
+    }
+
+    /**
+     * 执行查询并读取响应中的所有关联字段，断言只执行了一条 SQL
+     *
+     * @return 预约条数
+     */
+    private int assertSingleStatement(Supplier<List<AppointmentResponse>> query) {
+        statistics.clear();
+        List<AppointmentResponse> responses = query.get();
+        for (AppointmentResponse response : responses) {
+            assertNotNull(response.getPatient().getFullName());
+            assertNotNull(response.getSchedule().getDoctorName());
+            assertNotNull(response.getSchedule().getDepartmentName());
+            assertNotNull(response.getSchedule().getSlotName());
+            assertNotNull(response.getSchedule().getLocation());
+        }
+        assertEquals(1, statistics.getPrepareStatementCount(), "预约列表应由一条 SQL 查出");
+        return responses.size();
+    }
+
+    /**
+     * 一位医生三个排班（昨天、明天、后天），两位患者：有档案的患者每个排班各一个预约（其中明天的已取消），
+     * 没有档案的患者两个预约
+     */
+    private void createAppointments() {
+        ParentDepartment parentDepartment = new ParentDepartment("内科", null);
+        entityManager.persist(parentDepartment);
+
+        Department department = new Department();
+        department.setParentDepartment(parentDepartment);
+        department.setName("心血管内科");
+        entityManager.persist(department);
+
+        doctor = new Doctor();
+        doctor.setDepartment(department);
+        doctor.setIdentifier("D" + UUID.randomUUID());
+        doctor.setPasswordHash("hash");
+        doctor.setFullName("测试医生");
+        doctor.setStatus(DoctorStatus.active);
+        entityManager.persist(doctor);
+
+        TimeSlot slot = new TimeSlot();
+        slot.setSlotName("上午 08:00-12:00");
+        slot.setStartTime(LocalTime.of(8, 0));
+        slot.setEndTime(LocalTime.of(12, 0));
+        entityManager.persist(slot);
+
+        Location location = new Location();
+        location.setLocationName("门诊楼 201");
+        entityManager.persist(location);
+
+        Schedule yesterday = schedule(LocalDate.now().minusDays(1), slot, location);
+        Schedule tomorrow = schedule(LocalDate.now().plusDays(1), slot, location);
+        Schedule dayAfterTomorrow = schedule(LocalDate.now().plusDays(2), slot, location);
+
+        patientWithProfile = patient("有档案的患者");
+        PatientProfile profile = new PatientProfile();
+        profile.setPatient(patientWithProfile);
+        profile.setIdCardNumber("110101199001011234");
+        profile.setBlacklistStatus(BlacklistStatus.normal);
+        entityManager.persist(profile);
+        patientWithoutProfile = patient("没有档案的患者");
+
+        appointment(patientWithProfile, yesterday, AppointmentStatus.completed, 1);
+        appointment(patientWithProfile, tomorrow, AppointmentStatus.scheduled, 1);
+        appointment(patientWithProfile, dayAfterTomorrow, AppointmentStatus.scheduled, 1);
+        appointment(patientWithoutProfile, tomorrow, AppointmentStatus.cancelled, 2);
+        appointment(patientWithoutProfile, dayAfterTomorrow, AppointmentStatus.scheduled, 2);
+    }
+
+    private Schedule schedule(LocalDate date, TimeSlot slot, Location location) {
+        Schedule schedule = new Schedule();
+        schedule.setDoctor(doctor);
+        schedule.setScheduleDate(date);
+        schedule.setSlot(slot);
+        schedule.setLocation(location);
+        schedule.setTotalSlots(20);
+        schedule.setFee(new BigDecimal("20.00"));
+        schedule.setStatus(ScheduleStatus.available);
+        entityManager.persist(schedule);
+        return schedule;
+    }
+
+    private Patient patient(String fullName) {
+        Patient patient = new Patient();
+        patient.setIdentifier("P" + UUID.randomUUID());
+        patient.setPatientType(PatientType.student);
+        patient.setPasswordHash("hash");
+        patient.setFullName(fullName);
+        patient.setStatus(PatientStatus.active);
+        entityManager.persist(patient);
+        return patient;
+    }
+
+    private void appointment(Patient patient, Schedule schedule, AppointmentStatus status, int appointmentNumber) {
+        Appointment appointment = new Appointment();
+        appointment.setPatient(patient);
+        appointment.setSchedule(schedule);
+        appointment.setAppointmentNumber(appointmentNumber);
+        appointment.setStatus(status);
+        appointment.setPaymentStatus(PaymentStatus.paid);
+        entityManager.persist(appointment);
+    }
+}
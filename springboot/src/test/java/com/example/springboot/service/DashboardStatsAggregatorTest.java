@@ -0,0 +1,151 @@
+package com.example.springboot.service;
+
+import com.example.springboot.entity.enums.AppointmentStatus;
+import com.example.springboot.entity.enums.PaymentStatus;
+import com.example.springboot.repository.AppointmentRepository;
+import com.example.springboot.repository.PatientRepository;
+import com.example.springboot.repository.ScheduleRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 运营总览统计聚合器测试（mock 仓库）
+ * 验证对账与提交后增量不会重复计数、计数不会变为负数、支付状态为空的预约单独统计。
+ */
+class DashboardStatsAggregatorTest {
+
+    private AppointmentRepository appointmentRepository;
+    private PatientRepository patientRepository;
+    private ScheduleRepository scheduleRepository;
+    private DashboardStatsAggregator aggregator;
+
+    private final LocalDate today = LocalDate.now();
+
+    @BeforeEach
+    void setUp() {
+        appointmentRepository = mock(AppointmentRepository.class);
+        patientRepository = mock(PatientRepository.class);
+        scheduleRepository = mock(ScheduleRepository.class);
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+
+        aggregator = new DashboardStatsAggregator(appointmentRepository, patientRepository, scheduleRepository,
+                transactionManager);
+        ReflectionTestUtils.setField(aggregator, "commitWaitMillis", 5000L);
+        databaseCounts(0, 0, paymentRows(PaymentStatus.paid, 0));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void nullPaymentStatusIsKept() {
+        Map<String, Object> unknown = new HashMap<>();
+        unknown.put("status", null);
+        unknown.put("count", 3L);
+        databaseCounts(5, 0, List.of(paymentRow(PaymentStatus.paid, 2), unknown));
+
+        Map<PaymentStatus, Long> payments = aggregator.getSnapshot().paymentCounts();
+
+        assertEquals(2L, payments.get(PaymentStatus.paid));
+        assertEquals(3L, payments.get(null));
+
+        // 支付状态为空的预约取消后，从 null 下扣减
+        aggregator.onAppointmentChanged(facts(AppointmentStatus.scheduled, null), null);
+        assertEquals(2L, aggregator.getSnapshot().paymentCounts().get(null));
+    }
+
+    @Test
+    void countsNeverGoNegative() {
+        aggregator.getSnapshot();
+
+        // 内存中没有这个预约（例如已被对账覆盖），删除不能把计数减成负数
+        aggregator.onAppointmentChanged(facts(AppointmentStatus.CHECKED_IN, PaymentStatus.paid), null);
+
+        DashboardStatsAggregator.Snapshot snapshot = aggregator.getSnapshot();
+        assertEquals(0, snapshot.todayAppointments());
+        assertEquals(0, snapshot.pendingPatients());
+        assertFalse(snapshot.paymentCounts().containsKey(PaymentStatus.paid));
+        // 出现负数后请求了对账，读取前重新读库
+        verify(appointmentRepository, times(2)).countCheckedInAndNotCompleted();
+    }
+
+    @Test
+    void reconcileDuringCommitDoesNotDoubleCount() throws Exception {
+        aggregator.getSnapshot();
+
+        // 新预约的事务进入提交阶段
+        TransactionSynchronizationManager.initSynchronization();
+        aggregator.onAppointmentChanged(null, facts(AppointmentStatus.scheduled, PaymentStatus.paid));
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        synchronizations.forEach(synchronization -> synchronization.beforeCommit(false));
+
+        // 提交完成前开始对账：对账要等提交完成、增量应用后才能读库
+        aggregator.requestReconcile();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<DashboardStatsAggregator.Snapshot> reconciled = executor.submit(aggregator::getSnapshot);
+            assertThrows(TimeoutException.class, () -> reconciled.get(200, TimeUnit.MILLISECONDS));
+
+            databaseCounts(1, 0, paymentRows(PaymentStatus.paid, 1));
+            synchronizations.forEach(synchronization ->
+                    synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+
+            DashboardStatsAggregator.Snapshot snapshot = reconciled.get(5, TimeUnit.SECONDS);
+            assertEquals(1, snapshot.todayAppointments());
+            assertEquals(1L, snapshot.paymentCounts().get(PaymentStatus.paid));
+            assertEquals(1L, snapshot.dailyCreated().get(today));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, aggregator.getSnapshot().todayAppointments());
+    }
+
+    private void databaseCounts(long todayCount, long pending, List<Map<String, Object>> payments) {
+        when(appointmentRepository.countBySchedule_ScheduleDate(today)).thenReturn(todayCount);
+        when(appointmentRepository.countCheckedInAndNotCompleted()).thenReturn(pending);
+        when(appointmentRepository.countByPaymentStatus()).thenReturn(payments);
+        Map<String, Object> created = new HashMap<>();
+        created.put("date", java.sql.Date.valueOf(today));
+        created.put("count", todayCount);
+        when(appointmentRepository.countByDateRangeGroupByDate(any(), any()))
+                .thenReturn(todayCount > 0 ? List.of(created) : List.of());
+        when(scheduleRepository.countDistinctDoctorsByScheduleDate(today)).thenReturn(1L);
+        when(patientRepository.countTotalActivePatients()).thenReturn(10L);
+    }
+
+    private static List<Map<String, Object>> paymentRows(PaymentStatus status, long count) {
+        return count > 0 ? List.of(paymentRow(status, count)) : List.of();
+    }
+
+    private static Map<String, Object> paymentRow(PaymentStatus status, long count) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("status", status);
+        row.put("count", count);
+        return row;
+    }
+
+    private DashboardStatsAggregator.AppointmentFacts facts(AppointmentStatus status, PaymentStatus paymentStatus) {
+        return new DashboardStatsAggregator.AppointmentFacts(status, paymentStatus, today, today);
+    }
+}
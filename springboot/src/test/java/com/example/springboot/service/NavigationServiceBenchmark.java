@@ -0,0 +1,183 @@
+package com.example.springboot.service;
+
+import com.example.springboot.benchmark.BenchmarkTimer;
+import com.example.springboot.entity.MapEdge;
+import com.example.springboot.entity.MapNode;
+import com.example.springboot.repository.MapEdgeRepository;
+import com.example.springboot.repository.MapNodeRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 导航路径规划基准测试（10000 节点院区：10 层 × 40×25 走廊网格，每层四角电梯互通）
+ * 对比原实现（每次查询重新读取全部节点和边、构建 HashMap 邻接表、装箱 Dijkstra）
+ * 与导航图快照 + A*；路线缓存和最短路径树均关闭，只测实时搜索。
+ */
+@Tag("benchmark")
+class NavigationServiceBenchmark {
+
+    private static final int FLOORS = 10;
+    private static final int COLUMNS = 40;
+    private static final int ROWS = 25;
+    private static final double SPACING = 10.0;
+    private static final double ELEVATOR_DISTANCE = 15.0;
+    private static final int QUERIES = 200;
+
+    private List<MapNode> nodes;
+    private List<MapEdge> edges;
+    private int[][] queries;
+    private NavigationService navigationService;
+
+    @BeforeEach
+    void setUp() {
+        buildCampus();
+
+        MapNodeRepository mapNodeRepository = mock(MapNodeRepository.class);
+        MapEdgeRepository mapEdgeRepository = mock(MapEdgeRepository.class);
+        when(mapNodeRepository.findAll()).thenReturn(nodes);
+        when(mapEdgeRepository.findAll()).thenReturn(edges);
+
+        navigationService = new NavigationService();
+        ReflectionTestUtils.setField(navigationService, "mapNodeRepository", mapNodeRepository);
+        ReflectionTestUtils.setField(navigationService, "mapEdgeRepository", mapEdgeRepository);
+        ReflectionTestUtils.setField(navigationService, "maxPrecomputedSources", 0);
+        ReflectionTestUtils.setField(navigationService, "routeCacheSize", 0);
+
+        Random random = new Random(42);
+        queries = new int[QUERIES][2];
+        for (int[] query : queries) {
+            query[0] = nodes.get(random.nextInt(nodes.size())).getNodeId();
+            query[1] = nodes.get(random.nextInt(nodes.size())).getNodeId();
+        }
+    }
+
+    @Test
+    void compareWithLegacyDijkstra() {
+        // 两种实现的最短距离必须一致（A* 估价函数不能高估）
+        for (int[] query : queries) {
+            double legacy = legacyShortestDistance(query[0], query[1]);
+            double optimized = navigationService.calculatePath(query[0], query[1]).getTotalDistance();
+            assertEquals(legacy, optimized, 1e-6, "路径距离不一致: " + query[0] + " -> " + query[1]);
+        }
+
+        int[] cursor = {0};
+        double legacyMillis = BenchmarkTimer.measure("navigation legacy (findAll + Dijkstra)", 20, 100, () -> {
+            int[] query = queries[cursor[0]++ % QUERIES];
+            return legacyShortestDistance(query[0], query[1]);
+        });
+        double optimizedMillis = BenchmarkTimer.measure("navigation snapshot + A*", 200, 2000, () -> {
+            int[] query = queries[cursor[0]++ % QUERIES];
+            return navigationService.calculatePath(query[0], query[1]);
+        });
+        BenchmarkTimer.report("navigation 10k nodes", legacyMillis, optimizedMillis);
+
+        assertTrue(optimizedMillis < legacyMillis, "导航图快照 + A* 应快于原实现");
+    }
+
+    /**
+     * 构建院区：每层走廊网格双向连通，四角为电梯，相邻楼层的电梯双向连通
+     */
+    private void buildCampus() {
+        nodes = new ArrayList<>(FLOORS * COLUMNS * ROWS);
+        edges = new ArrayList<>();
+        int nodeId = 1;
+        int edgeId = 1;
+        for (int floor = 1; floor <= FLOORS; floor++) {
+            for (int row = 0; row < ROWS; row++) {
+                for (int column = 0; column < COLUMNS; column++) {
+                    boolean corner = (row == 0 || row == ROWS - 1) && (column == 0 || column == COLUMNS - 1);
+                    MapNode node = new MapNode();
+                    node.setNodeId(nodeId++);
+                    node.setNodeName(floor + "F-" + row + "-" + column);
+                    node.setNodeType(corner ? MapNode.NodeType.ELEVATOR : MapNode.NodeType.HALLWAY);
+                    node.setCoordinatesX(column * SPACING);
+                    node.setCoordinatesY(row * SPACING);
+                    node.setFloorLevel(floor);
+                    nodes.add(node);
+                    if (column > 0) {
+                        edges.add(edge(edgeId++, node.getNodeId() - 1, node.getNodeId(), SPACING));
+                    }
+                    if (row > 0) {
+                        edges.add(edge(edgeId++, node.getNodeId() - COLUMNS, node.getNodeId(), SPACING));
+                    }
+                    if (corner && floor > 1) {
+                        edges.add(edge(edgeId++, node.getNodeId() - COLUMNS * ROWS, node.getNodeId(), ELEVATOR_DISTANCE));
+                    }
+                }
+            }
+        }
+    }
+
+    private static MapEdge edge(int edgeId, int from, int to, double distance) {
+        MapEdge edge = new MapEdge();
+        edge.setEdgeId(edgeId);
+        edge.setStartNodeId(from);
+        edge.setEndNodeId(to);
+        edge.setDistance(distance);
+        edge.setWalkTime((int) Math.ceil(distance / 1.2));
+        edge.setIsBidirectional(true);
+        return edge;
+    }
+
+    /**
+     * 原 NavigationService.calculatePath 的建图和搜索部分（不含指引文本生成）
+     */
+    private double legacyShortestDistance(Integer startNodeId, Integer endNodeId) {
+        List<MapNode> allNodes = new ArrayList<>(nodes);
+        List<MapEdge> allEdges = new ArrayList<>(edges);
+
+        Map<Integer, List<MapEdge>> graph = new HashMap<>();
+        for (MapNode node : allNodes) {
+            graph.put(node.getNodeId(), new ArrayList<>());
+        }
+        for (MapEdge edge : allEdges) {
+            graph.get(edge.getStartNodeId()).add(edge);
+            if (edge.getIsBidirectional()) {
+                MapEdge reverseEdge = new MapEdge();
+                reverseEdge.setStartNodeId(edge.getEndNodeId());
+                reverseEdge.setEndNodeId(edge.getStartNodeId());
+                reverseEdge.setDistance(edge.getDistance());
+                reverseEdge.setWalkTime(edge.getWalkTime());
+                reverseEdge.setIsBidirectional(true);
+                graph.get(edge.getEndNodeId()).add(reverseEdge);
+            }
+        }
+
+        Map<Integer, Double> dist = new HashMap<>();
+        Map<Integer, MapEdge> prev = new HashMap<>();
+        PriorityQueue<Map.Entry<Integer, Double>> pq = new PriorityQueue<>(Map.Entry.<Integer, Double>comparingByValue());
+        for (Integer nodeId : graph.keySet()) {
+            dist.put(nodeId, Double.MAX_VALUE);
+        }
+        dist.put(startNodeId, 0.0);
+        pq.offer(new AbstractMap.SimpleEntry<>(startNodeId, 0.0));
+        while (!pq.isEmpty()) {
+            Map.Entry<Integer, Double> current = pq.poll();
+            Integer currentNodeId = current.getKey();
+            double currentDist = current.getValue();
+            if (currentDist > dist.get(currentNodeId)) {
+                continue;
+            }
+            if (currentNodeId.equals(endNodeId)) {
+                break;
+            }
+            for (MapEdge edge : graph.get(currentNodeId)) {
+                Integer neighborId = edge.getEndNodeId();
+                double newDist = currentDist + edge.getDistance();
+                if (newDist < dist.get(neighborId)) {
+                    dist.put(neighborId, newDist);
+                    prev.put(neighborId, edge);
+                    pq.offer(new AbstractMap.SimpleEntry<>(neighborId, newDist));
+                }
+            }
+        }
+        return dist.get(endNodeId);
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.springboot.service;
+
+import com.example.springboot.benchmark.BenchmarkTimer;
+import com.example.springboot.entity.Doctor;
+import com.example.springboot.entity.enums.DoctorStatus;
+import com.example.springboot.repository.DoctorRepository;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.factory.Nd4j;
+import org.nd4j.linalg.ops.transforms.Transforms;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * AI 召回基准测试（5000 / 50000 位在职医生，300 维向量）
+ * 对比原实现（逐个医生调用 Transforms.cosineSim 后排序）与归一化向量矩阵的一次矩阵-向量乘法 + 小顶堆。
+ * 向量缓存初始为空，第一次召回时由 ensureDoctorVectors 补齐，同时验证缓存缺失的医生不会被跳过。
+ */
+@Tag("benchmark")
+class RecommendationAlgorithmServiceBenchmark {
+
+    private static final int DIMENSION = 300;
+    private static final int TOP_K = 20;
+    private static final String SYMPTOM = "symptom";
+
+    @ParameterizedTest
+    @ValueSource(ints = {5000, 50000})
+    void compareWithPerDoctorCosine(int doctorCount) {
+        Random random = new Random(42);
+        Map<String, INDArray> vectors = new HashMap<>();
+        vectors.put(SYMPTOM, randomVector(random));
+        List<Doctor> doctors = new ArrayList<>(doctorCount);
+        for (int i = 1; i <= doctorCount; i++) {
+            Doctor doctor = new Doctor();
+            doctor.setDoctorId(i);
+            doctor.setSpecialty("specialty-" + i);
+            doctor.setStatus(DoctorStatus.active);
+            doctors.add(doctor);
+            vectors.put(doctor.getSpecialty(), randomVector(random));
+        }
+        Map<Integer, Doctor> doctorsById = doctors.stream()
+                .collect(Collectors.toMap(Doctor::getDoctorId, d -> d));
+
+        NLPService nlpService = mock(NLPService.class);
+        when(nlpService.segmentText(anyString())).thenAnswer(invocation -> List.of((String) invocation.getArgument(0)));
+        WordVectorService wordVectorService = mock(WordVectorService.class);
+        when(wordVectorService.isReady()).thenReturn(true);
+        when(wordVectorService.encodeText(anyList())).thenAnswer(invocation -> {
+            List<String> words = invocation.getArgument(0);
+            INDArray vector = vectors.get(words.get(0));
+            return vector != null ? vector.dup() : null;
+        });
+        DoctorRepository doctorRepository = mock(DoctorRepository.class);
+        when(doctorRepository.findAll()).thenReturn(doctors);
+        when(doctorRepository.findAllById(anyIterable())).thenAnswer(invocation -> {
+            List<Doctor> found = new ArrayList<>();
+            for (Object id : (Iterable<?>) invocation.getArgument(0)) {
+                found.add(doctorsById.get((Integer) id));
+            }
+            return found;
+        });
+
+        RecommendationAlgorithmService service = new RecommendationAlgorithmService();
+        ReflectionTestUtils.setField(service, "nlpService", nlpService);
+        ReflectionTestUtils.setField(service, "wordVectorService", wordVectorService);
+        ReflectionTestUtils.setField(service, "doctorRepository", doctorRepository);
+
+        List<String> symptoms = List.of(SYMPTOM);
+        INDArray symptomVector = vectors.get(SYMPTOM);
+
+        // 向量缓存为空：第一次召回必须补齐全部医生，结果与原实现一致
+        List<Doctor> recalled = recall(service, symptoms);
+        assertFalse(recalled.isEmpty(), "缓存缺失的医生应在召回前补充编码");
+        assertEquals(doctorCount, ((Map<?, ?>) ReflectionTestUtils.getField(service, "doctorVectorCache")).size());
+        assertEquals(legacyRecall(doctors, vectors, symptomVector).stream().map(Doctor::getDoctorId).collect(Collectors.toSet()),
+                recalled.stream().map(Doctor::getDoctorId).collect(Collectors.toSet()));
+
+        double legacyMillis = BenchmarkTimer.measure("recall legacy per-doctor cosine (" + doctorCount + ")", 3, 10,
+                () -> legacyRecall(doctors, vectors, symptomVector));
+        double optimizedMillis = BenchmarkTimer.measure("recall embedding matrix gemv (" + doctorCount + ")", 20, 100,
+                () -> recall(service, symptoms));
+        BenchmarkTimer.report("recall " + doctorCount + " doctors", legacyMillis, optimizedMillis);
+
+        assertTrue(optimizedMillis < legacyMillis, "向量矩阵召回应快于逐个医生计算");
+    }
+
+    private static List<Doctor> recall(RecommendationAlgorithmService service, List<String> symptoms) {
+        return ReflectionTestUtils.invokeMethod(service, "recallDoctorsByAI", symptoms, TOP_K);
+    }
+
+    /**
+     * 原 recallDoctorsByAI 的打分部分：逐个医生计算余弦相似度，过滤阈值后排序取前K个
+     */
+    private static List<Doctor> legacyRecall(List<Doctor> doctors, Map<String, INDArray> vectors, INDArray symptomVector) {
+        List<Map.Entry<Doctor, Double>> scores = new ArrayList<>();
+        for (Doctor doctor : doctors) {
+            double similarity = Transforms.cosineSim(symptomVector, vectors.get(doctor.getSpecialty()));
+            if (similarity > 0.1) {
+                scores.add(Map.entry(doctor, similarity));
+            }
+        }
+        scores.sort((a, b) -> Double.compare(b.getValue(), a.getValue()));
+        return scores.stream().limit(TOP_K).map(Map.Entry::getKey).collect(Collectors.toList());
+    }
+
+    private static INDArray randomVector(Random random) {
+        float[] values = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            values[i] = (float) random.nextGaussian();
+        }
+        return Nd4j.create(values);
+    }
+}
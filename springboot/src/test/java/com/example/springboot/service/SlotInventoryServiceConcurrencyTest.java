@@ -0,0 +1,221 @@
+package com.example.springboot.service;
+
+import com.example.springboot.entity.*;
+import com.example.springboot.entity.enums.DoctorStatus;
+import com.example.springboot.entity.enums.ScheduleStatus;
+import com.example.springboot.repository.ScheduleRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 号源库存并发测试
+ * 1000 个预约请求同时抢同一个排班，每个请求在独立事务中占号，验证不超卖、回滚的占号归还；
+ * 并验证内存计数偏低（其他节点已占号）、偏高（其他节点已释放）时都以数据库为准。
+ * 内存计数只是提示，并发期间可能与数据库有偏差，因此只断言数据库中的已预约数。
+ */
+@DataJpaTest(properties = "app.slot-inventory.recheck-interval-ms=100")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Import(SlotInventoryService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // 每个预约请求自行提交事务
+class SlotInventoryServiceConcurrencyTest {
+
+    private static final int BOOKERS = 1000;
+    private static final int TOTAL_SLOTS = 50;
+
+    @Autowired
+    private SlotInventoryService slotInventoryService;
+
+    @Autowired
+    private ScheduleRepository scheduleRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void parallelBookersNeverOversell() throws Exception {
+        Integer scheduleId = createSchedule(TOTAL_SLOTS);
+
+        int booked = runBookers(scheduleId, BOOKERS);
+
+        assertEquals(TOTAL_SLOTS, booked);
+        assertEquals(TOTAL_SLOTS, bookedSlotsInDatabase(scheduleId));
+    }
+
+    @Test
+    void rolledBackBookingsReturnTheirSlots() throws Exception {
+        Integer scheduleId = createSchedule(TOTAL_SLOTS);
+        AtomicInteger committed = new AtomicInteger();
+        AtomicInteger attempt = new AtomicInteger();
+
+        runConcurrently(BOOKERS, () -> {
+            boolean rollback = attempt.incrementAndGet() % 5 == 0;
+            Boolean acquired = new TransactionTemplate(transactionManager).execute(status -> {
+                boolean ok = slotInventoryService.tryAcquire(loadScheduleInTransaction(scheduleId));
+                if (ok && rollback) {
+                    status.setRollbackOnly(); // 模拟占号后创建预约失败
+                    return false;
+                }
+                return ok;
+            });
+            if (Boolean.TRUE.equals(acquired)) {
+                committed.incrementAndGet();
+            }
+        });
+
+        assertTrue(committed.get() <= TOTAL_SLOTS, "已提交的预约数超过总号源数: " + committed.get());
+        assertEquals(committed.get(), bookedSlotsInDatabase(scheduleId));
+    }
+
+    @Test
+    void staleLowCounterDefersToDatabase() throws Exception {
+        Integer scheduleId = createSchedule(TOTAL_SLOTS);
+        // 内存计数从实体初始化为 0，随后其他节点在数据库中占掉 40 个号源
+        assertTrue(slotInventoryService.hasAvailable(loadSchedule(scheduleId)));
+        setBookedSlotsInDatabase(scheduleId, 40);
+
+        int booked = runBookers(scheduleId, BOOKERS);
+
+        assertEquals(TOTAL_SLOTS - 40, booked);
+        assertEquals(TOTAL_SLOTS, bookedSlotsInDatabase(scheduleId));
+    }
+
+    @Test
+    void staleHighCounterRecoversAfterRecheck() throws Exception {
+        Integer scheduleId = createSchedule(TOTAL_SLOTS);
+        assertEquals(TOTAL_SLOTS, runBookers(scheduleId, BOOKERS));
+
+        // 其他节点释放了 5 个号源：超过核对间隔后，内存显示已满的排班与数据库核对并恢复可预约
+        setBookedSlotsInDatabase(scheduleId, TOTAL_SLOTS - 5);
+        Thread.sleep(200);
+        assertTrue(slotInventoryService.hasAvailable(loadSchedule(scheduleId)));
+
+        int booked = runBookers(scheduleId, BOOKERS);
+
+        assertEquals(5, booked);
+        assertEquals(TOTAL_SLOTS, bookedSlotsInDatabase(scheduleId));
+    }
+
+    /**
+     * 所有预约请求同时开始，每个请求在独立事务中读取排班并占号
+     *
+     * @return 占号成功的请求数
+     */
+    private int runBookers(Integer scheduleId, int bookers) throws Exception {
+        AtomicInteger booked = new AtomicInteger();
+        runConcurrently(bookers, () -> {
+            Boolean acquired = new TransactionTemplate(transactionManager)
+                    .execute(status -> slotInventoryService.tryAcquire(loadScheduleInTransaction(scheduleId)));
+            if (Boolean.TRUE.equals(acquired)) {
+                booked.incrementAndGet();
+            }
+        });
+        return booked.get();
+    }
+
+    private void runConcurrently(int threads, Runnable task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>(threads);
+        try {
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run();
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Integer createSchedule(int totalSlots) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            ParentDepartment parentDepartment = new ParentDepartment("内科", null);
+            entityManager.persist(parentDepartment);
+
+            Department department = new Department();
+            department.setParentDepartment(parentDepartment);
+            department.setName("心血管内科");
+            entityManager.persist(department);
+
+            Doctor doctor = new Doctor();
+            doctor.setDepartment(department);
+            doctor.setIdentifier("D" + UUID.randomUUID());
+            doctor.setPasswordHash("hash");
+            doctor.setFullName("测试医生");
+            doctor.setStatus(DoctorStatus.active);
+            entityManager.persist(doctor);
+
+            TimeSlot slot = new TimeSlot();
+            slot.setSlotName("上午 08:00-08:30");
+            slot.setStartTime(LocalTime.of(8, 0));
+            slot.setEndTime(LocalTime.of(8, 30));
+            entityManager.persist(slot);
+
+            Location location = new Location();
+            location.setLocationName("门诊楼 201");
+            entityManager.persist(location);
+
+            Schedule schedule = new Schedule();
+            schedule.setDoctor(doctor);
+            schedule.setScheduleDate(LocalDate.now().plusDays(1));
+            schedule.setSlot(slot);
+            schedule.setLocation(location);
+            schedule.setTotalSlots(totalSlots);
+            schedule.setFee(new BigDecimal("20.00"));
+            schedule.setStatus(ScheduleStatus.available);
+            entityManager.persist(schedule);
+            return schedule.getScheduleId();
+        });
+    }
+
+    private Schedule loadSchedule(Integer scheduleId) {
+        return new TransactionTemplate(transactionManager).execute(status -> loadScheduleInTransaction(scheduleId));
+    }
+
+    private Schedule loadScheduleInTransaction(Integer scheduleId) {
+        return scheduleRepository.findById(scheduleId).orElseThrow();
+    }
+
+    private int bookedSlotsInDatabase(Integer scheduleId) {
+        return new TransactionTemplate(transactionManager).execute(status ->
+                ((Number) scheduleRepository.findSlotCounts(scheduleId).get(0)[0]).intValue());
+    }
+
+    private void setBookedSlotsInDatabase(Integer scheduleId, int bookedSlots) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                entityManager.createQuery("UPDATE Schedule s SET s.bookedSlots = :bookedSlots WHERE s.scheduleId = :scheduleId")
+                        .setParameter("bookedSlots", bookedSlots)
+                        .setParameter("scheduleId", scheduleId)
+                        .executeUpdate());
+    }
+}
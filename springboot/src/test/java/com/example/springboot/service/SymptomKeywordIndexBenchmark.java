@@ -0,0 +1,178 @@
+package com.example.springboot.service;
+
+import com.example.springboot.benchmark.BenchmarkTimer;
+import com.example.springboot.entity.Department;
+import com.example.springboot.entity.SymptomDepartmentMapping;
+import com.example.springboot.repository.SymptomDepartmentMappingRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * 症状关键词提取基准测试（2000 条症状-科室映射，约 10000 个关键词，每次提取 20 个分词）
+ * 对比原实现（每次调用读取全部映射、拆分关键词，再对每个分词逐个关键词做 contains 判断）
+ * 与编译后的症状关键词索引（哈希查找 + 子串索引 + Aho-Corasick 自动机）。
+ * 原实现多个关键词同时命中时取 HashSet 遍历到的第一个，因此只校验两者是否同时命中、且命中的关键词与分词存在包含关系。
+ * 原实现读取映射表的耗时由 mock 仓库代替，实际查库时差距更大。
+ */
+@Tag("benchmark")
+class SymptomKeywordIndexBenchmark {
+
+    private static final int MAPPINGS = 2000;
+    private static final int KEYWORDS_PER_MAPPING = 5;
+    private static final int DEPARTMENTS = 60;
+    private static final int WORDS_PER_QUERY = 20;
+    private static final int QUERIES = 500;
+
+    private List<SymptomDepartmentMapping> mappings;
+    private List<List<String>> queries;
+    private SymptomDepartmentMappingRepository mappingRepository;
+    private SymptomKeywordIndex symptomKeywordIndex;
+
+    @BeforeEach
+    void setUp() {
+        Random random = new Random(42);
+        List<Department> departments = new ArrayList<>(DEPARTMENTS);
+        for (int i = 1; i <= DEPARTMENTS; i++) {
+            Department department = new Department();
+            department.setDepartmentId(i);
+            departments.add(department);
+        }
+
+        mappings = new ArrayList<>(MAPPINGS);
+        List<String> keywords = new ArrayList<>();
+        for (int i = 1; i <= MAPPINGS; i++) {
+            List<String> parts = new ArrayList<>(KEYWORDS_PER_MAPPING);
+            for (int k = 0; k < KEYWORDS_PER_MAPPING; k++) {
+                String keyword = randomWord(random, 2 + random.nextInt(4));
+                parts.add(keyword);
+                keywords.add(keyword);
+            }
+            SymptomDepartmentMapping mapping = new SymptomDepartmentMapping();
+            mapping.setMappingId(i);
+            mapping.setSymptomKeywords(String.join(i % 2 == 0 ? "," : "、", parts));
+            mapping.setDepartment(departments.get(random.nextInt(DEPARTMENTS)));
+            mapping.setPriority(1 + random.nextInt(5));
+            mappings.add(mapping);
+        }
+
+        // 分词结果：完全相同、关键词的一部分、包含关键词、不相关各占一部分
+        queries = new ArrayList<>(QUERIES);
+        for (int q = 0; q < QUERIES; q++) {
+            List<String> words = new ArrayList<>(WORDS_PER_QUERY);
+            for (int w = 0; w < WORDS_PER_QUERY; w++) {
+                String keyword = keywords.get(random.nextInt(keywords.size()));
+                switch (w % 4) {
+                    case 0 -> words.add(keyword);
+                    case 1 -> words.add(keyword.length() > 2 ? keyword.substring(0, 2) : keyword);
+                    case 2 -> words.add(randomWord(random, 1) + keyword + randomWord(random, 1));
+                    default -> words.add(randomWord(random, 2 + random.nextInt(3)));
+                }
+            }
+            queries.add(words);
+        }
+
+        mappingRepository = mock(SymptomDepartmentMappingRepository.class);
+        when(mappingRepository.findAll()).thenReturn(mappings);
+        symptomKeywordIndex = new SymptomKeywordIndex();
+        ReflectionTestUtils.setField(symptomKeywordIndex, "mappingRepository", mappingRepository);
+    }
+
+    @Test
+    void compareWithNestedContainsLoop() {
+        Set<String> symptomKeywords = legacyKeywords();
+        for (List<String> words : queries) {
+            for (String word : words) {
+                String legacy = legacyMatch(word, symptomKeywords);
+                String indexed = symptomKeywordIndex.match(word);
+                assertEquals(legacy != null, indexed != null, "是否命中不一致: " + word);
+                if (indexed != null) {
+                    assertTrue(indexed.contains(word) || word.contains(indexed), "命中的关键词与分词无包含关系: " + word);
+                }
+            }
+        }
+
+        int[] cursor = {0};
+        double legacyMillis = BenchmarkTimer.measure("symptom extraction legacy contains loop", 20, 200,
+                () -> legacyExtract(queries.get(cursor[0]++ % QUERIES)));
+        double optimizedMillis = BenchmarkTimer.measure("symptom extraction keyword index", 200, 5000,
+                () -> extract(queries.get(cursor[0]++ % QUERIES)));
+        BenchmarkTimer.report("symptom extraction " + MAPPINGS + " mappings", legacyMillis, optimizedMillis);
+
+        assertTrue(optimizedMillis < legacyMillis, "症状关键词索引应快于逐个关键词比较");
+    }
+
+    private List<String> extract(List<String> words) {
+        List<String> extractedSymptoms = new ArrayList<>();
+        for (String word : words) {
+            String symptom = symptomKeywordIndex.match(word);
+            if (symptom != null) {
+                extractedSymptoms.add(symptom);
+            }
+        }
+        return extractedSymptoms;
+    }
+
+    /**
+     * 原 NLPService.extractSymptomKeywords 的匹配部分：每次调用重新学习关键词，再逐个分词匹配
+     */
+    private List<String> legacyExtract(List<String> words) {
+        Set<String> symptomKeywords = legacyKeywords();
+        List<String> extractedSymptoms = new ArrayList<>();
+        for (String word : words) {
+            String symptom = legacyMatch(word, symptomKeywords);
+            if (symptom != null) {
+                extractedSymptoms.add(symptom);
+            }
+        }
+        return extractedSymptoms;
+    }
+
+    /**
+     * 原 NLPService.learnSymptomKeywordsFromMapping
+     */
+    private Set<String> legacyKeywords() {
+        Set<String> keywords = new HashSet<>();
+        for (SymptomDepartmentMapping mapping : mappingRepository.findAll()) {
+            String symptomKeywords = mapping.getSymptomKeywords();
+            if (symptomKeywords != null && !symptomKeywords.trim().isEmpty()) {
+                for (String part : symptomKeywords.split("[,，、]")) {
+                    String keyword = part.trim();
+                    if (!keyword.isEmpty()) {
+                        keywords.add(keyword);
+                    }
+                }
+            }
+        }
+        return keywords;
+    }
+
+    private static String legacyMatch(String word, Set<String> symptomKeywords) {
+        if (symptomKeywords.contains(word)) {
+            return word;
+        }
+        for (String symptom : symptomKeywords) {
+            if (symptom.contains(word) || word.contains(symptom)) {
+                return symptom;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 从 CJK 统一汉字区的前 300 个字中随机组词
+     */
+    private static String randomWord(Random random, int length) {
+        StringBuilder word = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            word.append((char) (0x4E00 + random.nextInt(300)));
+        }
+        return word.toString();
+    }
+}
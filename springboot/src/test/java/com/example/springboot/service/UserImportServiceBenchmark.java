@@ -0,0 +1,182 @@
+package com.example.springboot.service;
+
+import com.example.springboot.benchmark.BenchmarkTimer;
+import com.example.springboot.dto.user.UserCreateRequest;
+import com.example.springboot.dto.user.UserImportResponse;
+import com.example.springboot.entity.Patient;
+import com.example.springboot.entity.PatientProfile;
+import com.example.springboot.entity.enums.BlacklistStatus;
+import com.example.springboot.entity.enums.PatientStatus;
+import com.example.springboot.entity.enums.PatientType;
+import com.example.springboot.exception.BadRequestException;
+import com.example.springboot.repository.AdminRepository;
+import com.example.springboot.repository.DoctorRepository;
+import com.example.springboot.repository.PatientProfileRepository;
+import com.example.springboot.repository.PatientRepository;
+import com.example.springboot.util.PasswordEncoderUtil;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 用户批量导入基准测试（H2，5000 个患者账号，其中每 250 行有 1 行账号重复）
+ * 对比原实现（一个事务内逐行查重、加密、通过 JPA 保存患者和档案）与批量查重 + 并行加密 + 分块 JDBC 批量写入。
+ * BCrypt 强度降为 4，避免加密耗时掩盖数据库访问的差异；生产默认强度下并行加密的收益更大。
+ */
+@Tag("benchmark")
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Import({UserImportService.class, PasswordEncoderUtil.class, UserImportServiceBenchmark.PasswordEncoderConfig.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // 导入过程自行管理事务
+class UserImportServiceBenchmark {
+
+    private static final int ROWS = 5000;
+    private static final int DUPLICATE_EVERY = 250;
+
+    @TestConfiguration
+    static class PasswordEncoderConfig {
+        @Bean
+        PasswordEncoder passwordEncoder() {
+            return new BCryptPasswordEncoder(4);
+        }
+    }
+
+    @Autowired
+    private UserImportService userImportService;
+
+    @Autowired
+    private PatientRepository patientRepository;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    @Autowired
+    private AdminRepository adminRepository;
+
+    @Autowired
+    private PatientProfileRepository patientProfileRepository;
+
+    @Autowired
+    private PasswordEncoderUtil passwordEncoderUtil;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void compareWithRowByRowImport() {
+        // 预热：加载实体元数据、编译热点代码
+        legacyImport(requests(1, 200));
+        userImportService.importUsers(requests(2, 200), request -> { });
+
+        List<UserCreateRequest> legacyRequests = requests(3, ROWS);
+        List<UserCreateRequest> batchRequests = requests(4, ROWS);
+        UserImportResponse[] responses = new UserImportResponse[2];
+
+        double legacyMillis = BenchmarkTimer.measure("user import legacy row by row", 0, 1,
+                () -> responses[0] = legacyImport(legacyRequests));
+        double optimizedMillis = BenchmarkTimer.measure("user import prefetch + JDBC batch", 0, 1,
+                () -> responses[1] = userImportService.importUsers(batchRequests, request -> { }));
+        BenchmarkTimer.report("user import " + ROWS + " rows", legacyMillis, optimizedMillis);
+
+        int duplicates = ROWS / DUPLICATE_EVERY;
+        for (UserImportResponse response : responses) {
+            assertEquals(ROWS, response.getTotal());
+            assertEquals(ROWS - duplicates, response.getSuccess());
+            assertEquals(duplicates, response.getFailed());
+        }
+        assertEquals(responses[0].getErrorMessages().size(), responses[1].getErrorMessages().size());
+        assertEquals(2 * (200 + ROWS - duplicates), patientRepository.count());
+        assertEquals(patientRepository.count(), patientProfileRepository.count());
+
+        assertTrue(optimizedMillis < legacyMillis, "批量导入应快于逐行导入");
+    }
+
+    /**
+     * 原 UserServiceImpl.importUsers：外层一个事务，逐行复用 createUser 的患者分支
+     */
+    private UserImportResponse legacyImport(List<UserCreateRequest> requests) {
+        return transactionTemplate.execute(status -> {
+            UserImportResponse response = new UserImportResponse();
+            response.setTotal(requests.size());
+            for (UserCreateRequest request : requests) {
+                try {
+                    legacyCreatePatient(request);
+                    response.setSuccess(response.getSuccess() + 1);
+                } catch (Exception e) {
+                    response.setFailed(response.getFailed() + 1);
+                    response.getErrorMessages().add(
+                            String.format("账号[%s]创建失败: %s", request.getId(), e.getMessage())
+                    );
+                }
+            }
+            return response;
+        });
+    }
+
+    private void legacyCreatePatient(UserCreateRequest request) {
+        if (patientRepository.existsByIdentifier(request.getId()) ||
+                doctorRepository.existsByIdentifier(request.getId()) ||
+                adminRepository.existsByUsername(request.getId())) {
+            throw new BadRequestException("账号已存在: " + request.getId());
+        }
+        if (request.getId_card() != null &&
+                patientProfileRepository.existsByIdCardNumber(request.getId_card())) {
+            throw new BadRequestException("身份证号已存在: " + request.getId_card());
+        }
+
+        Patient patient = new Patient();
+        patient.setIdentifier(request.getId());
+        patient.setPasswordHash(passwordEncoderUtil.encodePassword(request.getPassword()));
+        patient.setFullName(request.getName());
+        patient.setPhoneNumber(request.getPhone());
+        patient.setPatientType(request.getPatientType());
+        patient.setStatus(request.getPatientStatus());
+        Patient savedPatient = patientRepository.save(patient);
+
+        PatientProfile profile = new PatientProfile();
+        profile.setPatient(savedPatient);
+        profile.setIdCardNumber(request.getId_card());
+        profile.setAllergies(request.getAllergy_history());
+        profile.setMedicalHistory(request.getPast_medical_history());
+        profile.setBlacklistStatus(BlacklistStatus.normal);
+        patientProfileRepository.save(profile);
+    }
+
+    /**
+     * 生成导入行：batch 区分不同批次的账号、身份证号和手机号；每 DUPLICATE_EVERY 行重复上一行的账号
+     */
+    private static List<UserCreateRequest> requests(int batch, int rows) {
+        List<UserCreateRequest> requests = new ArrayList<>(rows);
+        for (int i = 1; i <= rows; i++) {
+            int account = i % DUPLICATE_EVERY == 0 ? i - 1 : i;
+            UserCreateRequest request = new UserCreateRequest();
+            request.setRole("PATIENT");
+            request.setId(String.format("S%d%06d", batch, account));
+            request.setName("学生" + i);
+            request.setPassword("Pass" + i);
+            request.setId_card(String.format("11010119%d%09d", batch, i));
+            request.setPhone(String.format("13%d%08d", batch, i));
+            request.setPatientType(PatientType.student);
+            request.setPatientStatus(PatientStatus.active);
+            requests.add(request);
+        }
+        return requests;
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.springboot.service;
+
+import com.example.springboot.benchmark.BenchmarkTimer;
+import com.example.springboot.entity.*;
+import com.example.springboot.entity.enums.DoctorStatus;
+import com.example.springboot.entity.enums.PatientStatus;
+import com.example.springboot.entity.enums.PatientType;
+import com.example.springboot.entity.enums.ScheduleStatus;
+import com.example.springboot.entity.enums.WaitlistStatus;
+import com.example.springboot.repository.WaitlistRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 候补排队位置基准测试（H2，一个排班下 5000 条等待中的候补）
+ * 对比原实现（读取整个等待队列后线性查找位置）与候补排名索引（顺序统计树求名次），
+ * 两种实现对同一批候补给出的排队位置和等待总人数必须一致。
+ */
+@Tag("benchmark")
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Import(WaitlistRankIndex.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // 候补数据需要提交后才能被索引加载
+class WaitlistRankIndexBenchmark {
+
+    private static final int WAITING = 5000;
+    private static final int QUERIES = 200;
+
+    @Autowired
+    private WaitlistRankIndex waitlistRankIndex;
+
+    @Autowired
+    private WaitlistRepository waitlistRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate readOnlyTransaction;
+    private List<Integer> queries;
+
+    @BeforeEach
+    void setUp() {
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+
+        List<Integer> waitlistIds = createWaitlist();
+        Random random = new Random(42);
+        queries = new ArrayList<>(QUERIES);
+        for (int i = 0; i < QUERIES; i++) {
+            queries.add(waitlistIds.get(random.nextInt(waitlistIds.size())));
+        }
+    }
+
+    @Test
+    void compareWithFullQueueScan() {
+        for (Integer waitlistId : queries) {
+            assertEquals(legacyPosition(waitlistId), indexedPosition(waitlistId), "排队位置不一致: " + waitlistId);
+        }
+
+        int[] cursor = {0};
+        double legacyMillis = BenchmarkTimer.measure("waitlist position legacy full scan", 20, 100,
+                () -> legacyPosition(queries.get(cursor[0]++ % QUERIES)));
+        double optimizedMillis = BenchmarkTimer.measure("waitlist position rank index", 200, 2000,
+                () -> indexedPosition(queries.get(cursor[0]++ % QUERIES)));
+        BenchmarkTimer.report("waitlist position " + WAITING + " waiting", legacyMillis, optimizedMillis);
+
+        assertTrue(optimizedMillis < legacyMillis, "候补排名索引应快于读取整个等待队列");
+    }
+
+    /**
+     * 原 WaitlistService.getWaitlistPosition：读取同一排班下所有等待中的候补，线性查找位置
+     *
+     * @return [排队位置, 等待总人数]
+     */
+    private List<Integer> legacyPosition(Integer waitlistId) {
+        return readOnlyTransaction.execute(status -> {
+            Waitlist waitlist = waitlistRepository.findById(waitlistId).orElseThrow();
+            List<Waitlist> waitingList = waitlistRepository
+                    .findByScheduleAndStatusOrderByCreatedAtAsc(waitlist.getSchedule(), WaitlistStatus.waiting);
+            int position = 0;
+            for (int i = 0; i < waitingList.size(); i++) {
+                if (waitingList.get(i).getWaitlistId().equals(waitlistId)) {
+                    position = i + 1;
+                    break;
+                }
+            }
+            return List.of(position, waitingList.size());
+        });
+    }
+
+    /**
+     * 当前实现：读取候补记录后从排名索引取位置
+     */
+    private List<Integer> indexedPosition(Integer waitlistId) {
+        return readOnlyTransaction.execute(status -> {
+            Waitlist waitlist = waitlistRepository.findById(waitlistId).orElseThrow();
+            WaitlistRankIndex.Rank rank = waitlistRankIndex.rankOf(waitlist);
+            return List.of(rank.position(), rank.totalWaiting());
+        });
+    }
+
+    /**
+     * 创建一个排班及 WAITING 条等待中的候补（另有 1/10 已过期），加入时间逐秒递增，避免排序出现并列
+     */
+    private List<Integer> createWaitlist() {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            Schedule schedule = createSchedule();
+            List<Integer> waitingIds = new ArrayList<>(WAITING);
+            for (int i = 0; waitingIds.size() < WAITING; i++) {
+                Patient patient = new Patient();
+                patient.setIdentifier("P" + UUID.randomUUID());
+                patient.setPatientType(PatientType.student);
+                patient.setPasswordHash("hash");
+                patient.setFullName("患者" + i);
+                patient.setStatus(PatientStatus.active);
+                entityManager.persist(patient);
+
+                Waitlist waitlist = new Waitlist();
+                waitlist.setPatient(patient);
+                waitlist.setSchedule(schedule);
+                waitlist.setStatus(i % 10 == 9 ? WaitlistStatus.expired : WaitlistStatus.waiting);
+                entityManager.persist(waitlist);
+                if (waitlist.getStatus() == WaitlistStatus.waiting) {
+                    waitingIds.add(waitlist.getWaitlistId());
+                }
+                if (i % 500 == 0) {
+                    entityManager.flush();
+                    entityManager.clear();
+                    schedule = entityManager.getReference(Schedule.class, schedule.getScheduleId());
+                }
+            }
+            entityManager.flush();
+            entityManager.createNativeQuery("UPDATE waitlist SET created_at = DATEADD('SECOND', waitlist_id, TIMESTAMP '2025-01-01 08:00:00')")
+                    .executeUpdate();
+            return waitingIds;
+        });
+    }
+
+    private Schedule createSchedule() {
+        ParentDepartment parentDepartment = new ParentDepartment("内科", null);
+        entityManager.persist(parentDepartment);
+
+        Department department = new Department();
+        department.setParentDepartment(parentDepartment);
+        department.setName("心血管内科");
+        entityManager.persist(department);
+
+        Doctor doctor = new Doctor();
+        doctor.setDepartment(department);
+        doctor.setIdentifier("D" + UUID.randomUUID());
+        doctor.setPasswordHash("hash");
+        doctor.setFullName("测试医生");
+        doctor.setStatus(DoctorStatus.active);
+        entityManager.persist(doctor);
+
+        TimeSlot slot = new TimeSlot();
+        slot.setSlotName("上午 08:00-08:30");
+        slot.setStartTime(LocalTime.of(8, 0));
+        slot.setEndTime(LocalTime.of(8, 30));
+        entityManager.persist(slot);
+
+        Location location = new Location();
+        location.setLocationName("门诊楼 201");
+        entityManager.persist(location);
+
+        Schedule schedule = new Schedule();
+        schedule.setDoctor(doctor);
+        schedule.setScheduleDate(LocalDate.now().plusDays(1));
+        schedule.setSlot(slot);
+        schedule.setLocation(location);
+        schedule.setTotalSlots(20);
+        schedule.setFee(new BigDecimal("20.00"));
+        schedule.setStatus(ScheduleStatus.full);
+        entityManager.persist(schedule);
+        return schedule;
+    }
+}
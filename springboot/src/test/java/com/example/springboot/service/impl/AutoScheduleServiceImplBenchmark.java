@@ -0,0 +1,257 @@
+package com.example.springboot.service.impl;
+
+import com.example.springboot.benchmark.BenchmarkTimer;
+import com.example.springboot.dto.AutoScheduleRequest;
+import com.example.springboot.dto.ScheduleRules;
+import com.example.springboot.entity.*;
+import com.example.springboot.entity.enums.DoctorStatus;
+import com.example.springboot.entity.enums.LeaveRequestStatus;
+import com.example.springboot.util.ScheduleAvailabilityIndex;
+import com.example.springboot.util.ScheduleConstraintValidator;
+import com.example.springboot.util.ScheduleOptimizer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 自动排班基准测试（200 位医生、90 天、上午/下午两个时段，每时段 5 位医生，另有 600 条已有排班）
+ * 对比原实现（每次筛选对每个医生逐条扫描已有排班 + 本次生成的排班检查硬约束）
+ * 与可用性位图（构建一次后按位筛选、增量更新）。两种实现的贪心选择规则相同，生成的排班必须逐条一致。
+ */
+@Tag("benchmark")
+class AutoScheduleServiceImplBenchmark {
+
+    private static final int DOCTORS = 200;
+    private static final int DAYS = 90;
+    private static final int DOCTORS_PER_SLOT = 5;
+    private static final int EXISTING_SCHEDULES = 600;
+
+    private final ScheduleConstraintValidator constraintValidator = new ScheduleConstraintValidator();
+    private final AutoScheduleServiceImpl autoScheduleService = new AutoScheduleServiceImpl();
+
+    private AutoScheduleRequest request;
+    private List<Doctor> doctors;
+    private List<TimeSlot> timeSlots;
+    private Map<Integer, Location> doctorLocationMap;
+    private List<Schedule> existingSchedules;
+    private final Map<Integer, List<LeaveRequest>> leaveMap = Collections.emptyMap();
+
+    @BeforeEach
+    void setUp() {
+        ScheduleRules rules = new ScheduleRules();
+        rules.setMinDoctorsPerSlot(DOCTORS_PER_SLOT);
+        rules.setMaxDoctorsPerSlot(DOCTORS_PER_SLOT);
+
+        request = new AutoScheduleRequest();
+        request.setDepartmentId(1);
+        request.setStartDate(LocalDate.of(2025, 1, 1));
+        request.setEndDate(request.getStartDate().plusDays(DAYS - 1));
+        request.setRules(rules);
+
+        timeSlots = List.of(
+                timeSlot(1, "上午 08:00-12:00", LocalTime.of(8, 0), LocalTime.of(12, 0)),
+                timeSlot(2, "下午 14:00-17:30", LocalTime.of(14, 0), LocalTime.of(17, 30)));
+
+        // 每位医生一个固定诊室，不产生诊室冲突
+        doctors = new ArrayList<>(DOCTORS);
+        doctorLocationMap = new HashMap<>();
+        for (int i = 1; i <= DOCTORS; i++) {
+            Doctor doctor = new Doctor();
+            doctor.setDoctorId(i);
+            doctor.setFullName("医生" + i);
+            doctor.setStatus(DoctorStatus.active);
+            doctors.add(doctor);
+
+            Location location = new Location();
+            location.setLocationId(i);
+            location.setLocationName("诊室" + i);
+            doctorLocationMap.put(i, location);
+        }
+
+        Random random = new Random(42);
+        existingSchedules = new ArrayList<>(EXISTING_SCHEDULES);
+        Set<String> occupied = new HashSet<>();
+        while (existingSchedules.size() < EXISTING_SCHEDULES) {
+            Doctor doctor = doctors.get(random.nextInt(DOCTORS));
+            LocalDate date = request.getStartDate().plusDays(random.nextInt(DAYS));
+            TimeSlot slot = timeSlots.get(random.nextInt(timeSlots.size()));
+            if (occupied.add(doctor.getDoctorId() + "/" + date + "/" + slot.getSlotId())) {
+                Schedule schedule = new Schedule();
+                schedule.setDoctor(doctor);
+                schedule.setScheduleDate(date);
+                schedule.setSlot(slot);
+                existingSchedules.add(schedule);
+            }
+        }
+    }
+
+    @Test
+    void compareWithPerDoctorConstraintScan() {
+        List<String> legacy = assignments(legacyGenerate());
+        List<String> optimized = assignments(generate().schedules());
+        assertEquals(DAYS * timeSlots.size() * DOCTORS_PER_SLOT, optimized.size());
+        assertEquals(legacy, optimized, "位图实现生成的排班应与原实现一致");
+
+        double legacyMillis = BenchmarkTimer.measure("auto-schedule legacy constraint scan", 0, 1,
+                this::legacyGenerate);
+        double optimizedMillis = BenchmarkTimer.measure("auto-schedule availability bitset", 5, 20,
+                this::generate);
+        BenchmarkTimer.report("auto-schedule 200 doctors / 90 days", legacyMillis, optimizedMillis);
+
+        assertTrue(optimizedMillis < legacyMillis, "可用性位图应快于逐个医生扫描排班列表");
+    }
+
+    /**
+     * 当前实现：构建一次可用性位图，再执行确定性贪心
+     */
+    private ScheduleOptimizer.Plan generate() {
+        ScheduleAvailabilityIndex baseAvailability = new ScheduleAvailabilityIndex(
+                doctors, request.getStartDate(), request.getEndDate(), timeSlots,
+                existingSchedules, leaveMap, request.getRules());
+        return ReflectionTestUtils.invokeMethod(autoScheduleService, "generatePlan",
+                request, doctors, timeSlots, baseAvailability, doctorLocationMap, null);
+    }
+
+    /**
+     * 原 autoGenerateSchedule 的主循环（不含日志和未分配时段记录）：
+     * 每次筛选合并已有排班和本次生成的排班，对每个医生逐条检查硬约束
+     */
+    private List<Schedule> legacyGenerate() {
+        ScheduleRules rules = request.getRules();
+        List<Schedule> generatedSchedules = new ArrayList<>();
+        Map<Integer, Integer> workloadMap = new HashMap<>();
+
+        LocalDate currentDate = request.getStartDate();
+        while (!currentDate.isAfter(request.getEndDate())) {
+            for (TimeSlot slot : timeSlots) {
+                int minDoctors = Math.max(1, rules.getMinDoctorsPerSlot());
+                int maxDoctors = Math.max(minDoctors, rules.getMaxDoctorsPerSlot());
+                Set<Integer> slotDoctorsAssigned = new HashSet<>();
+                Set<Integer> slotLocationsUsed = new HashSet<>();
+                int assignedCount = 0;
+                int attemptCount = 0;
+
+                while (assignedCount < minDoctors && attemptCount < doctors.size()) {
+                    attemptCount++;
+                    List<Doctor> availableDoctors = legacyFilter(currentDate, slot, workloadMap,
+                            generatedSchedules, slotDoctorsAssigned, false);
+                    if (availableDoctors.isEmpty()) {
+                        if (Boolean.TRUE.equals(rules.getStrictMode())) {
+                            break;
+                        }
+                        availableDoctors = legacyFilter(currentDate, slot, workloadMap,
+                                generatedSchedules, slotDoctorsAssigned, true);
+                        if (availableDoctors.isEmpty()) {
+                            break;
+                        }
+                    }
+
+                    Doctor selectedDoctor = legacySelectBestDoctor(availableDoctors, workloadMap,
+                            generatedSchedules, currentDate);
+                    Location assignedLocation = doctorLocationMap.get(selectedDoctor.getDoctorId());
+                    if (assignedLocation == null || slotLocationsUsed.contains(assignedLocation.getLocationId())) {
+                        continue;
+                    }
+
+                    Schedule schedule = new Schedule();
+                    schedule.setDoctor(selectedDoctor);
+                    schedule.setScheduleDate(currentDate);
+                    schedule.setSlot(slot);
+                    schedule.setLocation(assignedLocation);
+                    generatedSchedules.add(schedule);
+                    workloadMap.merge(selectedDoctor.getDoctorId(), 1, Integer::sum);
+                    slotDoctorsAssigned.add(selectedDoctor.getDoctorId());
+                    slotLocationsUsed.add(assignedLocation.getLocationId());
+                    assignedCount++;
+                    if (assignedCount >= maxDoctors) {
+                        break;
+                    }
+                }
+            }
+            currentDate = currentDate.plusDays(1);
+        }
+        return generatedSchedules;
+    }
+
+    private List<Doctor> legacyFilter(LocalDate date, TimeSlot slot, Map<Integer, Integer> workloadMap,
+                                      List<Schedule> generatedSchedules, Set<Integer> slotDoctorsAssigned,
+                                      boolean relaxed) {
+        List<Schedule> allSchedules = new ArrayList<>(existingSchedules);
+        allSchedules.addAll(generatedSchedules);
+        ScheduleRules rules = request.getRules();
+        return doctors.stream()
+                .filter(doctor -> legacyCheckHardConstraints(doctor, date, slot, allSchedules, workloadMap, rules, relaxed))
+                .filter(doctor -> !slotDoctorsAssigned.contains(doctor.getDoctorId()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 原 ScheduleConstraintValidator.checkHardConstraints / checkHardConstraintsRelaxed（放宽版本跳过连续工作天数限制）：
+     * 对每个医生逐条扫描排班列表。原实现按时段ID判断时间冲突，本测试的两个时段互不重叠，与按时间重叠判断结果相同
+     */
+    private boolean legacyCheckHardConstraints(Doctor doctor, LocalDate date, TimeSlot slot, List<Schedule> schedules,
+                                               Map<Integer, Integer> workloadMap, ScheduleRules rules, boolean relaxed) {
+        boolean timeConflict = schedules.stream()
+                .anyMatch(s -> s.getDoctor().getDoctorId().equals(doctor.getDoctorId())
+                        && s.getScheduleDate().equals(date)
+                        && s.getSlot().getSlotId().equals(slot.getSlotId()));
+        if (timeConflict) {
+            return false;
+        }
+        List<LeaveRequest> leaves = leaveMap.get(doctor.getDoctorId());
+        if (leaves != null && leaves.stream().anyMatch(lr -> lr.getStatus() == LeaveRequestStatus.APPROVED
+                && !lr.getStartTime().isAfter(date.atTime(23, 59, 59))
+                && !lr.getEndTime().isBefore(date.atStartOfDay()))) {
+            return false;
+        }
+        if (doctor.getStatus() != DoctorStatus.active) {
+            return false;
+        }
+        if (workloadMap.getOrDefault(doctor.getDoctorId(), 0) >= rules.getMaxShiftsPerDoctor()) {
+            return false;
+        }
+        if (!relaxed && rules.getConsecutiveWorkDaysLimit() != null && rules.getConsecutiveWorkDaysLimit() > 0) {
+            return constraintValidator.getConsecutiveWorkDays(doctor, date, schedules) < rules.getConsecutiveWorkDaysLimit();
+        }
+        return true;
+    }
+
+    private Doctor legacySelectBestDoctor(List<Doctor> availableDoctors, Map<Integer, Integer> workloadMap,
+                                          List<Schedule> generatedSchedules, LocalDate date) {
+        Doctor bestDoctor = availableDoctors.get(0);
+        double bestScore = Double.MAX_VALUE;
+        for (Doctor doctor : availableDoctors) {
+            int workload = workloadMap.getOrDefault(doctor.getDoctorId(), 0);
+            int consecutiveDays = constraintValidator.getConsecutiveWorkDays(doctor, date, generatedSchedules);
+            double score = workload * 0.6 + consecutiveDays * 0.4;
+            if (score < bestScore) {
+                bestScore = score;
+                bestDoctor = doctor;
+            }
+        }
+        return bestDoctor;
+    }
+
+    private static List<String> assignments(List<Schedule> schedules) {
+        return schedules.stream()
+                .map(s -> s.getScheduleDate() + "/" + s.getSlot().getSlotId() + "/" + s.getDoctor().getDoctorId())
+                .collect(Collectors.toList());
+    }
+
+    private static TimeSlot timeSlot(int slotId, String name, LocalTime start, LocalTime end) {
+        TimeSlot slot = new TimeSlot();
+        slot.setSlotId(slotId);
+        slot.setSlotName(name);
+        slot.setStartTime(start);
+        slot.setEndTime(end);
+        return slot;
+    }
+}
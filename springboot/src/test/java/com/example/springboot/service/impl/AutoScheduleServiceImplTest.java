@@ -0,0 +1,127 @@
+package com.example.springboot.service.impl;
+
+import com.example.springboot.dto.AutoScheduleRequest;
+import com.example.springboot.dto.AutoScheduleResponse;
+import com.example.springboot.dto.ScheduleRules;
+import com.example.springboot.dto.schedule.ScheduleResponse;
+import com.example.springboot.entity.*;
+import com.example.springboot.entity.enums.DoctorStatus;
+import com.example.springboot.repository.ScheduleRepository;
+import com.example.springboot.service.ReferenceDataCache;
+import com.example.springboot.util.ConflictDetector;
+import com.example.springboot.util.ScheduleConstraintValidator;
+import com.example.springboot.util.ScheduleOptimizer;
+import com.example.springboot.util.WorkloadCalculator;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 自动排班保存测试
+ * 保存后返回的排班必须带有数据库生成的排班ID、创建时间，且与数据库中的记录一致。
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Import({AutoScheduleServiceImpl.class, ReferenceDataCache.class, ScheduleConstraintValidator.class,
+        WorkloadCalculator.class, ConflictDetector.class, ScheduleOptimizer.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // 基础数据缓存在独立事务中读取时段，测试数据需要先提交
+class AutoScheduleServiceImplTest {
+
+    private static final int DOCTORS = 3;
+    private static final int DAYS = 3;
+
+    @Autowired
+    private AutoScheduleServiceImpl autoScheduleService;
+
+    @Autowired
+    private ScheduleRepository scheduleRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void savedSchedulesComeBackWithIds() {
+        Integer departmentId = createDepartment();
+
+        AutoScheduleRequest request = new AutoScheduleRequest();
+        request.setDepartmentId(departmentId);
+        request.setStartDate(LocalDate.now().plusDays(1));
+        request.setEndDate(LocalDate.now().plusDays(DAYS));
+        request.setPreviewOnly(false);
+        request.setRules(new ScheduleRules());
+
+        AutoScheduleResponse response = autoScheduleService.autoGenerateSchedule(request);
+
+        assertTrue(response.getSuccess(), response.getMessage());
+        assertFalse(response.getSchedules().isEmpty());
+        for (ScheduleResponse schedule : response.getSchedules()) {
+            assertNotNull(schedule.getScheduleId(), "保存后的排班应带有排班ID");
+            assertNotNull(schedule.getCreatedAt());
+            assertNotNull(schedule.getUpdatedAt());
+            Schedule saved = scheduleRepository.findById(schedule.getScheduleId()).orElseThrow();
+            assertEquals(schedule.getDoctorId(), saved.getDoctor().getDoctorId());
+            assertEquals(schedule.getScheduleDate(), saved.getScheduleDate());
+            assertEquals(0L, saved.getVersion());
+        }
+    }
+
+    /**
+     * 创建一个科室及其医生、诊室，另建上午、下午两个时段
+     */
+    private Integer createDepartment() {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            ParentDepartment parentDepartment = new ParentDepartment("内科", null);
+            entityManager.persist(parentDepartment);
+
+            Department department = new Department();
+            department.setParentDepartment(parentDepartment);
+            department.setName("心血管内科");
+            entityManager.persist(department);
+
+            for (int i = 1; i <= DOCTORS; i++) {
+                Doctor doctor = new Doctor();
+                doctor.setDepartment(department);
+                doctor.setIdentifier("D" + UUID.randomUUID());
+                doctor.setPasswordHash("hash");
+                doctor.setFullName("测试医生" + i);
+                doctor.setStatus(DoctorStatus.active);
+                entityManager.persist(doctor);
+
+                Location location = new Location();
+                location.setLocationName("门诊楼 20" + i);
+                location.setDepartment(department);
+                entityManager.persist(location);
+            }
+
+            timeSlot("上午 08:00-12:00", LocalTime.of(8, 0), LocalTime.of(12, 0));
+            timeSlot("下午 14:00-17:30", LocalTime.of(14, 0), LocalTime.of(17, 30));
+            return department.getDepartmentId();
+        });
+    }
+
+    private void timeSlot(String name, LocalTime start, LocalTime end) {
+        TimeSlot slot = new TimeSlot();
+        slot.setSlotName(name);
+        slot.setStartTime(start);
+        slot.setEndTime(end);
+        entityManager.persist(slot);
+    }
+}
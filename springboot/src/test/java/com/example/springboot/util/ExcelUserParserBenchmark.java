@@ -0,0 +1,130 @@
+package com.example.springboot.util;
+
+import com.example.springboot.benchmark.BenchmarkTimer;
+import com.example.springboot.dto.user.UserCreateRequest;
+import com.example.springboot.entity.enums.PatientStatus;
+import com.example.springboot.entity.enums.PatientType;
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 用户导入 Excel 解析基准测试（50000 行 .xlsx）
+ * 对比原实现（WorkbookFactory 构建完整工作簿模型后逐行读取）与 SAX 逐行读取工作表 XML，
+ * 两种实现解析出的每一行必须一致。
+ */
+@Tag("benchmark")
+class ExcelUserParserBenchmark {
+
+    private static final int ROWS = 50000;
+
+    private final ExcelUserParser excelUserParser = new ExcelUserParser();
+    private byte[] workbookBytes;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Sheet sheet = workbook.createSheet("用户");
+            String[] header = {"学号/工号", "姓名", "密码", "角色", "身份证号", "手机号", "过敏史", "既往病史"};
+            Row headerRow = sheet.createRow(0);
+            for (int col = 0; col < header.length; col++) {
+                headerRow.createCell(col).setCellValue(header[col]);
+            }
+            for (int i = 1; i <= ROWS; i++) {
+                Row row = sheet.createRow(i);
+                row.createCell(0).setCellValue("S" + (20250000 + i));
+                row.createCell(1).setCellValue("学生" + i);
+                row.createCell(2).setCellValue("Pass" + i);
+                row.createCell(3).setCellValue("PATIENT");
+                row.createCell(4).setCellValue(String.format("1101011990%08d", i));
+                // 手机号按数字单元格写入，覆盖数值取值规则
+                row.createCell(5).setCellValue(13800000000L + i);
+                if (i % 3 == 0) {
+                    row.createCell(6).setCellValue("青霉素过敏");
+                }
+                if (i % 5 == 0) {
+                    row.createCell(7).setCellValue("  高血压  ");
+                }
+            }
+            workbook.write(out);
+            workbookBytes = out.toByteArray();
+        }
+    }
+
+    @Test
+    void compareWithWorkbookModel() throws IOException {
+        List<UserCreateRequest> legacy = legacyParse(new ByteArrayInputStream(workbookBytes));
+        List<UserCreateRequest> streamed = excelUserParser.parseExcel(new ByteArrayInputStream(workbookBytes));
+        assertEquals(ROWS, streamed.size());
+        assertEquals(legacy, streamed, "SAX 解析结果应与工作簿模型一致");
+
+        double legacyMillis = BenchmarkTimer.measure("excel import legacy workbook model", 1, 3,
+                () -> parse(true));
+        double optimizedMillis = BenchmarkTimer.measure("excel import SAX sheet reader", 2, 5,
+                () -> parse(false));
+        BenchmarkTimer.report("excel import " + ROWS + " rows", legacyMillis, optimizedMillis);
+
+        assertTrue(optimizedMillis < legacyMillis, "SAX 解析应快于构建完整工作簿模型");
+    }
+
+    private List<UserCreateRequest> parse(boolean legacy) {
+        try {
+            return legacy
+                    ? legacyParse(new ByteArrayInputStream(workbookBytes))
+                    : excelUserParser.parseExcel(new ByteArrayInputStream(workbookBytes));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 原 ExcelUserParser.parseExcel 的读取部分（本测试数据均为患者行，且全部通过必填校验）
+     */
+    private static List<UserCreateRequest> legacyParse(ByteArrayInputStream inputStream) throws IOException {
+        List<UserCreateRequest> requests = new ArrayList<>();
+        try (Workbook workbook = WorkbookFactory.create(inputStream)) {
+            Sheet sheet = workbook.getSheetAt(0);
+            for (int rowNum = 1; rowNum <= sheet.getLastRowNum(); rowNum++) {
+                Row row = sheet.getRow(rowNum);
+                if (row == null) continue;
+
+                UserCreateRequest request = new UserCreateRequest();
+                request.setId(getCellValue(row.getCell(0)));
+                request.setName(getCellValue(row.getCell(1)));
+                request.setPassword(getCellValue(row.getCell(2)));
+                request.setRole(getCellValue(row.getCell(3)));
+                request.setId_card(getCellValue(row.getCell(4)));
+                request.setPhone(getCellValue(row.getCell(5)));
+                request.setAllergy_history(getCellValue(row.getCell(6)));
+                request.setPast_medical_history(getCellValue(row.getCell(7)));
+                request.setPatientType(PatientType.student);
+                request.setPatientStatus(PatientStatus.active);
+                requests.add(request);
+            }
+        }
+        return requests;
+    }
+
+    private static String getCellValue(Cell cell) {
+        if (cell == null) return null;
+        switch (cell.getCellType()) {
+            case STRING:
+                return cell.getStringCellValue().trim();
+            case NUMERIC:
+                return String.valueOf((long) cell.getNumericCellValue());
+            default:
+                return null;
+        }
+    }
+}
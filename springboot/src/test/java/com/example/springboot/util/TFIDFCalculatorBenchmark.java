@@ -0,0 +1,114 @@
+package com.example.springboot.util;
+
+import com.example.springboot.benchmark.BenchmarkTimer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * TF-IDF 向量与余弦相似度基准测试（500 篇文档，每篇 20 个词，词汇表约 2000 个词）
+ * 对比原实现（词汇表中每个词各扫描一遍文档求 TF、扫描全部文档求 IDF；余弦相似度先构造键的并集）
+ * 与当前实现（文档词频、文档频率各统计一次；点积只遍历较小的向量），两种实现的相似度必须一致。
+ */
+@Tag("benchmark")
+class TFIDFCalculatorBenchmark {
+
+    private static final int DOCUMENTS = 500;
+    private static final int WORDS_PER_DOCUMENT = 20;
+    private static final int VOCABULARY = 2000;
+    private static final int COMPARED = 20;
+
+    private List<List<String>> documents;
+    private Set<String> vocabulary;
+
+    @BeforeEach
+    void setUp() {
+        Random random = new Random(42);
+        documents = new ArrayList<>(DOCUMENTS);
+        for (int d = 0; d < DOCUMENTS; d++) {
+            List<String> document = new ArrayList<>(WORDS_PER_DOCUMENT);
+            for (int w = 0; w < WORDS_PER_DOCUMENT; w++) {
+                // 偏向常用词，让文档频率有高有低
+                int term = (int) (VOCABULARY * Math.pow(random.nextDouble(), 2));
+                document.add("词" + term);
+            }
+            documents.add(document);
+        }
+        vocabulary = TFIDFCalculator.extractVocabulary(documents);
+    }
+
+    @Test
+    void compareWithPerTermScan() {
+        double[] legacy = legacySimilarities();
+        double[] optimized = similarities();
+        assertArrayEquals(legacy, optimized, 1e-9, "两种实现的相似度应一致");
+
+        double legacyMillis = BenchmarkTimer.measure("tf-idf legacy per-term scan", 1, 3,
+                this::legacySimilarities);
+        double optimizedMillis = BenchmarkTimer.measure("tf-idf counted once", 3, 20,
+                this::similarities);
+        BenchmarkTimer.report("tf-idf " + DOCUMENTS + " documents / " + vocabulary.size() + " terms",
+                legacyMillis, optimizedMillis);
+
+        assertTrue(optimizedMillis < legacyMillis, "一次统计词频和文档频率应快于逐词扫描");
+    }
+
+    /**
+     * 第一篇文档与其后 COMPARED 篇文档的相似度（当前实现）
+     */
+    private double[] similarities() {
+        Map<String, Double> query = TFIDFCalculator.calculateTFIDFVector(documents.get(0), documents, vocabulary);
+        double[] result = new double[COMPARED];
+        for (int i = 0; i < COMPARED; i++) {
+            Map<String, Double> vector = TFIDFCalculator.calculateTFIDFVector(documents.get(i + 1), documents, vocabulary);
+            result[i] = CosineSimilarityCalculator.cosineSimilarity(query, vector);
+        }
+        return result;
+    }
+
+    private double[] legacySimilarities() {
+        Map<String, Double> query = legacyVector(documents.get(0));
+        double[] result = new double[COMPARED];
+        for (int i = 0; i < COMPARED; i++) {
+            result[i] = legacyCosine(query, legacyVector(documents.get(i + 1)));
+        }
+        return result;
+    }
+
+    /**
+     * 原 TFIDFCalculator.calculateTFIDFVector：词汇表中每个词调用一次 tfidf
+     */
+    private Map<String, Double> legacyVector(List<String> document) {
+        Map<String, Double> vector = new HashMap<>();
+        for (String term : vocabulary) {
+            vector.put(term, TFIDFCalculator.tfidf(term, document, documents));
+        }
+        return vector;
+    }
+
+    /**
+     * 原 CosineSimilarityCalculator.cosineSimilarity：遍历两个向量键的并集
+     */
+    private static double legacyCosine(Map<String, Double> vector1, Map<String, Double> vector2) {
+        Set<String> allKeys = new HashSet<>(vector1.keySet());
+        allKeys.addAll(vector2.keySet());
+
+        double dotProduct = 0.0;
+        double norm1 = 0.0;
+        double norm2 = 0.0;
+        for (String key : allKeys) {
+            double v1 = vector1.getOrDefault(key, 0.0);
+            double v2 = vector2.getOrDefault(key, 0.0);
+            dotProduct += v1 * v2;
+            norm1 += v1 * v1;
+            norm2 += v2 * v2;
+        }
+
+        double denominator = Math.sqrt(norm1) * Math.sqrt(norm2);
+        return denominator == 0.0 ? 0.0 : dotProduct / denominator;
+    }
+}
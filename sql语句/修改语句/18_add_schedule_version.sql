@@ -0,0 +1,11 @@
+-- =====================================================
+-- 排班表增加乐观锁版本号
+-- 用于 Schedule 实体的 @Version，保护总号源数、状态、备注等字段的并发修改
+-- 占号/释放号源使用条件更新（booked_slots < total_slots），不递增版本号
+-- =====================================================
+
+ALTER TABLE `schedules`
+    ADD COLUMN `version` BIGINT NOT NULL DEFAULT 0 COMMENT '乐观锁版本号' AFTER `slot_application_id`;
+
+-- 验证字段是否添加成功
+SHOW COLUMNS FROM `schedules` LIKE 'version';
@@ -0,0 +1,27 @@
+-- =====================================================
+-- 通知发件箱表
+-- 业务事务（预约、取消、支付、候补转预约等）只写入一条事件记录（事件类型 + 参数），
+-- 由 NotificationOutboxDispatcher 在后台按批生成通知并删除已投递的事件
+-- =====================================================
+
+DROP TABLE IF EXISTS `notification_outbox`;
+
+CREATE TABLE `notification_outbox` (
+  `event_id` BIGINT NOT NULL AUTO_INCREMENT COMMENT '事件ID（同一用户按此顺序投递）',
+  `event_type` VARCHAR(50) NOT NULL COMMENT '事件类型，决定通知模板',
+  `user_id` INT NOT NULL COMMENT '接收用户ID',
+  `user_type` ENUM('patient','doctor','admin') NOT NULL COMMENT '用户类型',
+  `related_id` INT NULL COMMENT '相关实体ID',
+  `payload` TEXT NOT NULL COMMENT '模板参数（JSON）',
+  `status` ENUM('pending','failed') NOT NULL DEFAULT 'pending' COMMENT '状态：待投递 / 多次重试后失败',
+  `attempts` INT NOT NULL DEFAULT 0 COMMENT '已失败次数',
+  `next_attempt_at` DATETIME NULL COMMENT '下次重试时间（为空表示立即投递）',
+  `last_error` VARCHAR(500) NULL COMMENT '最近一次失败原因',
+  `created_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '事件创建时间',
+  PRIMARY KEY (`event_id`),
+  KEY `idx_outbox_status_event` (`status`, `event_id`),
+  KEY `idx_outbox_user` (`user_id`, `user_type`, `status`, `event_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='通知发件箱表';
+
+-- 验证表是否创建成功
+SHOW CREATE TABLE `notification_outbox`;
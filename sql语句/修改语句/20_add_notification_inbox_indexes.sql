@@ -0,0 +1,14 @@
+-- =====================================================
+-- 通知收件箱游标分页索引
+-- 用于 NotificationService.getNotificationPage()：
+-- 按 (user_id, user_type[, status]) 过滤，按 (sent_at, notification_id) 倒序取一页
+-- =====================================================
+
+CREATE INDEX idx_notifications_inbox
+ON notifications(user_id, user_type, sent_at, notification_id);
+
+CREATE INDEX idx_notifications_inbox_status
+ON notifications(user_id, user_type, status, sent_at, notification_id);
+
+-- 验证索引是否创建成功
+SHOW INDEX FROM notifications;
@@ -45,6 +45,16 @@ export async function getCallQueue(scheduleId) {
     });
 }
 
+/**
+ * 订阅叫号队列推送（SSE），连接建立后先收到 snapshot 事件，之后收到签到、叫号、完成、过号等事件
+ * 断线后 EventSource 自动重连，重连后会重新收到 snapshot
+ * @param {Number} scheduleId - 排班ID
+ * @returns {EventSource}
+ */
+export function subscribeCallQueue(scheduleId) {
+    return new EventSource(`${request.defaults.baseURL}/api/appointments/schedule/${scheduleId}/call-queue/stream`);
+}
+
 /**
  * 获取下一个应该叫号的预约
  * @param {Number} scheduleId - 排班ID